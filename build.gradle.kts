@@ -3,6 +3,10 @@ plugins {
 	jacoco
 	id("org.springframework.boot") version "3.4.2"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.2"
+	// Only for Spring AOT processing: bootJar then carries the generated bean definitions, used when the
+	// application runs with -Dspring.aot.enabled=true. Native images are not built.
+	id("org.graalvm.buildtools.native") version "0.10.4"
 }
 
 group = "id.ac.ui.cs.advprog"
@@ -28,6 +32,8 @@ val seleniumJavaVersion = "4.14.1"
 val seleniumJupiterVersion = "5.0.1"
 val webdrivermanagerVersion = "5.6.3"
 val junitJupiterVersion = "5.9.1"
+val jmhCoreVersion = "1.37"
+val hdrHistogramVersion = "2.2.2"
 
 dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-thymeleaf")
@@ -43,6 +49,13 @@ dependencies {
 	testImplementation("io.github.bonigarcia:webdrivermanager:$webdrivermanagerVersion")
 	testImplementation("org.junit.jupiter:junit-jupiter:$junitJupiterVersion")
 	implementation("org.springframework.boot:spring-boot-starter-validation")
+	implementation("com.github.ben-manes.caffeine:caffeine")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
+	runtimeOnly("io.micrometer:micrometer-registry-prometheus")
+	testImplementation("io.micrometer:micrometer-registry-prometheus")
+	testImplementation("org.hdrhistogram:HdrHistogram:$hdrHistogramVersion")
+	jmh("io.micrometer:micrometer-registry-prometheus")
+	jmh("org.springframework:spring-test")
 }
 
 tasks.register<Test>("unitTest") {
@@ -51,6 +64,7 @@ tasks.register<Test>("unitTest") {
 
 	filter {
 		excludeTestsMatching("*FunctionalTest")
+		excludeTestsMatching("*LoadTest")
 	}
 }
 
@@ -62,6 +76,59 @@ tasks.register<Test>("functionalTest") {
 	}
 }
 
+// Starts the application under load; see src/test/java/**/load. Not part of ./gradlew test.
+tasks.register<Test>("loadTest") {
+	description = "Runs the load tests."
+	group = "verification"
+	testClassesDirs = sourceSets.test.get().output.classesDirs
+	classpath = sourceSets.test.get().runtimeClasspath
+	filter {
+		includeTestsMatching("*LoadTest")
+	}
+	maxHeapSize = "2g"
+	testLogging {
+		showStandardStreams = true
+	}
+}
+
+// Starts the boot jar repeatedly with and without CDS, AOT and lazy initialization and reports the time to
+// the first successful /product/list; see src/test/java/**/load/StartupBenchmark.java. Set runs with -PstartupRuns=<n>.
+tasks.register<JavaExec>("startupBenchmark") {
+	description = "Measures startup time and first-request latency of the boot jar."
+	group = "verification"
+	dependsOn(tasks.bootJar)
+	classpath = sourceSets.test.get().runtimeClasspath
+	mainClass = "id.ac.ui.cs.advprog.eshop.load.StartupBenchmark"
+	args(
+		tasks.bootJar.get().archiveFile.get().asFile,
+		layout.buildDirectory.dir("startup-benchmark").get().asFile,
+		findProperty("startupRuns") ?: "5"
+	)
+}
+
+// e.g. ./gradlew loadGenerator -PloadRate=500 -PloadDuration=120 -PloadMix=browse-products=80,edit-product=20
+tasks.register<JavaExec>("loadGenerator") {
+	description = "Drives the boot jar (or -PloadTarget) at a fixed arrival rate and reports latency percentiles."
+	group = "verification"
+	dependsOn(tasks.bootJar)
+	classpath = sourceSets.test.get().runtimeClasspath
+	mainClass = "id.ac.ui.cs.advprog.eshop.load.LoadGenerator"
+	args(
+		tasks.bootJar.get().archiveFile.get().asFile,
+		layout.buildDirectory.dir("load-generator").get().asFile,
+		findProperty("loadRate") ?: "200",
+		findProperty("loadDuration") ?: "60",
+		findProperty("loadWarmup") ?: "15",
+		findProperty("loadMix") ?: "",
+		findProperty("loadTarget") ?: ""
+	)
+}
+
+// The image runs with the prod profile, and AOT fixes at build time whether actuator gets its own port
+tasks.named<org.springframework.boot.gradle.tasks.aot.ProcessAot>("processAot") {
+	args("--spring.profiles.active=prod")
+}
+
 tasks.withType<Test>().configureEach {
 	useJUnitPlatform()
 }
@@ -69,6 +136,7 @@ tasks.withType<Test>().configureEach {
 tasks.test {
 	filter {
 		excludeTestsMatching("*FunctionalTest")
+		excludeTestsMatching("*LoadTest")
 
 		finalizedBy(tasks.jacocoTestReport)
 	}
@@ -76,4 +144,18 @@ tasks.test {
 
 tasks.jacocoTestReport {
 	dependsOn(tasks.test)
-}
\ No newline at end of file
+}
+
+// Benchmarks live in src/jmh/java. Run with ./gradlew jmh; narrow the run with
+// -PjmhIncludes=<regex> and set the number of benchmark threads with -PjmhThreads=<n>.
+jmh {
+	jmhVersion = jmhCoreVersion
+	profilers = listOf("gc")
+	resultFormat = "JSON"
+	resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+	humanOutputFile = layout.buildDirectory.file("reports/jmh/human.txt")
+	// Without -PjmhThreads each benchmark runs with its own @Threads, or one thread
+	(findProperty("jmhThreads") as String?)?.let { threads = it.toInt() }
+	(findProperty("jmhIncludes") as String?)?.let { includes = listOf(it) }
+	jvmArgs = listOf("-Xms4g", "-Xmx4g")
+}
@@ -0,0 +1,90 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import id.ac.ui.cs.advprog.eshop.service.ProductServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * The {@link ProductController} request path through the DispatcherServlet:
+ * handler mapping, parameter binding, bean validation, service and repository.
+ * Template rendering is left out, so this isolates the server-side work that
+ * happens before Thymeleaf runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductControllerBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    int catalogSize;
+
+    ProductRepository productRepository;
+    MockMvc mockMvc;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        productRepository = new ProductRepository();
+        for (int i = 0; i < catalogSize; i++) {
+            Product product = new Product();
+            product.setProductId("p-" + i);
+            product.setProductName("Product " + i);
+            product.setProductQuantity(i % 100 + 1);
+            productRepository.create(product);
+        }
+        ProductServiceImpl productService = new ProductServiceImpl();
+        ReflectionTestUtils.setField(productService, "productRepository", productRepository);
+        // The @PostConstruct the container would run, so the aggregate listener is part of every write
+        ReflectionTestUtils.invokeMethod(productService, "init");
+        ProductController productController = new ProductController();
+        ReflectionTestUtils.setField(productController, "service", productService);
+        mockMvc = MockMvcBuilders.standaloneSetup(productController).build();
+    }
+
+    @Benchmark
+    public MvcResult listFirstPage() throws Exception {
+        return mockMvc.perform(get("/product/list").param("size", "20")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult editPage() throws Exception {
+        String id = "p-" + ThreadLocalRandom.current().nextInt(catalogSize);
+        return mockMvc.perform(get("/product/edit").param("id", id)).andReturn();
+    }
+
+    /** Posts the version the edit form would carry, so this measures a successful save, not a conflict. */
+    @Benchmark
+    public MvcResult editPost() throws Exception {
+        int i = ThreadLocalRandom.current().nextInt(catalogSize);
+        String id = "p-" + i;
+        return mockMvc.perform(post("/product/edit")
+                .param("productId", id)
+                .param("version", Long.toString(productRepository.findById(id).getVersion()))
+                .param("productName", "Product " + i)
+                .param("productQuantity", "5")).andReturn();
+    }
+}
@@ -0,0 +1,77 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the timing proxies: the same repository lookups with and without
+ * a {@link CallTimingInterceptor} proxy in front. Run with the gc profiler
+ * (the default in build.gradle.kts) to see that the instrumented variants
+ * allocate no more per operation than the plain ones, apart from the
+ * proxy's argument array.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    IProductRepository plain;
+    IProductRepository instrumented;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        ProductRepository productRepository = new ProductRepository();
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            Product product = new Product();
+            product.setProductId("p-" + i);
+            product.setProductName("Product " + i);
+            product.setProductQuantity(i % 100 + 1);
+            productRepository.create(product);
+        }
+        plain = productRepository;
+        instrumented = new RepositoryMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT))
+                .instrument(productRepository);
+    }
+
+    @Benchmark
+    public Product findByIdPlain() {
+        return plain.findById("p-" + ThreadLocalRandom.current().nextInt(CATALOG_SIZE));
+    }
+
+    @Benchmark
+    public Product findByIdInstrumented() {
+        return instrumented.findById("p-" + ThreadLocalRandom.current().nextInt(CATALOG_SIZE));
+    }
+
+    @Benchmark
+    public long countPlain() {
+        return plain.count();
+    }
+
+    @Benchmark
+    public long countInstrumented() {
+        return instrumented.count();
+    }
+}
@@ -0,0 +1,90 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@link AggregateIndex} costs on every car write, compared with a
+ * repository without it, and what it saves on reads compared with summing a
+ * full scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregateIndexBenchmark {
+
+    @Param({"1000", "100000"})
+    int catalogSize;
+
+    @Param({"false", "true"})
+    boolean aggregated;
+
+    CarRepository carRepository;
+    AggregateIndex<Car> aggregates;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        carRepository = new CarRepository();
+        aggregates = new AggregateIndex<>(Car::getCarQuantity, Car::getCarColor, 5);
+        if (aggregated) {
+            carRepository.addListener(aggregates);
+        }
+        for (int i = 0; i < catalogSize; i++) {
+            carRepository.create(RepositoryBenchmark.newCar("c-" + i, i));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Car changeQuantity() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int quantity = random.nextInt(20);
+        return carRepository.modify("c-" + random.nextInt(catalogSize), car -> {
+            Car next = RepositoryBenchmark.newCar(car.getCarId(), quantity);
+            next.setCarColor(car.getCarColor());
+            next.setCarQuantity(quantity);
+            return next;
+        }).item();
+    }
+
+    // Only meaningful with aggregated=true; the index is empty otherwise
+    @Benchmark
+    public long readTotals() {
+        return aggregates.totalQuantity() + aggregates.countInGroup("red") + aggregates.lowStockCount();
+    }
+
+    @Benchmark
+    public long scanTotals() {
+        long total = 0;
+        long red = 0;
+        long lowStock = 0;
+        for (Car car : carRepository.findAll()) {
+            total += car.getCarQuantity();
+            if ("red".equalsIgnoreCase(car.getCarColor())) {
+                red++;
+            }
+            if (car.getCarQuantity() < 5) {
+                lowStock++;
+            }
+        }
+        return total + red + lowStock;
+    }
+}
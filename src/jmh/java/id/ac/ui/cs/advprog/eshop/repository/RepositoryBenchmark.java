@@ -0,0 +1,131 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the repository hot paths over catalogs of 1e2 to 1e6 items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    int catalogSize;
+
+    ProductRepository productRepository;
+    CarRepository carRepository;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        productRepository = new ProductRepository();
+        carRepository = new CarRepository();
+        for (int i = 0; i < catalogSize; i++) {
+            productRepository.create(newProduct("p-" + i, i));
+            carRepository.create(newCar("c-" + i, i));
+        }
+    }
+
+    static Product newProduct(String id, int i) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName("Product " + i);
+        product.setProductQuantity(i % 100 + 1);
+        return product;
+    }
+
+    static Car newCar(String id, int i) {
+        Car car = new Car();
+        car.setCarId(id);
+        car.setCarName("Car " + i);
+        car.setCarColor(i % 2 == 0 ? "Red" : "Blue");
+        car.setCarQuantity(i % 10 + 1);
+        return car;
+    }
+
+    private String randomProductId() {
+        return "p-" + ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+
+    @Benchmark
+    public Product productFindById() {
+        return productRepository.findById(randomProductId());
+    }
+
+    @Benchmark
+    public Product productUpdate() {
+        int i = ThreadLocalRandom.current().nextInt(catalogSize);
+        Product product = newProduct("p-" + i, i);
+        product.setVersion(productRepository.findById(product.getProductId()).getVersion());
+        try {
+            return productRepository.update(product);
+        } catch (StaleUpdateException e) {
+            // Lost the race to another benchmark thread; still a completed write attempt
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Product productCreateAndDelete() {
+        Product product = productRepository.create(newProduct(null, catalogSize));
+        productRepository.delete(product.getProductId());
+        return product;
+    }
+
+    @Benchmark
+    public List<Product> productFindAll() {
+        return productRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Product> productFindFirstPage() {
+        return productRepository.findPage(0, 20);
+    }
+
+    @Benchmark
+    public List<Product> productFindByNamePrefix() {
+        return productRepository.findByNamePrefix("Product 12");
+    }
+
+    @Benchmark
+    public Car carFindById() {
+        return carRepository.findById("c-" + ThreadLocalRandom.current().nextInt(catalogSize));
+    }
+
+    @Benchmark
+    public Car carUpdate() {
+        int i = ThreadLocalRandom.current().nextInt(catalogSize);
+        Car car = newCar("c-" + i, i);
+        car.setVersion(carRepository.findById(car.getCarId()).getVersion());
+        try {
+            return carRepository.update(car);
+        } catch (StaleUpdateException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public List<Car> carFindAll() {
+        return carRepository.findAll();
+    }
+}
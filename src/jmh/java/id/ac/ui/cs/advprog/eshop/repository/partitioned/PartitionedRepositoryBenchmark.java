@@ -0,0 +1,105 @@
+package id.ac.ui.cs.advprog.eshop.repository.partitioned;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write throughput of the striped-lock {@link ProductRepository} against
+ * {@link PartitionedProductRepository} at 1 to 8 writing threads. Every
+ * write is a {@code modify} of a random product, the stock adjustment the
+ * services make. Compare the rows of one store across thread counts: a
+ * store that scales keeps its per-thread throughput as threads are added.
+ * Run on a machine with at least as many cores as the largest thread count
+ * plus the shards, otherwise the writers compete with the callers for CPUs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartitionedRepositoryBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+
+    @Param({"striped", "partitioned"})
+    String store;
+
+    @Param({"8"})
+    int shards;
+
+    IProductRepository productRepository;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        productRepository = "striped".equals(store) ? new ProductRepository()
+                : new PartitionedProductRepository(shards);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            Product product = new Product();
+            product.setProductId("p-" + i);
+            product.setProductName("Product " + i);
+            product.setProductQuantity(1_000_000);
+            productRepository.create(product);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        if (productRepository instanceof PartitionedRepository<?> partitioned) {
+            partitioned.close();
+        }
+    }
+
+    private Product decrement() {
+        String id = "p-" + ThreadLocalRandom.current().nextInt(CATALOG_SIZE);
+        return productRepository.modify(id, current -> {
+            Product next = new Product();
+            next.setProductId(current.getProductId());
+            next.setProductName(current.getProductName());
+            next.setProductQuantity(current.getProductQuantity() - 1);
+            return next;
+        }).item();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Product modify1Thread() {
+        return decrement();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Product modify2Threads() {
+        return decrement();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Product modify4Threads() {
+        return decrement();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Product modify8Threads() {
+        return decrement();
+    }
+}
@@ -0,0 +1,108 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of {@link MappedProductRepository}: stock adjustments at 1 to 8
+ * writing threads, which only share the lock stripes of the slots they touch,
+ * and name prefix pages served from the off-heap name index. As with the
+ * partitioned store benchmark, the thread rows only say something about
+ * scaling on a machine with at least 8 cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedRepositoryBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+
+    Path directory;
+    MappedProductRepository productRepository;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() throws IOException {
+        directory = Files.createTempDirectory("mapped-benchmark");
+        productRepository = new MappedProductRepository(directory, CATALOG_SIZE, 128);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            Product product = new Product();
+            product.setProductId("p-" + i);
+            product.setProductName("Product " + i);
+            product.setProductQuantity(1_000_000);
+            productRepository.create(product);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        productRepository.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private Product decrement() {
+        String id = "p-" + ThreadLocalRandom.current().nextInt(CATALOG_SIZE);
+        return productRepository.modify(id, current -> {
+            Product next = current.copy();
+            next.setProductQuantity(current.getProductQuantity() - 1);
+            return next;
+        }).item();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Product modify1Thread() {
+        return decrement();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Product modify2Threads() {
+        return decrement();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Product modify4Threads() {
+        return decrement();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Product modify8Threads() {
+        return decrement();
+    }
+
+    @Benchmark
+    public Page<Product> namePrefixPage() {
+        // Each prefix matches about a ninth of the catalog, of which only the first page is read
+        return productRepository.findByNamePrefix("product " + ThreadLocalRandom.current().nextInt(1, 10), null, 20);
+    }
+}
@@ -0,0 +1,100 @@
+package id.ac.ui.cs.advprog.eshop.search;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of {@link SearchIndex} for exact, prefix and misspelled
+ * queries, against the {@code findAll} and {@code contains} scan it replaces.
+ * Names are three words drawn from a vocabulary that grows with the catalog,
+ * so postings stay about as long as in a real catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchIndexBenchmark {
+
+    private static final String[] SYLLABLES = {"sa", "mpo", "ba", "mbang", "ke", "cap", "ma", "nis", "su", "sep",
+            "ro", "ti", "ko", "pi", "te", "h", "ga", "ram", "mi", "nyak"};
+
+    @Param({"100000", "1000000"})
+    int catalogSize;
+
+    ProductRepository productRepository;
+    SearchIndex<Product> index;
+    String word;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        productRepository = new ProductRepository();
+        index = new SearchIndex<>(List.of(Product::getProductName));
+        productRepository.addListener(index);
+        Random random = new Random(42);
+        int vocabulary = Math.max(1000, catalogSize / 20);
+        for (int i = 0; i < catalogSize; i++) {
+            Product product = new Product();
+            product.setProductId("p-" + i);
+            product.setProductName(word(random.nextInt(vocabulary)) + " " + word(random.nextInt(vocabulary))
+                    + " " + word(random.nextInt(vocabulary)));
+            product.setProductQuantity(1);
+            productRepository.create(product);
+        }
+        word = word(vocabulary / 2);
+    }
+
+    static String word(int n) {
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        } while (n > 0);
+        return word.toString();
+    }
+
+    @Benchmark
+    public List<SearchHit> exactQuery() {
+        return index.search(word, 10);
+    }
+
+    @Benchmark
+    public List<SearchHit> prefixQuery() {
+        return index.search(word.substring(0, word.length() - 1), 10);
+    }
+
+    @Benchmark
+    public List<SearchHit> misspelledQuery() {
+        // Swap the first two letters
+        return index.search(word.charAt(1) + "" + word.charAt(0) + word.substring(2), 10);
+    }
+
+    @Benchmark
+    public long scanContains() {
+        long matches = 0;
+        for (Product product : productRepository.findAll()) {
+            if (product.getProductName().toLowerCase(Locale.ROOT).contains(word)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
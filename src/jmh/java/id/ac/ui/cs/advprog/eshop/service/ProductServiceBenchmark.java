@@ -0,0 +1,83 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProductServiceImpl} create/update, including {@code validateProduct}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    int catalogSize;
+
+    ProductServiceImpl productService;
+
+    @Setup(Level.Trial)
+    public void fillCatalog() {
+        ProductRepository productRepository = new ProductRepository();
+        productService = new ProductServiceImpl();
+        ReflectionTestUtils.setField(productService, "productRepository", productRepository);
+        // What the container would call: registers the aggregate listener every write then updates
+        productService.init();
+        for (int i = 0; i < catalogSize; i++) {
+            productService.create(newProduct("p-" + i, i));
+        }
+    }
+
+    private static Product newProduct(String id, int i) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName("Product " + i);
+        product.setProductQuantity(i % 100 + 1);
+        return product;
+    }
+
+    @Benchmark
+    public Product update() {
+        int i = ThreadLocalRandom.current().nextInt(catalogSize);
+        Product product = newProduct("p-" + i, i);
+        product.setVersion(productService.findById(product.getProductId()).getVersion());
+        try {
+            return productService.update(product);
+        } catch (StaleUpdateException e) {
+            // Lost the race to another benchmark thread; still a completed write attempt
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Product createAndDelete() {
+        Product product = productService.create(newProduct(null, catalogSize));
+        productService.delete(product.getProductId());
+        return product;
+    }
+
+    @Benchmark
+    public Product findById() {
+        return productService.findById("p-" + ThreadLocalRandom.current().nextInt(catalogSize));
+    }
+}
@@ -0,0 +1,95 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import id.ac.ui.cs.advprog.eshop.service.CarService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.List;
+
+/** JSON resource over {@link CarService}, with the same conditional GET handling as {@link ProductApiController}. */
+@RestController
+@RequestMapping("/api/cars")
+public class CarApiController {
+
+    private final CarService carService;
+
+    public CarApiController(CarService carService) {
+        this.carService = carService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<Car>> list(@RequestParam(value = "search", required = false) String search,
+                                          @RequestParam(value = "page", defaultValue = "0") int page,
+                                          @RequestParam(value = "size", defaultValue = "20") int size,
+                                          @RequestParam(value = "after", required = false) String after,
+                                          WebRequest request) {
+        if (request.checkNotModified(CatalogETag.of(carService.catalogVersion()))) {
+            return null;
+        }
+        int pageSize = Math.max(1, Math.min(size, CarController.MAX_PAGE_SIZE));
+        if (search != null && !search.trim().isEmpty()) {
+            return ResponseEntity.ok(SearchPages.slice(carService.search(search), Math.max(0, page), pageSize));
+        }
+        if (after != null) {
+            // Keyset paging; the cursor for the following page travels in a Link header
+            Page<Car> items = carService.findAfter(after, pageSize);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (items.hasNext()) {
+                response.header(HttpHeaders.LINK, "<" + UriComponentsBuilder.fromPath("/api/cars")
+                        .queryParam("after", items.next()).queryParam("size", pageSize)
+                        .build().encode().toUriString() + ">; rel=\"next\"");
+            }
+            return response.body(items.items());
+        }
+        return ResponseEntity.ok(carService.findPage(Math.max(0, page), pageSize));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Car> get(@PathVariable("id") String carId, WebRequest request) {
+        if (request.checkNotModified(CatalogETag.of(carService.catalogVersion()))) {
+            return null;
+        }
+        Car car = carService.findById(carId);
+        return car == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(car);
+    }
+
+    @PostMapping
+    public ResponseEntity<Car> create(@Valid @RequestBody Car car) {
+        car.setCarId(null);
+        Car created = carService.create(car);
+        return ResponseEntity.created(URI.create("/api/cars/" + created.getCarId())).body(created);
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<Car> update(@PathVariable("id") String carId, @Valid @RequestBody Car car) {
+        car.setCarId(carId);
+        Car updated = carService.update(carId, car);
+        return updated == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(updated);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable("id") String carId) {
+        carService.deleteCarById(carId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler({StaleUpdateException.class, DuplicateIdException.class})
+    public ResponseEntity<String> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+}
@@ -1,17 +1,24 @@
 package id.ac.ui.cs.advprog.eshop.controller;
 
 import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
 import id.ac.ui.cs.advprog.eshop.service.CarService;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.List;
 
 @Controller
 @RequestMapping("/car")
 public class CarController {
 
+    static final int MAX_PAGE_SIZE = 500;
+
     private final CarService carservice;
 
     public CarController(CarService carService) {
@@ -22,20 +29,43 @@ public class CarController {
     public String createCarPage(Model model) {
         Car car = new Car();
         model.addAttribute("car", car);
-        return "createCar";
+        return "CreateCar";
     }
 
     @PostMapping("/createCar")
     public String createCarPost(@ModelAttribute Car car, Model model) {
-        carservice.create(car);
+        try {
+            carservice.create(car);
+        } catch (DuplicateIdException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
         return "redirect:listCar";
     }
 
+    /** Lists the cars, or the matches of {@code search}, one keyset page at a time; page numbers are refused. */
     @GetMapping("/listCar")
-    public String carListPage(Model model) {
-        List<Car> allCars = carservice.findAll();
-        model.addAttribute("cars", allCars);
-        return "carList";
+    public String carListPage(@RequestParam(value = "search", required = false) String search,
+                              @RequestParam(value = "page", required = false) String page,
+                              @RequestParam(value = "size", defaultValue = "20") int size,
+                              @RequestParam(value = "after", required = false) String after,
+                              Model model) {
+        if (page != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The list is paged with the after cursor of its Next link");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Page<Car> cars;
+        try {
+            cars = carservice.search(search, after, pageSize);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        model.addAttribute("cars", cars.items());
+        model.addAttribute("hasNext", cars.hasNext());
+        model.addAttribute("nextAfter", cars.next());
+        model.addAttribute("search", search);
+        model.addAttribute("size", pageSize);
+        model.addAttribute("after", after);
+        return "CarList";
     }
 
     @GetMapping("/editCar/{carId}")
@@ -47,13 +77,18 @@ public class CarController {
         }
 
         model.addAttribute("car", car);
-        return "editCar";
+        return "EditCar";
     }
 
     @PostMapping("/editCar")
-    public String editCarPost (@ModelAttribute Car car) {
-        System.out.println(car.getCarId());
-        carservice.update(car.getCarId(), car);
+    public String editCarPost (@ModelAttribute Car car, BindingResult result) {
+        try {
+            carservice.update(car.getCarId(), car);
+        } catch (StaleUpdateException e) {
+            result.reject("conflict", "This car was changed by someone else. Review the values and save again.");
+            car.setVersion(e.getCurrentVersion());
+            return "EditCar";
+        }
 
         return "redirect:listCar";
     }
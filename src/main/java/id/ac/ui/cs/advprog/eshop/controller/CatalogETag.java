@@ -0,0 +1,18 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+/**
+ * Builds strong ETags from a catalog version. Repository versions restart when
+ * the application does, so each one is qualified with the start time of this
+ * instance; an ETag issued before a restart can then never match afterwards.
+ */
+final class CatalogETag {
+
+    private static final String INSTANCE = Long.toString(System.currentTimeMillis(), 36);
+
+    private CatalogETag() {
+    }
+
+    static String of(long version) {
+        return "\"" + INSTANCE + "-" + Long.toString(version, 36) + "\"";
+    }
+}
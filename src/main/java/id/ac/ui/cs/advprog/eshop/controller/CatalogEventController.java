@@ -0,0 +1,145 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.events.CatalogEvent;
+import id.ac.ui.cs.advprog.eshop.events.CatalogEventBus;
+import id.ac.ui.cs.advprog.eshop.events.EventRing;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events stream of catalog changes, so a client can load a list
+ * once and then apply deltas instead of polling it. Every event carries an id;
+ * a reconnecting {@code EventSource} sends the last one back in
+ * {@code Last-Event-ID} and continues right after it.
+ * <p>
+ * Each stream is pumped by its own virtual thread that blocks on the socket,
+ * so a slow client only holds up itself. A client that falls further behind
+ * than the event ring holds, or resumes from an id that is gone, gets a
+ * {@code reset} event: it has to reload the list and carries on from there.
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnProperty(name = "eshop.events.enabled", havingValue = "true", matchIfMissing = true)
+public class CatalogEventController {
+
+    static final String RESET = "reset";
+    private static final int BATCH_SIZE = 256;
+
+    private final CatalogEventBus bus;
+    private final Duration heartbeat;
+    private final Duration timeout;
+    private final int maxSubscribers;
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final ExecutorService streams = Executors.newVirtualThreadPerTaskExecutor();
+
+    public CatalogEventController(CatalogEventBus bus,
+                                  @Value("${eshop.events.heartbeat:PT15S}") Duration heartbeat,
+                                  @Value("${eshop.events.timeout:PT30M}") Duration timeout,
+                                  @Value("${eshop.events.max-subscribers:1000}") int maxSubscribers) {
+        this.bus = bus;
+        this.heartbeat = heartbeat;
+        this.timeout = timeout;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter allEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return stream(null, lastEventId);
+    }
+
+    @GetMapping(path = "/products/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter productEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return stream("product", lastEventId);
+    }
+
+    @GetMapping(path = "/cars/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter carEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return stream("car", lastEventId);
+    }
+
+    @PreDestroy
+    public void close() {
+        streams.shutdownNow();
+    }
+
+    private SseEmitter stream(String entity, String lastEventId) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many event stream subscribers");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        AtomicBoolean closed = new AtomicBoolean();
+        emitter.onCompletion(() -> closed.set(true));
+        emitter.onError(e -> closed.set(true));
+        emitter.onTimeout(() -> {
+            closed.set(true);
+            emitter.complete();
+        });
+        streams.execute(() -> {
+            try {
+                pump(emitter, entity, lastEventId, closed);
+            } finally {
+                subscribers.decrementAndGet();
+            }
+        });
+        return emitter;
+    }
+
+    private void pump(SseEmitter emitter, String entity, String lastEventId, AtomicBoolean closed) {
+        List<CatalogEvent> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            long cursor = lastEventId == null ? bus.head() : bus.resumeAfter(lastEventId);
+            if (cursor < 0) {
+                cursor = reset(emitter);
+            }
+            while (!closed.get()) {
+                batch.clear();
+                int read = bus.await(cursor, BATCH_SIZE, batch, heartbeat);
+                if (read == EventRing.LAPPED) {
+                    cursor = reset(emitter);
+                } else if (read == 0) {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } else {
+                    for (CatalogEvent event : batch) {
+                        if (entity == null || entity.equals(event.entity())) {
+                            emitter.send(SseEmitter.event()
+                                    .id(bus.eventId(event.sequence()))
+                                    .data(event, MediaType.APPLICATION_JSON));
+                        }
+                    }
+                    cursor += read;
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the emitter was already completed; nothing left to send to
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
+
+    private long reset(SseEmitter emitter) throws IOException {
+        long cursor = bus.head();
+        // The id moves a reconnecting client's Last-Event-ID past the gap
+        emitter.send(SseEmitter.event().id(bus.eventId(cursor - 1)).name(RESET).data(cursor));
+        return cursor;
+    }
+}
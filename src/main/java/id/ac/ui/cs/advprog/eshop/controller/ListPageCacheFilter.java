@@ -0,0 +1,180 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import id.ac.ui.cs.advprog.eshop.service.CarService;
+import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves repeat views of the product and car list pages from rendered bytes.
+ * Pages are keyed by path and the query parameters the list pages read, so
+ * tracking or cache-busting parameters cannot fill the cache with copies of one
+ * page. Each page is tagged with the catalog
+ * version they were rendered from; any create, update, delete or stock change
+ * bumps that version, so a stale page is simply re-rendered on its next view.
+ * Reading the version never waits for writes still queued behind the
+ * repository: a queued write moves it once when accepted and again when applied.
+ * A hit skips the controller and the template engine, and is sent gzip-encoded
+ * from bytes compressed once when the page was stored.
+ */
+@Component
+@ConditionalOnProperty(name = "eshop.page-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class ListPageCacheFilter extends OncePerRequestFilter {
+
+    static final String PRODUCT_LIST = "/product/list";
+    static final String CAR_LIST = "/car/listCar";
+    static final Set<String> KEY_PARAMETERS = Set.of("search", "page", "size", "after");
+
+    private final ProductService productService;
+    private final CarService carService;
+    private final Cache<String, RenderedPage> pages;
+
+    public ListPageCacheFilter(ProductService productService, CarService carService,
+                               @Value("${eshop.page-cache.maximum-size:1000}") long maximumSize) {
+        this.productService = productService;
+        this.carService = carService;
+        this.pages = Caffeine.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    record RenderedPage(long version, String contentType, byte[] body, byte[] gzipped) {
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String path = pathOf(request);
+        return !PRODUCT_LIST.equals(path) && !CAR_LIST.equals(path);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = pathOf(request);
+        // Read the version before rendering: a write during the render leaves the stored page already stale
+        long version = PRODUCT_LIST.equals(path) ? productService.catalogVersion() : carService.catalogVersion();
+        String key = path + '?' + canonicalQuery(request);
+        boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+
+        RenderedPage cached = pages.getIfPresent(key);
+        if (cached != null && cached.version() == version) {
+            write(response, cached, gzip);
+            return;
+        }
+
+        ContentCachingResponseWrapper rendering = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, rendering);
+        String contentType = rendering.getContentType();
+        if (rendering.getStatus() != HttpServletResponse.SC_OK || contentType == null || !contentType.startsWith("text/html")) {
+            rendering.copyBodyToResponse();
+            return;
+        }
+        byte[] body = rendering.getContentAsByteArray();
+        RenderedPage page = new RenderedPage(version, contentType, body, gzip(body));
+        pages.asMap().merge(key, page, (old, fresh) -> fresh.version() >= old.version() ? fresh : old);
+        write(response, page, gzip);
+    }
+
+    long size() {
+        return pages.estimatedSize();
+    }
+
+    private static void write(HttpServletResponse response, RenderedPage page, boolean gzip) throws IOException {
+        byte[] body = gzip ? page.gzipped() : page.body();
+        response.setContentType(page.contentType());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String canonicalQuery(HttpServletRequest request) {
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String[]> parameter : new TreeMap<>(request.getParameterMap()).entrySet()) {
+            if (!KEY_PARAMETERS.contains(parameter.getKey())) {
+                continue;
+            }
+            for (String value : parameter.getValue()) {
+                if (!query.isEmpty()) {
+                    query.append('&');
+                }
+                query.append(URLEncoder.encode(parameter.getKey(), StandardCharsets.UTF_8))
+                        .append('=')
+                        .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+            }
+        }
+        return query.toString();
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header allows gzip: named with a non-zero
+     * quality, or left to a non-zero {@code *} when it is not named at all.
+     */
+    static boolean acceptsGzip(String accepted) {
+        if (accepted == null) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String entry : accepted.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = Math.max(gzip, quality(parts));
+            } else if (coding.equals("*")) {
+                any = Math.max(any, quality(parts));
+            }
+        }
+        return gzip >= 0 ? gzip > 0 : any > 0;
+    }
+
+    /** The {@code q} parameter of one coding, 1 when absent and 0 when unreadable. */
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 2 && parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,98 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * JSON resource over {@link ProductService}. Reads carry a strong ETag taken
+ * from the catalog version, which is checked before any product is loaded, so
+ * a poll of an unchanged catalog is answered with 304 and no body at all.
+ */
+@RestController
+@RequestMapping("/api/products")
+public class ProductApiController {
+
+    @Autowired
+    private ProductService service;
+
+    @GetMapping
+    public ResponseEntity<List<Product>> list(@RequestParam(value = "search", required = false) String search,
+                                              @RequestParam(value = "page", defaultValue = "0") int page,
+                                              @RequestParam(value = "size", defaultValue = "20") int size,
+                                              @RequestParam(value = "after", required = false) String after,
+                                              WebRequest request) {
+        // Read the version first: a write racing with this request then yields an older tag, never a newer one
+        if (request.checkNotModified(CatalogETag.of(service.catalogVersion()))) {
+            return null;
+        }
+        int pageSize = Math.max(1, Math.min(size, ProductController.MAX_PAGE_SIZE));
+        if (search != null && !search.trim().isEmpty()) {
+            return ResponseEntity.ok(SearchPages.slice(service.searchByName(search), Math.max(0, page), pageSize));
+        }
+        if (after != null) {
+            // Keyset paging; the cursor for the following page travels in a Link header
+            Page<Product> items = service.findAfter(after, pageSize);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (items.hasNext()) {
+                response.header(HttpHeaders.LINK, "<" + UriComponentsBuilder.fromPath("/api/products")
+                        .queryParam("after", items.next()).queryParam("size", pageSize)
+                        .build().encode().toUriString() + ">; rel=\"next\"");
+            }
+            return response.body(items.items());
+        }
+        return ResponseEntity.ok(service.findPage(Math.max(0, page), pageSize));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Product> get(@PathVariable("id") String productId, WebRequest request) {
+        if (request.checkNotModified(CatalogETag.of(service.catalogVersion()))) {
+            return null;
+        }
+        Product product = service.findById(productId);
+        return product == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(product);
+    }
+
+    @PostMapping
+    public ResponseEntity<Product> create(@Valid @RequestBody Product product) {
+        product.setProductId(null);
+        Product created = service.create(product);
+        return ResponseEntity.created(URI.create("/api/products/" + created.getProductId())).body(created);
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<Product> update(@PathVariable("id") String productId, @Valid @RequestBody Product product) {
+        product.setProductId(productId);
+        Product updated = service.update(product);
+        return updated == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(updated);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable("id") String productId) {
+        service.delete(productId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler({StaleUpdateException.class, DuplicateIdException.class})
+    public ResponseEntity<String> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+}
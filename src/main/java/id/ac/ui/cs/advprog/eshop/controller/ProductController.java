@@ -1,21 +1,41 @@
 package id.ac.ui.cs.advprog.eshop.controller;
 
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import id.ac.ui.cs.advprog.eshop.service.BulkFormat;
+import id.ac.ui.cs.advprog.eshop.service.ImportReport;
 import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import org.springframework.validation.BindingResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 @Controller
 @RequestMapping("/product")
 public class ProductController {
 
+    private static final Logger log = LoggerFactory.getLogger(ProductController.class);
+
+    static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private ProductService service;
 
@@ -34,14 +54,42 @@ public class ProductController {
             // Return back to the create form if validation fails
             return "CreateProduct";
         }
-        service.create(product);
+        try {
+            service.create(product);
+        } catch (DuplicateIdException e) {
+            result.reject("duplicate", "A product with this id already exists.");
+            return "CreateProduct";
+        }
         return "redirect:list";
     }
 
+    /**
+     * Lists the catalog, or the products whose name starts with {@code search}, one
+     * keyset page at a time. Page numbers are not accepted: a request for page 3
+     * would otherwise quietly show the first page.
+     */
     @GetMapping ("/list")
-    public String productListPage (Model model) {
-        List<Product> allProducts = service.findAll();
-        model.addAttribute("products", allProducts);
+    public String productListPage (@RequestParam(value = "search", required = false) String search,
+                                   @RequestParam(value = "page", required = false) String page,
+                                   @RequestParam(value = "size", defaultValue = "20") int size,
+                                   @RequestParam(value = "after", required = false) String after,
+                                   Model model) {
+        if (page != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The list is paged with the after cursor of its Next link");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Page<Product> products;
+        try {
+            products = service.searchByName(search, after, pageSize);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        model.addAttribute("products", products.items());
+        model.addAttribute("hasNext", products.hasNext());
+        model.addAttribute("nextAfter", products.next());
+        model.addAttribute("search", search);
+        model.addAttribute("size", pageSize);
+        model.addAttribute("after", after);
         return "ProductList";
     }
 
@@ -62,10 +110,53 @@ public class ProductController {
             // Return back to the edit form if validation fails
             return "EditProduct";
         }
-        service.update(product);
+        try {
+            service.update(product);
+        } catch (StaleUpdateException e) {
+            // Keep the user's input but move it onto the current version so a resubmit goes through.
+            result.reject("conflict", "This product was changed by someone else. Review the values and save again.");
+            product.setVersion(e.getCurrentVersion());
+            return "EditProduct";
+        }
         return "redirect:list";
     }
 
+    @PostMapping("/import")
+    @ResponseBody
+    public ImportReport importProducts(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                       Reader body) throws IOException {
+        try {
+            return service.importProducts(body, bulkFormat(format));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(value = "format", defaultValue = "csv") String format) {
+        BulkFormat bulkFormat = bulkFormat(format);
+        String extension = bulkFormat == BulkFormat.CSV ? "csv" : "jsonl";
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            long written = service.exportProducts(writer, bulkFormat);
+            writer.flush();
+            // The headers are long gone by now, so the row count can only be logged
+            log.info("Exported {} products as {}", written, bulkFormat);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(bulkFormat.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products." + extension + "\"")
+                .body(body);
+    }
+
+    private static BulkFormat bulkFormat(String format) {
+        try {
+            return BulkFormat.fromName(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @PostMapping("/delete")
     public String deleteProduct(@RequestParam("id") String productId) {
         service.delete(productId);
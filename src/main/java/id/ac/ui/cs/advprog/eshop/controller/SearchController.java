@@ -0,0 +1,49 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.search.CatalogSearch;
+import id.ac.ui.cs.advprog.eshop.search.SearchResult;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Ranked, typo-tolerant search for search-as-you-type boxes. Unlike the
+ * {@code search} parameter of the list endpoints, which matches name
+ * prefixes, this matches any word of a name, fragments of words and
+ * misspellings, and returns the best {@code limit} results with their scores.
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnProperty(name = "eshop.search.enabled", havingValue = "true", matchIfMissing = true)
+public class SearchController {
+
+    static final int MAX_RESULTS = 100;
+
+    private final CatalogSearch search;
+
+    public SearchController(CatalogSearch search) {
+        this.search = search;
+    }
+
+    @GetMapping("/products/search")
+    public List<SearchResult<Product>> searchProducts(@RequestParam("q") String query,
+                                                      @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return search.searchProducts(query, clamp(limit));
+    }
+
+    @GetMapping("/cars/search")
+    public List<SearchResult<Car>> searchCars(@RequestParam("q") String query,
+                                              @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return search.searchCars(query, clamp(limit));
+    }
+
+    private static int clamp(int limit) {
+        return Math.max(1, Math.min(limit, MAX_RESULTS));
+    }
+}
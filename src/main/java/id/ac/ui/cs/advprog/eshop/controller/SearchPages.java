@@ -0,0 +1,25 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import java.util.List;
+
+/**
+ * Cuts search results into numbered pages for the JSON APIs, which take page
+ * numbers. The list pages page through the indexes with keyset cursors instead,
+ * so a view costs one page of matches rather than all of them.
+ */
+final class SearchPages {
+
+    private SearchPages() {
+    }
+
+    /** Page {@code page} (0-based) of {@code size} matches, empty past the end. */
+    static <T> List<T> slice(List<T> matches, int page, int size) {
+        int from = (int) Math.min(matches.size(), (long) page * size);
+        int to = (int) Math.min(matches.size(), (long) from + size);
+        return matches.subList(from, to);
+    }
+
+    static boolean hasNext(List<?> matches, int page, int size) {
+        return (long) (page + 1) * size < matches.size();
+    }
+}
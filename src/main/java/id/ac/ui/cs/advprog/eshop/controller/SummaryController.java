@@ -0,0 +1,31 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.service.CarService;
+import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/** Dashboard of catalog totals, cars per color and the items running low on stock. */
+@Controller
+public class SummaryController {
+
+    static final int MAX_LOW_STOCK_ROWS = 100;
+
+    private final ProductService productService;
+    private final CarService carService;
+
+    public SummaryController(ProductService productService, CarService carService) {
+        this.productService = productService;
+        this.carService = carService;
+    }
+
+    @GetMapping("/summary")
+    public String summaryPage(@RequestParam(value = "limit", defaultValue = "20") int limit, Model model) {
+        int rows = Math.max(0, Math.min(limit, MAX_LOW_STOCK_ROWS));
+        model.addAttribute("products", productService.stockSummary(rows));
+        model.addAttribute("cars", carService.stockSummary(rows));
+        return "Summary";
+    }
+}
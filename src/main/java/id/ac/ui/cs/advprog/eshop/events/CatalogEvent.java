@@ -0,0 +1,18 @@
+package id.ac.ui.cs.advprog.eshop.events;
+
+/**
+ * One write to the catalog. {@code item} is the stored product or car after a
+ * {@link Type#PUT}, and {@code null} after a {@link Type#DELETE}.
+ *
+ * @param sequence position in the event stream, gapless within one run of the application
+ * @param entity   {@code "product"} or {@code "car"}
+ */
+public record CatalogEvent(long sequence, String entity, Type type, String id, Object item) {
+
+    public enum Type {
+        /** The item was created or replaced. */
+        PUT,
+        /** The item was removed. */
+        DELETE
+    }
+}
@@ -0,0 +1,153 @@
+package id.ac.ui.cs.advprog.eshop.events;
+
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.RepositoryListener;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes every create, update and delete of the product and car
+ * repositories onto an {@link EventRing}, from which any number of watchers
+ * read at their own pace.
+ * <p>
+ * The write path only claims a ring slot inside the repository's per-id
+ * critical section, which keeps events for one id in write order, and, once
+ * the write is done, unparks a single notifier thread if anyone is waiting.
+ * Waking the waiting readers is the notifier's job, so a write costs the same
+ * however many watchers there are.
+ */
+@Component
+@ConditionalOnProperty(name = "eshop.events.enabled", havingValue = "true", matchIfMissing = true)
+public class CatalogEventBus {
+
+    private final EventRing<CatalogEvent> ring;
+    // Tags event ids with this run, so an id from before a restart is never mistaken for a current one
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Set<Thread> waiting = ConcurrentHashMap.newKeySet();
+    private final Thread notifier;
+
+    @Autowired
+    public CatalogEventBus(IProductRepository productRepository, ICarRepository carRepository,
+                           @Value("${eshop.events.capacity:65536}") int capacity) {
+        this(capacity);
+        productRepository.addListener(new Publisher<>("product"));
+        carRepository.addListener(new Publisher<>("car"));
+    }
+
+    CatalogEventBus(int capacity) {
+        this.ring = new EventRing<>(capacity);
+        this.notifier = Thread.ofPlatform().daemon().name("catalog-event-notifier").start(this::notifyWaiters);
+    }
+
+    /** Sequence the next event will get. */
+    public long head() {
+        return ring.head();
+    }
+
+    /**
+     * Copies up to {@code max} events starting at sequence {@code from} to
+     * {@code out}, waiting up to {@code timeout} for the first one. Returns the
+     * number copied, 0 on timeout, or {@link EventRing#LAPPED} when {@code from}
+     * has already been overwritten.
+     */
+    public int await(long from, int max, List<CatalogEvent> out, Duration timeout) throws InterruptedException {
+        int read = ring.read(from, max, out);
+        if (read != 0) {
+            return read;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Thread current = Thread.currentThread();
+        waiting.add(current);
+        try {
+            while (true) {
+                // Registered before this re-check, so a publish racing with it still unparks us
+                read = ring.read(from, max, out);
+                if (read != 0) {
+                    return read;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return 0;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiting.remove(current);
+        }
+    }
+
+    /** SSE event id for the event with {@code sequence}. */
+    public String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * Sequence to continue from after the event with id {@code lastEventId}, or
+     * -1 when that id is malformed or belongs to an earlier run.
+     */
+    public long resumeAfter(String lastEventId) {
+        int dash = lastEventId.indexOf('-');
+        if (dash < 0 || !lastEventId.substring(0, dash).equals(epoch)) {
+            return -1;
+        }
+        try {
+            long sequence = Long.parseLong(lastEventId.substring(dash + 1));
+            return sequence < -1 || sequence >= ring.head() ? -1 : sequence + 1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        notifier.interrupt();
+    }
+
+    private void notifyWaiters() {
+        while (!Thread.currentThread().isInterrupted()) {
+            LockSupport.park(this);
+            for (Thread thread : waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    private class Publisher<T> implements RepositoryListener<T> {
+
+        private final String entity;
+
+        Publisher(String entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        public void onPut(String id, T previous, T current) {
+            ring.publish(sequence -> new CatalogEvent(sequence, entity, CatalogEvent.Type.PUT, id, current));
+        }
+
+        @Override
+        public void onRemove(String id, T previous) {
+            ring.publish(sequence -> new CatalogEvent(sequence, entity, CatalogEvent.Type.DELETE, id, null));
+        }
+
+        @Override
+        public void afterWrite() {
+            if (!waiting.isEmpty()) {
+                LockSupport.unpark(notifier);
+            }
+        }
+    }
+}
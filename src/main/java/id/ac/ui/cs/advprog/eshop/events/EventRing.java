@@ -0,0 +1,93 @@
+package id.ac.ui.cs.advprog.eshop.events;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded broadcast ring of events numbered by a global sequence. Publishing is
+ * lock-free: a writer claims the next sequence with one atomic increment and
+ * stores the event in slot {@code sequence & mask}. Readers keep their own
+ * cursor and never remove anything, so any number of them can follow the same
+ * stream at different speeds.
+ * <p>
+ * Writers never wait for readers. A reader that falls more than
+ * {@link #capacity()} events behind finds its next slot already overwritten;
+ * {@link #read} then reports {@link #LAPPED} and the reader has to resync from
+ * {@link #head()}.
+ *
+ * @param <E> the event type
+ */
+public class EventRing<E> {
+
+    /** Returned by {@link #read} when the requested sequence has been overwritten. */
+    public static final int LAPPED = -1;
+
+    private final AtomicReferenceArray<Slot<E>> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param capacity number of events kept; rounded up to a power of two
+     */
+    public EventRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /** Sequence the next published event will get; every event below it has been claimed. */
+    public long head() {
+        return next.get();
+    }
+
+    /**
+     * Publishes the event built by {@code factory} for the claimed sequence and
+     * returns that sequence.
+     */
+    public long publish(LongFunction<E> factory) {
+        long sequence = next.getAndIncrement();
+        Slot<E> slot = new Slot<>(sequence, factory.apply(sequence));
+        int index = (int) sequence & mask;
+        // A writer stalled for a whole lap must not put its older event over a newer one
+        slots.accumulateAndGet(index, slot,
+                (current, mine) -> current == null || current.sequence < mine.sequence ? mine : current);
+        return sequence;
+    }
+
+    /**
+     * Appends up to {@code max} events starting at sequence {@code from} to
+     * {@code out}, stopping at the first one not yet published. Returns the number
+     * of events added, or {@link #LAPPED} if {@code from} is no longer in the ring.
+     */
+    public int read(long from, int max, List<? super E> out) {
+        int count = 0;
+        for (long sequence = from; count < max; sequence++, count++) {
+            Slot<E> slot = slots.get((int) sequence & mask);
+            if (slot == null || slot.sequence < sequence) {
+                // Claimed but not written yet, or not claimed at all
+                break;
+            }
+            if (slot.sequence > sequence) {
+                // Hand out what was still intact; the next call reports the gap
+                return count == 0 ? LAPPED : count;
+            }
+            out.add(slot.event);
+        }
+        return count;
+    }
+
+    private record Slot<E>(long sequence, E event) {
+    }
+}
@@ -0,0 +1,77 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Times every call to the methods of one interface into a histogram tagged
+ * with the component and the method name. One interceptor serves any service
+ * or repository interface, so a method added to an interface is timed without
+ * touching this package. Methods outside the interface, such as lifecycle
+ * callbacks, are passed through untimed. Overloads share one timer.
+ */
+final class CallTimingInterceptor implements MethodInterceptor {
+
+    private final Map<String, CallTimer> timers = new HashMap<>();
+
+    CallTimingInterceptor(MeterRegistry registry, String metric, String componentTag, String component, Class<?> api) {
+        for (Method method : api.getMethods()) {
+            timers.computeIfAbsent(method.getName(),
+                    name -> new CallTimer(registry, metric, componentTag, component, name));
+        }
+    }
+
+    /**
+     * Puts a proxy subclassing the target's class in front of a bean, so it can
+     * still be injected by its concrete type and its destroy callbacks still run.
+     */
+    Object proxyBean(Object bean) {
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(this);
+        return factory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    /**
+     * Puts a JDK proxy implementing only {@code api} in front of {@code target}.
+     * Cheaper than {@link #proxyBean}: a call allocates nothing but the argument
+     * array, and calls without arguments allocate nothing at all.
+     */
+    <T> T proxy(T target, Class<T> api) {
+        return api.cast(Proxy.newProxyInstance(api.getClassLoader(), new Class<?>[]{api}, (proxy, method, args) -> {
+            CallTimer timer = timers.get(method.getName());
+            long start = System.nanoTime();
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (timer != null) {
+                    timer.record(start);
+                }
+            }
+        }));
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        CallTimer timer = timers.get(invocation.getMethod().getName());
+        if (timer == null) {
+            return invocation.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            timer.record(start);
+        }
+    }
+}
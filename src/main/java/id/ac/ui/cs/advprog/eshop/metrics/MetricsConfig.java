@@ -0,0 +1,29 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Latency histograms for every service and repository call, plus catalog size
+ * gauges, published on the actuator Prometheus endpoint. Request timings per
+ * endpoint come from Spring Boot's own {@code http.server.requests} metric.
+ * Turned off with {@code eshop.metrics.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "eshop.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class MetricsConfig {
+
+    // Static so the post-processor is registered without creating this configuration early
+    @Bean
+    static ServiceMetricsPostProcessor serviceMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        return new ServiceMetricsPostProcessor(registry);
+    }
+
+    @Bean
+    public RepositoryMetrics repositoryMetrics(MeterRegistry registry) {
+        return new RepositoryMetrics(registry);
+    }
+}
@@ -0,0 +1,48 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Instruments the repository a service talks to and publishes the catalog
+ * size gauges. Services apply it to their own repository reference; the
+ * repository beans themselves stay undecorated, so configuration that needs
+ * the concrete storage class (the write-ahead log, the mapped stores' close
+ * hook) keeps getting it.
+ */
+public class RepositoryMetrics {
+
+    static final String METRIC = "eshop.repository.calls";
+
+    private final MeterRegistry registry;
+
+    public RepositoryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    public IProductRepository instrument(IProductRepository repository) {
+        Gauge.builder("eshop.catalog.size", repository, IProductRepository::count)
+                .tag("entity", "product")
+                .strongReference(true)
+                .register(registry);
+        return timed(repository, IProductRepository.class, "product");
+    }
+
+    public ICarRepository instrument(ICarRepository repository) {
+        Gauge.builder("eshop.catalog.size", repository, ICarRepository::count)
+                .tag("entity", "car")
+                .strongReference(true)
+                .register(registry);
+        return timed(repository, ICarRepository.class, "car");
+    }
+
+    private <R> R timed(R repository, Class<R> api, String entity) {
+        return new CallTimingInterceptor(registry, METRIC, "entity", entity, api).proxy(repository, api);
+    }
+}
@@ -0,0 +1,41 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import id.ac.ui.cs.advprog.eshop.service.CarService;
+import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/** Times the product and car service beans with a {@link CallTimingInterceptor}. */
+class ServiceMetricsPostProcessor implements BeanPostProcessor {
+
+    static final String METRIC = "eshop.service.calls";
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    ServiceMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof ProductService service) {
+            return timed(service, ProductService.class, "product");
+        }
+        if (bean instanceof CarService service) {
+            return timed(service, CarService.class, "car");
+        }
+        return bean;
+    }
+
+    private <S> Object timed(S service, Class<S> api, String name) {
+        CallTimingInterceptor interceptor = new CallTimingInterceptor(registry.getObject(), METRIC, "service", name, api);
+        if (service instanceof Advised advised) {
+            // Already proxied by other advice; time it within the same proxy
+            advised.addAdvice(interceptor);
+            return service;
+        }
+        return interceptor.proxyBean(service);
+    }
+}
@@ -1,11 +1,31 @@
 package id.ac.ui.cs.advprog.eshop.model;
 import lombok.Getter;
 import lombok.Setter;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
 
 @Getter @Setter
-public class Car {
+public class Car implements Versioned {
     private String carId;
+
+    @NotBlank(message = "Name cannot be blank")
     private String carName;
+
     private String carColor;
+
+    @Min(value = 0, message = "Quantity cannot be negative")
     private int carQuantity;
+
+    private long version;
+
+    /** A field-by-field copy, for storing or publishing a value no caller holds a reference to. */
+    public Car copy() {
+        Car copy = new Car();
+        copy.carId = carId;
+        copy.carName = carName;
+        copy.carColor = carColor;
+        copy.carQuantity = carQuantity;
+        copy.version = version;
+        return copy;
+    }
 }
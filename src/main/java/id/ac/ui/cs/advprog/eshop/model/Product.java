@@ -8,7 +8,7 @@ import jakarta.validation.constraints.NotNull;
 
 @Getter @Setter
 
-public class Product {
+public class Product implements Versioned {
     private String productId;
 
     @NotBlank(message = "Name cannot be blank")
@@ -17,4 +17,16 @@ public class Product {
     @NotNull(message = "Quantity cannot be null")
     @Min(value = 1, message = "Quantity must be at least 1")
     private int productQuantity;
+
+    private long version;
+
+    /** A field-by-field copy, for storing or publishing a value no caller holds a reference to. */
+    public Product copy() {
+        Product copy = new Product();
+        copy.productId = productId;
+        copy.productName = productName;
+        copy.productQuantity = productQuantity;
+        copy.version = version;
+        return copy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package id.ac.ui.cs.advprog.eshop.model;
+
+/**
+ * An entity carrying an optimistic-locking version. The repository bumps it on
+ * every successful write and rejects updates made from an older version.
+ */
+public interface Versioned {
+    long getVersion();
+    void setVersion(long version);
+}
@@ -0,0 +1,49 @@
+package id.ac.ui.cs.advprog.eshop.replication;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Keeps a follower's repositories a pure copy of the leader's: requests that
+ * may write are redirected to the leader with {@code 307 Temporary Redirect},
+ * which keeps the method and body, or refused with {@code 503} when no leader
+ * URL is configured. Reads are served locally.
+ */
+public class FollowerWriteFilter extends OncePerRequestFilter {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final String leaderUrl;
+
+    /**
+     * @param leaderUrl base URL of the leader's web server, or empty to refuse writes
+     */
+    public FollowerWriteFilter(String leaderUrl) {
+        this.leaderUrl = leaderUrl.endsWith("/") ? leaderUrl.substring(0, leaderUrl.length() - 1) : leaderUrl;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return READ_METHODS.contains(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (leaderUrl.isEmpty()) {
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "This instance is a read-only replica");
+            return;
+        }
+        String query = request.getQueryString();
+        response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+        response.setHeader(HttpHeaders.LOCATION, leaderUrl + request.getRequestURI() + (query == null ? "" : "?" + query));
+    }
+}
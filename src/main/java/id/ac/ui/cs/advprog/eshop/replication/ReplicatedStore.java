@@ -0,0 +1,27 @@
+package id.ac.ui.cs.advprog.eshop.replication;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IRepository;
+import id.ac.ui.cs.advprog.eshop.repository.persistence.CarCodec;
+import id.ac.ui.cs.advprog.eshop.repository.persistence.ProductCodec;
+import id.ac.ui.cs.advprog.eshop.repository.persistence.RecordCodec;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A repository taking part in replication. {@code code} names it on the wire
+ * and is its index in the list both ends build with {@link #catalog}.
+ */
+record ReplicatedStore<T>(byte code, IRepository<T> repository, RecordCodec<T> codec,
+                          Function<T, String> idExtractor) {
+
+    static List<ReplicatedStore<?>> catalog(IProductRepository productRepository, ICarRepository carRepository) {
+        return List.of(
+                new ReplicatedStore<Product>((byte) 0, productRepository, new ProductCodec(), Product::getProductId),
+                new ReplicatedStore<Car>((byte) 1, carRepository, new CarCodec(), Car::getCarId));
+    }
+}
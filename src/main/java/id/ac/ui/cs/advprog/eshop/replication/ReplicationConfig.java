@@ -0,0 +1,84 @@
+package id.ac.ui.cs.advprog.eshop.replication;
+
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalog replication between instances, chosen with
+ * {@code eshop.replication.role}: a {@code leader} serves its writes on
+ * {@code eshop.replication.port}, a {@code follower} copies them from
+ * {@code eshop.replication.leader} and serves reads only. Any other value
+ * leaves the instance standalone.
+ */
+@Configuration
+public class ReplicationConfig {
+
+    private static final String ROLE = "eshop.replication.role";
+
+    @Value("${eshop.replication.heartbeat:1s}")
+    private Duration heartbeat;
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = ROLE, havingValue = "leader")
+    public ReplicationLeader replicationLeader(IProductRepository productRepository, ICarRepository carRepository,
+                                               @Value("${eshop.replication.bind-address:127.0.0.1}") String bindAddress,
+                                               @Value("${eshop.replication.port:7070}") int port,
+                                               @Value("${eshop.replication.backlog:65536}") int backlog,
+                                               ObjectProvider<MeterRegistry> registry) throws IOException {
+        ReplicationLeader leader = new ReplicationLeader(productRepository, carRepository, backlog, heartbeat);
+        leader.start(new InetSocketAddress(bindAddress, port));
+        registry.ifAvailable(meters -> Gauge.builder("eshop.replication.followers", leader,
+                        ReplicationLeader::followerCount)
+                .register(meters));
+        return leader;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = ROLE, havingValue = "follower")
+    public ReplicationFollower replicationFollower(IProductRepository productRepository, ICarRepository carRepository,
+                                                   @Value("${eshop.replication.leader:localhost:7070}") String leader,
+                                                   @Value("${eshop.replication.reconnect-delay:1s}") Duration reconnectDelay,
+                                                   @Value("${eshop.cache.enabled:false}") boolean cacheEnabled,
+                                                   ObjectProvider<MeterRegistry> registry) {
+        if (cacheEnabled) {
+            // The entity cache is only kept current by the service's own writes, which a follower never makes
+            throw new IllegalStateException("eshop.cache.enabled must be false on a replication follower");
+        }
+        int colon = leader.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("eshop.replication.leader must be host:port, was " + leader);
+        }
+        ReplicationFollower follower = new ReplicationFollower(productRepository, carRepository,
+                new InetSocketAddress(leader.substring(0, colon), Integer.parseInt(leader.substring(colon + 1))),
+                heartbeat, reconnectDelay);
+        follower.start();
+        registry.ifAvailable(meters -> {
+            Gauge.builder("eshop.replication.lag", follower, ReplicationFollower::lagRecords)
+                    .baseUnit("records")
+                    .register(meters);
+            TimeGauge.builder("eshop.replication.delay", follower, TimeUnit.MILLISECONDS,
+                            ReplicationFollower::lagMillis)
+                    .register(meters);
+        });
+        return follower;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = ROLE, havingValue = "follower")
+    public FollowerWriteFilter followerWriteFilter(@Value("${eshop.replication.leader-url:}") String leaderUrl) {
+        return new FollowerWriteFilter(leaderUrl);
+    }
+}
@@ -0,0 +1,234 @@
+package id.ac.ui.cs.advprog.eshop.replication;
+
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps the local product and car repositories a copy of a
+ * {@link ReplicationLeader}'s. One thread connects to the leader, loads a
+ * snapshot when the leader asks for it and then applies the leader's records
+ * in sequence order through the repositories' normal write methods, so local
+ * listeners such as the event bus and the search index stay current. After a
+ * lost connection it reconnects and resumes from the next record it needs.
+ * <p>
+ * Nothing else may write to the local repositories; the application turns
+ * writes away with {@link FollowerWriteFilter}.
+ */
+public class ReplicationFollower implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationFollower.class);
+
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final List<ReplicatedStore<?>> stores;
+    private final InetSocketAddress leader;
+    private final Duration readTimeout;
+    private final Duration reconnectDelay;
+
+    private volatile long epoch;
+    private volatile long nextSequence = -1;
+    private volatile long leaderHead;
+    private volatile long lastRecordDelayMillis;
+    private volatile long lastContactMillis = System.currentTimeMillis();
+    private volatile boolean connected;
+    private volatile boolean closed;
+    private volatile SocketChannel channel;
+    private Thread worker;
+
+    /**
+     * @param heartbeat      the leader's heartbeat interval; a leader silent for three of them is given up on
+     * @param reconnectDelay pause between connection attempts
+     */
+    public ReplicationFollower(IProductRepository productRepository, ICarRepository carRepository,
+                               InetSocketAddress leader, Duration heartbeat, Duration reconnectDelay) {
+        this.stores = ReplicatedStore.catalog(productRepository, carRepository);
+        this.leader = leader;
+        this.readTimeout = heartbeat.multipliedBy(3);
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    public void start() {
+        worker = Thread.ofPlatform().daemon().name("replication-follower").start(this::run);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /** Sequence of the next leader record to apply, or -1 before the first snapshot was loaded. */
+    public long nextSequence() {
+        return nextSequence;
+    }
+
+    /** Number of leader records not applied yet, as far as the last message from the leader tells. */
+    public long lagRecords() {
+        long next = nextSequence;
+        return next < 0 ? leaderHead : Math.max(0, leaderHead - next);
+    }
+
+    /**
+     * How far this copy trails the leader in time: 0 when caught up, otherwise
+     * how old the last applied record was when it was applied, or how long the
+     * leader has not been heard from while disconnected. Compares the leader's
+     * clock with this one, so both must be synchronized, as on one machine.
+     */
+    public long lagMillis() {
+        long silence = System.currentTimeMillis() - lastContactMillis;
+        if (!connected || nextSequence < 0) {
+            return silence;
+        }
+        return lagRecords() == 0 ? 0 : Math.max(lastRecordDelayMillis, silence);
+    }
+
+    private void run() {
+        while (!closed) {
+            try (SocketChannel socket = SocketChannel.open()) {
+                channel = socket;
+                if (closed) {
+                    return;
+                }
+                socket.connect(leader);
+                socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                // The socket adaptor's stream honors the read timeout, the channel itself would block forever
+                socket.socket().setSoTimeout((int) readTimeout.toMillis());
+                long resumeEpoch = epoch;
+                long resumeAt = nextSequence;
+                socket.write(ByteBuffer.wrap(ReplicationProtocol.frame(ReplicationProtocol.HELLO, body -> {
+                    body.writeLong(resumeEpoch);
+                    body.writeLong(resumeAt);
+                })));
+                connected = true;
+                lastContactMillis = System.currentTimeMillis();
+                log.info("Connected to replication leader {}", leader);
+                follow(new DataInputStream(new BufferedInputStream(socket.socket().getInputStream(), READ_BUFFER)));
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("Replication from {} interrupted: {}", leader, e.toString());
+                }
+            } finally {
+                connected = false;
+                channel = null;
+            }
+            if (!closed) {
+                LockSupport.parkNanos(this, reconnectDelay.toNanos());
+            }
+        }
+    }
+
+    private void follow(DataInputStream in) throws IOException {
+        List<Set<String>> snapshotIds = null;
+        long snapshotHead = 0;
+        while (!closed) {
+            DataInputStream message = ReplicationProtocol.readFrame(in);
+            long now = System.currentTimeMillis();
+            lastContactMillis = now;
+            byte type = message.readByte();
+            switch (type) {
+                case ReplicationProtocol.SNAPSHOT_BEGIN -> {
+                    epoch = message.readLong();
+                    snapshotHead = message.readLong();
+                    leaderHead = snapshotHead;
+                    // Not resumable until the snapshot is complete
+                    nextSequence = -1;
+                    snapshotIds = new ArrayList<>();
+                    for (int i = 0; i < stores.size(); i++) {
+                        snapshotIds.add(new HashSet<>());
+                    }
+                }
+                case ReplicationProtocol.SNAPSHOT_ITEM -> {
+                    if (snapshotIds == null) {
+                        throw new IOException("Snapshot item outside of a snapshot");
+                    }
+                    byte code = message.readByte();
+                    snapshotIds.get(code).add(put(stores.get(code), message));
+                }
+                case ReplicationProtocol.SNAPSHOT_END -> {
+                    if (snapshotIds == null) {
+                        throw new IOException("Snapshot end outside of a snapshot");
+                    }
+                    int removed = 0;
+                    for (ReplicatedStore<?> store : stores) {
+                        removed += retainOnly(store, snapshotIds.get(store.code()));
+                    }
+                    snapshotIds = null;
+                    nextSequence = snapshotHead;
+                    log.info("Loaded replication snapshot at sequence {}, removed {} items", snapshotHead, removed);
+                }
+                case ReplicationProtocol.RECORD -> {
+                    long sequence = message.readLong();
+                    long timestamp = message.readLong();
+                    if (sequence != nextSequence) {
+                        throw new IOException("Expected record " + nextSequence + " but received " + sequence);
+                    }
+                    ReplicatedStore<?> store = stores.get(message.readByte());
+                    if (message.readByte() == ReplicationProtocol.PUT) {
+                        put(store, message);
+                    } else {
+                        store.repository().delete(message.readUTF());
+                    }
+                    nextSequence = sequence + 1;
+                    leaderHead = Math.max(leaderHead, sequence + 1);
+                    lastRecordDelayMillis = Math.max(0, now - timestamp);
+                }
+                case ReplicationProtocol.HEARTBEAT -> {
+                    leaderHead = Math.max(leaderHead, message.readLong());
+                }
+                default -> throw new IOException("Unknown replication message type " + type);
+            }
+        }
+    }
+
+    /** Stores the encoded item and returns its id. */
+    private static <T> String put(ReplicatedStore<T> store, DataInputStream in) throws IOException {
+        T item = store.codec().read(in);
+        store.repository().restore(item);
+        return store.idExtractor().apply(item);
+    }
+
+    /** Deletes every local item the snapshot did not contain and returns how many there were. */
+    private static <T> int retainOnly(ReplicatedStore<T> store, Set<String> ids) {
+        int removed = 0;
+        for (T item : store.repository().findAll()) {
+            String id = store.idExtractor().apply(item);
+            if (!ids.contains(id)) {
+                store.repository().delete(id);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        SocketChannel current = channel;
+        if (current != null) {
+            current.close();
+        }
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package id.ac.ui.cs.advprog.eshop.replication;
+
+import id.ac.ui.cs.advprog.eshop.events.EventRing;
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.RepositoryListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams every create, update and delete of the product and car
+ * repositories to {@link ReplicationFollower}s over TCP.
+ * <p>
+ * Writes are encoded once, inside the repository's per-id critical section,
+ * and published onto an {@link EventRing} under one sequence shared by both
+ * repositories, so a follower applying records in sequence order sees every
+ * id's writes in the order they happened. Each connected follower has its
+ * own sender thread that copies records from the ring to its socket at the
+ * follower's pace; a slow follower never holds up writes or other followers.
+ * <p>
+ * A follower that connects for the first time, that was connected to an
+ * earlier run of the leader, or that falls so far behind that the ring has
+ * overwritten its next record, is sent a snapshot first: the current ring
+ * head, then every item, then the records from that head on. Replaying a put
+ * or delete is idempotent, so records that are also reflected in the snapshot
+ * are harmless. The backlog should hold a few seconds of peak writes, or a
+ * follower that needs longer than that to load a snapshot never catches up.
+ */
+public class ReplicationLeader implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationLeader.class);
+
+    private static final int MAX_BATCH = 256;
+    private static final int SNAPSHOT_BUFFER = 64 * 1024;
+
+    private final List<ReplicatedStore<?>> stores;
+    private final EventRing<byte[]> backlog;
+    private final Duration heartbeat;
+    // Identifies this run, so a follower of an earlier run is never resumed by sequence
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final Set<Thread> waiting = ConcurrentHashMap.newKeySet();
+    private final Set<SocketChannel> followers = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel server;
+    private Thread acceptor;
+    private volatile boolean closed;
+
+    /**
+     * @param backlogCapacity records kept for followers to catch up from without a snapshot
+     * @param heartbeat       longest an idle follower goes without hearing from the leader
+     */
+    public ReplicationLeader(IProductRepository productRepository, ICarRepository carRepository,
+                             int backlogCapacity, Duration heartbeat) {
+        this.stores = ReplicatedStore.catalog(productRepository, carRepository);
+        this.backlog = new EventRing<>(backlogCapacity);
+        this.heartbeat = heartbeat;
+        for (ReplicatedStore<?> store : stores) {
+            register(store);
+        }
+    }
+
+    private <T> void register(ReplicatedStore<T> store) {
+        store.repository().addListener(new Publisher<>(store));
+    }
+
+    /** Starts accepting followers on {@code address}. */
+    public void start(InetSocketAddress address) throws IOException {
+        server = ServerSocketChannel.open();
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(address);
+        acceptor = Thread.ofPlatform().daemon().name("replication-acceptor").start(this::accept);
+        log.info("Replication leader listening on {}", server.getLocalAddress());
+    }
+
+    /** Port the leader listens on, useful after starting on port 0. */
+    public int port() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /** Sequence the next record will get. */
+    public long head() {
+        return backlog.head();
+    }
+
+    public int followerCount() {
+        return followers.size();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                SocketChannel channel = server.accept();
+                Thread.ofPlatform().daemon().name("replication-sender-" + channel.getRemoteAddress())
+                        .start(() -> serve(channel));
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("Replication leader stopped accepting followers", e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        followers.add(channel);
+        try (channel) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            DataInputStream hello = ReplicationProtocol.readFrame(new DataInputStream(Channels.newInputStream(channel)));
+            if (hello.readByte() != ReplicationProtocol.HELLO) {
+                throw new IOException("Follower did not start with HELLO");
+            }
+            long followerEpoch = hello.readLong();
+            long next = hello.readLong();
+            if (followerEpoch != epoch || next < 0 || next > backlog.head()) {
+                next = sendSnapshot(channel);
+            }
+            List<byte[]> batch = new ArrayList<>(MAX_BATCH);
+            while (!closed) {
+                batch.clear();
+                int read = backlog.read(next, MAX_BATCH, batch);
+                if (read == EventRing.LAPPED) {
+                    log.info("Follower {} fell behind the backlog, sending a snapshot", channel.getRemoteAddress());
+                    next = sendSnapshot(channel);
+                } else if (read > 0) {
+                    next += read;
+                    // The head rides along with every batch, so the follower always knows how far behind it is
+                    batch.add(heartbeatFrame());
+                    send(channel, batch);
+                } else if (backlog.head() > next) {
+                    // Claimed by a writer that has not stored it yet
+                    Thread.onSpinWait();
+                } else if (!awaitRecord(next)) {
+                    send(channel, List.of(heartbeatFrame()));
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                log.info("Follower disconnected: {}", e.toString());
+            }
+        } finally {
+            followers.remove(channel);
+        }
+    }
+
+    /** Waits up to one heartbeat interval for a record at {@code next}; returns whether one was claimed. */
+    private boolean awaitRecord(long next) {
+        long deadline = System.nanoTime() + heartbeat.toNanos();
+        Thread current = Thread.currentThread();
+        waiting.add(current);
+        try {
+            // Registered before this re-check, so a write racing with it still unparks us
+            while (backlog.head() <= next && !closed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            waiting.remove(current);
+        }
+    }
+
+    /** Sends every stored item and returns the sequence the stream continues from. */
+    private long sendSnapshot(SocketChannel channel) throws IOException {
+        // Read before the items: every write below the head is already stored, later ones are replayed
+        long head = backlog.head();
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), SNAPSHOT_BUFFER));
+        out.write(ReplicationProtocol.frame(ReplicationProtocol.SNAPSHOT_BEGIN, body -> {
+            body.writeLong(epoch);
+            body.writeLong(head);
+        }));
+        int items = 0;
+        for (ReplicatedStore<?> store : stores) {
+            items += writeItems(out, store);
+        }
+        out.write(ReplicationProtocol.frame(ReplicationProtocol.SNAPSHOT_END, body -> {
+        }));
+        out.flush();
+        log.info("Sent a snapshot of {} items at sequence {} to {}", items, head, channel.getRemoteAddress());
+        return head;
+    }
+
+    private static <T> int writeItems(DataOutputStream out, ReplicatedStore<T> store) throws IOException {
+        List<T> items = store.repository().findAll();
+        for (T item : items) {
+            out.write(ReplicationProtocol.frame(ReplicationProtocol.SNAPSHOT_ITEM, body -> {
+                body.writeByte(store.code());
+                store.codec().write(body, item);
+            }));
+        }
+        return items.size();
+    }
+
+    private byte[] heartbeatFrame() throws IOException {
+        long head = backlog.head();
+        return ReplicationProtocol.frame(ReplicationProtocol.HEARTBEAT, body -> {
+            body.writeLong(head);
+            body.writeLong(System.currentTimeMillis());
+        });
+    }
+
+    private static void send(SocketChannel channel, List<byte[]> frames) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[frames.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(frames.get(i));
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /** Stops accepting followers and disconnects the connected ones. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (server != null) {
+            server.close();
+        }
+        for (SocketChannel follower : followers) {
+            follower.close();
+        }
+        for (Thread thread : waiting) {
+            LockSupport.unpark(thread);
+        }
+        if (acceptor != null) {
+            try {
+                acceptor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class Publisher<T> implements RepositoryListener<T> {
+
+        private final ReplicatedStore<T> store;
+
+        Publisher(ReplicatedStore<T> store) {
+            this.store = store;
+        }
+
+        @Override
+        public void onPut(String id, T previous, T current) {
+            publish(ReplicationProtocol.PUT, out -> store.codec().write(out, current));
+        }
+
+        @Override
+        public void onRemove(String id, T previous) {
+            publish(ReplicationProtocol.DELETE, out -> out.writeUTF(id));
+        }
+
+        @Override
+        public void afterWrite() {
+            for (Thread thread : waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void publish(byte op, ReplicationProtocol.Body payload) {
+            byte[] encoded;
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+                payload.write(new DataOutputStream(bytes));
+                encoded = bytes.toByteArray();
+            } catch (IOException e) {
+                // Before claiming a sequence: a claimed one that is never stored would stall every follower
+                throw new UncheckedIOException(e);
+            }
+            long timestamp = System.currentTimeMillis();
+            backlog.publish(sequence -> {
+                ByteBuffer frame = ByteBuffer.allocate(4 + 1 + 8 + 8 + 1 + 1 + encoded.length);
+                frame.putInt(frame.capacity() - 4)
+                        .put(ReplicationProtocol.RECORD)
+                        .putLong(sequence)
+                        .putLong(timestamp)
+                        .put(store.code())
+                        .put(op)
+                        .put(encoded);
+                return frame.array();
+            });
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package id.ac.ui.cs.advprog.eshop.replication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format between {@link ReplicationLeader} and {@link ReplicationFollower}.
+ * Every message is a frame of a 4-byte body length and the body, which starts
+ * with the message type:
+ * <ul>
+ *     <li>{@link #HELLO}: epoch and next sequence the follower wants, sent once after connecting</li>
+ *     <li>{@link #SNAPSHOT_BEGIN}: leader epoch and the sequence the snapshot is taken at</li>
+ *     <li>{@link #SNAPSHOT_ITEM}: store code and one encoded item</li>
+ *     <li>{@link #SNAPSHOT_END}: everything in the snapshot was sent</li>
+ *     <li>{@link #RECORD}: sequence, leader time in millis, store code, {@link #PUT} and the item or
+ *     {@link #DELETE} and the id</li>
+ *     <li>{@link #HEARTBEAT}: leader head sequence and leader time in millis</li>
+ * </ul>
+ */
+final class ReplicationProtocol {
+
+    static final byte HELLO = 1;
+    static final byte SNAPSHOT_BEGIN = 2;
+    static final byte SNAPSHOT_ITEM = 3;
+    static final byte SNAPSHOT_END = 4;
+    static final byte RECORD = 5;
+    static final byte HEARTBEAT = 6;
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private ReplicationProtocol() {
+    }
+
+    @FunctionalInterface
+    interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** Encodes a message of {@code type} into a complete frame. */
+    static byte[] frame(byte type, Body body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(type);
+        body.write(out);
+        byte[] frame = bytes.toByteArray();
+        ByteBuffer.wrap(frame).putInt(frame.length - 4);
+        return frame;
+    }
+
+    /** Reads the next frame and returns its body, positioned at the message type. */
+    static DataInputStream readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid replication frame length " + length);
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return new DataInputStream(new ByteArrayInputStream(body));
+    }
+}
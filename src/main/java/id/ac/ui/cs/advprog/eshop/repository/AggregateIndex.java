@@ -0,0 +1,261 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Running aggregates over a repository: item count, total quantity, item
+ * counts grouped by a normalized attribute and the items whose quantity is
+ * below a threshold, lowest first. Kept in sync by registering it as a
+ * {@link RepositoryListener}; every write adjusts them by the difference it
+ * makes, so reading a total costs the same whatever the catalog size.
+ * <p>
+ * Like {@link SecondaryIndex}, it remembers what each id currently
+ * contributes, so applying the same item twice, or an item that was mutated
+ * in place, never counts it twice.
+ *
+ * @param <T> the aggregated entity type
+ */
+public class AggregateIndex<T> implements RepositoryListener<T> {
+
+    private final ToIntFunction<T> quantityExtractor;
+    private final Function<T, String> groupExtractor;
+    private final int lowStockThreshold;
+
+    /** Tombstone of an id deleted while seeding; it contributes nothing. */
+    private static final Contribution REMOVED = new Contribution(0, null);
+
+    /** What each id contributes; changes to one id are applied inside its {@code compute}, one at a time. */
+    private final ConcurrentMap<String, Contribution> contributions = new ConcurrentHashMap<>();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalQuantity = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> groupCounts = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<LowStock> lowStock = new ConcurrentSkipListSet<>();
+    // The skip list's size() walks the whole set
+    private final LongAdder lowStockCount = new LongAdder();
+    private volatile boolean seeding;
+
+    /**
+     * @param groupExtractor attribute to count items by, or {@code null} for no grouping
+     * @param lowStockThreshold items with a quantity strictly below this are low on stock
+     */
+    public AggregateIndex(ToIntFunction<T> quantityExtractor, Function<T, String> groupExtractor,
+                          int lowStockThreshold) {
+        this.quantityExtractor = quantityExtractor;
+        this.groupExtractor = groupExtractor;
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    /**
+     * Seeds from everything stored in {@code repository}, reading it {@code pageSize}
+     * items at a time so the whole catalog is never held in memory at once. The
+     * index must already be registered as a listener, so no write is missed; ids
+     * it has seen a write for are skipped, since that write is newer than the page
+     * they were read on. While seeding, a delete leaves a tombstone behind, so an
+     * item deleted after its page was read is not added back. Seed only once.
+     */
+    public void seed(IRepository<T> repository, Function<T, String> idExtractor, int pageSize) {
+        seeding = true;
+        try {
+            String cursor = null;
+            do {
+                Page<T> page = repository.findAfter(cursor, pageSize);
+                for (T item : page.items()) {
+                    String id = idExtractor.apply(item);
+                    if (id != null) {
+                        seed(id, contributionOf(item));
+                    }
+                }
+                cursor = page.next();
+            } while (cursor != null);
+        } finally {
+            seeding = false;
+            contributions.values().removeIf(contribution -> contribution == REMOVED);
+        }
+    }
+
+    private void seed(String id, Contribution contribution) {
+        contributions.compute(id, (key, current) -> {
+            if (current != null) {
+                return current;
+            }
+            apply(id, contribution, 1);
+            return contribution;
+        });
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalQuantity() {
+        return totalQuantity.sum();
+    }
+
+    public int lowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    /** Number of items whose group attribute equals {@code value}, ignoring case and surrounding spaces. */
+    public long countInGroup(String value) {
+        LongAdder groupCount = groupCounts.get(SecondaryIndex.normalize(value));
+        return groupCount == null ? 0 : groupCount.sum();
+    }
+
+    /** Item counts per normalized group value, sorted by value; empty groups are left out. */
+    public Map<String, Long> countsByGroup() {
+        Map<String, Long> counts = new TreeMap<>();
+        groupCounts.forEach((group, groupCount) -> {
+            long sum = groupCount.sum();
+            if (sum > 0) {
+                counts.put(group, sum);
+            }
+        });
+        return Collections.unmodifiableMap(counts);
+    }
+
+    public long lowStockCount() {
+        return lowStockCount.sum();
+    }
+
+    /** Ids of up to {@code limit} low-stock items, lowest quantity first. */
+    public List<String> lowStockIds(int limit) {
+        List<String> ids = new ArrayList<>(Math.min(limit, 64));
+        for (LowStock entry : lowStock) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            ids.add(entry.id());
+        }
+        return ids;
+    }
+
+    /**
+     * The aggregates as they will be once {@code changes} are stored: each entry maps
+     * an id to its new item, or to null for a delete. For reads that must see writes
+     * still queued in front of the repository; the index itself is left as it is.
+     * A change that was stored already is not counted twice.
+     */
+    public Totals totals(Map<String, T> changes, int lowStockLimit) {
+        long itemCount = count();
+        long quantity = totalQuantity();
+        long lowCount = lowStockCount();
+        Map<String, Long> groups = new TreeMap<>(countsByGroup());
+        List<LowStock> low = new ArrayList<>();
+        for (LowStock entry : lowStock) {
+            if (low.size() >= lowStockLimit) {
+                break;
+            }
+            if (!changes.containsKey(entry.id())) {
+                low.add(entry);
+            }
+        }
+        for (Map.Entry<String, T> change : changes.entrySet()) {
+            Contribution old = contributions.get(change.getKey());
+            if (old != null && old != REMOVED) {
+                itemCount--;
+                quantity -= old.quantity();
+                if (old.group() != null) {
+                    groups.merge(old.group(), -1L, Long::sum);
+                }
+                if (old.quantity() < lowStockThreshold) {
+                    lowCount--;
+                }
+            }
+            if (change.getValue() != null) {
+                Contribution added = contributionOf(change.getValue());
+                itemCount++;
+                quantity += added.quantity();
+                if (added.group() != null) {
+                    groups.merge(added.group(), 1L, Long::sum);
+                }
+                if (added.quantity() < lowStockThreshold) {
+                    lowCount++;
+                    low.add(new LowStock(added.quantity(), change.getKey()));
+                }
+            }
+        }
+        groups.values().removeIf(groupCount -> groupCount <= 0);
+        Collections.sort(low);
+        List<String> lowIds = new ArrayList<>(Math.min(lowStockLimit, low.size()));
+        for (LowStock entry : low) {
+            if (lowIds.size() >= lowStockLimit) {
+                break;
+            }
+            lowIds.add(entry.id());
+        }
+        return new Totals(itemCount, quantity, lowCount, lowIds, Collections.unmodifiableMap(groups));
+    }
+
+    @Override
+    public void onPut(String id, T previous, T current) {
+        Contribution contribution = contributionOf(current);
+        contributions.compute(id, (key, old) -> {
+            if (old != null && old != REMOVED) {
+                apply(id, old, -1);
+            }
+            apply(id, contribution, 1);
+            return contribution;
+        });
+    }
+
+    @Override
+    public void onRemove(String id, T previous) {
+        contributions.compute(id, (key, old) -> {
+            if (old != null && old != REMOVED) {
+                apply(id, old, -1);
+            }
+            return seeding ? REMOVED : null;
+        });
+    }
+
+    private Contribution contributionOf(T item) {
+        String group = groupExtractor == null ? null : SecondaryIndex.normalize(groupExtractor.apply(item));
+        return new Contribution(quantityExtractor.applyAsInt(item), group);
+    }
+
+    private void apply(String id, Contribution contribution, int sign) {
+        count.add(sign);
+        totalQuantity.add((long) sign * contribution.quantity());
+        if (contribution.group() != null) {
+            // Emptied groups keep their adder: removing it could drop a concurrent increment
+            groupCounts.computeIfAbsent(contribution.group(), group -> new LongAdder()).add(sign);
+        }
+        if (contribution.quantity() < lowStockThreshold) {
+            LowStock entry = new LowStock(contribution.quantity(), id);
+            if (sign > 0) {
+                if (lowStock.add(entry)) {
+                    lowStockCount.increment();
+                }
+            } else if (lowStock.remove(entry)) {
+                lowStockCount.decrement();
+            }
+        }
+    }
+
+    /** A snapshot of the aggregates, as returned by {@link #totals}. */
+    public record Totals(long count, long totalQuantity, long lowStockCount, List<String> lowStockIds,
+                         Map<String, Long> countsByGroup) {
+    }
+
+    private record Contribution(int quantity, String group) {
+    }
+
+    private record LowStock(int quantity, String id) implements Comparable<LowStock> {
+
+        @Override
+        public int compareTo(LowStock other) {
+            int byQuantity = Integer.compare(quantity, other.quantity);
+            return byQuantity != 0 ? byQuantity : id.compareTo(other.id);
+        }
+    }
+}
@@ -2,50 +2,38 @@ package id.ac.ui.cs.advprog.eshop.repository;
 
 import id.ac.ui.cs.advprog.eshop.model.Car;
 import org.springframework.stereotype.Repository;
-import java.util.ArrayList;
+
 import java.util.List;
-import java.util.UUID;
 
 @Repository
-public class CarRepository implements ICarRepository {
+public class CarRepository extends InMemoryRepository<Car> implements ICarRepository {
 
-    private final List<Car> carData = new ArrayList<>();
+    private final SecondaryIndex<Car> nameIndex = SecondaryIndex.hash(Car::getCarName);
+    private final SecondaryIndex<Car> colorIndex = SecondaryIndex.hash(Car::getCarColor);
 
-    @Override
-    public Car create(Car car) {
-        if (car.getCarId() == null) {
-            car.setCarId(UUID.randomUUID().toString());
-        }
-        carData.add(car);
-        return car;
+    public CarRepository() {
+        super(Car::getCarId, Car::setCarId, Car::copy);
+        addListener(nameIndex);
+        addListener(colorIndex);
     }
 
     @Override
-    public List<Car> findAll() {
-        return new ArrayList<>(carData);
+    public List<Car> findByName(String carName) {
+        return findAllById(nameIndex.find(carName));
     }
 
     @Override
-    public Car findById(String id) {
-        return carData.stream()
-                .filter(car -> car.getCarId().equals(id))
-                .findFirst()
-                .orElse(null);
+    public List<Car> findByColor(String carColor) {
+        return findAllById(colorIndex.find(carColor));
     }
 
     @Override
-    public Car update(Car updatedCar) {
-        for (int i = 0; i < carData.size(); i++) {
-            if (carData.get(i).getCarId().equals(updatedCar.getCarId())) {
-                carData.set(i, updatedCar);
-                return updatedCar;
-            }
-        }
-        return null;
+    public Page<Car> findByName(String carName, String cursor, int size) {
+        return findAllById(nameIndex.find(carName, cursor, size));
     }
 
     @Override
-    public void delete(String id) {
-        carData.removeIf(car -> car.getCarId().equals(id));
+    public Page<Car> findByColor(String carColor, String cursor, int size) {
+        return findAllById(colorIndex.find(carColor, cursor, size));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+/**
+ * Thrown by {@link IRepository#create} and {@link IRepository#createAll} when an
+ * item with the same id is already stored: creating it would silently replace
+ * that item and roll its version back.
+ */
+public class DuplicateIdException extends IllegalStateException {
+
+    private final String id;
+
+    public DuplicateIdException(String id) {
+        super("An item with id " + id + " already exists");
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
@@ -2,6 +2,15 @@ package id.ac.ui.cs.advprog.eshop.repository;
 
 import id.ac.ui.cs.advprog.eshop.model.Car;
 import java.util.Iterator;
+import java.util.List;
 
 public interface ICarRepository extends IRepository<Car> {
+    List<Car> findByName(String carName);
+    List<Car> findByColor(String carColor);
+
+    /** Keyset page of the cars with this name; pass back {@link Page#next()} for the following page. */
+    Page<Car> findByName(String carName, String cursor, int size);
+
+    /** Keyset page of the cars with this color; pass back {@link Page#next()} for the following page. */
+    Page<Car> findByColor(String carColor, String cursor, int size);
 }
\ No newline at end of file
@@ -2,6 +2,16 @@ package id.ac.ui.cs.advprog.eshop.repository;
 
 import id.ac.ui.cs.advprog.eshop.model.Product;
 import java.util.Iterator;
+import java.util.List;
 
 public interface IProductRepository extends IRepository<Product> {
+    List<Product> findByName(String productName);
+    List<Product> findByNamePrefix(String prefix);
+
+    /**
+     * Keyset page of the products whose name starts with {@code prefix}, ordered by
+     * name. Pass back {@link Page#next()} for the following page. Fails with
+     * {@link IllegalArgumentException} on a cursor that was not issued for this prefix.
+     */
+    Page<Product> findByNamePrefix(String prefix, String cursor, int size);
 }
\ No newline at end of file
@@ -1,11 +1,72 @@
 package id.ac.ui.cs.advprog.eshop.repository;
 
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 public interface IRepository<T> {
+    /**
+     * Stores a new item, assigning it an id when it has none, and returns the
+     * stored item. It starts at version 0 whatever version the caller set. Fails
+     * with {@link DuplicateIdException} when an item with that id already exists;
+     * changes to stored items go through {@link #update} or {@link #modify}.
+     */
     T create(T item);
+
+    /**
+     * Creates a batch of items like {@link #create}; returns them with their ids
+     * assigned. When one of the ids already exists, or appears twice in the batch,
+     * the batch fails with {@link DuplicateIdException} and none of it is stored.
+     */
+    List<T> createAll(List<T> items);
+
+    /**
+     * Stores {@code item} exactly as given, version included, replacing any item
+     * with the same id. Only for bringing a store in line with a record of it,
+     * such as a write-ahead log being replayed or a replication leader's changes;
+     * the application creates and changes items through the other writes.
+     */
+    T restore(T item);
+
     List<T> findAll();
+
+    /** Returns page {@code page} (0-based) of {@code size} items, in insertion order. */
+    List<T> findPage(int page, int size);
+
+    /**
+     * Keyset pagination: returns up to {@code size} items in insertion order, starting
+     * after the position {@code cursor} points at, or at the start when it is null.
+     * Cursors come from {@link Page#next()} and name a position rather than an item,
+     * so paging goes on correctly when the last item of a page has been deleted.
+     * Fails with {@link IllegalArgumentException} on a cursor this repository did not issue.
+     */
+    Page<T> findAfter(String cursor, int size);
+
+    long count();
+
+    /** Number of writes applied so far; changes whenever the contents change. */
+    long version();
+
     T findById(String id);
+    /**
+     * Replaces the stored item with the same id, if the caller's copy is current:
+     * versioned items must carry the version they were read at, and a mismatch
+     * fails with {@link StaleUpdateException}. Stores a copy of {@code item} with the
+     * version bumped and returns it; {@code item} itself is left as it was. Returns
+     * null when there is no such id.
+     */
     T update(T item);
+
+    /**
+     * Atomically replaces the item with id {@code id} by {@code change.apply(current)}.
+     * No other write to that id can interleave between the read and the write. When
+     * {@code change} returns the current instance unchanged nothing is written;
+     * otherwise the version of the new item is bumped as for {@link #update}.
+     * Returns the item stored afterwards and whether it was replaced, or null when
+     * there is no such id.
+     */
+    Modification<T> modify(String id, UnaryOperator<T> change);
     void delete(String id);
+
+    /** Registers a listener notified of every subsequent create, update and delete. */
+    void addListener(RepositoryListener<T> listener);
 }
\ No newline at end of file
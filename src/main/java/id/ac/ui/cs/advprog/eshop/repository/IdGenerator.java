@@ -0,0 +1,16 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+/**
+ * Source of primary keys for items created without one. Implementations must
+ * be thread-safe and never return the same id twice.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    String nextId();
+
+    /** The shared time-ordered generator used by the repositories by default. */
+    static IdGenerator timeOrdered() {
+        return TimeOrderedIdGenerator.INSTANCE;
+    }
+}
@@ -0,0 +1,492 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Versioned;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Generic thread-safe in-memory storage engine behind {@link IRepository}.
+ * Items are kept in a persistent trie ordered by insertion sequence, which is
+ * published as an immutable {@link State} together with the item count and the
+ * version. A write builds the next state by copying only the path to the item it
+ * changes, O(log n), and publishes it with a compare-and-set, so readers never
+ * wait and never copy: every read takes the state published at that moment and
+ * answers from it alone. {@link #findAll()} is a view over that state, and a
+ * {@link #createAll} batch is published in one step, so it is either wholly
+ * visible or not at all.
+ * <p>
+ * Stored items are shared with every reader and must be treated as read-only:
+ * creates store a copy of the caller's item, updates store a copy of the new
+ * one, and a change always replaces the stored instance instead of mutating it.
+ * A concurrent hash index maps ids to sequences, so lookups by id are O(1).
+ * <p>
+ * Writes for one id are serialized by one of a fixed set of striped
+ * {@link ReentrantLock}s, so writers on different ids only meet at the
+ * compare-and-set. Listeners run while that lock is held and may block (a
+ * write-ahead log does I/O there); unlike a monitor, a {@code ReentrantLock} lets
+ * a waiting virtual thread unmount from its carrier.
+ * <p>
+ * Updates are optimistic: an update must carry the version of the item it was
+ * based on, and is rejected with {@link StaleUpdateException} if another write
+ * got there first. The check happens under the per-id lock, so no global lock
+ * is needed and writes to different items still never block each other. For
+ * the same reason a create never replaces a stored item: it fails with
+ * {@link DuplicateIdException}, and only {@link #restore} overwrites.
+ *
+ * @param <T> the stored entity type
+ */
+public class InMemoryRepository<T extends Versioned> implements IRepository<T> {
+
+    /** Number of write locks; a power of two so a stripe is picked with a mask. */
+    private static final int LOCK_STRIPES = 256;
+
+    /** id -> insertion sequence of the item in the published state. */
+    private final ConcurrentMap<String, Long> index = new ConcurrentHashMap<>();
+    private final AtomicReference<State<T>> state = new AtomicReference<>(State.empty());
+    private final List<RepositoryListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private final Function<T, String> idExtractor;
+    private final BiConsumer<T, String> idAssigner;
+    private final UnaryOperator<T> copier;
+    private volatile IdGenerator idGenerator = IdGenerator.timeOrdered();
+
+    /**
+     * @param idExtractor reads the primary key of an item
+     * @param idAssigner  stores a generated primary key on an item created without one
+     * @param copier      copies an item, so the repository only ever stores instances it owns
+     */
+    public InMemoryRepository(Function<T, String> idExtractor, BiConsumer<T, String> idAssigner,
+                              UnaryOperator<T> copier) {
+        this.idExtractor = idExtractor;
+        this.idAssigner = idAssigner;
+        this.copier = copier;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /** Replaces the generator used for items created without an id. */
+    @Autowired(required = false)
+    public void setIdGenerator(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public void addListener(RepositoryListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stores a copy of {@code item} at version 0, assigning the id to {@code item}
+     * first if it has none; returns the copy.
+     */
+    @Override
+    public T create(T item) {
+        fireBeforeWrite();
+        T stored = putAll(List.of(item), false).get(0);
+        fireAfterWrite();
+        return stored;
+    }
+
+    /**
+     * Stores every item like {@link #create}, but lets listeners finish the whole
+     * batch at once, so for example a write-ahead log syncs it with a single fsync.
+     */
+    @Override
+    public List<T> createAll(List<T> items) {
+        fireBeforeWrite();
+        List<T> stored = putAll(items, false);
+        fireAfterWrite();
+        return stored;
+    }
+
+    /** Stores a copy of {@code item}, keeping its version and the place of any item it replaces. */
+    @Override
+    public T restore(T item) {
+        fireBeforeWrite();
+        T stored = putAll(List.of(item), true).get(0);
+        fireAfterWrite();
+        return stored;
+    }
+
+    /** Stores copies of {@code items}; only when {@code replace} is set may they take the place of stored ones. */
+    private List<T> putAll(List<T> items, boolean replace) {
+        int size = items.size();
+        String[] ids = new String[size];
+        List<T> copies = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            T item = items.get(i);
+            String id = idExtractor.apply(item);
+            if (id == null || id.isEmpty()) {
+                id = idGenerator.nextId();
+                idAssigner.accept(item, id);
+            }
+            ids[i] = id;
+            T copy = copier.apply(item);
+            if (!replace) {
+                copy.setVersion(0);
+            }
+            copies.add(copy);
+        }
+        ReentrantLock[] held = lockAll(ids);
+        try {
+            if (!replace) {
+                rejectExisting(ids);
+            }
+            // The locks keep every id's index entry fixed, so only the trie can change between attempts
+            long[] sequences = new long[size];
+            Object[] previous = new Object[size];
+            while (true) {
+                State<T> current = state.get();
+                SequenceTrie<T> trie = current.items();
+                long next = current.nextSequence();
+                Map<String, Long> added = size > 1 ? new HashMap<>() : Map.of();
+                for (int i = 0; i < size; i++) {
+                    Long sequence = index.get(ids[i]);
+                    if (sequence == null) {
+                        sequence = added.get(ids[i]);
+                    }
+                    if (sequence == null) {
+                        sequence = next++;
+                        if (size > 1) {
+                            added.put(ids[i], sequence);
+                        }
+                    }
+                    sequences[i] = sequence;
+                    previous[i] = trie.get(sequence);
+                    trie = trie.with(sequence, copies.get(i));
+                }
+                if (state.compareAndSet(current, new State<>(trie, current.version() + size, next))) {
+                    break;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                index.putIfAbsent(ids[i], sequences[i]);
+                @SuppressWarnings("unchecked")
+                T before = (T) previous[i];
+                firePut(ids[i], before, copies.get(i));
+            }
+        } finally {
+            for (int i = held.length - 1; i >= 0; i--) {
+                held[i].unlock();
+            }
+        }
+        return copies;
+    }
+
+    /** Fails if any of {@code ids} is stored or repeated; the caller holds the locks of all of them. */
+    private void rejectExisting(String[] ids) {
+        Set<String> seen = ids.length > 1 ? new HashSet<>() : null;
+        for (String id : ids) {
+            if (index.containsKey(id) || (seen != null && !seen.add(id))) {
+                throw new DuplicateIdException(id);
+            }
+        }
+    }
+
+    @Override
+    public List<T> findAll() {
+        return state.get().list();
+    }
+
+    @Override
+    public List<T> findPage(int page, int size) {
+        if (page < 0 || size <= 0) {
+            return Collections.emptyList();
+        }
+        long from = (long) page * size;
+        SequenceTrie<T> items = state.get().items();
+        if (from >= items.size()) {
+            return Collections.emptyList();
+        }
+        return take(items.entries((int) from), size);
+    }
+
+    /**
+     * The cursor is the insertion sequence of the last item returned. Sequences are
+     * never reused, so it still marks the right place after that item is deleted.
+     */
+    @Override
+    public Page<T> findAfter(String cursor, int size) {
+        if (size <= 0) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+        SequenceTrie<T> items = state.get().items();
+        int from = cursor == null || cursor.isEmpty() ? 0 : items.rankAfter(parseCursor(cursor));
+        SequenceTrie.Entries<T> entries = items.entries(from);
+        List<T> page = take(entries, size);
+        return new Page<>(page, entries.hasNext() ? Long.toString(entries.lastSequence()) : null);
+    }
+
+    private static long parseCursor(String cursor) {
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+    }
+
+    @Override
+    public long count() {
+        return state.get().items().size();
+    }
+
+    @Override
+    public long version() {
+        return state.get().version();
+    }
+
+    @Override
+    public T findById(String id) {
+        if (id == null) {
+            return null;
+        }
+        Long position = index.get(id);
+        return position == null ? null : state.get().items().get(position);
+    }
+
+    @Override
+    public T update(T item) {
+        String id = idExtractor.apply(item);
+        if (id == null) {
+            return null;
+        }
+        long expected = item.getVersion();
+        fireBeforeWrite();
+        T stored;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            Long position = index.get(id);
+            if (position == null) {
+                return null;
+            }
+            T previous = state.get().items().get(position);
+            if (previous.getVersion() != expected) {
+                throw new StaleUpdateException(id, expected, previous.getVersion());
+            }
+            stored = copier.apply(item);
+            stored.setVersion(expected + 1);
+            replace(position, stored);
+            firePut(id, previous, stored);
+        } finally {
+            lock.unlock();
+        }
+        fireAfterWrite();
+        return stored;
+    }
+
+    /**
+     * Runs {@code change} under the same per-id lock as {@link #update},
+     * so concurrent modifications of one item are applied one after another while
+     * other ids stay unaffected. {@code change} must be quick, must not touch
+     * this repository, and must return a new instance rather than change the
+     * one it is given, which other readers may be holding.
+     */
+    @Override
+    public Modification<T> modify(String id, UnaryOperator<T> change) {
+        if (id == null) {
+            return null;
+        }
+        fireBeforeWrite();
+        T next;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            Long position = index.get(id);
+            if (position == null) {
+                return null;
+            }
+            T previous = state.get().items().get(position);
+            next = change.apply(previous);
+            if (next == previous) {
+                return new Modification<>(previous, false);
+            }
+            next.setVersion(previous.getVersion() + 1);
+            replace(position, next);
+            firePut(id, previous, next);
+        } finally {
+            lock.unlock();
+        }
+        fireAfterWrite();
+        return new Modification<>(next, true);
+    }
+
+    @Override
+    public void delete(String id) {
+        if (id == null) {
+            return;
+        }
+        fireBeforeWrite();
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            Long position = index.get(id);
+            if (position == null) {
+                return;
+            }
+            T previous;
+            while (true) {
+                State<T> current = state.get();
+                previous = current.items().get(position);
+                State<T> updated = new State<>(current.items().without(position), current.version() + 1,
+                        current.nextSequence());
+                if (state.compareAndSet(current, updated)) {
+                    break;
+                }
+            }
+            index.remove(id);
+            for (RepositoryListener<T> listener : listeners) {
+                listener.onRemove(id, previous);
+            }
+        } finally {
+            lock.unlock();
+        }
+        fireAfterWrite();
+    }
+
+    /**
+     * Resolves ids coming from a secondary index to the stored items, in insertion
+     * order. Ids that were deleted in the meantime are skipped. Runs in time
+     * proportional to the number of ids, not to the size of the repository.
+     */
+    protected List<T> findAllById(Collection<String> ids) {
+        SequenceTrie<T> items = state.get().items();
+        Map<Long, T> matches = new TreeMap<>();
+        for (String id : ids) {
+            Long position = index.get(id);
+            T item = position == null ? null : items.get(position);
+            if (item != null) {
+                matches.put(position, item);
+            }
+        }
+        return new ArrayList<>(matches.values());
+    }
+
+    /**
+     * Resolves a page of ids from a secondary index to the stored items, keeping the
+     * index's order and cursor. Ids that were deleted in the meantime are skipped.
+     */
+    protected Page<T> findAllById(Page<String> ids) {
+        List<T> items = new ArrayList<>(ids.items().size());
+        for (String id : ids.items()) {
+            T item = findById(id);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return new Page<>(items, ids.next());
+    }
+
+    /** Publishes a state with {@code item} stored under an existing sequence; the caller holds its id's lock. */
+    private void replace(long position, T item) {
+        while (true) {
+            State<T> current = state.get();
+            State<T> updated = new State<>(current.items().with(position, item), current.version() + 1,
+                    current.nextSequence());
+            if (state.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private ReentrantLock lockFor(String id) {
+        int hash = id.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    /** Locks the stripes of all {@code ids}, each once and in stripe order, so batches cannot deadlock. */
+    private ReentrantLock[] lockAll(String[] ids) {
+        if (ids.length == 1) {
+            ReentrantLock lock = lockFor(ids[0]);
+            lock.lock();
+            return new ReentrantLock[] {lock};
+        }
+        boolean[] needed = new boolean[LOCK_STRIPES];
+        int count = 0;
+        for (String id : ids) {
+            int hash = id.hashCode();
+            int stripe = (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+            if (!needed[stripe]) {
+                needed[stripe] = true;
+                count++;
+            }
+        }
+        ReentrantLock[] held = new ReentrantLock[count];
+        int taken = 0;
+        try {
+            for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+                if (needed[stripe]) {
+                    locks[stripe].lock();
+                    held[taken++] = locks[stripe];
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            for (int i = taken - 1; i >= 0; i--) {
+                held[i].unlock();
+            }
+            throw e;
+        }
+        return held;
+    }
+
+    private static <T> List<T> take(SequenceTrie.Entries<T> entries, int size) {
+        List<T> page = new ArrayList<>(Math.min(size, 64));
+        while (page.size() < size && entries.hasNext()) {
+            page.add(entries.next());
+        }
+        return page;
+    }
+
+    /** Lets listeners veto a write before it changes anything. */
+    private void fireBeforeWrite() {
+        for (RepositoryListener<T> listener : listeners) {
+            listener.beforeWrite();
+        }
+    }
+
+    private void firePut(String id, T previous, T current) {
+        for (RepositoryListener<T> listener : listeners) {
+            listener.onPut(id, previous, current);
+        }
+    }
+
+    private void fireAfterWrite() {
+        for (RepositoryListener<T> listener : listeners) {
+            listener.afterWrite();
+        }
+    }
+
+    /**
+     * One published version of the repository. {@code list} is a read-only view of
+     * {@code items}, made once so repeated {@link #findAll()} calls allocate nothing.
+     */
+    private record State<T>(SequenceTrie<T> items, long version, long nextSequence, List<T> list) {
+
+        State(SequenceTrie<T> items, long version, long nextSequence) {
+            this(items, version, nextSequence, items.asList());
+        }
+
+        static <T> State<T> empty() {
+            return new State<>(SequenceTrie.empty(), 0, 1);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+/**
+ * Outcome of {@link IRepository#modify}: the item stored afterwards, and whether
+ * the change replaced it or returned the current item untouched.
+ *
+ * @param <T> the modified entity type
+ */
+public record Modification<T>(T item, boolean changed) {
+}
@@ -0,0 +1,17 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import java.util.List;
+
+/**
+ * One page of a keyset listing. {@code next} is the opaque cursor to pass back
+ * to {@link IRepository#findAfter} for the following page, or null when no
+ * items follow this page.
+ *
+ * @param <T> the listed entity type
+ */
+public record Page<T>(List<T> items, String next) {
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
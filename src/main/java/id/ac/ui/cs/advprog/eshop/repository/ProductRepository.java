@@ -2,50 +2,31 @@ package id.ac.ui.cs.advprog.eshop.repository;
 
 import id.ac.ui.cs.advprog.eshop.model.Product;
 import org.springframework.stereotype.Repository;
-import java.util.ArrayList;
+
 import java.util.List;
-import java.util.UUID;
 
 @Repository
-public class ProductRepository implements IProductRepository {
+public class ProductRepository extends InMemoryRepository<Product> implements IProductRepository {
 
-    private final List<Product> productData = new ArrayList<>();
+    private final SortedSecondaryIndex<Product> nameIndex = SecondaryIndex.sorted(Product::getProductName);
 
-    @Override
-    public Product create(Product product) {
-        if (product.getProductId() == null || product.getProductId().isEmpty()) {
-            product.setProductId(UUID.randomUUID().toString());
-        }
-        productData.add(product);
-        return product;
-    }
-
-    @Override
-    public List<Product> findAll() {
-        return new ArrayList<>(productData);
+    public ProductRepository() {
+        super(Product::getProductId, Product::setProductId, Product::copy);
+        addListener(nameIndex);
     }
 
     @Override
-    public Product findById(String id) {
-        return productData.stream()
-                .filter(product -> product.getProductId().equals(id))
-                .findFirst()
-                .orElse(null);
+    public List<Product> findByName(String productName) {
+        return findAllById(nameIndex.find(productName));
     }
 
     @Override
-    public Product update(Product updatedProduct) {
-        for (int i = 0; i < productData.size(); i++) {
-            if (productData.get(i).getProductId().equals(updatedProduct.getProductId())) {
-                productData.set(i, updatedProduct);
-                return updatedProduct;
-            }
-        }
-        return null;
+    public List<Product> findByNamePrefix(String prefix) {
+        return findAllById(nameIndex.findByPrefix(prefix));
     }
 
     @Override
-    public void delete(String id) {
-        productData.removeIf(product -> product.getProductId().equals(id));
+    public Page<Product> findByNamePrefix(String prefix, String cursor, int size) {
+        return findAllById(nameIndex.findByPrefix(prefix, cursor, size));
     }
-}
\ No newline at end of file
+}
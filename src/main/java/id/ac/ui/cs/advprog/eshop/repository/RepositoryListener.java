@@ -0,0 +1,38 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+/**
+ * Observer of writes to an {@link InMemoryRepository}. Callbacks run inside the
+ * per-id critical section of the write, so for a given id they are delivered in
+ * order and never concurrently. Implementations must be fast and must not call
+ * back into the repository for the same id.
+ *
+ * @param <T> the stored entity type
+ */
+public interface RepositoryListener<T> {
+
+    /**
+     * Called on the writing thread before a write changes anything, outside the
+     * per-id critical section. Throwing rejects the write; a listener that can no
+     * longer record writes uses this to keep the repository from getting ahead of it.
+     */
+    default void beforeWrite() {
+    }
+
+    /**
+     * Called after an item was stored.
+     *
+     * @param previous the item that was replaced, or {@code null} when {@code id} is new
+     */
+    void onPut(String id, T previous, T current);
+
+    /** Called after the item with {@code id} was removed. */
+    void onRemove(String id, T previous);
+
+    /**
+     * Called on the writing thread once the write has left the per-id critical
+     * section. Listeners that need to block, for example until a log record is
+     * durable, do it here rather than in {@link #onPut} or {@link #onRemove}.
+     */
+    default void afterWrite() {
+    }
+}
@@ -0,0 +1,107 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * Secondary index from a normalized (trimmed, lower-cased) attribute value to the
+ * ids of the items carrying it, kept in id order so matches can be paged. Kept
+ * in sync by registering it as a {@link RepositoryListener}. An index built with {@link #sorted} is a
+ * {@link SortedSecondaryIndex}, which additionally answers prefix queries; a hash
+ * index has no prefix lookup at all.
+ *
+ * @param <T> the indexed entity type
+ */
+public class SecondaryIndex<T> implements RepositoryListener<T> {
+
+    private final Function<T, String> keyExtractor;
+    final ConcurrentMap<String, NavigableSet<String>> entries;
+    /** id -> key the id is currently indexed under, so stale keys are removed even if the item was mutated in place. */
+    private final ConcurrentMap<String, String> keyById = new ConcurrentHashMap<>();
+
+    SecondaryIndex(Function<T, String> keyExtractor, ConcurrentMap<String, NavigableSet<String>> entries) {
+        this.keyExtractor = keyExtractor;
+        this.entries = entries;
+    }
+
+    public static <T> SecondaryIndex<T> hash(Function<T, String> keyExtractor) {
+        return new SecondaryIndex<>(keyExtractor, new ConcurrentHashMap<>());
+    }
+
+    public static <T> SortedSecondaryIndex<T> sorted(Function<T, String> keyExtractor) {
+        return new SortedSecondaryIndex<>(keyExtractor, new ConcurrentSkipListMap<>());
+    }
+
+    static String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Ids of the items whose attribute equals {@code value}, ignoring case and surrounding spaces. */
+    public Set<String> find(String value) {
+        String key = normalize(value);
+        if (key == null) {
+            return Collections.emptySet();
+        }
+        Set<String> ids = entries.get(key);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * Keyset page of the ids whose attribute equals {@code value}, in id order. The
+     * cursor is the last id of the previous page, or null for the first page.
+     */
+    public Page<String> find(String value, String cursor, int size) {
+        String key = normalize(value);
+        NavigableSet<String> ids = key == null ? null : entries.get(key);
+        if (ids == null || size <= 0) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+        Iterator<String> matches = (cursor == null || cursor.isEmpty() ? ids : ids.tailSet(cursor, false)).iterator();
+        List<String> page = new ArrayList<>(Math.min(size, 64));
+        while (page.size() < size && matches.hasNext()) {
+            page.add(matches.next());
+        }
+        return new Page<>(page, matches.hasNext() ? page.get(page.size() - 1) : null);
+    }
+
+    @Override
+    public void onPut(String id, T previous, T current) {
+        String key = normalize(keyExtractor.apply(current));
+        String oldKey = key == null ? keyById.remove(id) : keyById.put(id, key);
+        if (oldKey != null && !oldKey.equals(key)) {
+            unlink(oldKey, id);
+        }
+        if (key != null) {
+            entries.compute(key, (k, ids) -> {
+                NavigableSet<String> result = ids != null ? ids : new ConcurrentSkipListSet<>();
+                result.add(id);
+                return result;
+            });
+        }
+    }
+
+    @Override
+    public void onRemove(String id, T previous) {
+        String oldKey = keyById.remove(id);
+        if (oldKey != null) {
+            unlink(oldKey, id);
+        }
+    }
+
+    private void unlink(String key, String id) {
+        entries.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
@@ -0,0 +1,300 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Persistent map from insertion sequence to item: a 32-way radix trie over the
+ * sequence numbers. A change copies only the nodes on the path to its leaf and
+ * returns a new trie, so an instance never changes once built and can be read
+ * without locks while writers move on to newer ones. Each node counts the items
+ * below it, so the n-th item is found in a few steps instead of by walking the
+ * items before it.
+ * <p>
+ * Sequences only grow, so the trie gains a level whenever one outgrows the root.
+ * Subtrees whose items have all been removed are dropped.
+ *
+ * @param <T> the stored item type
+ */
+final class SequenceTrie<T> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final SequenceTrie<?> EMPTY = new SequenceTrie<>(null, 0);
+
+    /** Null when empty. */
+    private final Node root;
+    /** Shift of the root's level; a leaf is level 0. */
+    private final int shift;
+
+    private SequenceTrie(Node root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> SequenceTrie<T> empty() {
+        return (SequenceTrie<T>) EMPTY;
+    }
+
+    int size() {
+        return root == null ? 0 : root.count;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(long sequence) {
+        if (root == null || !covers(sequence)) {
+            return null;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.slots[index(sequence, level)];
+            if (node == null) {
+                return null;
+            }
+        }
+        return (T) node.slots[index(sequence, 0)];
+    }
+
+    /** A trie with {@code item} stored under {@code sequence}, replacing any item already there. */
+    SequenceTrie<T> with(long sequence, T item) {
+        Node top = root;
+        int topShift = shift;
+        if (top == null) {
+            topShift = 0;
+            while (!fits(sequence, topShift)) {
+                topShift += BITS;
+            }
+        } else {
+            while (!fits(sequence, topShift)) {
+                Node parent = new Node(new Object[WIDTH], top.count);
+                parent.slots[0] = top;
+                top = parent;
+                topShift += BITS;
+            }
+        }
+        return new SequenceTrie<>(with(top, topShift, sequence, item), topShift);
+    }
+
+    private static Node with(Node node, int level, long sequence, Object item) {
+        Object[] slots = node == null ? new Object[WIDTH] : node.slots.clone();
+        int count = node == null ? 0 : node.count;
+        int i = index(sequence, level);
+        if (level == 0) {
+            if (slots[i] == null) {
+                count++;
+            }
+            slots[i] = item;
+        } else {
+            Node child = (Node) slots[i];
+            Node changed = with(child, level - BITS, sequence, item);
+            count += changed.count - (child == null ? 0 : child.count);
+            slots[i] = changed;
+        }
+        return new Node(slots, count);
+    }
+
+    /** A trie without the item stored under {@code sequence}; this trie when there is none. */
+    SequenceTrie<T> without(long sequence) {
+        if (get(sequence) == null) {
+            return this;
+        }
+        Node changed = without(root, shift, sequence);
+        return changed == null ? empty() : new SequenceTrie<>(changed, shift);
+    }
+
+    /** Null when the node is left empty, so its parent drops it. */
+    private static Node without(Node node, int level, long sequence) {
+        if (node.count == 1) {
+            return null;
+        }
+        Object[] slots = node.slots.clone();
+        int i = index(sequence, level);
+        slots[i] = level == 0 ? null : without((Node) slots[i], level - BITS, sequence);
+        return new Node(slots, node.count - 1);
+    }
+
+    /** Number of items stored under sequences up to and including {@code sequence}. */
+    int rankAfter(long sequence) {
+        if (root == null || sequence < 0) {
+            return 0;
+        }
+        if (!covers(sequence)) {
+            return root.count;
+        }
+        int rank = 0;
+        Node node = root;
+        for (int level = shift; node != null; level -= BITS) {
+            int i = index(sequence, level);
+            for (int j = 0; j < i; j++) {
+                rank += count(node.slots[j], level);
+            }
+            if (level == 0) {
+                return rank + (node.slots[i] != null ? 1 : 0);
+            }
+            node = (Node) node.slots[i];
+        }
+        return rank;
+    }
+
+    /** Iterates over the items in sequence order, starting with the one at position {@code rank}. */
+    Entries<T> entries(int rank) {
+        return new Entries<>(this, rank);
+    }
+
+    /** The items in sequence order, as a read-only list backed by this trie. */
+    List<T> asList() {
+        return new ListView<>(this);
+    }
+
+    private boolean covers(long sequence) {
+        return fits(sequence, shift);
+    }
+
+    /** Whether a trie whose root is at {@code shift} has room for {@code sequence}. */
+    private static boolean fits(long sequence, int shift) {
+        return shift + BITS >= Long.SIZE || sequence >>> (shift + BITS) == 0;
+    }
+
+    private static int index(long sequence, int level) {
+        return (int) (sequence >>> level) & MASK;
+    }
+
+    private static int count(Object slot, int level) {
+        if (slot == null) {
+            return 0;
+        }
+        return level == 0 ? 1 : ((Node) slot).count;
+    }
+
+    private record Node(Object[] slots, int count) {
+    }
+
+    /** Iterator that also reports the sequence of the item it returned last. */
+    static final class Entries<T> implements Iterator<T> {
+
+        private final Node[] path;
+        private final int[] positions;
+        private final int levels;
+        private final int shift;
+        private long lastSequence = -1;
+        private boolean hasNext;
+
+        private Entries(SequenceTrie<T> trie, int rank) {
+            this.shift = trie.shift;
+            this.levels = trie.shift / BITS + 1;
+            this.path = new Node[levels];
+            this.positions = new int[levels];
+            if (trie.root == null || rank < 0 || rank >= trie.root.count) {
+                return;
+            }
+            Node node = trie.root;
+            int remaining = rank;
+            for (int depth = 0; ; depth++) {
+                int level = shift - depth * BITS;
+                path[depth] = node;
+                int i = 0;
+                while (true) {
+                    int below = count(node.slots[i], level);
+                    if (remaining < below) {
+                        break;
+                    }
+                    remaining -= below;
+                    i++;
+                }
+                positions[depth] = i;
+                if (level == 0) {
+                    break;
+                }
+                node = (Node) node.slots[i];
+            }
+            hasNext = true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            int leaf = levels - 1;
+            T item = (T) path[leaf].slots[positions[leaf]];
+            long sequence = 0;
+            for (int depth = 0; depth < levels; depth++) {
+                sequence |= (long) positions[depth] << (shift - depth * BITS);
+            }
+            lastSequence = sequence;
+            advance();
+            return item;
+        }
+
+        /** Sequence of the item {@link #next()} returned last, or -1 before the first call. */
+        long lastSequence() {
+            return lastSequence;
+        }
+
+        private void advance() {
+            int depth = levels - 1;
+            while (depth >= 0) {
+                Node node = path[depth];
+                int i = positions[depth] + 1;
+                while (i < WIDTH && node.slots[i] == null) {
+                    i++;
+                }
+                if (i < WIDTH) {
+                    positions[depth] = i;
+                    // Go down to the first item of the new subtree
+                    for (int d = depth + 1; d < levels; d++) {
+                        Node child = (Node) path[d - 1].slots[positions[d - 1]];
+                        int j = 0;
+                        while (child.slots[j] == null) {
+                            j++;
+                        }
+                        path[d] = child;
+                        positions[d] = j;
+                    }
+                    return;
+                }
+                depth--;
+            }
+            hasNext = false;
+        }
+    }
+
+    private static final class ListView<T> extends AbstractList<T> implements RandomAccess {
+
+        private final SequenceTrie<T> trie;
+
+        ListView(SequenceTrie<T> trie) {
+            this.trie = trie;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return trie.entries(index).next();
+        }
+
+        @Override
+        public int size() {
+            return trie.size();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return trie.entries(0);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.function.Function;
+
+/**
+ * {@link SecondaryIndex} kept in key order, so it also answers prefix queries
+ * in time proportional to the number of matches. Built with
+ * {@link SecondaryIndex#sorted}.
+ *
+ * @param <T> the indexed entity type
+ */
+public class SortedSecondaryIndex<T> extends SecondaryIndex<T> {
+
+    private final ConcurrentNavigableMap<String, NavigableSet<String>> sortedEntries;
+
+    SortedSecondaryIndex(Function<T, String> keyExtractor, ConcurrentNavigableMap<String, NavigableSet<String>> entries) {
+        super(keyExtractor, entries);
+        this.sortedEntries = entries;
+    }
+
+    /** Ids of the items whose attribute starts with {@code prefix}, ignoring case and surrounding spaces. */
+    public Set<String> findByPrefix(String prefix) {
+        String from = normalize(prefix);
+        if (from == null) {
+            return Collections.emptySet();
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        for (Set<String> idsForKey : matching(from).values()) {
+            ids.addAll(idsForKey);
+        }
+        return ids;
+    }
+
+    /**
+     * Keyset page of the ids whose attribute starts with {@code prefix}, ordered by
+     * attribute and then by id. Only the entries on the page are visited, so a page
+     * costs the same however many items match. Cursors come from {@link Page#next()}
+     * and fail with {@link IllegalArgumentException} when they were not issued for
+     * this prefix.
+     */
+    public Page<String> findByPrefix(String prefix, String cursor, int size) {
+        String from = normalize(prefix);
+        if (from == null || size <= 0) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+        NavigableMap<String, NavigableSet<String>> matching = matching(from);
+        String afterKey = null;
+        String afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            afterKey = cursorKey(cursor);
+            afterId = cursorId(cursor);
+            if (!afterKey.startsWith(from)) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+            matching = matching.tailMap(afterKey, true);
+        }
+        List<String> page = new ArrayList<>(Math.min(size, 64));
+        String lastKey = null;
+        for (Map.Entry<String, NavigableSet<String>> entry : matching.entrySet()) {
+            Set<String> ids = entry.getKey().equals(afterKey) ? entry.getValue().tailSet(afterId, false) : entry.getValue();
+            for (String id : ids) {
+                if (page.size() == size) {
+                    return new Page<>(page, cursor(lastKey, page.get(size - 1)));
+                }
+                page.add(id);
+                lastKey = entry.getKey();
+            }
+        }
+        return new Page<>(page, null);
+    }
+
+    /**
+     * A cursor naming the position of the entry with normalized attribute {@code key}
+     * and id {@code id}. The key's length comes first, so neither part needs escaping.
+     */
+    public static String cursor(String key, String id) {
+        return key.length() + ":" + key + id;
+    }
+
+    /** The normalized attribute a cursor points at. */
+    public static String cursorKey(String cursor) {
+        int separator = cursor.indexOf(':');
+        try {
+            int length = Integer.parseInt(cursor.substring(0, separator));
+            return cursor.substring(separator + 1, separator + 1 + length);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+        }
+    }
+
+    /** The id a cursor points at. */
+    public static String cursorId(String cursor) {
+        return cursor.substring(cursor.indexOf(':') + 1 + cursorKey(cursor).length());
+    }
+
+    private NavigableMap<String, NavigableSet<String>> matching(String from) {
+        String to = successor(from);
+        return to == null ? sortedEntries.tailMap(from, true) : sortedEntries.subMap(from, true, to, false);
+    }
+
+    /**
+     * The smallest string greater than every string starting with {@code prefix},
+     * or null when there is none, as for an empty prefix or one made only of
+     * {@link Character#MAX_VALUE} characters.
+     */
+    static String successor(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+}
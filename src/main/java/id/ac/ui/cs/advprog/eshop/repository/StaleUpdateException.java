@@ -0,0 +1,32 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+/**
+ * Thrown by {@link IRepository#update} when the item was changed since the
+ * version the caller read: someone else's write would otherwise be lost.
+ */
+public class StaleUpdateException extends IllegalStateException {
+
+    private final String id;
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    public StaleUpdateException(String id, long expectedVersion, long currentVersion) {
+        super("Item " + id + " was changed concurrently: update was based on version "
+                + expectedVersion + " but the current version is " + currentVersion);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
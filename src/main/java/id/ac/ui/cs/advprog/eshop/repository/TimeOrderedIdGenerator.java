@@ -0,0 +1,67 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import java.time.Clock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 128-bit ids with the UUIDv7 layout (RFC 9562): a 48-bit millisecond
+ * timestamp, a 12-bit counter and 62 random bits. Ids are rendered as 26
+ * Crockford base32 characters, like ULIDs, so they are URL-safe, shorter than
+ * the 36-character UUID text and sort in creation order both as strings and
+ * as their 16 binary bytes.
+ * <p>
+ * Ids from one generator are strictly increasing. The timestamp and counter
+ * are advanced together with a single compare-and-set, and when more than 4096
+ * ids are taken within one millisecond the counter carries into the timestamp
+ * instead of going back. The random bits come from {@link ThreadLocalRandom},
+ * so unlike {@code UUID.randomUUID()} threads never contend on a shared
+ * {@code SecureRandom}. They are not meant to be unguessable.
+ */
+public final class TimeOrderedIdGenerator implements IdGenerator {
+
+    static final TimeOrderedIdGenerator INSTANCE = new TimeOrderedIdGenerator(Clock.systemUTC());
+
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int COUNTER_BITS = 12;
+
+    private final Clock clock;
+    /** Last issued timestamp and counter: millis << 12 | counter. */
+    private final AtomicLong last = new AtomicLong();
+
+    public TimeOrderedIdGenerator(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        long candidate = clock.millis() << COUNTER_BITS;
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(candidate, previous + 1);
+        } while (!last.compareAndSet(previous, next));
+
+        long timestamp = next >>> COUNTER_BITS;
+        long counter = next & ((1L << COUNTER_BITS) - 1);
+        long mostSignificant = (timestamp << 16) | 0x7000L | counter;
+        long leastSignificant = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return encode(mostSignificant, leastSignificant);
+    }
+
+    /** Renders 128 bits as 26 base32 characters, most significant first (the first one carries 3 bits). */
+    static String encode(long mostSignificant, long leastSignificant) {
+        char[] text = new char[26];
+        text[0] = CROCKFORD[(int) (mostSignificant >>> 61)];
+        // Shift the remaining 125 bits through a 128-bit register, five at a time
+        long high = mostSignificant << 3 | leastSignificant >>> 61;
+        long low = leastSignificant << 3;
+        for (int i = 1; i < text.length; i++) {
+            text[i] = CROCKFORD[(int) (high >>> 59)];
+            high = high << 5 | low >>> 59;
+            low <<= 5;
+        }
+        return new String(text);
+    }
+}
@@ -0,0 +1,43 @@
+package id.ac.ui.cs.advprog.eshop.repository.partitioned;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.SecondaryIndex;
+
+import java.util.List;
+
+/**
+ * Car store with one writer thread per shard.
+ */
+public class PartitionedCarRepository extends PartitionedRepository<Car> implements ICarRepository {
+
+    private final SecondaryIndex<Car> nameIndex = SecondaryIndex.hash(Car::getCarName);
+    private final SecondaryIndex<Car> colorIndex = SecondaryIndex.hash(Car::getCarColor);
+
+    public PartitionedCarRepository(int shardCount) {
+        super("cars", shardCount, Car::getCarId, Car::setCarId, Car::copy);
+        addListener(nameIndex);
+        addListener(colorIndex);
+    }
+
+    @Override
+    public List<Car> findByName(String carName) {
+        return findAllById(nameIndex.find(carName));
+    }
+
+    @Override
+    public List<Car> findByColor(String carColor) {
+        return findAllById(colorIndex.find(carColor));
+    }
+
+    @Override
+    public Page<Car> findByName(String carName, String cursor, int size) {
+        return findAllById(nameIndex.find(carName, cursor, size));
+    }
+
+    @Override
+    public Page<Car> findByColor(String carColor, String cursor, int size) {
+        return findAllById(colorIndex.find(carColor, cursor, size));
+    }
+}
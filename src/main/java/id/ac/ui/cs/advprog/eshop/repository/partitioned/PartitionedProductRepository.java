@@ -0,0 +1,38 @@
+package id.ac.ui.cs.advprog.eshop.repository.partitioned;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.SecondaryIndex;
+import id.ac.ui.cs.advprog.eshop.repository.SortedSecondaryIndex;
+
+import java.util.List;
+
+/**
+ * Product store with one writer thread per shard. The name index is updated
+ * by the shard writers, so it sees the writes of each shard in order.
+ */
+public class PartitionedProductRepository extends PartitionedRepository<Product> implements IProductRepository {
+
+    private final SortedSecondaryIndex<Product> nameIndex = SecondaryIndex.sorted(Product::getProductName);
+
+    public PartitionedProductRepository(int shardCount) {
+        super("products", shardCount, Product::getProductId, Product::setProductId, Product::copy);
+        addListener(nameIndex);
+    }
+
+    @Override
+    public List<Product> findByName(String productName) {
+        return findAllById(nameIndex.find(productName));
+    }
+
+    @Override
+    public List<Product> findByNamePrefix(String prefix) {
+        return findAllById(nameIndex.findByPrefix(prefix));
+    }
+
+    @Override
+    public Page<Product> findByNamePrefix(String prefix, String cursor, int size) {
+        return findAllById(nameIndex.findByPrefix(prefix, cursor, size));
+    }
+}
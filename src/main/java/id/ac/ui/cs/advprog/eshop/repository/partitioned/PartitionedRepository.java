@@ -0,0 +1,718 @@
+package id.ac.ui.cs.advprog.eshop.repository.partitioned;
+
+import id.ac.ui.cs.advprog.eshop.model.Versioned;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.IRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IdGenerator;
+import id.ac.ui.cs.advprog.eshop.repository.Modification;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.RepositoryListener;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link IRepository} split into shards by a hash of the id, each owned by a
+ * single writer thread. A write is handed to its shard's writer through a
+ * lock-free inbox and the caller waits for the outcome, so the interface and
+ * its guarantees stay those of {@link id.ac.ui.cs.advprog.eshop.repository.InMemoryRepository}:
+ * writes to one id are applied in order, listeners see them inside that
+ * order, and an update that lost a race fails with {@link StaleUpdateException}.
+ * <p>
+ * Nothing on the write path is shared between shards: no lock, no counter and
+ * no map, so writes to different shards never touch the same cache line. A
+ * writer applies everything waiting in its inbox as one batch and calls
+ * {@link RepositoryListener#afterWrite()} once per batch, so a write-ahead log
+ * syncs a whole batch at once. Callers spin briefly before parking, which
+ * keeps the hand-off cheap when the writer keeps up.
+ * <p>
+ * Reads never go through the writers. Each shard publishes its items in
+ * concurrent maps written only by its writer, and {@link #findAll()} merges
+ * per-shard snapshots that are rebuilt only after their shard changed.
+ * Listings are ordered by the time each item was first stored, ties broken by
+ * shard, which is creation order for any one client.
+ * <p>
+ * Experimental: every write costs a hand-off to the shard writer and back,
+ * and on the hosts measured so far that makes it about four times slower
+ * than the striped {@link id.ac.ui.cs.advprog.eshop.repository.InMemoryRepository};
+ * see {@code docs/benchmarks.md}.
+ *
+ * @param <T> the stored entity type
+ */
+public class PartitionedRepository<T extends Versioned> implements IRepository<T>, Closeable {
+
+    /** Most commands a writer applies before running the batch's {@code afterWrite}. */
+    static final int MAX_BATCH = 256;
+    private static final int SPINS = 256;
+
+    private final Shard<T>[] shards;
+    private final Function<T, String> idExtractor;
+    private final BiConsumer<T, String> idAssigner;
+    private final UnaryOperator<T> copier;
+    private volatile IdGenerator idGenerator = IdGenerator.timeOrdered();
+    private final List<RepositoryListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Snapshot<T>> snapshot = new AtomicReference<>(new Snapshot<>(0, List.of()));
+    private volatile boolean closed;
+
+    /**
+     * @param name        prefix of the writer thread names
+     * @param shardCount  number of shards and writer threads
+     * @param idExtractor reads the primary key of an item
+     * @param idAssigner  stores a generated primary key on an item created without one
+     * @param copier      copies an item, so writes store a copy rather than the caller's instance
+     */
+    @SuppressWarnings("unchecked")
+    public PartitionedRepository(String name, int shardCount, Function<T, String> idExtractor,
+                                 BiConsumer<T, String> idAssigner, UnaryOperator<T> copier) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.idExtractor = idExtractor;
+        this.idAssigner = idAssigner;
+        this.copier = copier;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>(i, this);
+            shards[i].writer = new Thread(shards[i]::run, name + "-shard-" + i);
+            shards[i].writer.setDaemon(true);
+            shards[i].writer.start();
+        }
+    }
+
+    /** Replaces the generator used for items created without an id. */
+    public void setIdGenerator(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public void addListener(RepositoryListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    /** Stores a copy of {@code item} at version 0, assigning the id to {@code item} first if it has none. */
+    @Override
+    public T create(T item) {
+        return submit(shardFor(assignId(item)), new Command<>(Kind.CREATE, List.of(created(item)), null, null)).item;
+    }
+
+    /**
+     * Hands each shard its part of the batch at once, so the shards store them in
+     * parallel. Each shard checks its part for existing ids before storing any of
+     * it, but the shards do not wait for each other: when one part is refused with
+     * {@link DuplicateIdException}, the parts of other shards may have been stored.
+     */
+    @Override
+    public List<T> createAll(List<T> items) {
+        List<List<T>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        List<T> copies = new ArrayList<>(items.size());
+        for (T item : items) {
+            Shard<T> shard = shardFor(assignId(item));
+            T copy = created(item);
+            byShard.get(shard.index).add(copy);
+            copies.add(copy);
+        }
+        fireBeforeWrite();
+        List<Command<T>> commands = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            if (!byShard.get(i).isEmpty()) {
+                Command<T> command = new Command<>(Kind.CREATE, byShard.get(i), null, null);
+                shards[i].send(command);
+                commands.add(command);
+            }
+        }
+        RuntimeException failure = null;
+        for (Command<T> command : commands) {
+            try {
+                command.await();
+            } catch (RuntimeException e) {
+                // Wait for the other shards all the same, so none is still storing when the caller hears of it
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return copies;
+    }
+
+    /** Stores a copy of {@code item}, keeping its version and the place of any item it replaces. */
+    @Override
+    public T restore(T item) {
+        Shard<T> shard = shardFor(assignId(item));
+        return submit(shard, new Command<>(Kind.RESTORE, List.of(copier.apply(item)), null, null)).item;
+    }
+
+    @Override
+    public List<T> findAll() {
+        return currentSnapshot().items();
+    }
+
+    @Override
+    public List<T> findPage(int page, int size) {
+        if (page < 0 || size <= 0) {
+            return Collections.emptyList();
+        }
+        long from = (long) page * size;
+        Snapshot<T> published = snapshot.get();
+        if (published.version() == version()) {
+            List<T> items = published.items();
+            if (from >= items.size()) {
+                return Collections.emptyList();
+            }
+            return items.subList((int) from, (int) Math.min(items.size(), from + size));
+        }
+        return take(merge(null), from, size);
+    }
+
+    /**
+     * The cursor is the listing position of the last item returned, its shard
+     * sequence and shard, which keeps its place after that item is deleted.
+     */
+    @Override
+    public Page<T> findAfter(String cursor, int size) {
+        if (size <= 0) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+        Merged<T> items = merge(cursor == null || cursor.isEmpty() ? null : Position.parse(cursor));
+        List<T> page = take(items, 0, size);
+        return new Page<>(page, items.hasNext() ? items.last().toString() : null);
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (Shard<T> shard : shards) {
+            count += shard.items.size();
+        }
+        return count;
+    }
+
+    /** Sum of the shard versions; every write raises exactly one of them. */
+    @Override
+    public long version() {
+        long version = 0;
+        for (Shard<T> shard : shards) {
+            version += shard.version;
+        }
+        return version;
+    }
+
+    @Override
+    public T findById(String id) {
+        if (id == null) {
+            return null;
+        }
+        Stored<T> stored = shardFor(id).items.get(id);
+        return stored == null ? null : stored.item();
+    }
+
+    @Override
+    public T update(T item) {
+        String id = idExtractor.apply(item);
+        if (id == null) {
+            return null;
+        }
+        return submit(shardFor(id), new Command<>(Kind.UPDATE, List.of(item), id, null)).item;
+    }
+
+    /**
+     * Runs {@code change} on the shard's writer thread, so concurrent
+     * modifications of one item are applied one after another. {@code change}
+     * must be quick and must not touch this repository; whatever it throws is
+     * rethrown to the caller.
+     */
+    @Override
+    public Modification<T> modify(String id, UnaryOperator<T> change) {
+        if (id == null) {
+            return null;
+        }
+        return submit(shardFor(id), new Command<>(Kind.MODIFY, List.of(), id, change)).modification;
+    }
+
+    @Override
+    public void delete(String id) {
+        if (id != null) {
+            submit(shardFor(id), new Command<>(Kind.DELETE, List.of(), id, null));
+        }
+    }
+
+    /** Stops the writers once they have applied everything already submitted. */
+    @Override
+    public void close() {
+        closed = true;
+        for (Shard<T> shard : shards) {
+            LockSupport.unpark(shard.writer);
+        }
+        for (Shard<T> shard : shards) {
+            try {
+                shard.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Resolves ids coming from a secondary index to the stored items, in listing
+     * order. Ids that were deleted in the meantime are skipped.
+     */
+    protected List<T> findAllById(Collection<String> ids) {
+        List<Located<T>> matches = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Shard<T> shard = shardFor(id);
+            Stored<T> stored = shard.items.get(id);
+            if (stored != null) {
+                matches.add(new Located<>(new Position(stored.sequence(), shard.index), stored.item()));
+            }
+        }
+        matches.sort((a, b) -> a.position().compareTo(b.position()));
+        List<T> items = new ArrayList<>(matches.size());
+        for (Located<T> match : matches) {
+            items.add(match.item());
+        }
+        return items;
+    }
+
+    /**
+     * Resolves a page of ids from a secondary index to the stored items, keeping the
+     * index's order and cursor. Ids that were deleted in the meantime are skipped.
+     */
+    protected Page<T> findAllById(Page<String> ids) {
+        List<T> items = new ArrayList<>(ids.items().size());
+        for (String id : ids.items()) {
+            T item = findById(id);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return new Page<>(items, ids.next());
+    }
+
+    private String assignId(T item) {
+        String id = idExtractor.apply(item);
+        if (id == null || id.isEmpty()) {
+            id = idGenerator.nextId();
+            idAssigner.accept(item, id);
+        }
+        return id;
+    }
+
+    private T created(T item) {
+        T copy = copier.apply(item);
+        copy.setVersion(0);
+        return copy;
+    }
+
+    private Shard<T> shardFor(String id) {
+        int hash = id.hashCode();
+        hash ^= hash >>> 16;
+        return shards[Math.floorMod(hash, shards.length)];
+    }
+
+    private Command<T> submit(Shard<T> shard, Command<T> command) {
+        fireBeforeWrite();
+        shard.send(command);
+        command.await();
+        return command;
+    }
+
+    /** Runs on the calling thread, before the command reaches a writer. */
+    private void fireBeforeWrite() {
+        for (RepositoryListener<T> listener : listeners) {
+            listener.beforeWrite();
+        }
+    }
+
+    private Snapshot<T> currentSnapshot() {
+        Snapshot<T> published = snapshot.get();
+        long current = version();
+        if (published.version() == current) {
+            return published;
+        }
+        List<T> items = new ArrayList<>();
+        merge(null).forEachRemaining(items::add);
+        Snapshot<T> fresh = new Snapshot<>(current, Collections.unmodifiableList(items));
+        // Only cache it if no write slipped in while merging, and never replace a newer snapshot
+        if (version() == current) {
+            snapshot.accumulateAndGet(fresh, (old, built) -> built.version() > old.version() ? built : old);
+        }
+        return fresh;
+    }
+
+    /** Items of all shards in listing order, starting right after {@code after}, or at the start when null. */
+    private Merged<T> merge(Position after) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(shards.length);
+        for (Shard<T> shard : shards) {
+            Map<Long, T> tail = after == null ? shard.ordered
+                    : shard.ordered.tailMap(after.sequence(), shard.index > after.shard());
+            Cursor<T> cursor = new Cursor<>(shard.index, tail.entrySet().iterator());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return new Merged<>(heads);
+    }
+
+    private static <T> List<T> take(Iterator<T> items, long skip, int size) {
+        for (long i = 0; i < skip && items.hasNext(); i++) {
+            items.next();
+        }
+        List<T> page = new ArrayList<>(Math.min(size, 64));
+        while (page.size() < size && items.hasNext()) {
+            page.add(items.next());
+        }
+        return page;
+    }
+
+    private enum Kind {
+        CREATE, RESTORE, UPDATE, MODIFY, DELETE
+    }
+
+    /** A write travelling from a caller to a shard writer and its outcome travelling back. */
+    private static final class Command<T> {
+
+        final Kind kind;
+        final List<T> items;
+        final String id;
+        final UnaryOperator<T> change;
+        T item;
+        Modification<T> modification;
+        RuntimeException failure;
+        volatile boolean done;
+        volatile Thread waiter;
+
+        Command(Kind kind, List<T> items, String id, UnaryOperator<T> change) {
+            this.kind = kind;
+            this.items = items;
+            this.id = id;
+            this.change = change;
+        }
+
+        void complete() {
+            done = true;
+            Thread parked = waiter;
+            if (parked != null) {
+                LockSupport.unpark(parked);
+            }
+        }
+
+        void await() {
+            for (int i = 0; i < SPINS && !done; i++) {
+                Thread.onSpinWait();
+            }
+            if (!done) {
+                // Set before the re-check, so a writer finishing in between still sees it and unparks us
+                waiter = Thread.currentThread();
+                boolean interrupted = false;
+                while (!done) {
+                    LockSupport.park(this);
+                    interrupted |= Thread.interrupted();
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static final class Shard<T extends Versioned> {
+
+        final int index;
+        final PartitionedRepository<T> owner;
+        final Queue<Command<T>> inbox = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean sleeping = new AtomicBoolean();
+        Thread writer;
+
+        // Written by the writer thread only
+        final ConcurrentHashMap<String, Stored<T>> items = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<Long, T> ordered = new ConcurrentSkipListMap<>();
+        volatile long version;
+        private long lastSequence;
+
+        Shard(int index, PartitionedRepository<T> owner) {
+            this.index = index;
+            this.owner = owner;
+        }
+
+        void send(Command<T> command) {
+            if (owner.closed) {
+                throw new IllegalStateException("The repository is closed");
+            }
+            inbox.offer(command);
+            if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+                LockSupport.unpark(writer);
+            }
+        }
+
+        void run() {
+            List<Command<T>> batch = new ArrayList<>(MAX_BATCH);
+            while (true) {
+                Command<T> command = inbox.poll();
+                if (command == null) {
+                    if (owner.closed) {
+                        return;
+                    }
+                    idle();
+                    continue;
+                }
+                do {
+                    apply(command);
+                    batch.add(command);
+                } while (batch.size() < MAX_BATCH && (command = inbox.poll()) != null);
+                try {
+                    for (RepositoryListener<T> listener : owner.listeners) {
+                        listener.afterWrite();
+                    }
+                } catch (RuntimeException e) {
+                    // The batch is applied but, for example, not durable: its callers have to know
+                    for (Command<T> failed : batch) {
+                        failed.failure = e;
+                    }
+                }
+                for (Command<T> done : batch) {
+                    done.complete();
+                }
+                batch.clear();
+            }
+        }
+
+        private void idle() {
+            for (int i = 0; i < SPINS; i++) {
+                if (!inbox.isEmpty() || owner.closed) {
+                    return;
+                }
+                Thread.onSpinWait();
+            }
+            sleeping.set(true);
+            // Re-checked after announcing the sleep, so an offer racing with it is never missed
+            if (inbox.isEmpty() && !owner.closed) {
+                LockSupport.park(this);
+            }
+            sleeping.set(false);
+        }
+
+        private void apply(Command<T> command) {
+            try {
+                switch (command.kind) {
+                    case CREATE -> {
+                        create(command.items);
+                        command.item = command.items.get(0);
+                    }
+                    case RESTORE -> {
+                        T item = command.items.get(0);
+                        put(owner.idExtractor.apply(item), item);
+                        command.item = item;
+                    }
+                    case UPDATE -> command.item = update(command.items.get(0));
+                    case MODIFY -> command.modification = modify(command.id, command.change);
+                    case DELETE -> remove(command.id);
+                }
+            } catch (RuntimeException e) {
+                command.failure = e;
+            }
+        }
+
+        /** Stores the items unless one of their ids is stored or repeated, in which case none is. */
+        private void create(List<T> batch) {
+            Set<String> seen = batch.size() > 1 ? new HashSet<>() : null;
+            for (T item : batch) {
+                String id = owner.idExtractor.apply(item);
+                if (items.containsKey(id) || (seen != null && !seen.add(id))) {
+                    throw new DuplicateIdException(id);
+                }
+            }
+            for (T item : batch) {
+                store(owner.idExtractor.apply(item), nextSequence(), null, item);
+            }
+        }
+
+        private void put(String id, T item) {
+            Stored<T> previous = items.get(id);
+            long sequence = previous != null ? previous.sequence() : nextSequence();
+            store(id, sequence, previous == null ? null : previous.item(), item);
+        }
+
+        private T update(T item) {
+            String id = owner.idExtractor.apply(item);
+            Stored<T> previous = items.get(id);
+            if (previous == null) {
+                return null;
+            }
+            long expected = item.getVersion();
+            if (previous.item().getVersion() != expected) {
+                throw new StaleUpdateException(id, expected, previous.item().getVersion());
+            }
+            T stored = owner.copier.apply(item);
+            stored.setVersion(expected + 1);
+            store(id, previous.sequence(), previous.item(), stored);
+            return stored;
+        }
+
+        private Modification<T> modify(String id, UnaryOperator<T> change) {
+            Stored<T> previous = items.get(id);
+            if (previous == null) {
+                return null;
+            }
+            T next = change.apply(previous.item());
+            if (next == previous.item()) {
+                return new Modification<>(next, false);
+            }
+            next.setVersion(previous.item().getVersion() + 1);
+            store(id, previous.sequence(), previous.item(), next);
+            return new Modification<>(next, true);
+        }
+
+        private void remove(String id) {
+            Stored<T> previous = items.remove(id);
+            if (previous == null) {
+                return;
+            }
+            ordered.remove(previous.sequence());
+            version++;
+            for (RepositoryListener<T> listener : owner.listeners) {
+                listener.onRemove(id, previous.item());
+            }
+        }
+
+        private void store(String id, long sequence, T previous, T item) {
+            ordered.put(sequence, item);
+            items.put(id, new Stored<>(sequence, item));
+            version++;
+            for (RepositoryListener<T> listener : owner.listeners) {
+                listener.onPut(id, previous, item);
+            }
+        }
+
+        /** Time of the first store, kept unique within the shard, so listings interleave shards by age. */
+        private long nextSequence() {
+            lastSequence = Math.max(lastSequence + 1, System.nanoTime());
+            return lastSequence;
+        }
+    }
+
+    private record Stored<T>(long sequence, T item) {
+    }
+
+    private record Position(long sequence, int shard) implements Comparable<Position> {
+
+        static Position parse(String cursor) {
+            int separator = cursor.indexOf('-');
+            try {
+                return new Position(Long.parseLong(cursor.substring(0, separator)),
+                        Integer.parseInt(cursor.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return sequence + "-" + shard;
+        }
+
+        @Override
+        public int compareTo(Position other) {
+            int bySequence = Long.compare(sequence, other.sequence);
+            return bySequence != 0 ? bySequence : Integer.compare(shard, other.shard);
+        }
+    }
+
+    private record Located<T>(Position position, T item) {
+    }
+
+    /** Merges the shard cursors and remembers the position of the item it returned last. */
+    private static final class Merged<T> implements Iterator<T> {
+
+        final PriorityQueue<Cursor<T>> heads;
+        long lastSequence;
+        int lastShard;
+
+        Merged(PriorityQueue<Cursor<T>> heads) {
+            this.heads = heads;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        Position last() {
+            return new Position(lastSequence, lastShard);
+        }
+
+        @Override
+        public T next() {
+            Cursor<T> head = heads.poll();
+            T item = head.item;
+            lastSequence = head.sequence;
+            lastShard = head.shard;
+            if (head.advance()) {
+                heads.add(head);
+            }
+            return item;
+        }
+    }
+
+    private static final class Cursor<T> implements Comparable<Cursor<T>> {
+
+        final int shard;
+        final Iterator<Map.Entry<Long, T>> entries;
+        long sequence;
+        T item;
+
+        Cursor(int shard, Iterator<Map.Entry<Long, T>> entries) {
+            this.shard = shard;
+            this.entries = entries;
+        }
+
+        boolean advance() {
+            if (!entries.hasNext()) {
+                return false;
+            }
+            Map.Entry<Long, T> entry = entries.next();
+            sequence = entry.getKey();
+            item = entry.getValue();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor<T> other) {
+            int bySequence = Long.compare(sequence, other.sequence);
+            return bySequence != 0 ? bySequence : Integer.compare(shard, other.shard);
+        }
+    }
+
+    private record Snapshot<T>(long version, List<T> items) {
+    }
+}
@@ -0,0 +1,40 @@
+package id.ac.ui.cs.advprog.eshop.repository.partitioned;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Replaces the in-memory product and car repositories with hash-partitioned
+ * ones when the {@code partitioned} profile is active.
+ * {@code eshop.partitioned.shards} sets the number of shards, and so of
+ * writer threads, per repository; 0 uses one per available processor.
+ * <p>
+ * Experimental, and slower than the default store so far; see
+ * {@code docs/benchmarks.md} before enabling it.
+ */
+@Configuration
+@Profile("partitioned")
+public class PartitionedStoreConfig {
+
+    @Value("${eshop.partitioned.shards:0}")
+    private int shards;
+
+    @Bean(destroyMethod = "close")
+    @Primary
+    public PartitionedProductRepository partitionedProductRepository() {
+        return new PartitionedProductRepository(shardCount());
+    }
+
+    @Bean(destroyMethod = "close")
+    @Primary
+    public PartitionedCarRepository partitionedCarRepository() {
+        return new PartitionedCarRepository(shardCount());
+    }
+
+    private int shardCount() {
+        return shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+}
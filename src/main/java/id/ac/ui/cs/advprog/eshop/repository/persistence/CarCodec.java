@@ -0,0 +1,32 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class CarCodec implements RecordCodec<Car> {
+
+    @Override
+    public void write(DataOutput out, Car car) throws IOException {
+        RecordCodec.writeString(out, car.getCarId());
+        RecordCodec.writeString(out, car.getCarName());
+        RecordCodec.writeString(out, car.getCarColor());
+        out.writeInt(car.getCarQuantity());
+        out.writeLong(car.getVersion());
+    }
+
+    @Override
+    public Car read(DataInput in, int format) throws IOException {
+        Car car = new Car();
+        car.setCarId(RecordCodec.readString(in));
+        car.setCarName(RecordCodec.readString(in));
+        car.setCarColor(RecordCodec.readString(in));
+        car.setCarQuantity(in.readInt());
+        if (format >= 2) {
+            car.setVersion(in.readLong());
+        }
+        return car;
+    }
+}
@@ -0,0 +1,46 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Off-heap car store. Names and colors are kept in off-heap sorted indexes, so
+ * queries on either visit only the matching records.
+ */
+public class MappedCarRepository extends MappedRepository<Car> implements ICarRepository {
+
+    private final FieldIndex<Car> nameIndex;
+    private final FieldIndex<Car> colorIndex;
+
+    public MappedCarRepository(Path directory, long capacity, int slotSize) throws IOException {
+        super(directory, "cars", new CarCodec(), Car::getCarId, Car::setCarId, Car::copy,
+                capacity, slotSize);
+        nameIndex = index("name", Car::getCarName);
+        colorIndex = index("color", Car::getCarColor);
+    }
+
+    @Override
+    public List<Car> findByName(String carName) {
+        return findEqual(nameIndex, carName);
+    }
+
+    @Override
+    public List<Car> findByColor(String carColor) {
+        return findEqual(colorIndex, carColor);
+    }
+
+    @Override
+    public Page<Car> findByName(String carName, String cursor, int size) {
+        return findEqual(nameIndex, carName, cursor, size);
+    }
+
+    @Override
+    public Page<Car> findByColor(String carColor, String cursor, int size) {
+        return findEqual(colorIndex, carColor, cursor, size);
+    }
+}
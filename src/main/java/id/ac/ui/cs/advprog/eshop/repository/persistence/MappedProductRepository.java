@@ -0,0 +1,39 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Off-heap product store. Names are kept in an off-heap sorted index, so name
+ * queries visit only the matching records and the heap stays flat.
+ */
+public class MappedProductRepository extends MappedRepository<Product> implements IProductRepository {
+
+    private final FieldIndex<Product> nameIndex;
+
+    public MappedProductRepository(Path directory, long capacity, int slotSize) throws IOException {
+        super(directory, "products", new ProductCodec(), Product::getProductId, Product::setProductId,
+                Product::copy, capacity, slotSize);
+        nameIndex = index("name", Product::getProductName);
+    }
+
+    @Override
+    public List<Product> findByName(String productName) {
+        return findEqual(nameIndex, productName);
+    }
+
+    @Override
+    public List<Product> findByNamePrefix(String prefix) {
+        return findStartingWith(nameIndex, prefix);
+    }
+
+    @Override
+    public Page<Product> findByNamePrefix(String prefix, String cursor, int size) {
+        return findStartingWith(nameIndex, prefix, cursor, size);
+    }
+}
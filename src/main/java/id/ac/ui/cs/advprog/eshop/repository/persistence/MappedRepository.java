@@ -0,0 +1,1048 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Versioned;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.IRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IdGenerator;
+import id.ac.ui.cs.advprog.eshop.repository.Modification;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.RepositoryListener;
+import id.ac.ui.cs.advprog.eshop.repository.SortedSecondaryIndex;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link IRepository} that keeps its records off-heap in a memory-mapped file,
+ * so heap usage stays flat however large the catalog grows and the data is
+ * available again right after a restart without a load step.
+ * <p>
+ * {@code <name>.data} starts with a header page followed by {@code capacity}
+ * fixed-size slots. A slot is either never used, live (state, length, sequence,
+ * encoded record) or free, in which case it links to the next free slot so
+ * deleted slots are reused before the high-water mark grows. {@code <name>.index}
+ * is an open-addressing hash table of (id hash, slot) pairs used to find a record
+ * by id; hash matches are confirmed by decoding only the id of the slot.
+ * <p>
+ * Because slots are reused, slot order is not insertion order. Every created item
+ * takes the next sequence number, and {@code <name>.order} lists (sequence, slot)
+ * pairs in sequence order; deleting an item clears its slot in that list, and the
+ * list is compacted in place when it fills up. Listings walk this list, and
+ * cursors carry a sequence number, found again by binary search, so they stay
+ * valid across compactions. Items are decoded into objects only when they are
+ * read. Subclasses keep fields they query in off-heap sorted indexes, one
+ * {@link MappedSortedIndex} file per field, made with {@link #index}; an index
+ * file that is missing or was cut short is rebuilt from the records on open.
+ * <p>
+ * Creates and deletes change the shared structures (free list, hash index,
+ * order list) and take the write side of a read-write lock. Everything else
+ * shares its read side: an update or modify rewrites its record in place, so
+ * it only serializes with writes to records in the same one of a fixed set of
+ * lock stripes, chosen by slot. A slot's bytes are guarded by a
+ * {@link StampedLock} of its stripe, which readers take optimistically, so a
+ * reader only waits when it raced with a rewrite of a slot in that stripe.
+ * The mapped pages are flushed by the operating system and forced to disk on
+ * {@link #close()}.
+ *
+ * @param <T> the stored entity type
+ */
+public class MappedRepository<T extends Versioned> implements IRepository<T>, Closeable {
+
+    private static final int MAGIC = 0x45534d32; // "ESM2"
+    private static final int HEADER_SIZE = 4096;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_SLOT_SIZE = 4;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_FREE_HEAD = 16;
+    private static final int HEADER_HIGH_WATER = 24;
+    private static final int HEADER_LIVE = 32;
+    private static final int HEADER_VERSION = 40;
+    private static final int HEADER_NEXT_SEQUENCE = 48;
+    private static final int HEADER_ORDER_SIZE = 56;
+
+    private static final byte SLOT_LIVE = 1;
+    private static final byte SLOT_FREE = 2;
+    private static final int SLOT_HEADER = 13;
+
+    private static final int INDEX_ENTRY = 16;
+    private static final int ORDER_ENTRY = 16;
+    private static final long INDEX_EMPTY = 0;
+    private static final long INDEX_TOMBSTONE = -1;
+    private static final int MAX_SEGMENT = 1 << 30;
+
+    /** Number of write stripes; a power of two so a stripe is picked with a mask. */
+    private static final int LOCK_STRIPES = 64;
+    /** Atomic access to the longs of the header, which updates bump concurrently. */
+    private static final VarHandle HEADER_LONG =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+    private final String name;
+    private final RecordCodec<T> codec;
+    private final Function<T, String> idExtractor;
+    private final BiConsumer<T, String> idAssigner;
+    private final UnaryOperator<T> copier;
+    private volatile IdGenerator idGenerator = IdGenerator.timeOrdered();
+    private final int slotSize;
+    private final long capacity;
+
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final FileChannel orderChannel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] dataSegments;
+    private final int slotsPerSegment;
+    private final MappedByteBuffer[] indexSegments;
+    private final int entriesPerSegment;
+    private final long indexMask;
+    private long tombstones;
+    private final MappedByteBuffer[] orderSegments;
+    private final long orderCapacity;
+
+    /** Write side for creates and deletes, read side for everything else. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Serialize updates and modifies of the slots in a stripe. */
+    private final ReentrantLock[] writers = new ReentrantLock[LOCK_STRIPES];
+    /** Guard the bytes of the slots in a stripe while they are rewritten. */
+    private final StampedLock[] slotGuards = new StampedLock[LOCK_STRIPES];
+    /** Guards the field indexes against updates that move an item within them. */
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final List<FieldIndex<T>> fieldIndexes = new CopyOnWriteArrayList<>();
+    private final List<RepositoryListener<T>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Opens the store {@code name} in {@code directory}, creating it when missing.
+     *
+     * @param copier   copies an item, so updates store a copy rather than the caller's instance
+     * @param capacity maximum number of live items
+     * @param slotSize bytes per slot, a power of two; records must encode to at most {@code slotSize - 13} bytes
+     */
+    public MappedRepository(Path directory, String name, RecordCodec<T> codec, Function<T, String> idExtractor,
+                            BiConsumer<T, String> idAssigner, UnaryOperator<T> copier, long capacity,
+                            int slotSize) throws IOException {
+        if (Integer.bitCount(slotSize) != 1 || slotSize < 32) {
+            throw new IllegalArgumentException("Slot size must be a power of two of at least 32 bytes");
+        }
+        this.directory = directory;
+        this.name = name;
+        this.codec = codec;
+        this.idExtractor = idExtractor;
+        this.idAssigner = idAssigner;
+        this.copier = copier;
+        this.slotSize = slotSize;
+        this.capacity = capacity;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            writers[i] = new ReentrantLock();
+            slotGuards[i] = new StampedLock();
+        }
+
+        Files.createDirectories(directory);
+        Path dataFile = directory.resolve(name + ".data");
+        boolean existing = Files.exists(dataFile) && Files.size(dataFile) >= HEADER_SIZE;
+        dataChannel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(directory.resolve(name + ".index"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        orderChannel = FileChannel.open(directory.resolve(name + ".order"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        header = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (existing) {
+            if (header.getInt(HEADER_MAGIC) != MAGIC || header.getInt(HEADER_SLOT_SIZE) != slotSize
+                    || header.getLong(HEADER_CAPACITY) != capacity) {
+                throw new IOException("Store " + dataFile + " has a different format, slot size or capacity");
+            }
+        } else {
+            header.putInt(HEADER_MAGIC, MAGIC);
+            header.putInt(HEADER_SLOT_SIZE, slotSize);
+            header.putLong(HEADER_CAPACITY, capacity);
+            header.putLong(HEADER_FREE_HEAD, 0);
+            header.putLong(HEADER_HIGH_WATER, 0);
+            header.putLong(HEADER_LIVE, 0);
+            header.putLong(HEADER_VERSION, 0);
+            header.putLong(HEADER_NEXT_SEQUENCE, 0);
+            header.putLong(HEADER_ORDER_SIZE, 0);
+        }
+
+        slotsPerSegment = MAX_SEGMENT / slotSize;
+        dataSegments = map(dataChannel, HEADER_SIZE, capacity, slotsPerSegment, slotSize);
+
+        long indexSlots = Long.highestOneBit(Math.max(capacity, 8) * 2 - 1) << 1;
+        indexMask = indexSlots - 1;
+        entriesPerSegment = MAX_SEGMENT / INDEX_ENTRY;
+        indexSegments = map(indexChannel, 0, indexSlots, entriesPerSegment, INDEX_ENTRY);
+        orderCapacity = Math.max(capacity, 8) * 2;
+        orderSegments = map(orderChannel, 0, orderCapacity, entriesPerSegment, ORDER_ENTRY);
+        if (existing) {
+            tombstones = countTombstones();
+        }
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, long offset, long elements,
+                                          int elementsPerSegment, int elementSize) throws IOException {
+        int segments = (int) ((elements + elementsPerSegment - 1) / elementsPerSegment);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[segments];
+        for (int i = 0; i < segments; i++) {
+            long first = (long) i * elementsPerSegment;
+            long count = Math.min(elementsPerSegment, elements - first);
+            mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset + first * elementSize, count * elementSize);
+        }
+        return mapped;
+    }
+
+    /** Replaces the generator used for items created without an id. */
+    @Autowired(required = false)
+    public void setIdGenerator(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public void addListener(RepositoryListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Keeps the field read by {@code field} in the off-heap sorted index
+     * {@code <name>.<fieldName>.index}, building it from the stored records when
+     * the file is new. Meant for subclass constructors, before the store is used.
+     */
+    protected FieldIndex<T> index(String fieldName, Function<T, String> field) throws IOException {
+        MappedSortedIndex nodes = new MappedSortedIndex(directory.resolve(name + "." + fieldName + ".index"),
+                capacity);
+        FieldIndex<T> index = new FieldIndex<>(field, nodes);
+        if (!nodes.isComplete()) {
+            nodes.clear();
+            long orderSize = header.getLong(HEADER_ORDER_SIZE);
+            for (long position = 0; position < orderSize; position++) {
+                long ref = orderRef(position);
+                if (ref != 0) {
+                    nodes.insert(ref - 1, index.key(readSlot(ref - 1)), orderSequence(position));
+                }
+            }
+            nodes.markComplete();
+        }
+        fieldIndexes.add(index);
+        return index;
+    }
+
+    /** A field kept in an off-heap sorted index; see {@link #index}. */
+    protected static final class FieldIndex<T> {
+
+        private final Function<T, String> field;
+        private final MappedSortedIndex nodes;
+
+        private FieldIndex(Function<T, String> field, MappedSortedIndex nodes) {
+            this.field = field;
+            this.nodes = nodes;
+        }
+
+        private String key(T item) {
+            return normalize(field.apply(item));
+        }
+    }
+
+    /** Stores {@code item} at version 0, which is set on {@code item} itself, and returns it. */
+    @Override
+    public T create(T item) {
+        createAll(List.of(item));
+        return item;
+    }
+
+    /** Stores the whole batch under one acquisition of the write lock. */
+    @Override
+    public List<T> createAll(List<T> items) {
+        store(items, false);
+        return items;
+    }
+
+    @Override
+    public T restore(T item) {
+        store(List.of(item), true);
+        return item;
+    }
+
+    /** Stores {@code items}; only when {@code replace} is set may they take the place of stored ones. */
+    private void store(List<T> items, boolean replace) {
+        List<byte[]> records = new ArrayList<>(items.size());
+        for (T item : items) {
+            String id = idExtractor.apply(item);
+            if (id == null || id.isEmpty()) {
+                idAssigner.accept(item, idGenerator.nextId());
+            }
+            if (!replace) {
+                item.setVersion(0);
+            }
+            records.add(encode(item));
+        }
+        fireBeforeWrite();
+        lock.writeLock().lock();
+        try {
+            if (!replace) {
+                rejectExisting(items);
+            }
+            for (int i = 0; i < items.size(); i++) {
+                put(items.get(i), records.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireAfterWrite();
+    }
+
+    /** Fails if any of the items' ids is stored or repeated; the caller holds the write lock. */
+    private void rejectExisting(List<T> items) {
+        Set<String> seen = items.size() > 1 ? new HashSet<>() : null;
+        for (T item : items) {
+            String id = idExtractor.apply(item);
+            if (findEntry(id) >= 0 || (seen != null && !seen.add(id))) {
+                throw new DuplicateIdException(id);
+            }
+        }
+    }
+
+    private void put(T item, byte[] record) {
+        String id = idExtractor.apply(item);
+        long entry = findEntry(id);
+        T previous = null;
+        if (entry >= 0) {
+            long slot = indexRef(entry) - 1;
+            previous = readSlot(slot);
+            writeSlot(slot, record);
+            reindex(slot, previous, item);
+        } else {
+            long slot = allocateSlot();
+            long sequence = header.getLong(HEADER_NEXT_SEQUENCE);
+            appendOrder(sequence, slot);
+            header.putLong(HEADER_NEXT_SEQUENCE, sequence + 1);
+            dataSegment(slot).putLong(slotOffset(slot) + 5, sequence);
+            writeSlot(slot, record);
+            insertEntry(id, slot);
+            header.putLong(HEADER_LIVE, header.getLong(HEADER_LIVE) + 1);
+            for (FieldIndex<T> index : fieldIndexes) {
+                index.nodes.insert(slot, index.key(item), sequence);
+            }
+        }
+        bumpVersion();
+        for (RepositoryListener<T> listener : listeners) {
+            listener.onPut(id, previous, item);
+        }
+    }
+
+    /**
+     * Live items in insertion order. This holds the whole store on the heap at
+     * once, so listings and bulk readers should page with {@link #findAfter}.
+     */
+    @Override
+    public List<T> findAll() {
+        return scan(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<T> findPage(int page, int size) {
+        if (page < 0 || size <= 0) {
+            return Collections.emptyList();
+        }
+        return scan((long) page * size, size);
+    }
+
+    /**
+     * The cursor is the sequence number of the first item not yet returned; when that
+     * item is deleted, paging resumes at the next one created after it.
+     */
+    @Override
+    public Page<T> findAfter(String cursor, int size) {
+        if (size <= 0) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+        long fromSequence = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                fromSequence = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+            if (fromSequence < 0) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+        }
+        List<T> items = new ArrayList<>(Math.min(size, 64));
+        lock.readLock().lock();
+        try {
+            long orderSize = header.getLong(HEADER_ORDER_SIZE);
+            for (long position = orderPosition(fromSequence); position < orderSize; position++) {
+                long ref = orderRef(position);
+                if (ref == 0) {
+                    continue;
+                }
+                if (items.size() == size) {
+                    return new Page<>(items, Long.toString(orderSequence(position)));
+                }
+                items.add(readSlot(ref - 1));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new Page<>(items, null);
+    }
+
+    /** Live items whose indexed field equals {@code value}, ignoring case and surrounding spaces, in insertion order. */
+    protected List<T> findEqual(FieldIndex<T> index, String value) {
+        return inInsertionOrder(index, value, false);
+    }
+
+    /** Live items whose indexed field starts with {@code prefix}, ignoring case and surrounding spaces, in insertion order. */
+    protected List<T> findStartingWith(FieldIndex<T> index, String prefix) {
+        return inInsertionOrder(index, prefix, true);
+    }
+
+    /**
+     * Keyset page of the live items whose indexed field equals {@code value}, in
+     * insertion order. Only the index nodes on the page are visited. Cursors have
+     * the format of {@link SortedSecondaryIndex#cursor}, with the sequence number
+     * of the item in place of its id.
+     */
+    protected Page<T> findEqual(FieldIndex<T> index, String value, String cursor, int size) {
+        return pageOf(index, value, false, cursor, size);
+    }
+
+    /**
+     * Keyset page of the live items whose indexed field starts with {@code prefix},
+     * ordered by that field and then by insertion. Cursors are as for
+     * {@link #findEqual(FieldIndex, String, String, int)}.
+     */
+    protected Page<T> findStartingWith(FieldIndex<T> index, String prefix, String cursor, int size) {
+        return pageOf(index, prefix, true, cursor, size);
+    }
+
+    private List<T> inInsertionOrder(FieldIndex<T> index, String value, boolean prefix) {
+        Map<Long, T> matches = new TreeMap<>();
+        walk(index, value, prefix, null, (key, sequence, item) -> {
+            matches.put(sequence, item);
+            return true;
+        });
+        return new ArrayList<>(matches.values());
+    }
+
+    private Page<T> pageOf(FieldIndex<T> index, String value, boolean prefix, String cursor, int size) {
+        if (size <= 0) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+        List<T> items = new ArrayList<>(Math.min(size, 64));
+        String[] next = new String[1];
+        String[] lastKey = new String[1];
+        long[] lastSequence = new long[1];
+        walk(index, value, prefix, cursor, (key, sequence, item) -> {
+            if (items.size() == size) {
+                next[0] = SortedSecondaryIndex.cursor(lastKey[0], Long.toString(lastSequence[0]));
+                return false;
+            }
+            items.add(item);
+            lastKey[0] = key;
+            lastSequence[0] = sequence;
+            return true;
+        });
+        return new Page<>(items, next[0]);
+    }
+
+    /**
+     * Hands the matches after {@code cursor} to {@code match} in index order until it
+     * returns false. Index nodes keep a truncated value, so every candidate is
+     * checked again on the decoded item; that also skips an item an update has
+     * just moved away from the value.
+     */
+    private void walk(FieldIndex<T> index, String value, boolean prefix, String cursor, Match<T> match) {
+        String query = normalize(value);
+        String key = MappedSortedIndex.truncate(query);
+        String fromKey = key;
+        long fromSequence = -1;
+        if (cursor != null && !cursor.isEmpty()) {
+            fromKey = SortedSecondaryIndex.cursorKey(cursor);
+            try {
+                fromSequence = Long.parseLong(SortedSecondaryIndex.cursorId(cursor));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+            if (prefix ? !fromKey.startsWith(key) : !fromKey.equals(key)) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+        }
+        lock.readLock().lock();
+        indexLock.readLock().lock();
+        try {
+            for (long slot = index.nodes.after(fromKey, fromSequence); slot >= 0; slot = index.nodes.next(slot)) {
+                String nodeKey = index.nodes.key(slot);
+                if (prefix ? !nodeKey.startsWith(key) : !nodeKey.equals(key)) {
+                    return;
+                }
+                T item = readSlot(slot);
+                String itemKey = index.key(item);
+                if ((prefix ? itemKey.startsWith(query) : itemKey.equals(query))
+                        && !match.accept(nodeKey, index.nodes.sequence(slot), item)) {
+                    return;
+                }
+            }
+        } finally {
+            indexLock.readLock().unlock();
+            lock.readLock().unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Match<T> {
+        boolean accept(String key, long sequence, T item);
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public long count() {
+        return header.getLong(HEADER_LIVE);
+    }
+
+    /**
+     * Number of writes applied to the store. It is kept in the header, so it goes on
+     * growing across restarts instead of repeating values handed out before.
+     */
+    @Override
+    public long version() {
+        return (long) HEADER_LONG.getVolatile(header, HEADER_VERSION);
+    }
+
+    @Override
+    public T findById(String id) {
+        if (id == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            long entry = findEntry(id);
+            return entry < 0 ? null : readSlot(indexRef(entry) - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public T update(T item) {
+        String id = idExtractor.apply(item);
+        if (id == null) {
+            return null;
+        }
+        long expected = item.getVersion();
+        T stored = copier.apply(item);
+        stored.setVersion(expected + 1);
+        byte[] record = encode(stored);
+        fireBeforeWrite();
+        lock.readLock().lock();
+        try {
+            long entry = findEntry(id);
+            if (entry < 0) {
+                return null;
+            }
+            long slot = indexRef(entry) - 1;
+            ReentrantLock writer = writers[stripe(slot)];
+            writer.lock();
+            try {
+                T previous = readSlot(slot);
+                if (previous.getVersion() != expected) {
+                    throw new StaleUpdateException(id, expected, previous.getVersion());
+                }
+                rewrite(slot, previous, stored, record);
+                for (RepositoryListener<T> listener : listeners) {
+                    listener.onPut(id, previous, stored);
+                }
+            } finally {
+                writer.unlock();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        fireAfterWrite();
+        return stored;
+    }
+
+    @Override
+    public Modification<T> modify(String id, UnaryOperator<T> change) {
+        if (id == null) {
+            return null;
+        }
+        T next;
+        fireBeforeWrite();
+        lock.readLock().lock();
+        try {
+            long entry = findEntry(id);
+            if (entry < 0) {
+                return null;
+            }
+            long slot = indexRef(entry) - 1;
+            ReentrantLock writer = writers[stripe(slot)];
+            writer.lock();
+            try {
+                T previous = readSlot(slot);
+                next = change.apply(previous);
+                if (next == previous) {
+                    return new Modification<>(previous, false);
+                }
+                next.setVersion(previous.getVersion() + 1);
+                rewrite(slot, previous, next, encode(next));
+                for (RepositoryListener<T> listener : listeners) {
+                    listener.onPut(id, previous, next);
+                }
+            } finally {
+                writer.unlock();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        fireAfterWrite();
+        return new Modification<>(next, true);
+    }
+
+    @Override
+    public void delete(String id) {
+        if (id == null) {
+            return;
+        }
+        fireBeforeWrite();
+        lock.writeLock().lock();
+        try {
+            long entry = findEntry(id);
+            if (entry < 0) {
+                return;
+            }
+            long slot = indexRef(entry) - 1;
+            T previous = readSlot(slot);
+            for (FieldIndex<T> index : fieldIndexes) {
+                index.nodes.remove(slot);
+            }
+            setOrderRef(orderPosition(dataSegment(slot).getLong(slotOffset(slot) + 5)), 0);
+            freeSlot(slot);
+            setIndexRef(entry, INDEX_TOMBSTONE);
+            tombstones++;
+            header.putLong(HEADER_LIVE, header.getLong(HEADER_LIVE) - 1);
+            if (tombstones > (indexMask + 1) / 4) {
+                rebuildIndex();
+            }
+            bumpVersion();
+            for (RepositoryListener<T> listener : listeners) {
+                listener.onRemove(id, previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        fireAfterWrite();
+    }
+
+    private void fireBeforeWrite() {
+        for (RepositoryListener<T> listener : listeners) {
+            listener.beforeWrite();
+        }
+    }
+
+    private void fireAfterWrite() {
+        for (RepositoryListener<T> listener : listeners) {
+            listener.afterWrite();
+        }
+    }
+
+    /** Forces every mapped page to disk and closes the files. */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (MappedByteBuffer segment : dataSegments) {
+                segment.force();
+            }
+            for (MappedByteBuffer segment : indexSegments) {
+                segment.force();
+            }
+            for (MappedByteBuffer segment : orderSegments) {
+                segment.force();
+            }
+            header.force();
+            dataChannel.close();
+            indexChannel.close();
+            orderChannel.close();
+            for (FieldIndex<T> index : fieldIndexes) {
+                index.nodes.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Live items in insertion order, skipping the first {@code skip}. */
+    private List<T> scan(long skip, int size) {
+        List<T> items = new ArrayList<>(Math.min(size, 64));
+        lock.readLock().lock();
+        try {
+            long orderSize = header.getLong(HEADER_ORDER_SIZE);
+            long skipped = 0;
+            for (long position = 0; position < orderSize && items.size() < size; position++) {
+                long ref = orderRef(position);
+                if (ref == 0) {
+                    continue;
+                }
+                if (skipped < skip) {
+                    skipped++;
+                    continue;
+                }
+                items.add(readSlot(ref - 1));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return items;
+    }
+
+    private void bumpVersion() {
+        HEADER_LONG.getAndAdd(header, HEADER_VERSION, 1L);
+    }
+
+    private static int stripe(long slot) {
+        return (int) slot & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Stores {@code record}, the encoding of {@code next}, over the slot of
+     * {@code previous}, and moves the item within the field indexes whose value
+     * changed. The caller holds the slot's writer lock and the read lock.
+     */
+    private void rewrite(long slot, T previous, T next, byte[] record) {
+        StampedLock guard = slotGuards[stripe(slot)];
+        long stamp = guard.writeLock();
+        try {
+            writeSlot(slot, record);
+        } finally {
+            guard.unlockWrite(stamp);
+        }
+        if (movesInIndexes(previous, next)) {
+            indexLock.writeLock().lock();
+            try {
+                reindex(slot, previous, next);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+        }
+        bumpVersion();
+    }
+
+    private boolean movesInIndexes(T previous, T next) {
+        for (FieldIndex<T> index : fieldIndexes) {
+            if (!index.key(next).equals(index.key(previous))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Moves {@code slot} within the field indexes whose value differs between the two items. */
+    private void reindex(long slot, T previous, T next) {
+        for (FieldIndex<T> index : fieldIndexes) {
+            String key = index.key(next);
+            if (!key.equals(index.key(previous))) {
+                long sequence = index.nodes.sequence(slot);
+                index.nodes.remove(slot);
+                index.nodes.insert(slot, key, sequence);
+            }
+        }
+    }
+
+    private byte[] encode(T item) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(slotSize);
+            codec.write(new DataOutputStream(bytes), item);
+            if (bytes.size() > slotSize - SLOT_HEADER) {
+                throw new IllegalArgumentException("Record of " + bytes.size() + " bytes does not fit in a "
+                        + slotSize + "-byte slot");
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private MappedByteBuffer dataSegment(long slot) {
+        return dataSegments[(int) (slot / slotsPerSegment)];
+    }
+
+    private int slotOffset(long slot) {
+        return (int) (slot % slotsPerSegment) * slotSize;
+    }
+
+    /**
+     * Copies the record in {@code slot}, first without locking and again under the
+     * stripe's read lock if an update rewrote a slot of the stripe meanwhile.
+     */
+    private byte[] slotBytes(long slot) {
+        StampedLock guard = slotGuards[stripe(slot)];
+        long stamp = guard.tryOptimisticRead();
+        if (stamp != 0) {
+            byte[] record = copySlot(slot);
+            if (guard.validate(stamp)) {
+                return record;
+            }
+        }
+        stamp = guard.readLock();
+        try {
+            return copySlot(slot);
+        } finally {
+            guard.unlockRead(stamp);
+        }
+    }
+
+    private byte[] copySlot(long slot) {
+        MappedByteBuffer segment = dataSegment(slot);
+        int offset = slotOffset(slot);
+        int length = segment.getInt(offset + 1);
+        // A copy racing with a rewrite can read a torn length; it is thrown away, but must not overrun
+        byte[] record = new byte[length < 0 || length > slotSize - SLOT_HEADER ? 0 : length];
+        segment.get(offset + SLOT_HEADER, record);
+        return record;
+    }
+
+    private T readSlot(long slot) {
+        return decode(slotBytes(slot));
+    }
+
+    private T decode(byte[] record) {
+        try {
+            return codec.read(new DataInputStream(new ByteArrayInputStream(record)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String readSlotId(long slot) {
+        try {
+            return codec.readId(new DataInputStream(new ByteArrayInputStream(slotBytes(slot))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeSlot(long slot, byte[] record) {
+        MappedByteBuffer segment = dataSegment(slot);
+        int offset = slotOffset(slot);
+        segment.put(offset + SLOT_HEADER, record);
+        segment.putInt(offset + 1, record.length);
+        segment.put(offset, SLOT_LIVE);
+    }
+
+    private long allocateSlot() {
+        long freeHead = header.getLong(HEADER_FREE_HEAD);
+        if (freeHead != 0) {
+            long slot = freeHead - 1;
+            header.putLong(HEADER_FREE_HEAD, dataSegment(slot).getLong(slotOffset(slot) + 1));
+            return slot;
+        }
+        long highWater = header.getLong(HEADER_HIGH_WATER);
+        if (highWater >= capacity) {
+            throw new IllegalStateException("Mapped store is full (capacity " + capacity + ")");
+        }
+        header.putLong(HEADER_HIGH_WATER, highWater + 1);
+        return highWater;
+    }
+
+    private void freeSlot(long slot) {
+        MappedByteBuffer segment = dataSegment(slot);
+        int offset = slotOffset(slot);
+        segment.put(offset, SLOT_FREE);
+        segment.putLong(offset + 1, header.getLong(HEADER_FREE_HEAD));
+        header.putLong(HEADER_FREE_HEAD, slot + 1);
+    }
+
+    private MappedByteBuffer orderSegment(long position) {
+        return orderSegments[(int) (position / entriesPerSegment)];
+    }
+
+    private int orderOffset(long position) {
+        return (int) (position % entriesPerSegment) * ORDER_ENTRY;
+    }
+
+    private long orderSequence(long position) {
+        return orderSegment(position).getLong(orderOffset(position));
+    }
+
+    /** Slot of the item at {@code position} plus one, or 0 once it has been deleted. */
+    private long orderRef(long position) {
+        return orderSegment(position).getLong(orderOffset(position) + 8);
+    }
+
+    private void setOrderRef(long position, long ref) {
+        orderSegment(position).putLong(orderOffset(position) + 8, ref);
+    }
+
+    /** Appends a (sequence, slot) pair, compacting the list first when it is full. */
+    private void appendOrder(long sequence, long slot) {
+        long size = header.getLong(HEADER_ORDER_SIZE);
+        if (size == orderCapacity) {
+            size = compactOrder(size);
+        }
+        MappedByteBuffer segment = orderSegment(size);
+        int offset = orderOffset(size);
+        segment.putLong(offset, sequence);
+        segment.putLong(offset + 8, slot + 1);
+        header.putLong(HEADER_ORDER_SIZE, size + 1);
+    }
+
+    /** Drops the pairs of deleted items, keeping the rest in sequence order; returns the new size. */
+    private long compactOrder(long size) {
+        long kept = 0;
+        for (long position = 0; position < size; position++) {
+            long ref = orderRef(position);
+            if (ref == 0) {
+                continue;
+            }
+            if (kept != position) {
+                MappedByteBuffer segment = orderSegment(kept);
+                int offset = orderOffset(kept);
+                segment.putLong(offset, orderSequence(position));
+                segment.putLong(offset + 8, ref);
+            }
+            kept++;
+        }
+        header.putLong(HEADER_ORDER_SIZE, kept);
+        return kept;
+    }
+
+    /** First position whose sequence is at least {@code sequence}. */
+    private long orderPosition(long sequence) {
+        long low = 0;
+        long high = header.getLong(HEADER_ORDER_SIZE);
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (orderSequence(middle) < sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long hash(String id) {
+        // 64-bit FNV-1a; 0 is reserved so an empty entry never matches
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    private MappedByteBuffer indexSegment(long entry) {
+        return indexSegments[(int) (entry / entriesPerSegment)];
+    }
+
+    private int indexOffset(long entry) {
+        return (int) (entry % entriesPerSegment) * INDEX_ENTRY;
+    }
+
+    private long indexHash(long entry) {
+        return indexSegment(entry).getLong(indexOffset(entry));
+    }
+
+    private long indexRef(long entry) {
+        return indexSegment(entry).getLong(indexOffset(entry) + 8);
+    }
+
+    private void setIndexRef(long entry, long ref) {
+        indexSegment(entry).putLong(indexOffset(entry) + 8, ref);
+    }
+
+    /** Index entry holding {@code id}, or -1. */
+    private long findEntry(String id) {
+        long h = hash(id);
+        long entry = h & indexMask;
+        for (long probes = 0; probes <= indexMask; probes++) {
+            long ref = indexRef(entry);
+            if (ref == INDEX_EMPTY) {
+                return -1;
+            }
+            if (ref != INDEX_TOMBSTONE && indexHash(entry) == h && id.equals(readSlotId(ref - 1))) {
+                return entry;
+            }
+            entry = (entry + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    private void insertEntry(String id, long slot) {
+        long h = hash(id);
+        long entry = h & indexMask;
+        while (true) {
+            long ref = indexRef(entry);
+            if (ref == INDEX_EMPTY || ref == INDEX_TOMBSTONE) {
+                if (ref == INDEX_TOMBSTONE) {
+                    tombstones--;
+                }
+                MappedByteBuffer segment = indexSegment(entry);
+                int offset = indexOffset(entry);
+                segment.putLong(offset, h);
+                segment.putLong(offset + 8, slot + 1);
+                return;
+            }
+            entry = (entry + 1) & indexMask;
+        }
+    }
+
+    private long countTombstones() {
+        long count = 0;
+        for (long entry = 0; entry <= indexMask; entry++) {
+            if (indexRef(entry) == INDEX_TOMBSTONE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Clears the index and re-inserts every live slot, dropping accumulated tombstones. */
+    private void rebuildIndex() {
+        for (long entry = 0; entry <= indexMask; entry++) {
+            MappedByteBuffer segment = indexSegment(entry);
+            int offset = indexOffset(entry);
+            segment.putLong(offset, 0);
+            segment.putLong(offset + 8, INDEX_EMPTY);
+        }
+        tombstones = 0;
+        long highWater = header.getLong(HEADER_HIGH_WATER);
+        for (long slot = 0; slot < highWater; slot++) {
+            if (dataSegment(slot).get(slotOffset(slot)) == SLOT_LIVE) {
+                insertEntry(readSlotId(slot), slot);
+            }
+        }
+    }
+}
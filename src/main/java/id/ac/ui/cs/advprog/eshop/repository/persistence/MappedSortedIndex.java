@@ -0,0 +1,236 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Off-heap sorted index over one field of a {@link MappedRepository}: a skip list
+ * kept in its own memory-mapped file, with one fixed-size node per data slot, so
+ * it needs no heap however many items it holds. Nodes are ordered by the
+ * normalized field value and then by the item's sequence number, so items with
+ * the same value stay in insertion order.
+ * <p>
+ * A node keeps only the first {@value #KEY_CHARS} characters of the value, so
+ * longer values are ordered by that prefix alone and callers confirm a match on
+ * the decoded item. Node 0 is the head of the list; the node of slot {@code s} is
+ * node {@code s + 1}, and a next pointer of 0 ends a level.
+ * <p>
+ * Not thread-safe: {@link MappedRepository} guards every call.
+ */
+final class MappedSortedIndex implements Closeable {
+
+    /** Characters of the value kept in a node. */
+    static final int KEY_CHARS = 24;
+
+    private static final int MAGIC = 0x45534931; // "ESI1"
+    private static final int MAX_LEVEL = 12;
+    private static final int MAX_SEGMENT = 1 << 30;
+
+    private static final int NODE_LEVEL = 0;
+    /** The head keeps the magic here once the index is complete. */
+    private static final int NODE_KEY_LENGTH = 4;
+    private static final int NODE_SEQUENCE = 8;
+    private static final int NODE_NEXT = 16;
+    private static final int NODE_KEY = NODE_NEXT + MAX_LEVEL * Long.BYTES;
+    private static final int NODE_SIZE = NODE_KEY + KEY_CHARS * Character.BYTES;
+
+    private static final long HEAD = 0;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int nodesPerSegment;
+
+    /** Opens the index in {@code file}, creating it when missing, with room for {@code capacity} slots. */
+    MappedSortedIndex(Path file, long capacity) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        nodesPerSegment = MAX_SEGMENT / NODE_SIZE;
+        long nodes = capacity + 1;
+        segments = new MappedByteBuffer[(int) ((nodes + nodesPerSegment - 1) / nodesPerSegment)];
+        for (int i = 0; i < segments.length; i++) {
+            long first = (long) i * nodesPerSegment;
+            long count = Math.min(nodesPerSegment, nodes - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, first * NODE_SIZE, count * NODE_SIZE);
+        }
+    }
+
+    /** The value as a node keeps it. */
+    static String truncate(String key) {
+        return key.length() <= KEY_CHARS ? key : key.substring(0, KEY_CHARS);
+    }
+
+    /** Whether the file holds a complete index, rather than a new file or one cut short while it was built. */
+    boolean isComplete() {
+        return segment(HEAD).getInt(offset(HEAD) + NODE_KEY_LENGTH) == MAGIC;
+    }
+
+    /** Empties the index, which stays incomplete until {@link #markComplete()}. */
+    void clear() {
+        MappedByteBuffer segment = segment(HEAD);
+        int offset = offset(HEAD);
+        segment.putInt(offset + NODE_KEY_LENGTH, 0);
+        segment.put(offset + NODE_LEVEL, (byte) 1);
+        for (int level = 0; level < MAX_LEVEL; level++) {
+            segment.putLong(offset + NODE_NEXT + level * Long.BYTES, 0);
+        }
+    }
+
+    void markComplete() {
+        segment(HEAD).putInt(offset(HEAD) + NODE_KEY_LENGTH, MAGIC);
+    }
+
+    /** Adds {@code slot}, whose item has the normalized value {@code key} and sequence {@code sequence}. */
+    void insert(long slot, String key, long sequence) {
+        String stored = truncate(key);
+        long[] before = predecessors(stored, sequence);
+        int listLevel = level(HEAD);
+        int level = randomLevel();
+        for (int i = listLevel; i < level; i++) {
+            before[i] = HEAD;
+        }
+        if (level > listLevel) {
+            segment(HEAD).put(offset(HEAD) + NODE_LEVEL, (byte) level);
+        }
+        long node = slot + 1;
+        MappedByteBuffer segment = segment(node);
+        int offset = offset(node);
+        segment.put(offset + NODE_LEVEL, (byte) level);
+        segment.putInt(offset + NODE_KEY_LENGTH, stored.length());
+        segment.putLong(offset + NODE_SEQUENCE, sequence);
+        for (int i = 0; i < stored.length(); i++) {
+            segment.putChar(offset + NODE_KEY + i * Character.BYTES, stored.charAt(i));
+        }
+        for (int i = 0; i < level; i++) {
+            setNext(node, i, next(before[i], i));
+            setNext(before[i], i, node);
+        }
+    }
+
+    /** Removes {@code slot}, which must be in the index. */
+    void remove(long slot) {
+        long node = slot + 1;
+        long[] before = predecessors(key(slot), sequence(slot));
+        int level = level(node);
+        for (int i = 0; i < level; i++) {
+            if (next(before[i], i) == node) {
+                setNext(before[i], i, next(node, i));
+            }
+        }
+        segment(node).put(offset(node) + NODE_LEVEL, (byte) 0);
+        int listLevel = level(HEAD);
+        while (listLevel > 1 && next(HEAD, listLevel - 1) == 0) {
+            listLevel--;
+        }
+        segment(HEAD).put(offset(HEAD) + NODE_LEVEL, (byte) listLevel);
+    }
+
+    /** First slot ordered after ({@code key}, {@code sequence}), or -1. Pass sequence -1 to start at {@code key}. */
+    long after(String key, long sequence) {
+        long node = HEAD;
+        for (int level = level(HEAD) - 1; level >= 0; level--) {
+            long next;
+            while ((next = next(node, level)) != 0 && compare(next, key, sequence) <= 0) {
+                node = next;
+            }
+        }
+        return next(node, 0) - 1;
+    }
+
+    /** The slot after {@code slot} in index order, or -1. */
+    long next(long slot) {
+        return next(slot + 1, 0) - 1;
+    }
+
+    /** The value of {@code slot} as the index keeps it, truncated to {@value #KEY_CHARS} characters. */
+    String key(long slot) {
+        long node = slot + 1;
+        MappedByteBuffer segment = segment(node);
+        int offset = offset(node);
+        char[] chars = new char[segment.getInt(offset + NODE_KEY_LENGTH)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = segment.getChar(offset + NODE_KEY + i * Character.BYTES);
+        }
+        return new String(chars);
+    }
+
+    long sequence(long slot) {
+        long node = slot + 1;
+        return segment(node).getLong(offset(node) + NODE_SEQUENCE);
+    }
+
+    /** Forces the index to disk and closes its file. */
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        channel.close();
+    }
+
+    /** The last node on each level ordered before ({@code key}, {@code sequence}). */
+    private long[] predecessors(String key, long sequence) {
+        long[] before = new long[MAX_LEVEL];
+        long node = HEAD;
+        for (int level = level(HEAD) - 1; level >= 0; level--) {
+            long next;
+            while ((next = next(node, level)) != 0 && compare(next, key, sequence) < 0) {
+                node = next;
+            }
+            before[level] = node;
+        }
+        return before;
+    }
+
+    /** Compares a node with ({@code key}, {@code sequence}) in the order of {@link String#compareTo}, then by sequence. */
+    private int compare(long node, String key, long sequence) {
+        MappedByteBuffer segment = segment(node);
+        int offset = offset(node);
+        int length = segment.getInt(offset + NODE_KEY_LENGTH);
+        int common = Math.min(length, key.length());
+        for (int i = 0; i < common; i++) {
+            char c = segment.getChar(offset + NODE_KEY + i * Character.BYTES);
+            if (c != key.charAt(i)) {
+                return c - key.charAt(i);
+            }
+        }
+        if (length != key.length()) {
+            return length - key.length();
+        }
+        return Long.compare(segment.getLong(offset + NODE_SEQUENCE), sequence);
+    }
+
+    private static int randomLevel() {
+        // Each level holds about a quarter of the nodes of the one below
+        int level = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (level < MAX_LEVEL && (random.nextInt() & 3) == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    private int level(long node) {
+        return segment(node).get(offset(node) + NODE_LEVEL);
+    }
+
+    private long next(long node, int level) {
+        return segment(node).getLong(offset(node) + NODE_NEXT + level * Long.BYTES);
+    }
+
+    private void setNext(long node, int level, long next) {
+        segment(node).putLong(offset(node) + NODE_NEXT + level * Long.BYTES, next);
+    }
+
+    private MappedByteBuffer segment(long node) {
+        return segments[(int) (node / nodesPerSegment)];
+    }
+
+    private int offset(long node) {
+        return (int) (node % nodesPerSegment) * NODE_SIZE;
+    }
+}
@@ -0,0 +1,41 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Replaces the in-memory product and car repositories with memory-mapped
+ * stores when the {@code mapped} profile is active.
+ */
+@Configuration
+@Profile("mapped")
+public class MappedStoreConfig {
+
+    @Value("${eshop.mapped.directory:data/mapped}")
+    private Path directory;
+
+    /** Per store; the data file alone reserves capacity × slot size bytes. */
+    @Value("${eshop.mapped.capacity:1000000}")
+    private long capacity;
+
+    @Value("${eshop.mapped.slot-size:256}")
+    private int slotSize;
+
+    @Bean(destroyMethod = "close")
+    @Primary
+    public MappedProductRepository mappedProductRepository() throws IOException {
+        return new MappedProductRepository(directory, capacity, slotSize);
+    }
+
+    @Bean(destroyMethod = "close")
+    @Primary
+    public MappedCarRepository mappedCarRepository() throws IOException {
+        return new MappedCarRepository(directory, capacity, slotSize);
+    }
+}
@@ -0,0 +1,45 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Makes the product and car repositories durable when the {@code persistent}
+ * profile is active. State is recovered from {@code eshop.persistence.directory}
+ * before the application starts serving requests.
+ */
+@Configuration
+@Profile("persistent")
+public class PersistenceConfig {
+
+    @Value("${eshop.persistence.directory:data}")
+    private Path directory;
+
+    @Value("${eshop.persistence.snapshot-every:10000}")
+    private long snapshotEvery;
+
+    @Bean(destroyMethod = "close")
+    public WriteAheadLog<Product> productLog(ProductRepository productRepository) throws IOException {
+        WriteAheadLog<Product> productLog = new WriteAheadLog<>(directory.resolve("products"),
+                new ProductCodec(), Product::getProductId, snapshotEvery);
+        productLog.open(productRepository);
+        return productLog;
+    }
+
+    @Bean(destroyMethod = "close")
+    public WriteAheadLog<Car> carLog(CarRepository carRepository) throws IOException {
+        WriteAheadLog<Car> carLog = new WriteAheadLog<>(directory.resolve("cars"),
+                new CarCodec(), Car::getCarId, snapshotEvery);
+        carLog.open(carRepository);
+        return carLog;
+    }
+}
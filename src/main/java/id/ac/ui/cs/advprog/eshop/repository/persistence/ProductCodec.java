@@ -0,0 +1,30 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class ProductCodec implements RecordCodec<Product> {
+
+    @Override
+    public void write(DataOutput out, Product product) throws IOException {
+        RecordCodec.writeString(out, product.getProductId());
+        RecordCodec.writeString(out, product.getProductName());
+        out.writeInt(product.getProductQuantity());
+        out.writeLong(product.getVersion());
+    }
+
+    @Override
+    public Product read(DataInput in, int format) throws IOException {
+        Product product = new Product();
+        product.setProductId(RecordCodec.readString(in));
+        product.setProductName(RecordCodec.readString(in));
+        product.setProductQuantity(in.readInt());
+        if (format >= 2) {
+            product.setVersion(in.readLong());
+        }
+        return product;
+    }
+}
@@ -0,0 +1,46 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of one entity, used for log records, snapshots and mapped
+ * slots. Implementations write the id first with {@link #writeString} so that
+ * {@link #readId} can identify a record without decoding all of it.
+ * <p>
+ * Records are always written in the current {@link #FORMAT}. Stores that keep
+ * records across upgrades note which format they wrote and read older records
+ * with {@link #read(DataInput, int)}.
+ *
+ * @param <T> the encoded entity type
+ */
+public interface RecordCodec<T> {
+
+    /** Format 1 records predate versioned entities; format 2 appends the version. */
+    int FORMAT = 2;
+
+    void write(DataOutput out, T item) throws IOException;
+
+    default T read(DataInput in) throws IOException {
+        return read(in, FORMAT);
+    }
+
+    /** Reads a record written in {@code format}; fields it lacks keep their defaults. */
+    T read(DataInput in, int format) throws IOException;
+
+    default String readId(DataInput in) throws IOException {
+        return readString(in);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,569 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Versioned;
+import id.ac.ui.cs.advprog.eshop.repository.InMemoryRepository;
+import id.ac.ui.cs.advprog.eshop.repository.RepositoryListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Durable write-ahead log for an {@link InMemoryRepository}.
+ * <p>
+ * Every create, update and delete is appended as a checksummed record to
+ * {@code wal-<generation>.log}. Records are written by a single writer thread
+ * that drains everything queued while the previous fsync was running and
+ * syncs the whole batch at once (group commit); the writing request thread
+ * blocks in {@link #afterWrite()} until its own record is durable.
+ * <p>
+ * Every {@code snapshotEvery} records the log rolls over to a new generation
+ * and a compacted {@code snapshot-<generation>.dat} of the repository is
+ * written in the background, after which older files are deleted. Recovery
+ * loads the newest complete snapshot and replays the logs from its generation
+ * onward. Replaying a put or delete is idempotent, so records that are both in
+ * a snapshot and in a later log are harmless. The first record that cannot be
+ * read ends replay of its file, which is truncated there: an incomplete record
+ * is what a crash mid-write leaves behind, while a damaged one means data is
+ * lost, so the bytes cut off after it are kept in a {@code .corrupt} file and
+ * reported as an error. Creating, renaming and deleting files is followed by
+ * an fsync of the directory, so a crash cannot lose a file the log relies on.
+ * <p>
+ * If a record cannot be written, the writes of the failed batch have already
+ * been applied in memory but their callers get an exception, and from then on
+ * every write is refused in {@link #beforeWrite()}, before it changes anything.
+ * Memory is therefore never more than one batch ahead of the disk, and a restart
+ * recovers exactly what was acknowledged.
+ * <p>
+ * The record format is part of the operation byte and the snapshot magic, so
+ * files written before entities were versioned still recover, with version 0.
+ *
+ * @param <T> the logged entity type
+ */
+public class WriteAheadLog<T extends Versioned> implements RepositoryListener<T>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    /** A put in record format 1, from before entities were versioned. */
+    private static final byte PUT_V1 = 1;
+    private static final byte DELETE = 2;
+    private static final byte PUT = 3;
+    private static final int SNAPSHOT_MAGIC_V1 = 0x45534e31; // "ESN1"
+    private static final int SNAPSHOT_MAGIC = 0x45534e32; // "ESN2"
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+    private static final Pattern LOG_FILE = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.dat");
+
+    private final Path directory;
+    private final RecordCodec<T> codec;
+    private final Function<T, String> idExtractor;
+    private final long snapshotEvery;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingAvailable = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    /** Framed records waiting for the writer thread; guarded by {@link #lock}. */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int pendingRecords;
+    private long appendedSeq;
+    private long durableSeq;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    /** Sequence number of the last record appended by the current thread that it has not waited for yet. */
+    private final ThreadLocal<long[]> unsyncedSeq = ThreadLocal.withInitial(() -> new long[1]);
+
+    /** Owned by the writer thread after {@link #open}. */
+    private FileChannel channel;
+    private long generation;
+    private long recordsInGeneration;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Thread writer;
+    private InMemoryRepository<T> repository;
+
+    public WriteAheadLog(Path directory, RecordCodec<T> codec, Function<T, String> idExtractor, long snapshotEvery) {
+        this.directory = directory;
+        this.codec = codec;
+        this.idExtractor = idExtractor;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    /**
+     * Restores {@code repository} from disk, compacts what was recovered into a
+     * fresh snapshot and starts logging every later write to it.
+     */
+    public void open(InMemoryRepository<T> repository) throws IOException {
+        this.repository = repository;
+        Files.createDirectories(directory);
+        syncDirectory();
+
+        long base = loadNewestSnapshot();
+        long lastGeneration = base;
+        for (long logGeneration : generations(LOG_FILE)) {
+            if (logGeneration >= base) {
+                replay(logFile(logGeneration));
+                lastGeneration = Math.max(lastGeneration, logGeneration);
+            }
+        }
+
+        generation = lastGeneration + 1;
+        channel = openLog(generation);
+        writeSnapshot(generation);
+
+        repository.addListener(this);
+        writer = new Thread(this::writeLoop, "wal-writer-" + directory.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Refuses writes once the log has failed or closed, so memory does not run further ahead of the disk. */
+    @Override
+    public void beforeWrite() {
+        if (failure != null || closed) {
+            throw new IllegalStateException("Write-ahead log is unavailable", failure);
+        }
+    }
+
+    @Override
+    public void onPut(String id, T previous, T current) {
+        append(PUT, current, null);
+    }
+
+    @Override
+    public void onRemove(String id, T previous) {
+        append(DELETE, null, id);
+    }
+
+    @Override
+    public void afterWrite() {
+        long[] seq = unsyncedSeq.get();
+        if (seq[0] == 0) {
+            return;
+        }
+        long target = seq[0];
+        seq[0] = 0;
+        lock.lock();
+        try {
+            while (durableSeq < target) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Write-ahead log is unavailable", failure);
+                }
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(byte op, T item, String id) {
+        byte[] record;
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeByte(op);
+            if (op == PUT) {
+                codec.write(out, item);
+            } else {
+                out.writeUTF(id);
+            }
+            record = frame(body.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long seq;
+        lock.lock();
+        try {
+            if (failure != null || closed) {
+                throw new IllegalStateException("Write-ahead log is closed", failure);
+            }
+            pending.writeBytes(record);
+            pendingRecords++;
+            seq = ++appendedSeq;
+            pendingAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        unsyncedSeq.get()[0] = seq;
+    }
+
+    private static byte[] frame(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer framed = ByteBuffer.allocate(8 + body.length);
+        framed.putInt(body.length).putInt((int) crc.getValue()).put(body);
+        return framed.array();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            byte[] batch;
+            int records;
+            long batchSeq;
+            lock.lock();
+            try {
+                while (pendingRecords == 0 && !closed) {
+                    pendingAvailable.awaitUninterruptibly();
+                }
+                if (pendingRecords == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                records = pendingRecords;
+                batchSeq = appendedSeq;
+                pending = new ByteArrayOutputStream(Math.max(1024, batch.length));
+                pendingRecords = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                recordsInGeneration += records;
+            } catch (IOException e) {
+                log.error("Write-ahead log write failed in {}", directory, e);
+                lock.lock();
+                try {
+                    failure = e;
+                    durable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableSeq = batchSeq;
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            if (recordsInGeneration >= snapshotEvery && compacting.compareAndSet(false, true)) {
+                rollOver();
+            }
+        }
+    }
+
+    /** Starts a new log generation and snapshots the repository into it in the background. */
+    private void rollOver() {
+        try {
+            channel.close();
+            generation++;
+            channel = openLog(generation);
+            recordsInGeneration = 0;
+        } catch (IOException e) {
+            compacting.set(false);
+            log.error("Could not roll over write-ahead log in {}", directory, e);
+            return;
+        }
+        long snapshotGeneration = generation;
+        compactor.execute(() -> {
+            try {
+                writeSnapshot(snapshotGeneration);
+            } catch (IOException e) {
+                log.error("Could not write snapshot {} in {}", snapshotGeneration, directory, e);
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes every item currently in the repository to {@code snapshot-<snapshotGeneration>.dat}.
+     * Logs older than {@code snapshotGeneration} are deleted once the snapshot is durable,
+     * since everything they contain was applied before the snapshot was taken.
+     */
+    private void writeSnapshot(long snapshotGeneration) throws IOException {
+        List<T> items = repository.findAll();
+        Path temporary = directory.resolve("snapshot-" + snapshotGeneration + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(out)), new CRC32());
+            DataOutputStream data = new DataOutputStream(checked);
+            data.writeInt(SNAPSHOT_MAGIC);
+            data.writeInt(items.size());
+            for (T item : items) {
+                codec.write(data, item);
+            }
+            data.writeLong(checked.getChecksum().getValue());
+            data.flush();
+            out.force(true);
+        }
+        Files.move(temporary, snapshotFile(snapshotGeneration), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+
+        for (long older : generations(SNAPSHOT_FILE)) {
+            if (older < snapshotGeneration) {
+                Files.deleteIfExists(snapshotFile(older));
+            }
+        }
+        for (long older : generations(LOG_FILE)) {
+            if (older < snapshotGeneration) {
+                Files.deleteIfExists(logFile(older));
+            }
+        }
+        syncDirectory();
+    }
+
+    /** Loads the newest readable snapshot into the repository and returns its generation, or 0. */
+    private long loadNewestSnapshot() throws IOException {
+        List<Long> snapshots = generations(SNAPSHOT_FILE);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            long snapshotGeneration = snapshots.get(i);
+            List<T> items = readSnapshot(snapshotFile(snapshotGeneration));
+            if (items != null) {
+                for (T item : items) {
+                    repository.restore(item);
+                }
+                return snapshotGeneration;
+            }
+            log.warn("Ignoring unreadable snapshot {} in {}", snapshotGeneration, directory);
+        }
+        return 0;
+    }
+
+    /** Returns the items of a snapshot, or {@code null} when it is incomplete or corrupt. */
+    private List<T> readSnapshot(Path file) throws IOException {
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            int magic = in.readInt();
+            int format;
+            if (magic == SNAPSHOT_MAGIC) {
+                format = RecordCodec.FORMAT;
+            } else if (magic == SNAPSHOT_MAGIC_V1) {
+                format = 1;
+            } else {
+                return null;
+            }
+            int count = in.readInt();
+            List<T> items = new ArrayList<>(Math.min(count, 1 << 20));
+            for (int i = 0; i < count; i++) {
+                items.add(codec.read(in, format));
+            }
+            long actual = checked.getChecksum().getValue();
+            return in.readLong() == actual ? items : null;
+        } catch (EOFException | UTFDataFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies every intact record of {@code file} and truncates it after the last
+     * one. Whatever stops the replay, the cut is made here and nowhere else.
+     */
+    private void replay(Path file) throws IOException {
+        long validLength = 0;
+        String damage = null;
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream in = new DataInputStream(stream);
+            while (true) {
+                byte[] body;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                        damage = "record length " + length + " is out of range";
+                        break;
+                    }
+                    body = new byte[length];
+                    in.readFully(body);
+                    CRC32 crc = new CRC32();
+                    crc.update(body);
+                    if ((int) crc.getValue() != checksum) {
+                        damage = "checksum mismatch";
+                        break;
+                    }
+                } catch (EOFException e) {
+                    // End of file, or the incomplete last record of a crash mid-write
+                    break;
+                }
+                Entry<T> entry;
+                try {
+                    entry = decode(body);
+                } catch (IOException | RuntimeException e) {
+                    damage = "record cannot be decoded: " + e;
+                    break;
+                }
+                apply(entry);
+                validLength += 8 + body.length;
+            }
+        }
+        long size = Files.size(file);
+        if (validLength == size) {
+            return;
+        }
+        if (damage == null) {
+            log.warn("Truncating torn write-ahead log {} at byte {}, dropping an incomplete record of {} bytes",
+                    file, validLength, size - validLength);
+        } else {
+            Path kept = file.resolveSibling(file.getFileName() + ".corrupt-" + validLength);
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(kept, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long copied = 0;
+                while (copied < size - validLength) {
+                    copied += source.transferTo(validLength + copied, size - validLength - copied, target);
+                }
+                target.force(true);
+            }
+            log.error("Write-ahead log {} is corrupt at byte {} ({}); dropped the {} bytes after it, kept in {}",
+                    file, validLength, damage, size - validLength, kept);
+        }
+        try (FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            truncate.truncate(validLength);
+            truncate.force(true);
+        }
+        syncDirectory();
+    }
+
+    private Entry<T> decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte op = in.readByte();
+        Entry<T> entry;
+        if (op == PUT) {
+            entry = new Entry<>(op, codec.read(in), null);
+        } else if (op == PUT_V1) {
+            entry = new Entry<>(PUT, codec.read(in, 1), null);
+        } else if (op == DELETE) {
+            entry = new Entry<>(op, null, in.readUTF());
+        } else {
+            throw new IOException("unknown operation " + op);
+        }
+        if (in.available() > 0) {
+            throw new IOException(in.available() + " bytes left over");
+        }
+        return entry;
+    }
+
+    private void apply(Entry<T> entry) {
+        if (entry.op() == PUT) {
+            if (idExtractor.apply(entry.item()) != null) {
+                repository.restore(entry.item());
+            }
+        } else {
+            repository.delete(entry.id());
+        }
+    }
+
+    /**
+     * Makes file creations, renames and deletions in the log directory durable.
+     * Some platforms cannot open a directory for syncing; they persist metadata
+     * changes without it.
+     */
+    private void syncDirectory() throws IOException {
+        FileChannel dir;
+        try {
+            dir = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            log.debug("Cannot open {} to sync it", directory, e);
+            return;
+        }
+        try (dir) {
+            dir.force(true);
+        }
+    }
+
+    private FileChannel openLog(long logGeneration) throws IOException {
+        FileChannel opened = FileChannel.open(logFile(logGeneration), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        syncDirectory();
+        return opened;
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve("wal-" + logGeneration + ".log");
+    }
+
+    private Path snapshotFile(long snapshotGeneration) {
+        return directory.resolve("snapshot-" + snapshotGeneration + ".dat");
+    }
+
+    private List<Long> generations(Pattern pattern) throws IOException {
+        List<Long> found = new ArrayList<>();
+        try (var files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    found.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        found.sort(null);
+        return found;
+    }
+
+    /** Flushes every queued record and stops the writer thread. */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pendingAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private record Entry<T>(byte op, T item, String id) {
+    }
+}
@@ -0,0 +1,59 @@
+package id.ac.ui.cs.advprog.eshop.search;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Full-text search over product names and car names and colors. The indexes
+ * follow the repositories through their listeners, so a write is searchable
+ * as soon as it is stored; writes still waiting in a write-behind queue are
+ * not.
+ */
+@Component
+@ConditionalOnProperty(name = "eshop.search.enabled", havingValue = "true", matchIfMissing = true)
+public class CatalogSearch {
+
+    static final int SEED_PAGE_SIZE = 1000;
+
+    private final IProductRepository productRepository;
+    private final ICarRepository carRepository;
+    private final SearchIndex<Product> productIndex = new SearchIndex<>(List.of(Product::getProductName));
+    private final SearchIndex<Car> carIndex = new SearchIndex<>(List.of(Car::getCarName, Car::getCarColor));
+
+    public CatalogSearch(IProductRepository productRepository, ICarRepository carRepository) {
+        this.productRepository = productRepository;
+        this.carRepository = carRepository;
+        productRepository.addListener(productIndex);
+        productIndex.seed(productRepository, Product::getProductId, SEED_PAGE_SIZE);
+        carRepository.addListener(carIndex);
+        carIndex.seed(carRepository, Car::getCarId, SEED_PAGE_SIZE);
+    }
+
+    public List<SearchResult<Product>> searchProducts(String query, int limit) {
+        return resolve(productIndex.search(query, limit), productRepository);
+    }
+
+    public List<SearchResult<Car>> searchCars(String query, int limit) {
+        return resolve(carIndex.search(query, limit), carRepository);
+    }
+
+    private static <T> List<SearchResult<T>> resolve(List<SearchHit> hits, IRepository<T> repository) {
+        List<SearchResult<T>> results = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            T item = repository.findById(hit.id());
+            // Deleted since the index was read
+            if (item != null) {
+                results.add(new SearchResult<>(hit.id(), hit.score(), item));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,9 @@
+package id.ac.ui.cs.advprog.eshop.search;
+
+/**
+ * One match of a {@link SearchIndex} query.
+ *
+ * @param score BM25 relevance; only comparable between hits of the same query
+ */
+public record SearchHit(String id, double score) {
+}
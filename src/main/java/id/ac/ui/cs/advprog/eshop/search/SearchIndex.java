@@ -0,0 +1,296 @@
+package id.ac.ui.cs.advprog.eshop.search;
+
+import id.ac.ui.cs.advprog.eshop.repository.IRepository;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.RepositoryListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * In-memory inverted index over one or more text attributes, ranked with
+ * BM25. Kept in sync by registering it as a {@link RepositoryListener}; a
+ * write only touches the postings of the terms of the item it changes.
+ * <p>
+ * Every query term is expanded before scoring: to itself and to the indexed
+ * terms it is a prefix of, so results follow the user while they type. Only
+ * a term that is neither a word of the catalog nor the start of one is taken
+ * for a misspelling and expanded to the indexed terms within one or two typos
+ * of it. Typo candidates come from a trigram index over the term dictionary,
+ * using only the query's rarest trigrams, and are then compared letter by
+ * letter, so the cost grows with the vocabulary that looks alike rather than
+ * with the catalog. Expansions score less than the exact term, and per query
+ * term an item only counts its best matching expansion.
+ * <p>
+ * Scoring walks the postings of the expanded terms, so a query costs time
+ * proportional to the number of items containing them.
+ *
+ * @param <T> the indexed entity type
+ */
+public class SearchIndex<T> implements RepositoryListener<T> {
+
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    static final double PREFIX_WEIGHT = 0.8;
+    static final double TYPO_WEIGHT = 0.6;
+    /** Most terms one query term is expanded to, best first. */
+    static final int MAX_EXPANSIONS = 64;
+
+    /** Tombstone of an id deleted while seeding; it has no terms. */
+    private static final Document REMOVED = new Document(Map.of(), 0);
+
+    private final List<Function<T, String>> fields;
+
+    /** id -> what the item currently contributes, so stale terms are removed even if it was mutated in place. */
+    private final ConcurrentMap<String, Document> documents = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, Posting>> postings = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> sortedTerms = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<String, Set<String>> termsByTrigram = new ConcurrentHashMap<>();
+    private final LongAdder totalLength = new LongAdder();
+    private volatile boolean seeding;
+
+    /** @param fields the attributes whose text is searchable, all with the same weight */
+    public SearchIndex(List<Function<T, String>> fields) {
+        this.fields = List.copyOf(fields);
+    }
+
+    /**
+     * Adds the items stored before this index was registered as a listener, reading
+     * {@code repository} {@code pageSize} items at a time. Ids the index has already
+     * seen a write for are skipped, since that write is newer than the page they
+     * were read on. While seeding, a delete leaves a tombstone behind, so an item
+     * deleted after its page was read is not added back.
+     */
+    public void seed(IRepository<T> repository, Function<T, String> idExtractor, int pageSize) {
+        seeding = true;
+        try {
+            String cursor = null;
+            do {
+                Page<T> page = repository.findAfter(cursor, pageSize);
+                for (T item : page.items()) {
+                    String id = idExtractor.apply(item);
+                    if (id != null) {
+                        seed(id, documentOf(item));
+                    }
+                }
+                cursor = page.next();
+            } while (cursor != null);
+        } finally {
+            seeding = false;
+            documents.values().removeIf(document -> document == REMOVED);
+        }
+    }
+
+    private void seed(String id, Document document) {
+        documents.compute(id, (key, current) -> {
+            if (current != null) {
+                return current;
+            }
+            link(id, document);
+            return document;
+        });
+    }
+
+    /** Number of indexed items. */
+    public int size() {
+        return documents.size();
+    }
+
+    /** Ids of the best {@code limit} matches for {@code query}, best first. */
+    public List<SearchHit> search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(TextAnalyzer.terms(query));
+        int documentCount = documents.size();
+        if (queryTerms.isEmpty() || limit <= 0 || documentCount == 0) {
+            return Collections.emptyList();
+        }
+        double averageLength = Math.max(1.0, (double) totalLength.sum() / documentCount);
+        Map<String, Double> scores = new HashMap<>();
+        for (String queryTerm : queryTerms) {
+            Map<String, Double> best = new HashMap<>();
+            expand(queryTerm).forEach((term, weight) -> {
+                Map<String, Posting> matching = postings.get(term);
+                if (matching == null) {
+                    return;
+                }
+                matching.forEach((id, posting) -> {
+                    double norm = K1 * (1 - B + B * posting.length() / averageLength);
+                    double score = weight * posting.frequency() * (K1 + 1) / (posting.frequency() + norm);
+                    best.merge(id, score, Math::max);
+                });
+            });
+            // Rarity of the query term as expanded: taken per expansion, a rare misspelling would outrank the real word
+            double idf = Math.log(1 + (documentCount - best.size() + 0.5) / (best.size() + 0.5));
+            best.forEach((id, score) -> scores.merge(id, idf * score, Double::sum));
+        }
+        return top(scores, limit);
+    }
+
+    @Override
+    public void onPut(String id, T previous, T current) {
+        Document document = documentOf(current);
+        Document old = documents.put(id, document);
+        if (old != null) {
+            unlink(id, old, document);
+        }
+        link(id, document);
+    }
+
+    @Override
+    public void onRemove(String id, T previous) {
+        Document old = seeding ? documents.put(id, REMOVED) : documents.remove(id);
+        if (old != null) {
+            unlink(id, old, null);
+        }
+    }
+
+    /** Indexed terms {@code queryTerm} should match, with the weight of each match. */
+    Map<String, Double> expand(String queryTerm) {
+        Map<String, Double> expansions = new HashMap<>();
+        if (postings.containsKey(queryTerm)) {
+            expansions.put(queryTerm, 1.0);
+        }
+        int prefixes = 0;
+        for (String term : sortedTerms.subSet(queryTerm, false, queryTerm + Character.MAX_VALUE, false)) {
+            if (++prefixes > MAX_EXPANSIONS) {
+                break;
+            }
+            expansions.put(term, PREFIX_WEIGHT);
+        }
+        int maxEdits = TextAnalyzer.maxEdits(queryTerm.length());
+        if (expansions.isEmpty() && maxEdits > 0) {
+            expandTypos(queryTerm, maxEdits, expansions);
+        }
+        if (expansions.size() <= MAX_EXPANSIONS) {
+            return expansions;
+        }
+        Map<String, Double> kept = new HashMap<>();
+        expansions.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(MAX_EXPANSIONS)
+                .forEach(entry -> kept.put(entry.getKey(), entry.getValue()));
+        return kept;
+    }
+
+    private void expandTypos(String queryTerm, int maxEdits, Map<String, Double> expansions) {
+        // An edit breaks at most four grams (a swap of two letters), so a match shares all but 4 * maxEdits of
+        // the query's grams and must contain one of any 4 * maxEdits + 1 of them: the rarest ones are enough
+        List<Set<String>> rarest = new ArrayList<>();
+        for (String gram : new LinkedHashSet<>(TextAnalyzer.trigrams(queryTerm))) {
+            rarest.add(termsByTrigram.getOrDefault(gram, Collections.emptySet()));
+        }
+        rarest.sort(Comparator.comparingInt(Set::size));
+        Set<String> seen = new HashSet<>();
+        for (Set<String> terms : rarest.subList(0, Math.min(rarest.size(), 4 * maxEdits + 1))) {
+            for (String term : terms) {
+                if (Math.abs(term.length() - queryTerm.length()) > maxEdits || !seen.add(term)) {
+                    continue;
+                }
+                int edits = TextAnalyzer.editDistance(queryTerm, term, maxEdits);
+                if (edits <= maxEdits) {
+                    expansions.put(term, Math.pow(TYPO_WEIGHT, edits));
+                }
+            }
+        }
+    }
+
+    private Document documentOf(T item) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (Function<T, String> field : fields) {
+            for (String term : TextAnalyzer.terms(field.apply(item))) {
+                frequencies.merge(term, 1, Integer::sum);
+                length++;
+            }
+        }
+        return new Document(Map.copyOf(frequencies), length);
+    }
+
+    private void link(String id, Document document) {
+        totalLength.add(document.length());
+        document.frequencies().forEach((term, frequency) -> postings.compute(term, (t, matching) -> {
+            ConcurrentMap<String, Posting> result = matching;
+            if (result == null) {
+                result = new ConcurrentHashMap<>();
+                addTerm(term);
+            }
+            result.put(id, new Posting(frequency, document.length()));
+            return result;
+        }));
+    }
+
+    /** Drops the postings of {@code old} that {@code replacement} does not rewrite. */
+    private void unlink(String id, Document old, Document replacement) {
+        totalLength.add(-old.length());
+        for (String term : old.frequencies().keySet()) {
+            if (replacement != null && replacement.frequencies().containsKey(term)) {
+                continue;
+            }
+            postings.computeIfPresent(term, (t, matching) -> {
+                matching.remove(id);
+                if (!matching.isEmpty()) {
+                    return matching;
+                }
+                removeTerm(term);
+                return null;
+            });
+        }
+    }
+
+    // Called inside the postings entry's compute, so adding and removing one term never interleave
+    private void addTerm(String term) {
+        sortedTerms.add(term);
+        for (String gram : TextAnalyzer.trigrams(term)) {
+            termsByTrigram.compute(gram, (g, terms) -> {
+                Set<String> result = terms != null ? terms : ConcurrentHashMap.newKeySet();
+                result.add(term);
+                return result;
+            });
+        }
+    }
+
+    private void removeTerm(String term) {
+        sortedTerms.remove(term);
+        for (String gram : TextAnalyzer.trigrams(term)) {
+            termsByTrigram.computeIfPresent(gram, (g, terms) -> {
+                terms.remove(term);
+                return terms.isEmpty() ? null : terms;
+            });
+        }
+    }
+
+    private static List<SearchHit> top(Map<String, Double> scores, int limit) {
+        Comparator<SearchHit> worstFirst = Comparator.comparingDouble(SearchHit::score)
+                .thenComparing(SearchHit::id, Comparator.reverseOrder());
+        PriorityQueue<SearchHit> best = new PriorityQueue<>(Math.min(limit, scores.size()) + 1, worstFirst);
+        scores.forEach((id, score) -> {
+            if (best.size() < limit) {
+                best.add(new SearchHit(id, score));
+            } else if (worstFirst.compare(new SearchHit(id, score), best.peek()) > 0) {
+                best.poll();
+                best.add(new SearchHit(id, score));
+            }
+        });
+        List<SearchHit> hits = new ArrayList<>(best);
+        hits.sort(worstFirst.reversed());
+        return hits;
+    }
+
+    private record Document(Map<String, Integer> frequencies, int length) {
+    }
+
+    private record Posting(int frequency, int length) {
+    }
+}
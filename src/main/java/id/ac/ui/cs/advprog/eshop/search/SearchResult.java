@@ -0,0 +1,10 @@
+package id.ac.ui.cs.advprog.eshop.search;
+
+/**
+ * A search match together with the item it refers to.
+ *
+ * @param score BM25 relevance; only comparable between results of the same query
+ * @param <T>   the matched entity type
+ */
+public record SearchResult<T>(String id, double score, T item) {
+}
@@ -0,0 +1,93 @@
+package id.ac.ui.cs.advprog.eshop.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Turns names into search terms and compares terms for typo tolerance. Terms
+ * are lower-cased runs of letters and digits with accents stripped, so
+ * "Sampo-Cap BAMBANG" indexes as {@code sampo}, {@code cap}, {@code bambang}.
+ */
+final class TextAnalyzer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextAnalyzer() {
+    }
+
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String term : SEPARATORS.split(folded.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Three-letter windows over the term padded as {@code $$term$}. The padding
+     * gives even one- and two-letter terms a gram, and lets terms that differ
+     * everywhere but in their first letter still share one.
+     */
+    static List<String> trigrams(String term) {
+        String padded = "$$" + term + "$";
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /** Typos tolerated in a query term of this length: none below 3 letters, one up to 5, then two. */
+    static int maxEdits(int length) {
+        return length < 3 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Edit distance between {@code a} and {@code b}, counting an insertion,
+     * deletion, substitution or swap of two adjacent letters as one edit. Gives
+     * up and returns {@code max + 1} as soon as the distance must exceed
+     * {@code max}.
+     */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    distance = Math.min(distance, beforePrevious[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMin = Math.min(rowMin, distance);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+}
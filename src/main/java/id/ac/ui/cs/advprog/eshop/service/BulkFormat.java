@@ -0,0 +1,32 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import java.util.Locale;
+
+/** Wire formats accepted by the bulk product import and produced by the export. */
+public enum BulkFormat {
+    CSV("text/csv"),
+    JSON_LINES("application/x-ndjson");
+
+    private final String contentType;
+
+    BulkFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /** Parses the {@code format} request parameter: {@code csv}, {@code jsonl} or {@code ndjson}. */
+    public static BulkFormat fromName(String name) {
+        switch (name == null ? "" : name.trim().toLowerCase(Locale.ROOT)) {
+            case "csv":
+                return CSV;
+            case "jsonl":
+            case "ndjson":
+                return JSON_LINES;
+            default:
+                throw new IllegalArgumentException("Unsupported bulk format: " + name);
+        }
+    }
+}
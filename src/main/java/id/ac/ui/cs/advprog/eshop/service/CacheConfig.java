@@ -0,0 +1,43 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Puts a read-through {@link EntityCache} in front of the product and car
+ * repositories when {@code eshop.cache.enabled=true}. Their statistics are
+ * published as the {@code cache.*} meters, tagged {@code cache=products} and
+ * {@code cache=cars}, so hit ratios show up on {@code /actuator/prometheus}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "eshop.cache.enabled", havingValue = "true")
+public class CacheConfig {
+
+    @Value("${eshop.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${eshop.cache.time-to-live:10m}")
+    private Duration timeToLive;
+
+    @Bean
+    public EntityCache<Product> productCache(ObjectProvider<MeterRegistry> registry) {
+        EntityCache<Product> cache = new EntityCache<>(maximumSize, timeToLive);
+        registry.ifAvailable(meters -> cache.bindTo(meters, "products"));
+        return cache;
+    }
+
+    @Bean
+    public EntityCache<Car> carCache(ObjectProvider<MeterRegistry> registry) {
+        EntityCache<Car> cache = new EntityCache<>(maximumSize, timeToLive);
+        registry.ifAvailable(meters -> cache.bindTo(meters, "cars"));
+        return cache;
+    }
+}
@@ -1,12 +1,37 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
 import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
 import java.util.List;
+import java.util.Map;
 
 public interface CarService {
     public Car create(Car car);
     public List<Car> findAll();
+    public List<Car> search(String query);
+    /** Keyset paging of {@link #search}: name matches first, then the other color matches. */
+    public Page<Car> search(String query, String cursor, int size);
+    public List<Car> findPage(int page, int size);
+    /** Keyset paging; pass back {@link Page#next()} to get the following page. */
+    public Page<Car> findAfter(String cursor, int size);
+    public long count();
+    /**
+     * Changes whenever any of the cars changes, so it can be used to validate cached
+     * responses. Moves as soon as a write is accepted, queued or not, and never waits for one.
+     */
+    public long catalogVersion();
+    /** Totals, cars per color and up to {@code lowStockLimit} low-stock cars, without scanning the catalog. */
+    public StockSummary<Car> stockSummary(int lowStockLimit);
     public Car findById(String carId);
-    public void update(String carId, Car car);
+    /** Returns the stored car, or null when there is no car with that id. */
+    public Car update(String carId, Car car);
     public void deleteCarById(String carId);
+
+    /** Takes {@code quantity} units of one car out of stock until the reservation is committed or released. */
+    public StockReservation reserveStock(String carId, int quantity);
+    /** Reserves every line (car id to quantity) or none of them. */
+    public StockReservation reserveStock(Map<String, Integer> lines);
+    public void commitReservation(String reservationId);
+    public void releaseReservation(String reservationId);
+    public int releaseExpiredReservations();
 }
\ No newline at end of file
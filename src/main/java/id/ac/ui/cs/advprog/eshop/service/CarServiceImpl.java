@@ -1,40 +1,330 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
+import id.ac.ui.cs.advprog.eshop.metrics.RepositoryMetrics;
 import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.repository.AggregateIndex;
 import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IdGenerator;
+import id.ac.ui.cs.advprog.eshop.repository.Modification;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
 
 @Service
-public class CarServiceImpl implements CarService {
+public class CarServiceImpl implements CarService, AutoCloseable {
+
+    static final int DEFAULT_LOW_STOCK_THRESHOLD = 5;
+    static final int SEED_PAGE_SIZE = 1000;
+    static final String NAME_CURSOR = "name:";
+    static final String COLOR_CURSOR = "color:";
 
     @Autowired
     private ICarRepository carRepository;
 
+    @Autowired(required = false)
+    private EntityCache<Car> carCache = EntityCache.disabled();
+
+    @Autowired(required = false)
+    private RepositoryMetrics repositoryMetrics;
+
+    @Autowired(required = false)
+    private WriteBehindSettings writeBehindSettings;
+
+    /** Present with the persistent profile, so open reservations outlive a restart. */
+    @Autowired(required = false)
+    @Qualifier("carReservationJournal")
+    private ReservationJournal reservationJournal;
+
+    @Value("${eshop.catalog.low-stock-threshold:" + DEFAULT_LOW_STOCK_THRESHOLD + "}")
+    private int lowStockThreshold = DEFAULT_LOW_STOCK_THRESHOLD;
+
+    private final StockLedger stockLedger = new StockLedger(this::adjustStock, StockLedger.DEFAULT_HOLD, Clock.systemUTC());
+
+    private AggregateIndex<Car> aggregates;
+
+    /** Set in write-behind mode: writes are queued and applied in batches by its writer thread. */
+    private WriteBehindQueue<Car> writeBehind;
+
+    @PostConstruct
+    void init() {
+        if (repositoryMetrics != null) {
+            carRepository = repositoryMetrics.instrument(carRepository);
+        }
+        aggregates = new AggregateIndex<>(Car::getCarQuantity, Car::getCarColor, lowStockThreshold);
+        carRepository.addListener(aggregates);
+        aggregates.seed(carRepository, Car::getCarId, SEED_PAGE_SIZE);
+        if (writeBehindSettings != null) {
+            writeBehind = new WriteBehindQueue<>("car", carRepository, Car::getCarId, Car::setCarId, Car::copy,
+                    IdGenerator.timeOrdered(), writeBehindSettings, carCache::invalidate);
+            if (repositoryMetrics != null) {
+                writeBehind.bindTo(repositoryMetrics.registry());
+            }
+        }
+        if (reservationJournal != null) {
+            stockLedger.recover(reservationJournal);
+        }
+    }
+
+    /** Applies the writes still queued before the repository goes away; public as in {@link ProductServiceImpl#close}. */
+    @Override
+    @PreDestroy
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
     @Override
     public Car create(Car car) {
+        if (writeBehind != null) {
+            return writeBehind.create(car);
+        }
         return carRepository.create(car);
     }
 
     @Override
     public List<Car> findAll() {
+        if (writeBehind != null) {
+            return writeBehind.overlay(carRepository::findAll, car -> true, Integer.MAX_VALUE);
+        }
         return carRepository.findAll();
     }
 
+    @Override
+    public List<Car> search(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return findAll();
+        }
+        if (writeBehind != null) {
+            return writeBehind.overlay(() -> searchStored(query), matching(query), Integer.MAX_VALUE);
+        }
+        return searchStored(query);
+    }
+
+    private List<Car> searchStored(String query) {
+        // A query matches either the car name or the car color
+        Map<String, Car> matches = new LinkedHashMap<>();
+        for (Car car : carRepository.findByName(query)) {
+            matches.put(car.getCarId(), car);
+        }
+        for (Car car : carRepository.findByColor(query)) {
+            matches.putIfAbsent(car.getCarId(), car);
+        }
+        return new ArrayList<>(matches.values());
+    }
+
+    /**
+     * Pages through the name index and then the color index. The cursor names the
+     * index being paged and carries that index's own cursor; color matches that
+     * also match by name were listed already and are skipped.
+     */
+    @Override
+    public Page<Car> search(String query, String cursor, int size) {
+        if (query == null || query.trim().isEmpty()) {
+            return findAfter(cursor, size);
+        }
+        boolean byName = true;
+        String indexCursor = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            if (cursor.startsWith(NAME_CURSOR)) {
+                indexCursor = cursor.substring(NAME_CURSOR.length());
+            } else if (cursor.startsWith(COLOR_CURSOR)) {
+                byName = false;
+                indexCursor = cursor.substring(COLOR_CURSOR.length());
+            } else {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+        }
+        if (writeBehind != null) {
+            boolean fromNames = byName;
+            String from = indexCursor;
+            return writeBehind.overlayPage(() -> searchStored(query, fromNames, from, size), matching(query));
+        }
+        return searchStored(query, byName, indexCursor, size);
+    }
+
+    private Page<Car> searchStored(String query, boolean byName, String indexCursor, int size) {
+        List<Car> cars = new ArrayList<>(Math.min(size, 64));
+        if (byName) {
+            Page<Car> names = carRepository.findByName(query, indexCursor, size);
+            cars.addAll(names.items());
+            if (names.hasNext()) {
+                return new Page<>(cars, NAME_CURSOR + names.next());
+            }
+            indexCursor = null;
+        }
+        String name = query.trim().toLowerCase(Locale.ROOT);
+        while (true) {
+            // With the page already full, one more lookup tells whether a color page follows
+            Page<Car> colors = carRepository.findByColor(query, indexCursor, Math.max(1, size - cars.size()));
+            if (cars.size() == size) {
+                return new Page<>(cars, colors.items().isEmpty() ? null : COLOR_CURSOR + (indexCursor == null ? "" : indexCursor));
+            }
+            for (Car car : colors.items()) {
+                if (car.getCarName() == null || !car.getCarName().trim().toLowerCase(Locale.ROOT).equals(name)) {
+                    cars.add(car);
+                }
+            }
+            if (!colors.hasNext()) {
+                return new Page<>(cars, null);
+            }
+            indexCursor = colors.next();
+        }
+    }
+
+    @Override
+    public List<Car> findPage(int page, int size) {
+        if (writeBehind != null) {
+            return writeBehind.overlay(() -> carRepository.findPage(page, size), car -> true, size);
+        }
+        return carRepository.findPage(page, size);
+    }
+
+    @Override
+    public Page<Car> findAfter(String cursor, int size) {
+        if (writeBehind != null) {
+            return writeBehind.overlayPage(() -> carRepository.findAfter(cursor, size), car -> true);
+        }
+        return carRepository.findAfter(cursor, size);
+    }
+
+    @Override
+    public long count() {
+        if (writeBehind != null) {
+            return writeBehind.count(carRepository::count);
+        }
+        return carRepository.count();
+    }
+
+    @Override
+    public long catalogVersion() {
+        // Both counts only grow, so the sum moves with a write both when it is queued and when it lands
+        long queued = writeBehind == null ? 0 : writeBehind.submitted();
+        return carRepository.version() + queued;
+    }
+
+    @Override
+    public StockSummary<Car> stockSummary(int lowStockLimit) {
+        Map<String, Car> queued = writeBehind == null ? Map.of() : writeBehind.queued();
+        AggregateIndex.Totals totals = aggregates.totals(queued, lowStockLimit);
+        List<Car> lowStock = new ArrayList<>();
+        for (String carId : totals.lowStockIds()) {
+            Car car = findById(carId);
+            if (car != null) {
+                lowStock.add(car);
+            }
+        }
+        return new StockSummary<>(totals.count(), totals.totalQuantity(), aggregates.lowStockThreshold(),
+                totals.lowStockCount(), lowStock, totals.countsByGroup());
+    }
+
     @Override
     public Car findById(String carId) {
-        return carRepository.findById(carId);
+        if (writeBehind != null) {
+            return writeBehind.read(carId, id -> carCache.get(id, carRepository::findById));
+        }
+        return carCache.get(carId, carRepository::findById);
     }
 
     @Override
-    public void update(String carId, Car car) {
-        carRepository.update(car);
+    public Car update(String carId, Car car) {
+        Car updatedCar;
+        try {
+            updatedCar = writeBehind != null ? writeBehind.update(car) : carRepository.update(car);
+        } catch (StaleUpdateException e) {
+            carCache.invalidate(car.getCarId());
+            throw e;
+        }
+        // Dropped rather than overwritten: by now a concurrent update may have stored a newer copy
+        carCache.invalidate(car.getCarId());
+        return updatedCar;
     }
 
     @Override
     public void deleteCarById(String carId) {
+        if (writeBehind != null) {
+            writeBehind.delete(carId);
+            return;
+        }
         carRepository.delete(carId);
+        carCache.invalidate(carId);
+    }
+
+    @Override
+    public StockReservation reserveStock(String carId, int quantity) {
+        return stockLedger.reserve(carId, quantity);
+    }
+
+    @Override
+    public StockReservation reserveStock(Map<String, Integer> lines) {
+        return stockLedger.reserve(lines);
+    }
+
+    @Override
+    public void commitReservation(String reservationId) {
+        stockLedger.commit(reservationId);
+    }
+
+    @Override
+    public void releaseReservation(String reservationId) {
+        stockLedger.release(reservationId);
+    }
+
+    @Override
+    public int releaseExpiredReservations() {
+        return stockLedger.releaseExpired();
+    }
+
+    /**
+     * Changes the quantity inside the repository's per-item critical section, so
+     * concurrent reservations of the same car are applied one at a time and the
+     * stock can never go below zero. The stored car is replaced by a copy rather
+     * than mutated, so snapshots already handed out keep their values.
+     */
+    private boolean adjustStock(String carId, int delta) {
+        // A car created or edited a moment ago may still be queued
+        if (writeBehind != null) {
+            writeBehind.awaitApplied(carId);
+        }
+        Modification<Car> result = carRepository.modify(carId, current -> {
+            int quantity = current.getCarQuantity() + delta;
+            if (quantity < 0) {
+                return current;
+            }
+            Car next = current.copy();
+            next.setCarQuantity(quantity);
+            return next;
+        });
+        if (result == null) {
+            throw new IllegalArgumentException("Car not found: " + carId);
+        }
+        if (result.changed()) {
+            // Dropped rather than overwritten, as in update
+            carCache.invalidate(carId);
+        }
+        return result.changed();
+    }
+
+    /** Whether a car matches a search: its name or its color equals {@code query}, ignoring case and surrounding spaces. */
+    private static Predicate<Car> matching(String query) {
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        return car -> normalized.equals(normalize(car.getCarName())) || normalized.equals(normalize(car.getCarColor()));
+    }
+
+    private static String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
     }
-}
\ No newline at end of file
+}
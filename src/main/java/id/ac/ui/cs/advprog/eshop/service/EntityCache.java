@@ -0,0 +1,111 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Read-through cache in front of a repository's {@code findById}. Entries are
+ * evicted by size (W-TinyLFU) and by age, and services keep it consistent by
+ * invalidating an item after every write to it. Writing the new copy through
+ * instead could leave an older copy cached when two writes to the same id
+ * finish in the opposite order to the one they were applied in. Concurrent
+ * misses on the same id wait for a single repository load instead of all
+ * hitting the repository. A disabled cache simply calls the loader.
+ * <p>
+ * The load runs on the calling thread outside of any map lock: the cache only
+ * holds a future for it, and other callers wait on that future. A repository
+ * that blocks therefore never does so while a monitor is held, which would
+ * pin a virtual thread to its carrier.
+ *
+ * @param <T> the cached entity type
+ */
+public class EntityCache<T> {
+
+    private static final EntityCache<?> DISABLED = new EntityCache<>(null);
+
+    private final AsyncCache<String, T> cache;
+
+    private EntityCache(AsyncCache<String, T> cache) {
+        this.cache = cache;
+    }
+
+    public EntityCache(long maximumSize, Duration timeToLive) {
+        this(maximumSize, timeToLive, Ticker.systemTicker());
+    }
+
+    EntityCache(long maximumSize, Duration timeToLive, Ticker ticker) {
+        this(Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .ticker(ticker)
+                .recordStats()
+                .<String, T>buildAsync());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> EntityCache<T> disabled() {
+        return (EntityCache<T>) DISABLED;
+    }
+
+    /** Returns the cached item for {@code id}, loading it with {@code loader} on a miss. Missing items are not cached. */
+    public T get(String id, Function<String, T> loader) {
+        if (cache == null || id == null) {
+            return loader.apply(id);
+        }
+        CompletableFuture<T> pending = new CompletableFuture<>();
+        CompletableFuture<T> cached = cache.get(id, (key, executor) -> pending);
+        if (cached != pending) {
+            return cached.join();
+        }
+        // This caller won the miss: load here and hand the result to anyone waiting.
+        // A null result or a failure removes the entry again.
+        try {
+            T item = loader.apply(id);
+            pending.complete(item);
+            return item;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void put(String id, T item) {
+        if (cache != null && id != null && item != null) {
+            cache.put(id, CompletableFuture.completedFuture(item));
+        }
+    }
+
+    public void invalidate(String id) {
+        if (cache != null && id != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    /**
+     * Publishes the hit, miss, load and eviction counters and the size to
+     * {@code registry} as the {@code cache.*} meters tagged {@code cache=name}.
+     * A disabled cache has nothing to publish.
+     */
+    public void bindTo(MeterRegistry registry, String name) {
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, name);
+        }
+    }
+
+    /** Hit, miss, load and eviction counters since the cache was created. */
+    public CacheStats stats() {
+        return cache == null ? CacheStats.empty() : cache.synchronous().stats();
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.synchronous().estimatedSize();
+    }
+}
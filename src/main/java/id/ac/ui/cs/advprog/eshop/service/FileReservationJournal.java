@@ -0,0 +1,241 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * {@link ReservationJournal} kept in an append-only file. Every record is framed
+ * by its length and a CRC32 and forced to disk before the call returns. Opening
+ * the journal reads it back up to the first incomplete or damaged record, which
+ * is where a crash mid-write leaves off, and cuts the file there. Once settled
+ * reservations make up most of the file it is rewritten with just the open ones.
+ */
+public class FileReservationJournal implements ReservationJournal, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileReservationJournal.class);
+
+    private static final byte OPENED = 1;
+    private static final byte SETTLED = 2;
+    private static final int MAX_RECORD_LENGTH = 1024 * 1024;
+    private static final long COMPACT_AFTER = 1024;
+
+    private final Path file;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, StockReservation> pending = new LinkedHashMap<>();
+    private FileChannel channel;
+    private long records;
+
+    public FileReservationJournal(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        long end = Files.exists(file) ? read() : 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > end) {
+            log.warn("Cut off {} unreadable bytes at the end of {}", channel.size() - end, file);
+            channel.truncate(end);
+            channel.force(true);
+        }
+        channel.position(end);
+    }
+
+    @Override
+    public List<StockReservation> open() {
+        lock.lock();
+        try {
+            return List.copyOf(pending.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void opened(StockReservation reservation) {
+        lock.lock();
+        try {
+            append(frame(OPENED, reservation.reservationId(), reservation));
+            pending.put(reservation.reservationId(), reservation);
+            compactIfMostlySettled();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void settled(String reservationId) {
+        lock.lock();
+        try {
+            if (!pending.containsKey(reservationId)) {
+                return;
+            }
+            append(frame(SETTLED, reservationId, null));
+            pending.remove(reservationId);
+            compactIfMostlySettled();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Loads the open reservations and returns the length of the readable part of the file. */
+    private long read() throws IOException {
+        long end = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return end;
+                }
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    return end;
+                }
+                byte[] payload = new byte[length];
+                try {
+                    int checksum = in.readInt();
+                    in.readFully(payload);
+                    if (checksum != checksum(payload)) {
+                        return end;
+                    }
+                } catch (EOFException e) {
+                    return end;
+                }
+                try {
+                    apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                } catch (IOException e) {
+                    return end;
+                }
+                records++;
+                end += 8 + length;
+            }
+        }
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        String reservationId = in.readUTF();
+        if (op == SETTLED) {
+            pending.remove(reservationId);
+            return;
+        }
+        if (op != OPENED) {
+            throw new IOException("Unknown journal record " + op);
+        }
+        Instant expiresAt = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        int count = in.readInt();
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            lines.put(in.readUTF(), in.readInt());
+        }
+        pending.put(reservationId, new StockReservation(reservationId, Map.copyOf(lines), expiresAt));
+    }
+
+    private static ByteBuffer frame(byte op, String reservationId, StockReservation reservation) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(op);
+            out.writeUTF(reservationId);
+            if (reservation != null) {
+                out.writeLong(reservation.expiresAt().getEpochSecond());
+                out.writeInt(reservation.expiresAt().getNano());
+                out.writeInt(reservation.lines().size());
+                for (Map.Entry<String, Integer> line : reservation.lines().entrySet()) {
+                    out.writeUTF(line.getKey());
+                    out.writeInt(line.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] payload = bytes.toByteArray();
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        return frame;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private void append(ByteBuffer frame) {
+        try {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to " + file, e);
+        }
+        records++;
+    }
+
+    /**
+     * Rewrites the file with only the open reservations. The record that triggered
+     * this is already durable, so a failure here is only logged.
+     */
+    private void compactIfMostlySettled() {
+        if (records < COMPACT_AFTER || records < 2L * pending.size()) {
+            return;
+        }
+        Path rewritten = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(rewritten, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (StockReservation reservation : pending.values()) {
+                    ByteBuffer frame = frame(OPENED, reservation.reservationId(), reservation);
+                    while (frame.hasRemaining()) {
+                        out.write(frame);
+                    }
+                }
+                out.force(true);
+            }
+            Files.move(rewritten, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Could not compact {}", file, e);
+            // Try again once as many records have been added
+            records = pending.size();
+            return;
+        }
+        try {
+            channel.close();
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not reopen " + file, e);
+        }
+        records = pending.size();
+    }
+}
@@ -0,0 +1,34 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Every rejected row is counted, but only the first
+ * {@link #MAX_REPORTED_ERRORS} are described so the report stays small.
+ */
+@Getter
+public class ImportReport {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private long imported;
+    private long rejected;
+    private final List<RowError> errors = new ArrayList<>();
+
+    void addImported(long count) {
+        imported += count;
+    }
+
+    void reject(long line, String message) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    public record RowError(long line, String message) {
+    }
+}
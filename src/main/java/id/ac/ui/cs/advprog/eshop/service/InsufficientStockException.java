@@ -0,0 +1,17 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import lombok.Getter;
+
+/** Thrown when a reservation asks for more units than an item has left. */
+@Getter
+public class InsufficientStockException extends IllegalStateException {
+
+    private final String itemId;
+    private final int requested;
+
+    public InsufficientStockException(String itemId, int requested) {
+        super("Insufficient stock for " + itemId + ": requested " + requested);
+        this.itemId = itemId;
+        this.requested = requested;
+    }
+}
@@ -0,0 +1,155 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams products out of a CSV or JSON-lines upload one line at a time, and
+ * writes them back in the same formats. CSV input needs a header row naming
+ * the {@code productId}, {@code productName} and {@code productQuantity}
+ * columns; quoted fields may contain commas and doubled quotes but not line breaks.
+ */
+class ProductRowReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** One parsed line: either a product or the reason it could not be parsed. */
+    record Row(long line, Product product, String error) {
+    }
+
+    private final BufferedReader reader;
+    private final BulkFormat format;
+    private long lineNumber;
+    private int idColumn = -1;
+    private int nameColumn = -1;
+    private int quantityColumn = -1;
+
+    ProductRowReader(Reader reader, BulkFormat format) throws IOException {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        this.format = format;
+        if (format == BulkFormat.CSV) {
+            readHeader();
+        }
+    }
+
+    private void readHeader() throws IOException {
+        String header = reader.readLine();
+        lineNumber++;
+        if (header == null) {
+            return;
+        }
+        List<String> columns = splitCsv(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        for (int i = 0; i < columns.size(); i++) {
+            switch (columns.get(i).trim()) {
+                case "productId" -> idColumn = i;
+                case "productName" -> nameColumn = i;
+                case "productQuantity" -> quantityColumn = i;
+                default -> { }
+            }
+        }
+        if (nameColumn < 0 || quantityColumn < 0) {
+            throw new IllegalArgumentException("CSV header must contain productName and productQuantity columns");
+        }
+    }
+
+    /** Returns the next non-blank row, or {@code null} at the end of the input. */
+    Row next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            lineNumber++;
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank());
+        try {
+            Product product = format == BulkFormat.CSV ? parseCsv(line) : MAPPER.readValue(line, Product.class);
+            return new Row(lineNumber, product, null);
+        } catch (JsonProcessingException e) {
+            return new Row(lineNumber, null, "Invalid JSON: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            return new Row(lineNumber, null, e.getMessage());
+        }
+    }
+
+    private Product parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        Product product = new Product();
+        if (idColumn >= 0 && idColumn < fields.size() && !fields.get(idColumn).isEmpty()) {
+            product.setProductId(fields.get(idColumn));
+        }
+        product.setProductName(nameColumn < fields.size() ? fields.get(nameColumn) : null);
+        String quantity = quantityColumn < fields.size() ? fields.get(quantityColumn).trim() : "";
+        try {
+            product.setProductQuantity(Integer.parseInt(quantity));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Product quantity is not a number: " + quantity);
+        }
+        return product;
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    static void writeHeader(Writer writer, BulkFormat format) throws IOException {
+        if (format == BulkFormat.CSV) {
+            writer.write("productId,productName,productQuantity\n");
+        }
+    }
+
+    static void write(Writer writer, Product product, BulkFormat format) throws IOException {
+        if (format == BulkFormat.CSV) {
+            writer.write(escapeCsv(product.getProductId()));
+            writer.write(',');
+            writer.write(escapeCsv(product.getProductName()));
+            writer.write(',');
+            writer.write(Integer.toString(product.getProductQuantity()));
+        } else {
+            writer.write(MAPPER.writeValueAsString(product));
+        }
+        writer.write('\n');
+    }
+
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
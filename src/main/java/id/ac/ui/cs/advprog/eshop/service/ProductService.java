@@ -1,12 +1,41 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.List;
+import java.util.Map;
 
 public interface ProductService {
     public Product create(Product product);
     public List<Product> findAll();
+    public List<Product> searchByName(String prefix);
+    /** Keyset paging of the products whose name starts with {@code prefix}, ordered by name. */
+    public Page<Product> searchByName(String prefix, String cursor, int size);
+    public List<Product> findPage(int page, int size);
+    /** Keyset paging; pass back {@link Page#next()} to get the following page. */
+    public Page<Product> findAfter(String cursor, int size);
+    public long count();
+    /**
+     * Changes whenever any of the products changes, so it can be used to validate cached
+     * responses. Moves as soon as a write is accepted, queued or not, and never waits for one.
+     */
+    public long catalogVersion();
+    /** Totals and up to {@code lowStockLimit} low-stock products, without scanning the catalog. */
+    public StockSummary<Product> stockSummary(int lowStockLimit);
     public Product findById(String productId);
     public Product update(Product product);
     void delete(String productId);
+    public ImportReport importProducts(Reader source, BulkFormat format) throws IOException;
+    public long exportProducts(Writer target, BulkFormat format) throws IOException;
+
+    /** Takes {@code quantity} units of one product out of stock until the reservation is committed or released. */
+    public StockReservation reserveStock(String productId, int quantity);
+    /** Reserves every line (product id to quantity) or none of them. */
+    public StockReservation reserveStock(Map<String, Integer> lines);
+    public void commitReservation(String reservationId);
+    public void releaseReservation(String reservationId);
+    public int releaseExpiredReservations();
 }
\ No newline at end of file
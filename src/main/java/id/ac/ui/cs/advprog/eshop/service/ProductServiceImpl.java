@@ -1,47 +1,371 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
+import id.ac.ui.cs.advprog.eshop.metrics.RepositoryMetrics;
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.AggregateIndex;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
 import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IdGenerator;
+import id.ac.ui.cs.advprog.eshop.repository.Modification;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
 
 @Service
-public class ProductServiceImpl implements ProductService {
+public class ProductServiceImpl implements ProductService, AutoCloseable {
+
+    static final int IMPORT_BATCH_SIZE = 1000;
+    static final int EXPORT_PAGE_SIZE = 1000;
+    static final int SEED_PAGE_SIZE = 1000;
+    static final int DEFAULT_LOW_STOCK_THRESHOLD = 5;
 
     @Autowired
     private IProductRepository productRepository;
 
+    @Autowired(required = false)
+    private EntityCache<Product> productCache = EntityCache.disabled();
+
+    @Autowired(required = false)
+    private RepositoryMetrics repositoryMetrics;
+
+    @Autowired(required = false)
+    private WriteBehindSettings writeBehindSettings;
+
+    /** Present with the persistent profile, so open reservations outlive a restart. */
+    @Autowired(required = false)
+    @Qualifier("productReservationJournal")
+    private ReservationJournal reservationJournal;
+
+    @Value("${eshop.catalog.low-stock-threshold:" + DEFAULT_LOW_STOCK_THRESHOLD + "}")
+    private int lowStockThreshold = DEFAULT_LOW_STOCK_THRESHOLD;
+
+    private final StockLedger stockLedger = new StockLedger(this::adjustStock, StockLedger.DEFAULT_HOLD, Clock.systemUTC());
+
+    private AggregateIndex<Product> aggregates;
+
+    /** Set in write-behind mode: writes are queued and applied in batches by its writer thread. */
+    private WriteBehindQueue<Product> writeBehind;
+
+    @PostConstruct
+    void init() {
+        if (repositoryMetrics != null) {
+            productRepository = repositoryMetrics.instrument(productRepository);
+        }
+        aggregates = new AggregateIndex<>(Product::getProductQuantity, null, lowStockThreshold);
+        productRepository.addListener(aggregates);
+        aggregates.seed(productRepository, Product::getProductId, SEED_PAGE_SIZE);
+        if (writeBehindSettings != null) {
+            writeBehind = new WriteBehindQueue<>("product", productRepository, Product::getProductId,
+                    Product::setProductId, Product::copy, IdGenerator.timeOrdered(), writeBehindSettings,
+                    productCache::invalidate);
+            if (repositoryMetrics != null) {
+                writeBehind.bindTo(repositoryMetrics.registry());
+            }
+        }
+        if (reservationJournal != null) {
+            stockLedger.recover(reservationJournal);
+        }
+    }
+
+    /**
+     * Applies the writes still queued before the repository goes away. Public, and
+     * declared by {@link AutoCloseable}, so the call reaches this instance through
+     * the class-based timing proxy the service bean is wrapped in; such a proxy only
+     * forwards a package-private method when it happens to share this class's loader.
+     */
+    @Override
+    @PreDestroy
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
     @Override
     public Product create(Product product) {
         validateProduct(product);
-        productRepository.create(product);
-        return product;
+        if (writeBehind != null) {
+            return writeBehind.create(product);
+        }
+        return productRepository.create(product);
     }
 
     @Override
     public List<Product> findAll() {
+        if (writeBehind != null) {
+            return writeBehind.overlay(productRepository::findAll, product -> true, Integer.MAX_VALUE);
+        }
         List<Product> allProduct = productRepository.findAll();
         return allProduct;
     }
 
+    @Override
+    public List<Product> searchByName(String prefix) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return findAll();
+        }
+        if (writeBehind != null) {
+            return writeBehind.overlay(() -> productRepository.findByNamePrefix(prefix), nameStartsWith(prefix),
+                    Integer.MAX_VALUE);
+        }
+        return productRepository.findByNamePrefix(prefix);
+    }
+
+    @Override
+    public Page<Product> searchByName(String prefix, String cursor, int size) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return findAfter(cursor, size);
+        }
+        if (writeBehind != null) {
+            return writeBehind.overlayPage(() -> productRepository.findByNamePrefix(prefix, cursor, size),
+                    nameStartsWith(prefix));
+        }
+        return productRepository.findByNamePrefix(prefix, cursor, size);
+    }
+
+    @Override
+    public List<Product> findPage(int page, int size) {
+        if (writeBehind != null) {
+            return writeBehind.overlay(() -> productRepository.findPage(page, size), product -> true, size);
+        }
+        return productRepository.findPage(page, size);
+    }
+
+    @Override
+    public Page<Product> findAfter(String cursor, int size) {
+        if (writeBehind != null) {
+            return writeBehind.overlayPage(() -> productRepository.findAfter(cursor, size), product -> true);
+        }
+        return productRepository.findAfter(cursor, size);
+    }
+
+    @Override
+    public long count() {
+        if (writeBehind != null) {
+            return writeBehind.count(productRepository::count);
+        }
+        return productRepository.count();
+    }
+
+    @Override
+    public long catalogVersion() {
+        // Both counts only grow, so the sum moves with a write both when it is queued and when it lands
+        long queued = writeBehind == null ? 0 : writeBehind.submitted();
+        return productRepository.version() + queued;
+    }
+
+    @Override
+    public StockSummary<Product> stockSummary(int lowStockLimit) {
+        Map<String, Product> queued = writeBehind == null ? Map.of() : writeBehind.queued();
+        AggregateIndex.Totals totals = aggregates.totals(queued, lowStockLimit);
+        List<Product> lowStock = new ArrayList<>();
+        for (String productId : totals.lowStockIds()) {
+            Product product = findById(productId);
+            if (product != null) {
+                lowStock.add(product);
+            }
+        }
+        return new StockSummary<>(totals.count(), totals.totalQuantity(), aggregates.lowStockThreshold(),
+                totals.lowStockCount(), lowStock, totals.countsByGroup());
+    }
+
     @Override
     public Product findById(String productId) {
-        return productRepository.findById(productId);
+        if (writeBehind != null) {
+            return writeBehind.read(productId, id -> productCache.get(id, productRepository::findById));
+        }
+        return productCache.get(productId, productRepository::findById);
     }
 
     @Override
     public Product update(Product product) {
         validateProduct(product);
-        return productRepository.update(product);
+        Product updatedProduct;
+        try {
+            updatedProduct = writeBehind != null ? writeBehind.update(product) : productRepository.update(product);
+        } catch (StaleUpdateException e) {
+            // Whatever the caller read is out of date; make the next read see the stored copy.
+            productCache.invalidate(product.getProductId());
+            throw e;
+        }
+        // Dropped rather than overwritten: by now a concurrent update may have stored a newer copy
+        productCache.invalidate(product.getProductId());
+        return updatedProduct;
     }
 
     @Override
     public void delete(String productId) {
+        if (writeBehind != null) {
+            writeBehind.delete(productId);
+            return;
+        }
         productRepository.delete(productId);
+        productCache.invalidate(productId);
+    }
+
+    /**
+     * Reads the upload row by row, so memory stays bounded by one batch no matter
+     * how large the file is. Rows that fail to parse or validate are reported and
+     * skipped; the rest are stored {@link #IMPORT_BATCH_SIZE} at a time, through the
+     * write-behind queue when there is one, like any other create. A row whose id
+     * already exists is rejected rather than overwriting that product.
+     */
+    @Override
+    public ImportReport importProducts(Reader source, BulkFormat format) throws IOException {
+        ImportReport report = new ImportReport();
+        ProductRowReader rows = new ProductRowReader(source, format);
+        List<ProductRowReader.Row> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        ProductRowReader.Row row;
+        while ((row = rows.next()) != null) {
+            if (row.error() != null) {
+                report.reject(row.line(), row.error());
+                continue;
+            }
+            try {
+                validateProduct(row.product());
+            } catch (IllegalArgumentException e) {
+                report.reject(row.line(), e.getMessage());
+                continue;
+            }
+            batch.add(row);
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                storeBatch(batch, report);
+                // The stored list is not reused: a repository may keep a reference to it
+                batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            }
+        }
+        storeBatch(batch, report);
+        return report;
+    }
+
+    private void storeBatch(List<ProductRowReader.Row> batch, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (writeBehind == null) {
+            List<Product> products = new ArrayList<>(batch.size());
+            for (ProductRowReader.Row row : batch) {
+                products.add(row.product());
+            }
+            try {
+                productRepository.createAll(products);
+                for (Product product : products) {
+                    productCache.invalidate(product.getProductId());
+                }
+                report.addImported(batch.size());
+                return;
+            } catch (DuplicateIdException e) {
+                // Nothing of the batch was stored; store it row by row to find every duplicate
+            }
+        }
+        for (ProductRowReader.Row row : batch) {
+            try {
+                create(row.product());
+                if (writeBehind == null) {
+                    productCache.invalidate(row.product().getProductId());
+                }
+                report.addImported(1);
+            } catch (DuplicateIdException e) {
+                report.reject(row.line(), e.getMessage());
+            }
+        }
+    }
+
+    /** Writes the catalog in insertion order one keyset page at a time and returns the row count. */
+    @Override
+    public long exportProducts(Writer target, BulkFormat format) throws IOException {
+        ProductRowReader.writeHeader(target, format);
+        long written = 0;
+        Page<Product> page = findAfter(null, EXPORT_PAGE_SIZE);
+        while (true) {
+            for (Product product : page.items()) {
+                ProductRowReader.write(target, product, format);
+            }
+            written += page.items().size();
+            if (!page.hasNext()) {
+                break;
+            }
+            page = findAfter(page.next(), EXPORT_PAGE_SIZE);
+        }
+        target.flush();
+        return written;
+    }
+
+    @Override
+    public StockReservation reserveStock(String productId, int quantity) {
+        return stockLedger.reserve(productId, quantity);
+    }
+
+    @Override
+    public StockReservation reserveStock(Map<String, Integer> lines) {
+        return stockLedger.reserve(lines);
+    }
+
+    @Override
+    public void commitReservation(String reservationId) {
+        stockLedger.commit(reservationId);
+    }
+
+    @Override
+    public void releaseReservation(String reservationId) {
+        stockLedger.release(reservationId);
+    }
+
+    @Override
+    public int releaseExpiredReservations() {
+        return stockLedger.releaseExpired();
+    }
+
+    /**
+     * Changes the quantity inside the repository's per-item critical section, so
+     * concurrent reservations of the same product are applied one at a time and the
+     * stock can never go below zero. The stored product is replaced by a copy rather
+     * than mutated, so snapshots already handed out keep their values.
+     */
+    private boolean adjustStock(String productId, int delta) {
+        // A product created or edited a moment ago may still be queued
+        if (writeBehind != null) {
+            writeBehind.awaitApplied(productId);
+        }
+        Modification<Product> result = productRepository.modify(productId, current -> {
+            int quantity = current.getProductQuantity() + delta;
+            if (quantity < 0) {
+                return current;
+            }
+            Product next = current.copy();
+            next.setProductQuantity(quantity);
+            return next;
+        });
+        if (result == null) {
+            throw new IllegalArgumentException("Product not found: " + productId);
+        }
+        if (result.changed()) {
+            // Dropped rather than overwritten, as in update
+            productCache.invalidate(productId);
+        }
+        return result.changed();
+    }
+
+    private static Predicate<Product> nameStartsWith(String prefix) {
+        String normalized = prefix.trim().toLowerCase(Locale.ROOT);
+        return product -> product.getProductName() != null
+                && product.getProductName().trim().toLowerCase(Locale.ROOT).startsWith(normalized);
     }
 
     private void validateProduct(Product product) {
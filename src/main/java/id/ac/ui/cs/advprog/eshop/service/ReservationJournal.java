@@ -0,0 +1,20 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import java.util.List;
+
+/**
+ * Durable record of the stock reservations a {@link StockLedger} has open. The
+ * units of an open reservation are already out of stock, so without it a restart
+ * would forget what to give back and those units would be lost for good.
+ */
+public interface ReservationJournal {
+
+    /** Reservations recorded as opened and not settled since. */
+    List<StockReservation> open();
+
+    /** Records a new reservation; returns once it is durable. */
+    void opened(StockReservation reservation);
+
+    /** Records that a reservation was committed or released; unknown ids are ignored. */
+    void settled(String reservationId);
+}
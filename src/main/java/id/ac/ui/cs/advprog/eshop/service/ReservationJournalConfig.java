@@ -0,0 +1,31 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Keeps open stock reservations across restarts when the {@code persistent}
+ * profile is active, next to the logs of the catalog they take stock from.
+ */
+@Configuration
+@Profile("persistent")
+public class ReservationJournalConfig {
+
+    @Value("${eshop.persistence.directory:data}")
+    private Path directory;
+
+    @Bean(destroyMethod = "close")
+    public FileReservationJournal productReservationJournal() throws IOException {
+        return new FileReservationJournal(directory.resolve("products").resolve("reservations.journal"));
+    }
+
+    @Bean(destroyMethod = "close")
+    public FileReservationJournal carReservationJournal() throws IOException {
+        return new FileReservationJournal(directory.resolve("cars").resolve("reservations.journal"));
+    }
+}
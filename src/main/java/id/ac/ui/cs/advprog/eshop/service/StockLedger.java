@@ -0,0 +1,186 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.repository.IdGenerator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reserve / commit / release bookkeeping on top of an atomic per-item stock
+ * counter. Reserving takes the units out of the item straight away, so two
+ * buyers of the last unit can never both succeed; the ledger only remembers
+ * what to give back if the reservation is released or expires.
+ * <p>
+ * There is no lock of its own: each stock change is one atomic adjustment of a
+ * single item, and a reservation is settled by whoever removes it from the
+ * ledger first, so commit, release and expiry cannot settle it twice.
+ * <p>
+ * With a {@link ReservationJournal} the open reservations survive a restart.
+ * Units are taken before a reservation is journaled, and a settlement is
+ * journaled before its units are given back, so a crash in between leaves a few
+ * units out of stock rather than restocking units that were never taken.
+ */
+public class StockLedger {
+
+    public static final Duration DEFAULT_HOLD = Duration.ofMinutes(15);
+
+    /** Atomic access to the stock counter of one item. */
+    @FunctionalInterface
+    public interface StockAdjuster {
+        /**
+         * Adds {@code delta} to the quantity of the item unless that would make it
+         * negative. Returns whether the change was applied.
+         *
+         * @throws IllegalArgumentException when there is no item with that id
+         */
+        boolean adjust(String itemId, int delta);
+    }
+
+    private final ConcurrentMap<String, StockReservation> reservations = new ConcurrentHashMap<>();
+    private final StockAdjuster adjuster;
+    private final Duration hold;
+    private final Clock clock;
+    private volatile ReservationJournal journal;
+
+    public StockLedger(StockAdjuster adjuster, Duration hold, Clock clock) {
+        this.adjuster = adjuster;
+        this.hold = hold;
+        this.clock = clock;
+    }
+
+    /**
+     * Takes back the reservations {@code journal} still holds from an earlier run, so
+     * they can be committed, released or expire as usual, and records every later
+     * reservation and settlement in it.
+     */
+    public void recover(ReservationJournal journal) {
+        for (StockReservation reservation : journal.open()) {
+            reservations.put(reservation.reservationId(), reservation);
+        }
+        this.journal = journal;
+    }
+
+    /** Reserves {@code quantity} units of one item. */
+    public StockReservation reserve(String itemId, int quantity) {
+        return reserve(Map.of(itemId, quantity));
+    }
+
+    /**
+     * Reserves every line of an order, or nothing. Lines are taken one by one and
+     * the ones already taken are given back if a later line cannot be served.
+     *
+     * @throws InsufficientStockException when some line asks for more than is left
+     */
+    public StockReservation reserve(Map<String, Integer> lines) {
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("Reservation must contain at least one line");
+        }
+        Map<String, Integer> ordered = new TreeMap<>(lines);
+        for (Map.Entry<String, Integer> line : ordered.entrySet()) {
+            if (line.getKey() == null || line.getValue() == null || line.getValue() <= 0) {
+                throw new IllegalArgumentException("Reserved quantity must be positive");
+            }
+        }
+        List<Map.Entry<String, Integer>> taken = new ArrayList<>(ordered.size());
+        StockReservation reservation;
+        try {
+            for (Map.Entry<String, Integer> line : ordered.entrySet()) {
+                if (!adjuster.adjust(line.getKey(), -line.getValue())) {
+                    throw new InsufficientStockException(line.getKey(), line.getValue());
+                }
+                taken.add(line);
+            }
+            reservation = new StockReservation(
+                    IdGenerator.timeOrdered().nextId(), Map.copyOf(ordered), clock.instant().plus(hold));
+            ReservationJournal current = journal;
+            if (current != null) {
+                current.opened(reservation);
+            }
+        } catch (RuntimeException e) {
+            for (Map.Entry<String, Integer> line : taken) {
+                restock(line.getKey(), line.getValue());
+            }
+            throw e;
+        }
+        reservations.put(reservation.reservationId(), reservation);
+        return reservation;
+    }
+
+    /**
+     * Makes a reservation final; its units stay out of stock.
+     *
+     * @throws IllegalArgumentException when the reservation is unknown, already settled or expired
+     */
+    public void commit(String reservationId) {
+        StockReservation reservation = reservationId == null ? null : reservations.remove(reservationId);
+        if (reservation == null) {
+            throw new IllegalArgumentException("Unknown or expired reservation: " + reservationId);
+        }
+        settle(reservation);
+        if (reservation.isExpired(clock.instant())) {
+            restock(reservation);
+            throw new IllegalArgumentException("Unknown or expired reservation: " + reservationId);
+        }
+    }
+
+    /** Gives the units of a reservation back to stock. Unknown or settled reservations are ignored. */
+    public void release(String reservationId) {
+        StockReservation reservation = reservationId == null ? null : reservations.remove(reservationId);
+        if (reservation != null) {
+            settle(reservation);
+            restock(reservation);
+        }
+    }
+
+    /** Releases every reservation past its expiry time and returns how many there were. */
+    public int releaseExpired() {
+        Instant now = clock.instant();
+        int released = 0;
+        for (StockReservation reservation : reservations.values()) {
+            if (reservation.isExpired(now) && reservations.remove(reservation.reservationId(), reservation)) {
+                settle(reservation);
+                restock(reservation);
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /** Number of reservations neither committed nor released yet. */
+    public int pendingCount() {
+        return reservations.size();
+    }
+
+    /** Journals that {@code reservation} is settled; if that fails it goes back into the ledger. */
+    private void settle(StockReservation reservation) {
+        ReservationJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.settled(reservation.reservationId());
+        } catch (RuntimeException e) {
+            reservations.put(reservation.reservationId(), reservation);
+            throw e;
+        }
+    }
+
+    private void restock(StockReservation reservation) {
+        reservation.lines().forEach(this::restock);
+    }
+
+    private void restock(String itemId, int quantity) {
+        try {
+            adjuster.adjust(itemId, quantity);
+        } catch (IllegalArgumentException e) {
+            // The item was deleted while reserved, so there is nothing to give back to
+        }
+    }
+}
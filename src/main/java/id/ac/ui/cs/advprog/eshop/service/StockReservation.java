@@ -0,0 +1,16 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Stock held for one order: item id to reserved quantity. The stock is already
+ * taken out of the catalog; it returns when the reservation is released or
+ * expires, and stays out once the reservation is committed.
+ */
+public record StockReservation(String reservationId, Map<String, Integer> lines, Instant expiresAt) {
+
+    public boolean isExpired(Instant now) {
+        return now.isAfter(expiresAt);
+    }
+}
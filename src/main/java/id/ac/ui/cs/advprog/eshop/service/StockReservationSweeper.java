@@ -0,0 +1,28 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/** Periodically gives the stock of abandoned, expired reservations back to the catalog. */
+@Component
+public class StockReservationSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationSweeper.class);
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CarService carService;
+
+    @Scheduled(fixedDelayString = "${eshop.stock.sweep-interval:PT30S}")
+    public void releaseExpired() {
+        int released = productService.releaseExpiredReservations() + carService.releaseExpiredReservations();
+        if (released > 0) {
+            log.info("Released {} expired stock reservations", released);
+        }
+    }
+}
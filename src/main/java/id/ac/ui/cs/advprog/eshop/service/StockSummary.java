@@ -0,0 +1,18 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog totals, read from incrementally maintained aggregates rather than a
+ * scan of the catalog.
+ *
+ * @param lowStock      up to the requested number of items with a quantity below
+ *                      {@code lowStockThreshold}, lowest quantity first
+ * @param countsByGroup item counts per normalized group value, such as car color;
+ *                      empty when the catalog is not grouped
+ * @param <T> the catalog entity type
+ */
+public record StockSummary<T>(long itemCount, long totalQuantity, int lowStockThreshold, long lowStockCount,
+                              List<T> lowStock, Map<String, Long> countsByGroup) {
+}
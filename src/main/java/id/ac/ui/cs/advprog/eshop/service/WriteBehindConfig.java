@@ -0,0 +1,35 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Switches the product and car services to write-behind mode when
+ * {@code eshop.write-behind.enabled=true}: their writes are queued and applied
+ * in batches by one writer per service instead of on the request thread.
+ */
+@Configuration
+@ConditionalOnProperty(name = "eshop.write-behind.enabled", havingValue = "true")
+public class WriteBehindConfig {
+
+    @Value("${eshop.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${eshop.write-behind.flush-size:256}")
+    private int flushSize;
+
+    @Value("${eshop.write-behind.flush-interval:5ms}")
+    private Duration flushInterval;
+
+    @Value("${eshop.write-behind.offer-timeout:1s}")
+    private Duration offerTimeout;
+
+    @Bean
+    public WriteBehindSettings writeBehindSettings() {
+        return new WriteBehindSettings(queueCapacity, flushSize, flushInterval, offerTimeout);
+    }
+}
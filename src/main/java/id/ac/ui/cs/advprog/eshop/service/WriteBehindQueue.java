@@ -0,0 +1,595 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Versioned;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.IRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IdGenerator;
+import id.ac.ui.cs.advprog.eshop.repository.Modification;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Write-behind front of a repository. Creates, updates and deletes are checked
+ * and queued on the caller's thread; a single writer thread applies them in
+ * batches of up to {@code flushSize}, waiting at most {@code flushInterval} for
+ * a batch to fill. Consecutive creates go to the repository as one
+ * {@link IRepository#createAll} call.
+ * <p>
+ * Queued writes are visible straight away, without waiting for the writer:
+ * {@link #read} answers from the pending writes before falling back to the
+ * repository, {@link #overlay} and {@link #overlayPage} merge them into listings
+ * read from it, and {@link #count} adjusts its count for queued creates and
+ * deletes. Update version checks run at submit time against the newest pending
+ * or stored copy, so a stale edit still fails in the caller.
+ * <p>
+ * A write that only fails when applied, say an update that conflicts with
+ * stock adjusted directly in the meantime, is logged as an error and kept in
+ * {@link #failedWrites}, and counted by the meters {@link #bindTo} registers.
+ * <p>
+ * A full queue holds submitters back for up to {@code offerTimeout}, then
+ * fails with {@link WriteQueueFullException}. {@link #close} stops accepting
+ * writes and drains the queue before returning.
+ *
+ * @param <T> the stored entity type
+ */
+public class WriteBehindQueue<T extends Versioned> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 30_000;
+    static final int MAX_FAILED_WRITES = 1000;
+    private static final int STABLE_READ_ATTEMPTS = 3;
+
+    private final String name;
+    private final IRepository<T> repository;
+    private final Function<T, String> idExtractor;
+    private final BiConsumer<T, String> idAssigner;
+    private final UnaryOperator<T> copier;
+    private final IdGenerator idGenerator;
+    private final WriteBehindSettings settings;
+    private final Consumer<String> onApplied;
+
+    private final BlockingQueue<Write<T>> queue;
+    /** Newest write not yet applied, per id. */
+    private final ConcurrentMap<String, Write<T>> pending = new ConcurrentHashMap<>();
+    // Submitters take sequences and enqueue under this lock, so sequence order is queue order
+    private final ReentrantLock submitLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushed = flushLock.newCondition();
+    private final Thread writer;
+    /** Newest failed writes, oldest first; guarded by itself. */
+    private final Deque<FailedWrite<T>> failedWrites = new ArrayDeque<>();
+    private final LongAdder failed = new LongAdder();
+    /** Queued creates minus queued deletes of stored items: what applying the queue does to the count. */
+    private final LongAdder countChange = new LongAdder();
+
+    private volatile long submitted;
+    private volatile long applied;
+    /** Bumped by the writer before and after applying each batch, so it is odd while one lands. */
+    private volatile long landings;
+    private volatile boolean closed;
+
+    /**
+     * @param copier    copies an item, so a queued write holds its own copy rather than the caller's
+     * @param onApplied called with the id of every write once it reached the repository
+     */
+    public WriteBehindQueue(String name, IRepository<T> repository, Function<T, String> idExtractor,
+                            BiConsumer<T, String> idAssigner, UnaryOperator<T> copier, IdGenerator idGenerator,
+                            WriteBehindSettings settings, Consumer<String> onApplied) {
+        this.name = name;
+        this.repository = repository;
+        this.idExtractor = idExtractor;
+        this.idAssigner = idAssigner;
+        this.copier = copier;
+        this.idGenerator = idGenerator;
+        this.settings = settings;
+        this.onApplied = onApplied;
+        this.queue = new LinkedBlockingQueue<>(settings.queueCapacity());
+        this.writer = new Thread(this::drain, name + "-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a copy of {@code item} at version 0 for creation, assigning the id to
+     * {@code item} first if it has none, and returns the copy. Throws
+     * {@link DuplicateIdException} when an item with that id is pending or stored.
+     */
+    public T create(T item) {
+        String id = idExtractor.apply(item);
+        if (id == null || id.isEmpty()) {
+            id = idGenerator.nextId();
+            idAssigner.accept(item, id);
+        }
+        T queued = copier.apply(item);
+        queued.setVersion(0);
+        lockForSubmit();
+        try {
+            if (read(id, repository::findById) != null) {
+                throw new DuplicateIdException(id);
+            }
+            enqueue(new Write<>(Kind.CREATE, id, queued, 0));
+            return queued;
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    /**
+     * Queues a versioned replacement of the item with the same id. Returns null
+     * when there is no such item and throws {@link StaleUpdateException} when
+     * {@code item} is not based on its newest version, pending or stored.
+     * Returns the queued copy; {@code item} itself is left as it was.
+     */
+    public T update(T item) {
+        String id = idExtractor.apply(item);
+        if (id == null) {
+            return null;
+        }
+        long expected = item.getVersion();
+        lockForSubmit();
+        try {
+            T current = read(id, repository::findById);
+            if (current == null) {
+                return null;
+            }
+            if (current.getVersion() != expected) {
+                throw new StaleUpdateException(id, expected, current.getVersion());
+            }
+            T queued = copier.apply(item);
+            queued.setVersion(expected + 1);
+            enqueue(new Write<>(Kind.UPDATE, id, queued, expected));
+            return queued;
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    /** Queues the deletion of {@code id}; does nothing when there is no such item, pending or stored. */
+    public void delete(String id) {
+        if (id == null) {
+            return;
+        }
+        lockForSubmit();
+        try {
+            if (read(id, repository::findById) != null) {
+                enqueue(new Write<>(Kind.DELETE, id, null, 0));
+            }
+        } finally {
+            submitLock.unlock();
+        }
+    }
+
+    /** The pending copy of {@code id} if a write for it is queued (null once deleted), else {@code loader}'s. */
+    public T read(String id, Function<String, T> loader) {
+        Write<T> write = id == null ? null : pending.get(id);
+        return write != null ? write.item : loader.apply(id);
+    }
+
+    /**
+     * Returns the items {@code load} reads from the repository as they will be once
+     * the queued writes are applied: queued copies replace stored ones, and items
+     * with a queued delete, or whose queued copy no longer meets {@code filter},
+     * are left out. When the items end the listing, queued items it does not hold
+     * yet, created or changed to meet {@code filter}, follow them.
+     *
+     * @param filter   the condition {@code load} selects items by
+     * @param pageSize the most items {@code load} reads; fewer means they end the listing
+     */
+    public List<T> overlay(Supplier<List<T>> load, Predicate<? super T> filter, int pageSize) {
+        return stable(() -> {
+            List<T> items = load.get();
+            return merge(items, filter, items.size() < pageSize);
+        });
+    }
+
+    /**
+     * {@link #overlay} for a keyset page. Queued items missing from the listing are
+     * added to its last page, which can therefore hold more than the page size.
+     */
+    public Page<T> overlayPage(Supplier<Page<T>> load, Predicate<? super T> filter) {
+        return stable(() -> {
+            Page<T> page = load.get();
+            return new Page<>(merge(page.items(), filter, !page.hasNext()), page.next());
+        });
+    }
+
+    /** The count {@code stored} reads from the repository, adjusted for the queued creates and deletes. */
+    public long count(LongSupplier stored) {
+        return stable(() -> stored.getAsLong() + countChange.sum());
+    }
+
+    /** The newest queued copy of every id with a pending write; null for a queued delete. */
+    public Map<String, T> queued() {
+        Map<String, T> queued = new HashMap<>();
+        pending.forEach((id, write) -> queued.put(id, write.item));
+        return queued;
+    }
+
+    /**
+     * Waits until every write submitted before this call has been applied. Throws
+     * {@link WriteBehindTimeoutException} when that takes longer than the offer timeout.
+     */
+    public void awaitFlushed() {
+        awaitApplied(submitted);
+    }
+
+    /** Waits like {@link #awaitFlushed}, but only until the writes queued for {@code id} so far have been applied. */
+    public void awaitApplied(String id) {
+        Write<T> write = id == null ? null : pending.get(id);
+        if (write != null) {
+            awaitApplied(write.sequence);
+        }
+    }
+
+    /** Number of queued writes that failed when applied, since startup. */
+    public long failed() {
+        return failed.sum();
+    }
+
+    /** The newest writes that failed when applied, oldest first; at most {@value #MAX_FAILED_WRITES}. */
+    public List<FailedWrite<T>> failedWrites() {
+        synchronized (failedWrites) {
+            return List.copyOf(failedWrites);
+        }
+    }
+
+    /** Publishes the backlog and the number of failed writes, tagged with this queue's entity name. */
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("eshop.writebehind.backlog", this, WriteBehindQueue::backlog)
+                .tag("entity", name)
+                .register(registry);
+        FunctionCounter.builder("eshop.writebehind.failed", this, WriteBehindQueue::failed)
+                .tag("entity", name)
+                .register(registry);
+    }
+
+    /** Number of writes accepted so far, applied or not. Never goes down. */
+    public long submitted() {
+        return submitted;
+    }
+
+    /** Number of writes queued and not yet applied. */
+    public long backlog() {
+        return submitted - applied;
+    }
+
+    @Override
+    public void close() {
+        // Under the submit lock, so no write is half-way into the queue when the writer decides it is done
+        submitLock.lock();
+        try {
+            closed = true;
+        } finally {
+            submitLock.unlock();
+        }
+        queue.offer(Write.flush());
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("The {} write-behind queue did not drain in time; {} writes were not applied", name, backlog());
+        }
+    }
+
+    private void awaitApplied(long target) {
+        if (applied >= target) {
+            return;
+        }
+        // Ask the writer to stop filling its batch; if the queue is full it is busy anyway
+        queue.offer(Write.flush());
+        long remaining = settings.offerTimeout().toNanos();
+        flushLock.lock();
+        try {
+            while (applied < target) {
+                if (remaining <= 0) {
+                    throw new WriteBehindTimeoutException(name);
+                }
+                remaining = flushed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WriteBehindTimeoutException(name);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Runs a read that combines the repository with the pending writes, and runs it
+     * again when a batch landed meanwhile: while one lands, its writes are both
+     * stored and still pending. Gives up after a few attempts rather than wait for
+     * a writer that keeps landing batches.
+     */
+    private <R> R stable(Supplier<R> read) {
+        R result = null;
+        for (int attempt = 0; attempt < STABLE_READ_ATTEMPTS; attempt++) {
+            long before = landings;
+            result = read.get();
+            if ((before & 1) == 0 && landings == before) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private List<T> merge(List<T> stored, Predicate<? super T> filter, boolean last) {
+        if (pending.isEmpty()) {
+            return stored;
+        }
+        List<T> merged = new ArrayList<>(stored.size());
+        Set<String> listed = new HashSet<>();
+        for (T item : stored) {
+            String id = idExtractor.apply(item);
+            listed.add(id);
+            Write<T> write = pending.get(id);
+            if (write == null) {
+                merged.add(item);
+            } else if (write.item != null && filter.test(write.item)) {
+                merged.add(write.item);
+            }
+        }
+        if (last) {
+            List<Write<T>> writes = new ArrayList<>(pending.values());
+            writes.sort(Comparator.comparingLong(write -> write.sequence));
+            for (Write<T> write : writes) {
+                if (write.item == null || listed.contains(write.id) || !filter.test(write.item)) {
+                    continue;
+                }
+                // A stored copy that meets the filter is listed on a page of its own
+                T current = repository.findById(write.id);
+                if (current == null || !filter.test(current)) {
+                    merged.add(write.item);
+                }
+            }
+        }
+        return merged;
+    }
+
+    private void lockForSubmit() {
+        try {
+            if (!submitLock.tryLock(settings.offerTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new WriteQueueFullException(name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WriteQueueFullException(name);
+        }
+    }
+
+    // Caller holds submitLock
+    private void enqueue(Write<T> write) {
+        if (closed) {
+            throw new IllegalStateException("The " + name + " write queue is closed");
+        }
+        write.sequence = submitted + 1;
+        // Visible before the writer can pick it up, so the writer's removal never precedes this put
+        Write<T> previous = pending.put(write.id, write);
+        countChange.add(write.kind.countChange);
+        boolean queued;
+        try {
+            queued = queue.offer(write, settings.offerTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            countChange.add(-write.kind.countChange);
+            unpend(write, previous);
+            throw new WriteQueueFullException(name);
+        }
+        submitted = write.sequence;
+    }
+
+    private void unpend(Write<T> write, Write<T> previous) {
+        if (previous == null || previous.settled) {
+            pending.remove(write.id, write);
+            return;
+        }
+        pending.replace(write.id, write, previous);
+        if (previous.settled) {
+            // The writer settled it while we were putting it back
+            pending.remove(write.id, previous);
+        }
+    }
+
+    private void drain() {
+        List<Write<T>> batch = new ArrayList<>(settings.flushSize());
+        long interval = settings.flushInterval().toNanos();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Write<T> first = queue.poll(interval, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                boolean flushNow = collect(first, batch);
+                long deadline = System.nanoTime() + interval;
+                while (!flushNow && batch.size() < settings.flushSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    Write<T> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    flushNow = collect(next, batch);
+                }
+            } catch (InterruptedException e) {
+                // Only close() may stop the writer; apply what was collected and carry on draining
+                Thread.interrupted();
+            }
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    /** Adds a real write to the batch; returns true when the batch should be flushed right away. */
+    private boolean collect(Write<T> write, List<Write<T>> batch) {
+        if (write.kind == Kind.FLUSH) {
+            return true;
+        }
+        batch.add(write);
+        return closed;
+    }
+
+    private void apply(List<Write<T>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        landings++;
+        int i = 0;
+        while (i < batch.size()) {
+            Write<T> write = batch.get(i);
+            if (write.kind == Kind.CREATE) {
+                int end = i;
+                List<T> items = new ArrayList<>();
+                while (end < batch.size() && batch.get(end).kind == Kind.CREATE) {
+                    items.add(batch.get(end++).item);
+                }
+                try {
+                    repository.createAll(items);
+                } catch (RuntimeException e) {
+                    // One bad item fails the whole batch; apply them one by one so only that one is lost
+                    for (int j = i; j < end; j++) {
+                        createOne(batch.get(j));
+                    }
+                }
+                for (; i < end; i++) {
+                    settle(batch.get(i));
+                }
+                continue;
+            }
+            try {
+                if (write.kind == Kind.UPDATE) {
+                    Modification<T> stored = repository.modify(write.id, current -> {
+                        if (current.getVersion() != write.expectedVersion) {
+                            throw new StaleUpdateException(write.id, write.expectedVersion, current.getVersion());
+                        }
+                        return write.item;
+                    });
+                    if (stored == null) {
+                        fail(write, "it was deleted before being applied", null);
+                    }
+                } else {
+                    repository.delete(write.id);
+                }
+            } catch (RuntimeException e) {
+                fail(write, e.getMessage(), e);
+            }
+            settle(write);
+            i++;
+        }
+        landings++;
+        flushLock.lock();
+        try {
+            applied = batch.get(batch.size() - 1).sequence;
+            flushed.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void createOne(Write<T> write) {
+        try {
+            repository.create(write.item);
+        } catch (DuplicateIdException e) {
+            // Ids are checked when a create is queued, so this one was stored by the part of the batch that went through
+        } catch (RuntimeException e) {
+            fail(write, e.getMessage(), e);
+        }
+    }
+
+    private void fail(Write<T> write, String reason, RuntimeException cause) {
+        log.error("Queued {} {} of {} failed: {}", name, write.kind.label, write.id, reason, cause);
+        failed.increment();
+        synchronized (failedWrites) {
+            if (failedWrites.size() == MAX_FAILED_WRITES) {
+                failedWrites.removeFirst();
+            }
+            failedWrites.addLast(new FailedWrite<>(write.kind.label, write.id, write.item, reason, Instant.now()));
+        }
+    }
+
+    private void settle(Write<T> write) {
+        // Readers fall through to caches only once the pending copy is gone, so drop those first
+        onApplied.accept(write.id);
+        // Whether or not it went through, the repository's count now says what this write did to it
+        countChange.add(-write.kind.countChange);
+        write.settled = true;
+        pending.remove(write.id, write);
+    }
+
+    /**
+     * A queued write the repository refused when it was applied.
+     *
+     * @param kind   {@code create}, {@code update} or {@code delete}
+     * @param item   the queued copy; null for a delete
+     * @param reason why the repository refused it
+     */
+    public record FailedWrite<T>(String kind, String id, T item, String reason, Instant failedAt) {
+    }
+
+    private enum Kind {
+        CREATE(1), UPDATE(0), DELETE(-1), FLUSH(0);
+
+        final int countChange;
+        final String label = name().toLowerCase(Locale.ROOT);
+
+        Kind(int countChange) {
+            this.countChange = countChange;
+        }
+    }
+
+    private static final class Write<T> {
+
+        final Kind kind;
+        final String id;
+        final T item;
+        final long expectedVersion;
+        long sequence;
+        volatile boolean settled;
+
+        Write(Kind kind, String id, T item, long expectedVersion) {
+            this.kind = kind;
+            this.id = id;
+            this.item = item;
+            this.expectedVersion = expectedVersion;
+        }
+
+        static <T> Write<T> flush() {
+            return new Write<>(Kind.FLUSH, null, null, 0);
+        }
+    }
+}
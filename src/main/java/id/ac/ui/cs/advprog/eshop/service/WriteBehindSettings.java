@@ -0,0 +1,21 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import java.time.Duration;
+
+/**
+ * Tuning of the {@link WriteBehindQueue}s the services use when
+ * {@code eshop.write-behind.enabled=true}.
+ *
+ * @param queueCapacity writes that may be waiting before submitters are held back
+ * @param flushSize     most writes applied in one batch
+ * @param flushInterval longest a write waits for its batch to fill up
+ * @param offerTimeout  longest a submitter is held back by a full queue before the write is refused
+ */
+public record WriteBehindSettings(int queueCapacity, int flushSize, Duration flushInterval, Duration offerTimeout) {
+
+    public WriteBehindSettings {
+        if (queueCapacity < 1 || flushSize < 1) {
+            throw new IllegalArgumentException("Queue capacity and flush size must be positive");
+        }
+    }
+}
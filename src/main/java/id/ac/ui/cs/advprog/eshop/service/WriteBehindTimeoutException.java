@@ -0,0 +1,13 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/** Thrown when queued writes a caller waits for were not applied within the offer timeout. */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class WriteBehindTimeoutException extends IllegalStateException {
+
+    public WriteBehindTimeoutException(String name) {
+        super("The queued " + name + " writes were not applied in time; try again later");
+    }
+}
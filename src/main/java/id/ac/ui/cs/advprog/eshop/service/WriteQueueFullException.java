@@ -0,0 +1,13 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/** Thrown when a write-behind queue stayed full for the whole offer timeout. */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class WriteQueueFullException extends IllegalStateException {
+
+    public WriteQueueFullException(String name) {
+        super("The " + name + " write queue is full; try again later");
+    }
+}
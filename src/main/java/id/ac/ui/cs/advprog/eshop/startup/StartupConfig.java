@@ -0,0 +1,29 @@
+package id.ac.ui.cs.advprog.eshop.startup;
+
+import id.ac.ui.cs.advprog.eshop.events.CatalogEventBus;
+import id.ac.ui.cs.advprog.eshop.replication.ReplicationFollower;
+import id.ac.ui.cs.advprog.eshop.replication.ReplicationLeader;
+import id.ac.ui.cs.advprog.eshop.repository.persistence.WriteAheadLog;
+import id.ac.ui.cs.advprog.eshop.search.CatalogSearch;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Keeps the beans that must exist from the first write eager when
+ * {@code spring.main.lazy-initialization=true} defers everything else to its
+ * first use. Nothing depends on the write-ahead logs, so lazily they would
+ * never open, and the same goes for the replication leader and follower; the
+ * event bus and the search index have to see every write to stay complete,
+ * and building the index on the first query would stall it.
+ * Beans with {@code @Scheduled} methods are kept eager by Spring Boot itself.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerCatalogBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(WriteAheadLog.class, CatalogEventBus.class,
+                CatalogSearch.class, ReplicationLeader.class, ReplicationFollower.class);
+    }
+}
@@ -0,0 +1,73 @@
+package id.ac.ui.cs.advprog.eshop.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Requests {@code eshop.startup.warm-up-paths} over loopback once the server
+ * is listening, so the first real visitor does not pay for parsing templates,
+ * creating lazy beans and running cold code. Application runners finish
+ * before Spring Boot reports the application ready to take traffic, so a
+ * load balancer that waits on the readiness probe only sends requests to a
+ * warmed-up instance. Only side-effect free GET pages belong in the list.
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ApplicationContext context;
+    private final List<String> paths;
+
+    public StartupWarmup(ApplicationContext context,
+                         @Value("${eshop.startup.warm-up-paths:}") List<String> paths) {
+        this.context = context;
+        this.paths = paths;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // No server in mock-environment tests or with spring.main.web-application-type=none
+        if (paths.isEmpty() || !(context instanceof WebServerApplicationContext webContext)
+                || webContext.getWebServer() == null) {
+            return;
+        }
+        int port = webContext.getWebServer().getPort();
+        HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+        long start = System.nanoTime();
+        for (String path : paths) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path.trim()))
+                    .timeout(REQUEST_TIMEOUT)
+                    .GET()
+                    .build();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    log.warn("Warm-up request to {} returned {}", path, response.statusCode());
+                }
+            } catch (IOException e) {
+                log.warn("Warm-up request to {} failed: {}", path, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.info("Warmed up {} in {} ms", paths, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,84 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.service.CarService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CarApiControllerTest {
+
+    @Mock
+    private CarService carService;
+
+    @InjectMocks
+    private CarApiController carApiController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(carApiController).build();
+    }
+
+    @Test
+    void testUpdateReturnsStoredCar() throws Exception {
+        when(carService.update(eq("c-1"), any(Car.class))).thenAnswer(invocation -> {
+            Car stored = invocation.<Car>getArgument(1).copy();
+            stored.setVersion(stored.getVersion() + 1);
+            return stored;
+        });
+
+        mockMvc.perform(put("/api/cars/c-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"carName\":\"Brio\",\"carColor\":\"Red\",\"carQuantity\":2,\"version\":3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.carId").value("c-1"))
+                .andExpect(jsonPath("$.version").value(4));
+    }
+
+    @Test
+    void testUpdateOfMissingCarIsNotFound() throws Exception {
+        when(carService.update(eq("missing"), any(Car.class))).thenReturn(null);
+
+        mockMvc.perform(put("/api/cars/missing")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"carName\":\"Brio\",\"carQuantity\":2}"))
+                .andExpect(status().isNotFound());
+
+        verify(carService, never()).findById(anyString());
+    }
+
+    @Test
+    void testInvalidCarIsBadRequest() throws Exception {
+        mockMvc.perform(put("/api/cars/c-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"carName\":\" \",\"carQuantity\":2}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/cars")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"carName\":\"Brio\",\"carQuantity\":-1}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(carService);
+    }
+
+    @Test
+    void testForeignCursorIsBadRequest() throws Exception {
+        when(carService.findAfter("not-a-cursor", 20)).thenThrow(new IllegalArgumentException("Invalid page cursor: not-a-cursor"));
+
+        mockMvc.perform(get("/api/cars").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,171 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.service.CarService;
+import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ListPageCacheFilterTest {
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private CarService carService;
+
+    private ListPageCacheFilter filter;
+    private final AtomicInteger renders = new AtomicInteger();
+
+    private final HttpServlet view = new HttpServlet() {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            renders.incrementAndGet();
+            response.setContentType("text/html;charset=UTF-8");
+            response.getWriter().write("<html>render " + renders.get() + "</html>");
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        filter = new ListPageCacheFilter(productService, carService, 100);
+    }
+
+    private MockHttpServletResponse get(String path, String query, boolean gzip) throws Exception {
+        return get(path, query, gzip ? "gzip, deflate" : null);
+    }
+
+    private MockHttpServletResponse get(String path, String query, String acceptEncoding) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (query != null) {
+            request.setQueryString(query);
+            for (String pair : query.split("&")) {
+                String[] parts = pair.split("=");
+                request.addParameter(parts[0], parts[1]);
+            }
+        }
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(view));
+        return response;
+    }
+
+    @Test
+    void testRepeatViewSkipsRendering() throws Exception {
+        when(productService.catalogVersion()).thenReturn(1L);
+
+        MockHttpServletResponse first = get(ListPageCacheFilter.PRODUCT_LIST, "page=0&size=20", false);
+        MockHttpServletResponse second = get(ListPageCacheFilter.PRODUCT_LIST, "size=20&page=0", false);
+
+        assertEquals(1, renders.get(), "Same parameters in another order should hit the cache");
+        assertEquals("<html>render 1</html>", first.getContentAsString());
+        assertEquals("<html>render 1</html>", second.getContentAsString());
+        assertEquals("text/html;charset=UTF-8", second.getContentType());
+    }
+
+    @Test
+    void testWriteInvalidatesThroughVersion() throws Exception {
+        when(productService.catalogVersion()).thenReturn(1L, 2L);
+
+        get(ListPageCacheFilter.PRODUCT_LIST, null, false);
+        MockHttpServletResponse afterWrite = get(ListPageCacheFilter.PRODUCT_LIST, null, false);
+
+        assertEquals(2, renders.get());
+        assertEquals("<html>render 2</html>", afterWrite.getContentAsString());
+    }
+
+    @Test
+    void testDifferentPagesAreCachedSeparately() throws Exception {
+        when(carService.catalogVersion()).thenReturn(1L);
+
+        get(ListPageCacheFilter.CAR_LIST, "page=0", false);
+        get(ListPageCacheFilter.CAR_LIST, "page=1", false);
+        get(ListPageCacheFilter.CAR_LIST, "page=1", false);
+
+        assertEquals(2, renders.get());
+        assertEquals(2, filter.size());
+    }
+
+    @Test
+    void testServesPreEncodedGzip() throws Exception {
+        when(productService.catalogVersion()).thenReturn(1L);
+
+        get(ListPageCacheFilter.PRODUCT_LIST, null, false);
+        MockHttpServletResponse response = get(ListPageCacheFilter.PRODUCT_LIST, null, true);
+
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals("<html>render 1</html>", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testGzipRefusedByQualityIsNotSent() throws Exception {
+        when(productService.catalogVersion()).thenReturn(1L);
+
+        get(ListPageCacheFilter.PRODUCT_LIST, null, false);
+        MockHttpServletResponse response = get(ListPageCacheFilter.PRODUCT_LIST, null, "gzip;q=0, deflate");
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("<html>render 1</html>", response.getContentAsString());
+    }
+
+    @Test
+    void testAcceptEncodingQualities() {
+        assertTrue(ListPageCacheFilter.acceptsGzip("gzip"));
+        assertTrue(ListPageCacheFilter.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(ListPageCacheFilter.acceptsGzip("br, *"));
+        assertFalse(ListPageCacheFilter.acceptsGzip("gzip;q=0"));
+        assertFalse(ListPageCacheFilter.acceptsGzip("gzip; q=0.0, *"));
+        assertFalse(ListPageCacheFilter.acceptsGzip("*;q=0"));
+        assertFalse(ListPageCacheFilter.acceptsGzip("identity"));
+        assertFalse(ListPageCacheFilter.acceptsGzip(null));
+    }
+
+    @Test
+    void testUnrelatedParametersShareTheCachedPage() throws Exception {
+        when(productService.catalogVersion()).thenReturn(1L);
+
+        get(ListPageCacheFilter.PRODUCT_LIST, "page=1", false);
+        get(ListPageCacheFilter.PRODUCT_LIST, "page=1&utm_source=mail", false);
+        get(ListPageCacheFilter.PRODUCT_LIST, "page=1&_=1700000000", false);
+
+        assertEquals(1, renders.get());
+        assertEquals(1, filter.size());
+    }
+
+    @Test
+    void testOtherRequestsPassThrough() throws Exception {
+        MockHttpServletResponse response = get("/product/create", null, false);
+
+        assertEquals(1, renders.get());
+        assertEquals("<html>render 1</html>", response.getContentAsString());
+        assertNull(response.getHeader(HttpHeaders.VARY));
+        assertEquals(0, filter.size());
+    }
+}
@@ -0,0 +1,130 @@
+package id.ac.ui.cs.advprog.eshop.controller;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductApiControllerTest {
+
+    @Mock
+    private ProductService productService;
+
+    @InjectMocks
+    private ProductApiController productApiController;
+
+    private MockMvc mockMvc;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(productApiController).build();
+        product = new Product();
+        product.setProductId("1");
+        product.setProductName("Test Product");
+        product.setProductQuantity(10);
+    }
+
+    @Test
+    void testListSendsStrongETag() throws Exception {
+        when(productService.catalogVersion()).thenReturn(7L);
+        when(productService.findPage(0, 20)).thenReturn(List.of(product));
+
+        String etag = mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].productName").value("Test Product"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertEquals(CatalogETag.of(7L), etag);
+    }
+
+    @Test
+    void testUnchangedCatalogAnswersNotModifiedWithoutLoading() throws Exception {
+        when(productService.catalogVersion()).thenReturn(7L);
+
+        mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, CatalogETag.of(7L)))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(productService, never()).findPage(anyInt(), anyInt());
+    }
+
+    @Test
+    void testChangedCatalogIsSentAgain() throws Exception {
+        when(productService.catalogVersion()).thenReturn(8L);
+        when(productService.findPage(0, 20)).thenReturn(List.of(product));
+
+        mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, CatalogETag.of(7L)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, CatalogETag.of(8L)));
+        assertNotEquals(CatalogETag.of(7L), CatalogETag.of(8L));
+    }
+
+    @Test
+    void testGetMissingProduct() throws Exception {
+        when(productService.findById("missing")).thenReturn(null);
+
+        mockMvc.perform(get("/api/products/missing")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testCreateProduct() throws Exception {
+        when(productService.create(any(Product.class))).thenAnswer(invocation -> {
+            Product created = invocation.getArgument(0);
+            created.setProductId("new-id");
+            return created;
+        });
+
+        mockMvc.perform(post("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productName\":\"Sampo\",\"productQuantity\":3}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/api/products/new-id"))
+                .andExpect(jsonPath("$.productId").value("new-id"));
+    }
+
+    @Test
+    void testCreateOverAnExistingIdIsConflict() throws Exception {
+        when(productService.create(any(Product.class))).thenThrow(new DuplicateIdException("p-1"));
+
+        mockMvc.perform(post("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productId\":\"p-1\",\"productName\":\"Sampo\",\"productQuantity\":3}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testInvalidUpdateIsBadRequest() throws Exception {
+        mockMvc.perform(put("/api/products/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productName\":\" \",\"productQuantity\":3}"))
+                .andExpect(status().isBadRequest());
+
+        verify(productService, never()).update(any(Product.class));
+    }
+
+    @Test
+    void testDeleteProduct() throws Exception {
+        mockMvc.perform(delete("/api/products/1")).andExpect(status().isNoContent());
+
+        verify(productService).delete("1");
+    }
+}
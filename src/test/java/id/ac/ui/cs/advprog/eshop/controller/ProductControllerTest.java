@@ -1,6 +1,9 @@
 package id.ac.ui.cs.advprog.eshop.controller;
 
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
 import id.ac.ui.cs.advprog.eshop.service.ProductService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,10 +11,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
+import org.springframework.web.server.ResponseStatusException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 import java.util.Arrays;
@@ -67,13 +73,85 @@ public class ProductControllerTest {
         assertEquals("CreateProduct", viewName);
     }
 
+    @Test
+    void testCreateProductPostOverAnExistingIdReturnsToForm() {
+        when(bindingResult.hasErrors()).thenReturn(false);
+        when(productService.create(product)).thenThrow(new DuplicateIdException("1"));
+
+        String viewName = productController.createProductPost(product, bindingResult, model);
+        verify(bindingResult).reject(eq("duplicate"), anyString());
+        assertEquals("CreateProduct", viewName);
+    }
+
     @Test
     void testProductListPage() {
         List<Product> products = Arrays.asList(product);
-        when(productService.findAll()).thenReturn(products);
+        when(productService.searchByName(null, null, 20)).thenReturn(new Page<>(products, null));
+
+        String viewName = productController.productListPage(null, null, 20, null, model);
+        assertEquals("ProductList", viewName);
+        verify(model).addAttribute("products", products);
+        verify(model).addAttribute("hasNext", false);
+    }
+
+    @Test
+    void testProductListPageClampsPageSize() {
+        when(productService.searchByName(null, null, ProductController.MAX_PAGE_SIZE)).thenReturn(new Page<>(List.of(), null));
+
+        productController.productListPage(null, null, 100000, null, model);
+        verify(productService).searchByName(null, null, ProductController.MAX_PAGE_SIZE);
+    }
+
+    @Test
+    void testProductListPageAfterCursor() {
+        List<Product> products = Arrays.asList(product);
+        when(productService.searchByName(null, "7", 1)).thenReturn(new Page<>(products, "8"));
+
+        String viewName = productController.productListPage(null, null, 1, "7", model);
+        assertEquals("ProductList", viewName);
+        verify(model).addAttribute("hasNext", true);
+        verify(model).addAttribute("nextAfter", "8");
+        verify(productService, never()).findPage(anyInt(), anyInt());
+    }
+
+    @Test
+    void testProductListPageRejectsForeignCursor() {
+        when(productService.searchByName(null, "x", 20)).thenThrow(new IllegalArgumentException("Invalid page cursor: x"));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> productController.productListPage(null, null, 20, "x", model));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    @Test
+    void testProductListPageRejectsPageNumbers() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> productController.productListPage(null, "3", 20, null, model));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void testProductListPageWithSearch() {
+        List<Product> products = Arrays.asList(product);
+        when(productService.searchByName("Test", null, 20)).thenReturn(new Page<>(products, null));
 
-        String viewName = productController.productListPage(model);
+        String viewName = productController.productListPage("Test", null, 20, null, model);
         assertEquals("ProductList", viewName);
+        verify(model).addAttribute("products", products);
+        verify(model).addAttribute("hasNext", false);
+        verify(productService, never()).searchByName("Test");
+    }
+
+    @Test
+    void testProductListPageSearchIsPagedByCursor() {
+        List<Product> products = Arrays.asList(product);
+        when(productService.searchByName("Test", "4:testa", 2)).thenReturn(new Page<>(products, "4:testb"));
+
+        productController.productListPage("Test", null, 2, "4:testa", model);
+        verify(model).addAttribute("products", products);
+        verify(model).addAttribute("hasNext", true);
+        verify(model).addAttribute("nextAfter", "4:testb");
     }
 
     @Test
@@ -108,6 +186,17 @@ public class ProductControllerTest {
         assertEquals("EditProduct", viewName);
     }
 
+    @Test
+    void testEditProductPostConflictReturnsToForm() {
+        when(bindingResult.hasErrors()).thenReturn(false);
+        when(productService.update(product)).thenThrow(new StaleUpdateException("1", 0, 3));
+
+        String viewName = productController.editProductPost(product, bindingResult);
+        assertEquals("EditProduct", viewName);
+        verify(bindingResult).reject(eq("conflict"), anyString());
+        assertEquals(3, product.getVersion(), "A resubmit should be based on the current version");
+    }
+
     @Test
     void testDeleteProduct() {
         String viewName = productController.deleteProduct("1");
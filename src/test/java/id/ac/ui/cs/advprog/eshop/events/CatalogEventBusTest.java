@@ -0,0 +1,112 @@
+package id.ac.ui.cs.advprog.eshop.events;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogEventBusTest {
+
+    private ProductRepository productRepository;
+    private CarRepository carRepository;
+    private CatalogEventBus bus;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = new ProductRepository();
+        carRepository = new CarRepository();
+        bus = new CatalogEventBus(productRepository, carRepository, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.close();
+    }
+
+    private Product newProduct(String id, String name) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName(name);
+        product.setProductQuantity(1);
+        return product;
+    }
+
+    @Test
+    void testRepositoryWritesArePublishedInOrder() throws Exception {
+        productRepository.create(newProduct("p-1", "Sampo Cap Bambang"));
+        productRepository.update(newProduct("p-1", "Sampo Cap Usep"));
+        Car car = new Car();
+        car.setCarId("c-1");
+        car.setCarName("Brio");
+        carRepository.create(car);
+        productRepository.delete("p-1");
+
+        List<CatalogEvent> events = new ArrayList<>();
+        assertEquals(4, bus.await(0, 10, events, Duration.ZERO));
+        assertEquals(CatalogEvent.Type.PUT, events.get(0).type());
+        assertEquals("Sampo Cap Usep", ((Product) events.get(1).item()).getProductName());
+        assertEquals("car", events.get(2).entity());
+        assertEquals(CatalogEvent.Type.DELETE, events.get(3).type());
+        assertNull(events.get(3).item());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i, events.get(i).sequence());
+        }
+    }
+
+    @Test
+    void testAwaitTimesOutWithoutEvents() throws Exception {
+        List<CatalogEvent> events = new ArrayList<>();
+        assertEquals(0, bus.await(0, 10, events, Duration.ofMillis(20)));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void testWaitingReaderIsWokenByWrite() throws Exception {
+        CompletableFuture<List<CatalogEvent>> reader = CompletableFuture.supplyAsync(() -> {
+            List<CatalogEvent> events = new ArrayList<>();
+            try {
+                bus.await(0, 10, events, Duration.ofSeconds(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return events;
+        });
+        Thread.sleep(50);
+        productRepository.create(newProduct("p-1", "Sampo Cap Bambang"));
+
+        List<CatalogEvent> events = reader.get(5, TimeUnit.SECONDS);
+        assertEquals(1, events.size());
+        assertEquals("p-1", events.get(0).id());
+    }
+
+    @Test
+    void testSlowReaderIsLapped() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            productRepository.create(newProduct("p-" + i, "Product " + i));
+        }
+        assertEquals(EventRing.LAPPED, bus.await(0, 10, new ArrayList<>(), Duration.ZERO));
+    }
+
+    @Test
+    void testResumeAfterEventId() {
+        productRepository.create(newProduct("p-1", "Sampo Cap Bambang"));
+        productRepository.create(newProduct("p-2", "Sampo Cap Usep"));
+
+        assertEquals(1, bus.resumeAfter(bus.eventId(0)));
+        assertEquals(0, bus.resumeAfter(bus.eventId(-1)));
+        assertEquals(-1, bus.resumeAfter(bus.eventId(5)), "Ids past the head are not from this stream");
+        assertEquals(-1, bus.resumeAfter("0-1"), "Ids from another run are not resumable");
+        assertEquals(-1, bus.resumeAfter("garbage"));
+    }
+}
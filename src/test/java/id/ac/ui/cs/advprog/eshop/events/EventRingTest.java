@@ -0,0 +1,100 @@
+package id.ac.ui.cs.advprog.eshop.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventRingTest {
+
+    @Test
+    void testCapacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new EventRing<String>(5).capacity());
+        assertEquals(1, new EventRing<String>(1).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new EventRing<String>(0));
+    }
+
+    @Test
+    void testReadFollowsPublishedSequence() {
+        EventRing<String> ring = new EventRing<>(8);
+        assertEquals(0, ring.publish(sequence -> "e" + sequence));
+        assertEquals(1, ring.publish(sequence -> "e" + sequence));
+        assertEquals(2, ring.head());
+
+        List<String> out = new ArrayList<>();
+        assertEquals(2, ring.read(0, 10, out));
+        assertEquals(List.of("e0", "e1"), out);
+
+        out.clear();
+        assertEquals(0, ring.read(2, 10, out), "Nothing past the head yet");
+        assertEquals(1, ring.read(1, 10, out));
+        assertEquals(List.of("e1"), out);
+    }
+
+    @Test
+    void testReadRespectsMax() {
+        EventRing<String> ring = new EventRing<>(8);
+        for (int i = 0; i < 5; i++) {
+            ring.publish(sequence -> "e" + sequence);
+        }
+        List<String> out = new ArrayList<>();
+        assertEquals(3, ring.read(0, 3, out));
+        assertEquals(List.of("e0", "e1", "e2"), out);
+    }
+
+    @Test
+    void testOverwrittenSequenceIsReportedAsLapped() {
+        EventRing<String> ring = new EventRing<>(4);
+        for (int i = 0; i < 6; i++) {
+            ring.publish(sequence -> "e" + sequence);
+        }
+        List<String> out = new ArrayList<>();
+        assertEquals(EventRing.LAPPED, ring.read(0, 10, out));
+        assertEquals(EventRing.LAPPED, ring.read(1, 10, out));
+        assertTrue(out.isEmpty());
+
+        assertEquals(4, ring.read(2, 10, out));
+        assertEquals(List.of("e2", "e3", "e4", "e5"), out);
+    }
+
+    @Test
+    void testConcurrentPublishersLoseNoEvent() throws Exception {
+        int threads = 8;
+        int eventsPerThread = 5000;
+        EventRing<Long> ring = new EventRing<>(threads * eventsPerThread);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < eventsPerThread; i++) {
+                    ring.publish(sequence -> sequence);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Long> out = new ArrayList<>();
+        assertEquals(threads * eventsPerThread, ring.read(0, Integer.MAX_VALUE, out));
+        Set<Long> distinct = new HashSet<>(out);
+        assertEquals(threads * eventsPerThread, distinct.size());
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals((long) i, (long) out.get(i), "Each slot holds the event of its own sequence");
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package id.ac.ui.cs.advprog.eshop.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The user flows {@link LoadGenerator} replays against {@code ProductController}
+ * and {@code CarController}, each the requests a browser makes for one task,
+ * redirects included. Creates post an id chosen here, so later edits and
+ * deletes can target items without scraping list pages for them.
+ */
+final class CatalogFlows {
+
+    /** Default weights: mostly browsing, with every write flow present. */
+    static final Map<String, Integer> DEFAULT_MIX = defaultMix();
+
+    private static final String[] WORDS = {"sampo", "sabun", "kecap", "teh", "kopi", "gula", "minyak", "garam"};
+    private static final String[] COLORS = {"Red", "Blue", "Black", "White", "Silver"};
+    private static final Pattern VERSION = Pattern.compile("name=\"version\"[^>]*value=\"(\\d+)\"");
+    private static final Pattern NEXT_CURSOR = Pattern.compile("[?&;]after=([^&\"]+)");
+    private static final int ID_POOL_SIZE = 1024;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    @FunctionalInterface
+    interface Flow {
+        void run(LoadGenerator.Session session) throws IOException, InterruptedException;
+    }
+
+    private final URI base;
+    private final IdPool products = new IdPool(ID_POOL_SIZE);
+    private final IdPool cars = new IdPool(ID_POOL_SIZE);
+
+    CatalogFlows(URI base) {
+        this.base = base;
+    }
+
+    private static Map<String, Integer> defaultMix() {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        mix.put("browse-products", 35);
+        mix.put("search-products", 10);
+        mix.put("browse-cars", 15);
+        mix.put("create-product", 10);
+        mix.put("edit-product", 12);
+        mix.put("delete-product", 5);
+        mix.put("create-car", 6);
+        mix.put("edit-car", 5);
+        mix.put("delete-car", 2);
+        return mix;
+    }
+
+    Flow flow(String name) {
+        return switch (name) {
+            case "browse-products" -> session -> browse(session, "GET /product/list", "/product/list");
+            case "search-products" -> session -> session.send("GET /product/list?search",
+                    get("/product/list?search=" + word()));
+            case "browse-cars" -> session -> browse(session, "GET /car/listCar", "/car/listCar");
+            case "create-product" -> session -> {
+                session.send("GET /product/create", get("/product/create"));
+                createProduct(session);
+                session.send("GET /product/list", get("/product/list"));
+            };
+            case "edit-product" -> this::editProduct;
+            case "delete-product" -> session -> {
+                String id = products.take();
+                if (id != null) {
+                    session.send("POST /product/delete", post("/product/delete", "id", id));
+                }
+                session.send("GET /product/list", get("/product/list"));
+            };
+            case "create-car" -> session -> {
+                session.send("GET /car/createCar", get("/car/createCar"));
+                createCar(session);
+                session.send("GET /car/listCar", get("/car/listCar"));
+            };
+            case "edit-car" -> this::editCar;
+            case "delete-car" -> session -> {
+                String id = cars.take();
+                if (id != null) {
+                    session.send("POST /car/deleteCar", post("/car/deleteCar", "carId", id));
+                }
+                session.send("GET /car/listCar", get("/car/listCar"));
+            };
+            default -> throw new IllegalArgumentException("Unknown flow " + name);
+        };
+    }
+
+    void createProduct(LoadGenerator.Session session) throws IOException, InterruptedException {
+        String id = UUID.randomUUID().toString();
+        session.send("POST /product/create", post("/product/create", "productId", id,
+                "productName", name(), "productQuantity", quantity()));
+        products.add(id);
+    }
+
+    void createCar(LoadGenerator.Session session) throws IOException, InterruptedException {
+        String id = UUID.randomUUID().toString();
+        session.send("POST /car/createCar", post("/car/createCar", "carId", id,
+                "carName", name(), "carColor", color(), "carQuantity", quantity()));
+        cars.add(id);
+    }
+
+    /** Opens a list and follows its Next links a few pages deep, as a visitor paging through would. */
+    private void browse(LoadGenerator.Session session, String name, String path)
+            throws IOException, InterruptedException {
+        String html = session.send(name, get(path));
+        for (int pages = page(); pages > 0; pages--) {
+            Matcher next = NEXT_CURSOR.matcher(html);
+            if (!next.find()) {
+                return;
+            }
+            html = session.send(name, get(path + "?after=" + next.group(1)));
+        }
+    }
+
+    private void editProduct(LoadGenerator.Session session) throws IOException, InterruptedException {
+        String id = products.peek();
+        if (id == null) {
+            session.send("GET /product/list", get("/product/list"));
+            return;
+        }
+        String form = session.send("GET /product/edit", get("/product/edit?id=" + encode(id)));
+        Matcher version = VERSION.matcher(form);
+        if (!version.find()) {
+            // Deleted in the meantime; the page redirected to the list
+            return;
+        }
+        session.send("POST /product/edit", post("/product/edit", "productId", id, "version", version.group(1),
+                "productName", name(), "productQuantity", quantity()));
+        session.send("GET /product/list", get("/product/list"));
+    }
+
+    private void editCar(LoadGenerator.Session session) throws IOException, InterruptedException {
+        String id = cars.peek();
+        if (id == null) {
+            session.send("GET /car/listCar", get("/car/listCar"));
+            return;
+        }
+        String form = session.send("GET /car/editCar", get("/car/editCar/" + encode(id)));
+        Matcher version = VERSION.matcher(form);
+        if (!version.find()) {
+            return;
+        }
+        session.send("POST /car/editCar", post("/car/editCar", "carId", id, "version", version.group(1),
+                "carName", name(), "carColor", color(), "carQuantity", quantity()));
+        session.send("GET /car/listCar", get("/car/listCar"));
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    private HttpRequest post(String path, String... fields) {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < fields.length; i += 2) {
+            if (i > 0) {
+                form.append('&');
+            }
+            form.append(fields[i]).append('=').append(encode(fields[i + 1]));
+        }
+        return HttpRequest.newBuilder(base.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form.toString()))
+                .build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static int page() {
+        // Most visitors stay on the first pages
+        return Math.min(ThreadLocalRandom.current().nextInt(8), ThreadLocalRandom.current().nextInt(8));
+    }
+
+    private static String word() {
+        return WORDS[ThreadLocalRandom.current().nextInt(WORDS.length)];
+    }
+
+    private static String name() {
+        return word() + " " + word() + " " + ThreadLocalRandom.current().nextInt(1000);
+    }
+
+    private static String color() {
+        return COLORS[ThreadLocalRandom.current().nextInt(COLORS.length)];
+    }
+
+    private static String quantity() {
+        return Integer.toString(1 + ThreadLocalRandom.current().nextInt(100));
+    }
+
+    /**
+     * Ids of items known to exist, kept in fixed slots so picking a random one
+     * is lock-free. Once the slots are full a create overwrites a random one,
+     * so the pool forgets some items rather than growing without bound.
+     */
+    static final class IdPool {
+
+        private static final int ATTEMPTS = 8;
+
+        private final AtomicReferenceArray<String> slots;
+
+        IdPool(int size) {
+            this.slots = new AtomicReferenceArray<>(size);
+        }
+
+        void add(String id) {
+            for (int i = 0; i < ATTEMPTS; i++) {
+                if (slots.compareAndSet(ThreadLocalRandom.current().nextInt(slots.length()), null, id)) {
+                    return;
+                }
+            }
+            slots.set(ThreadLocalRandom.current().nextInt(slots.length()), id);
+        }
+
+        /** A random known id, or null when none was found quickly. */
+        String peek() {
+            for (int i = 0; i < ATTEMPTS; i++) {
+                String id = slots.get(ThreadLocalRandom.current().nextInt(slots.length()));
+                if (id != null) {
+                    return id;
+                }
+            }
+            return null;
+        }
+
+        /** Removes and returns a random known id, or null when none was found quickly. */
+        String take() {
+            for (int i = 0; i < ATTEMPTS; i++) {
+                String id = slots.getAndSet(ThreadLocalRandom.current().nextInt(slots.length()), null);
+                if (id != null) {
+                    return id;
+                }
+            }
+            return null;
+        }
+    }
+}
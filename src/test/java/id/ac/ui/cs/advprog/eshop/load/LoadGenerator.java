@@ -0,0 +1,384 @@
+package id.ac.ui.cs.advprog.eshop.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of product and car flows from {@link CatalogFlows} against a
+ * running application at a fixed rate of flow arrivals (an open model): new
+ * flows start on schedule however slow the responses get, the way real
+ * visitors keep arriving.
+ * <p>
+ * Latency is measured from the moment a request was due, not from when it
+ * was sent: the first request of a flow is due at the flow's scheduled
+ * arrival, every later one as soon as the previous answer came back. A stall
+ * in the application or in the generator therefore shows up in full in the
+ * percentiles instead of silently delaying the requests that would have
+ * measured it (coordinated omission). The latency from actually sending each
+ * request is reported next to it; a large gap between the two means requests
+ * were waiting to be sent.
+ * <p>
+ * Run with {@code ./gradlew loadGenerator}, which boots the application jar
+ * on a free port, or point it at a running instance with
+ * {@code -PloadTarget=http://host:port}. Results go to
+ * {@code build/load-generator/<timestamp>}: {@code summary.txt},
+ * {@code summary.csv} for comparing builds, and one {@code .hgrm} percentile
+ * distribution per request, which HdrHistogram's plotter can overlay.
+ */
+public class LoadGenerator {
+
+    private static final int SEED_PRODUCTS = 1000;
+    private static final int SEED_CARS = 1000;
+    private static final int MAX_IN_FLIGHT = 10_000;
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration START_TIMEOUT = Duration.ofSeconds(60);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final HttpClient http;
+    private final Map<String, Stats> requests = new ConcurrentHashMap<>();
+    private final Map<String, Stats> flows = new ConcurrentHashMap<>();
+    private final AtomicLong lastCompletion = new AtomicLong();
+    private volatile long measureFrom = Long.MAX_VALUE;
+
+    LoadGenerator(HttpClient http) {
+        this.http = http;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path bootJar = Path.of(args[0]);
+        Path outputDir = Path.of(args[1]).resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        double rate = Double.parseDouble(args[2]);
+        Duration duration = Duration.ofSeconds(Long.parseLong(args[3]));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(args[4]));
+        Map<String, Integer> mix = args.length > 5 && !args[5].isBlank() ? parseMix(args[5]) : CatalogFlows.DEFAULT_MIX;
+        String target = args.length > 6 ? args[6] : "";
+
+        Process application = null;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(executor)
+                    .build();
+            URI base;
+            if (target.isBlank()) {
+                int port = freePort();
+                base = URI.create("http://localhost:" + port + "/");
+                application = boot(bootJar, port);
+                awaitReady(http, base, application);
+            } else {
+                base = URI.create(target.endsWith("/") ? target : target + "/");
+            }
+
+            LoadGenerator generator = new LoadGenerator(http);
+            CatalogFlows catalog = new CatalogFlows(base);
+            generator.seed(catalog);
+            Result result = generator.run(catalog, mix, rate, warmup, duration, executor);
+
+            Files.createDirectories(outputDir);
+            List<String> summary = generator.summary(base, mix, rate, warmup, duration, result);
+            summary.forEach(System.out::println);
+            Files.write(outputDir.resolve("summary.txt"), summary);
+            Files.write(outputDir.resolve("summary.csv"), generator.csv());
+            generator.writeDistributions(outputDir);
+            System.out.println("Results written to " + outputDir);
+        } finally {
+            if (application != null) {
+                application.destroy();
+                application.waitFor();
+            }
+        }
+    }
+
+    static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Mix entries look like flow=weight, not " + entry);
+            }
+            mix.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+
+    /** Creates the items the browse, edit and delete flows work on, outside of the measurement. */
+    private void seed(CatalogFlows catalog) throws IOException, InterruptedException {
+        Session session = new Session(System.nanoTime());
+        for (int i = 0; i < SEED_PRODUCTS; i++) {
+            catalog.createProduct(session);
+        }
+        for (int i = 0; i < SEED_CARS; i++) {
+            catalog.createCar(session);
+        }
+    }
+
+    record Result(long scheduled, long completed, long failed, long maxInFlight, long measuredNanos) {
+    }
+
+    private Result run(CatalogFlows catalog, Map<String, Integer> mix, double rate, Duration warmup,
+                       Duration duration, ExecutorService executor) throws InterruptedException {
+        List<String> names = new ArrayList<>(mix.keySet());
+        List<CatalogFlows.Flow> choices = new ArrayList<>();
+        int[] cumulative = new int[names.size()];
+        int total = 0;
+        for (int i = 0; i < names.size(); i++) {
+            choices.add(catalog.flow(names.get(i)));
+            total += mix.get(names.get(i));
+            cumulative[i] = total;
+        }
+
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        AtomicLong maxInFlight = new AtomicLong();
+        LongAdder completed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        double interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long scheduled = 0;
+
+        for (long n = 0; ; n++) {
+            long due = start + (long) (n * interval);
+            if (due >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int pick = ThreadLocalRandom.current().nextInt(total);
+            int choice = 0;
+            while (cumulative[choice] <= pick) {
+                choice++;
+            }
+            String name = names.get(choice);
+            CatalogFlows.Flow flow = choices.get(choice);
+            boolean measured = due >= measureFrom;
+            if (measured) {
+                scheduled++;
+            }
+            // Blocks only when the application is hopelessly behind; the wait still counts, since latency starts at due
+            inFlight.acquire();
+            maxInFlight.accumulateAndGet(MAX_IN_FLIGHT - inFlight.availablePermits(), Math::max);
+            executor.execute(() -> {
+                Session session = new Session(due);
+                try {
+                    flow.run(session);
+                    if (measured) {
+                        long done = System.nanoTime();
+                        stats(flows, name).record(done - due, done - session.firstSent);
+                        completed.increment();
+                        lastCompletion.accumulateAndGet(done, Math::max);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (measured) {
+                        stats(flows, name).errors.increment();
+                        failed.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        if (!inFlight.tryAcquire(MAX_IN_FLIGHT, DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            System.out.println("Some flows were still running " + DRAIN_TIMEOUT + " after the last arrival");
+        }
+        long measured = Math.max(end, lastCompletion.get()) - measureFrom;
+        return new Result(scheduled, completed.sum(), failed.sum(), maxInFlight.get(), measured);
+    }
+
+    private static Stats stats(Map<String, Stats> map, String name) {
+        return map.computeIfAbsent(name, key -> new Stats());
+    }
+
+    /** One flow run: sends its requests in turn and records each against the time it was due. */
+    final class Session {
+
+        private final boolean measured;
+        private long due;
+        private long firstSent = -1;
+
+        Session(long due) {
+            this.due = due;
+            this.measured = due >= measureFrom;
+        }
+
+        /**
+         * Sends {@code request} and returns the response body. Redirects count as
+         * success and are not followed; flows request the redirect target themselves.
+         */
+        String send(String name, HttpRequest request) throws IOException, InterruptedException {
+            long sent = System.nanoTime();
+            if (firstSent < 0) {
+                firstSent = sent;
+            }
+            HttpResponse<String> response;
+            try {
+                response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                if (measured) {
+                    stats(requests, name).errors.increment();
+                }
+                throw e;
+            }
+            long done = System.nanoTime();
+            if (response.statusCode() >= 400) {
+                if (measured) {
+                    stats(requests, name).errors.increment();
+                }
+                throw new IOException(name + " returned " + response.statusCode());
+            }
+            if (measured) {
+                stats(requests, name).record(done - due, done - sent);
+            }
+            due = done;
+            return response.body();
+        }
+    }
+
+    static final class Stats {
+
+        final Histogram corrected = new ConcurrentHistogram(3);
+        final Histogram uncorrected = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+
+        void record(long correctedNanos, long uncorrectedNanos) {
+            corrected.recordValue(TimeUnit.NANOSECONDS.toMicros(correctedNanos));
+            uncorrected.recordValue(TimeUnit.NANOSECONDS.toMicros(uncorrectedNanos));
+        }
+    }
+
+    private List<String> summary(URI base, Map<String, Integer> mix, double rate, Duration warmup,
+                                 Duration duration, Result result) {
+        double seconds = result.measuredNanos() / 1e9;
+        long requestCount = requests.values().stream().mapToLong(stats -> stats.corrected.getTotalCount()).sum();
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("target     %s, %.1f flows/s for %ds after %ds of warm-up", base, rate,
+                duration.toSeconds(), warmup.toSeconds()));
+        lines.add("mix        " + mix);
+        lines.add(String.format("achieved   %.1f flows/s, %.1f requests/s; %d of %d flows completed, %d failed, "
+                        + "at most %d in flight", result.completed() / seconds, requestCount / seconds,
+                result.completed(), result.scheduled(), result.failed(), result.maxInFlight()));
+        lines.add("");
+        lines.add("latency in ms from when each request was due (uncorrected: from when it was sent)");
+        lines.add(String.format("%-28s %8s %6s %9s %9s %9s %9s %9s   %9s %9s", "", "count", "errors",
+                "p50", "p90", "p99", "p99.9", "max", "unc p50", "unc p99"));
+        requests.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> lines.add(row(entry.getKey(), entry.getValue())));
+        lines.add("");
+        lines.add("flows, from scheduled arrival to the last response");
+        flows.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> lines.add(row(entry.getKey(), entry.getValue())));
+        return lines;
+    }
+
+    private static String row(String name, Stats stats) {
+        Histogram corrected = stats.corrected;
+        Histogram uncorrected = stats.uncorrected;
+        return String.format("%-28s %8d %6d %9.2f %9.2f %9.2f %9.2f %9.2f   %9.2f %9.2f", name,
+                corrected.getTotalCount(), stats.errors.sum(),
+                millis(corrected, PERCENTILES[0]), millis(corrected, PERCENTILES[1]),
+                millis(corrected, PERCENTILES[2]), millis(corrected, PERCENTILES[3]),
+                corrected.getMaxValue() / 1000.0,
+                millis(uncorrected, PERCENTILES[0]), millis(uncorrected, PERCENTILES[2]));
+    }
+
+    private List<String> csv() {
+        List<String> lines = new ArrayList<>();
+        lines.add("kind,name,count,errors,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,uncorrected_p50_ms,uncorrected_p99_ms,"
+                + "uncorrected_p999_ms");
+        requests.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> lines.add(csvRow("request", entry.getKey(), entry.getValue())));
+        flows.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> lines.add(csvRow("flow", entry.getKey(), entry.getValue())));
+        return lines;
+    }
+
+    private static String csvRow(String kind, String name, Stats stats) {
+        Histogram corrected = stats.corrected;
+        Histogram uncorrected = stats.uncorrected;
+        return String.format("%s,\"%s\",%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f", kind, name,
+                corrected.getTotalCount(), stats.errors.sum(),
+                millis(corrected, 50), millis(corrected, 90), millis(corrected, 99), millis(corrected, 99.9),
+                corrected.getMaxValue() / 1000.0,
+                millis(uncorrected, 50), millis(uncorrected, 99), millis(uncorrected, 99.9));
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private void writeDistributions(Path outputDir) throws IOException {
+        for (Map.Entry<String, Stats> entry : requests.entrySet()) {
+            String file = entry.getKey().replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "") + ".hgrm";
+            try (PrintStream out = new PrintStream(Files.newOutputStream(outputDir.resolve(file)))) {
+                // Values are recorded in microseconds; the distribution is printed in milliseconds
+                entry.getValue().corrected.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static Process boot(Path bootJar, int port) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-jar", bootJar.toString(), "--server.port=" + port,
+                "--management.server.port=0", "--logging.level.root=WARN")
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static void awaitReady(HttpClient http, URI base, Process application) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/product/list")).GET().build();
+        long deadline = System.nanoTime() + START_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!application.isAlive()) {
+                throw new IllegalStateException("The application exited with " + application.exitValue());
+            }
+            try {
+                if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("The application did not answer within " + START_TIMEOUT);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
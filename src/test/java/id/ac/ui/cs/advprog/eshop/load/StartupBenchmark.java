@@ -0,0 +1,180 @@
+package id.ac.ui.cs.advprog.eshop.load;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Starts the packaged application again and again and reports how long it
+ * takes until its readiness probe first answers 200, and how long the first
+ * {@code /product/list} sent after that took: what a load balancer waiting on
+ * readiness lets the first visitor see. Compares the plain executable jar
+ * with all startup optimizations off against the extracted jar with a CDS
+ * archive, with Spring AOT, and with lazy initialization on top.
+ * <p>
+ * Run with {@code ./gradlew startupBenchmark}, optionally with
+ * {@code -PstartupRuns=<n>}. The CDS archives are trained in the work
+ * directory first, the same way the Dockerfile does it.
+ */
+public class StartupBenchmark {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(5);
+    private static final Duration START_TIMEOUT = Duration.ofSeconds(60);
+
+    private static final String[] COMMON_ARGS = {"--logging.level.root=WARN"};
+    // What startup looked like before: no warm-up and the dispatcher servlet created on the first request
+    private static final String[] NO_WARM_UP = {"--eshop.startup.warm-up-paths=", "--spring.mvc.servlet.load-on-startup=-1"};
+
+    record Variant(String name, List<String> jvmArgs, Path jar, List<String> appArgs) {
+    }
+
+    record Sample(long readyMillis, long firstRequestMillis) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path bootJar = Path.of(args[0]);
+        Path workDir = Path.of(args[1]);
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Files.createDirectories(workDir);
+
+        Path extracted = extract(bootJar, workDir.resolve("extracted"));
+        Path archive = workDir.resolve("application.jsa");
+        Path aotArchive = workDir.resolve("application-aot.jsa");
+        train(extracted, archive, List.of());
+        train(extracted, aotArchive, List.of("-Dspring.aot.enabled=true"));
+
+        List<Variant> variants = List.of(
+                new Variant("jar", List.of(), bootJar, List.of(NO_WARM_UP)),
+                new Variant("extracted", List.of(), extracted, List.of()),
+                new Variant("cds", List.of("-XX:SharedArchiveFile=" + archive), extracted, List.of()),
+                new Variant("aot+cds", List.of("-XX:SharedArchiveFile=" + aotArchive, "-Dspring.aot.enabled=true"),
+                        extracted, List.of()),
+                new Variant("aot+cds+lazy", List.of("-XX:SharedArchiveFile=" + aotArchive, "-Dspring.aot.enabled=true",
+                        "-Dspring.main.lazy-initialization=true"), extracted, List.of()));
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-14s %12s %12s %12s %12s", "variant", "ready p50", "ready min", "first p50", "first max"));
+        for (Variant variant : variants) {
+            // One discarded start, so the first measured one does not pay for reading the jars from disk
+            measure(variant);
+            List<Sample> samples = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                samples.add(measure(variant));
+            }
+            long[] ready = samples.stream().mapToLong(Sample::readyMillis).sorted().toArray();
+            long[] first = samples.stream().mapToLong(Sample::firstRequestMillis).sorted().toArray();
+            report.add(String.format("%-14s %10dms %10dms %10dms %10dms", variant.name(),
+                    ready[ready.length / 2], ready[0], first[first.length / 2], first[first.length - 1]));
+        }
+        report.forEach(System.out::println);
+        Files.write(workDir.resolve("results.txt"), report);
+    }
+
+    private static Path extract(Path bootJar, Path destination) throws Exception {
+        deleteRecursively(destination);
+        run(List.of(java(), "-Djarmode=tools", "-jar", bootJar.toString(), "extract", "--destination",
+                destination.toString()));
+        try (Stream<Path> files = Files.list(destination)) {
+            return files.filter(file -> file.toString().endsWith(".jar")).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No jar extracted to " + destination));
+        }
+    }
+
+    /** Starts the application up to a refreshed context and dumps the classes it loaded to {@code archive}. */
+    private static void train(Path jar, Path archive, List<String> jvmArgs) throws Exception {
+        Files.deleteIfExists(archive);
+        List<String> command = new ArrayList<>(List.of(java(), "-XX:ArchiveClassesAtExit=" + archive,
+                "-Dspring.context.exit=onRefresh"));
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-jar", jar.toString(), "--server.port=0", "--management.server.port=0"));
+        command.addAll(Arrays.asList(COMMON_ARGS));
+        run(command);
+    }
+
+    private static Sample measure(Variant variant) throws Exception {
+        int port = freePort();
+        int managementPort = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(java());
+        command.addAll(variant.jvmArgs());
+        command.addAll(List.of("-jar", variant.jar().toString(), "--server.port=" + port,
+                "--management.server.port=" + managementPort));
+        command.addAll(Arrays.asList(COMMON_ARGS));
+        command.addAll(variant.appArgs());
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest readiness = get("http://127.0.0.1:" + managementPort + "/actuator/health/readiness");
+        HttpRequest request = get("http://localhost:" + port + "/product/list");
+        long launched = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            while (System.nanoTime() - launched < START_TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(variant.name() + " exited with " + process.exitValue());
+                }
+                try {
+                    if (client.send(readiness, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        long ready = System.nanoTime();
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        long done = System.nanoTime();
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException(variant.name() + " answered " + response.statusCode());
+                        }
+                        return new Sample((ready - launched) / 1_000_000, (done - ready) / 1_000_000);
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            throw new IllegalStateException(variant.name() + " did not answer within " + START_TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static HttpRequest get(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).timeout(START_TIMEOUT).GET().build();
+    }
+
+    private static void run(List<String> command) throws Exception {
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException(String.join(" ", command) + " exited with " + process.exitValue());
+        }
+    }
+
+    private static String java() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package id.ac.ui.cs.advprog.eshop.load;
+
+import id.ac.ui.cs.advprog.eshop.EshopApplication;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares request handling on Tomcat's platform thread pool with the
+ * {@code virtual} profile. The product repository is slowed down to stand in
+ * for disk or remote storage, then many clients poll {@code /api/products} at
+ * once. Platform threads cap the number of requests inside the repository at
+ * the pool size and the rest queue up; virtual threads let all of them in, and
+ * none of them may pin its carrier while it blocks. Latencies are logged for
+ * comparison but not asserted, since they depend on the machine.
+ * <p>
+ * Run with {@code ./gradlew loadTest}; it is excluded from {@code ./gradlew test}.
+ */
+class VirtualThreadLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int PLATFORM_THREADS = 50;
+    private static final int CLIENTS = 400;
+    private static final int REQUESTS_PER_CLIENT = 25;
+    private static final Duration STORAGE_LATENCY = Duration.ofMillis(20);
+
+    record LoadResult(String mode, int requests, long p50Micros, long p99Micros, long maxMicros, int maxConcurrent) {
+        @Override
+        public String toString() {
+            return String.format("%-8s requests=%d p50=%.1fms p99=%.1fms max=%.1fms max-concurrent=%d",
+                    mode, requests, p50Micros / 1000.0, p99Micros / 1000.0, maxMicros / 1000.0, maxConcurrent);
+        }
+    }
+
+    @Test
+    void testVirtualThreadsLiftConcurrencyCeiling() throws Exception {
+        LoadResult platform = run(false);
+        List<String> pinnedAt = new CopyOnWriteArrayList<>();
+        LoadResult virtual;
+        try (RecordingStream pins = new RecordingStream()) {
+            pins.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+            pins.onEvent(PINNED_EVENT, event -> pinnedAt.add(describe(event)));
+            pins.startAsync();
+            virtual = run(true);
+            pins.stop();
+        }
+        log.info("{}", platform);
+        log.info("{}", virtual);
+
+        assertEquals(CLIENTS * REQUESTS_PER_CLIENT, platform.requests(), "Every request should be answered with 200");
+        assertEquals(CLIENTS * REQUESTS_PER_CLIENT, virtual.requests(), "Every request should be answered with 200");
+        assertTrue(platform.maxConcurrent() <= PLATFORM_THREADS, "Platform threads should cap concurrency at the pool size");
+        assertTrue(virtual.maxConcurrent() > PLATFORM_THREADS, "Virtual threads should not be capped by the pool size");
+        assertEquals(List.of(), pinnedAt, "No request should pin its carrier thread while blocked");
+    }
+
+    private static String describe(RecordedEvent event) {
+        RecordedStackTrace stack = event.getStackTrace();
+        if (stack == null) {
+            return "pinned for " + event.getDuration();
+        }
+        StringBuilder frames = new StringBuilder("pinned for " + event.getDuration());
+        stack.getFrames().stream().limit(8).forEach(frame -> frames.append("\n  at ")
+                .append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName()));
+        return frames.toString();
+    }
+
+    private LoadResult run(boolean virtualThreads) throws Exception {
+        SlowStorage.IN_FLIGHT.set(0);
+        SlowStorage.MAX_IN_FLIGHT.set(0);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EshopApplication.class, SlowStorage.class)
+                .properties("server.port=0",
+                        "management.server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "server.tomcat.threads.max=" + PLATFORM_THREADS,
+                        "server.tomcat.max-connections=10000",
+                        "server.tomcat.accept-count=10000",
+                        "logging.level.root=WARN",
+                        "logging.level.id.ac.ui.cs.advprog.eshop.load=INFO")
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/api/products?size=10");
+            AtomicInteger answered = new AtomicInteger();
+            long[] latencies = drive(uri, answered);
+            Arrays.sort(latencies);
+            return new LoadResult(virtualThreads ? "virtual" : "platform", answered.get(),
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1],
+                    SlowStorage.MAX_IN_FLIGHT.get());
+        }
+    }
+
+    private long[] drive(URI uri, AtomicInteger answered) throws Exception {
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+            HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+            // Warm up the JIT and the connection pool before measuring
+            for (int i = 0; i < 200; i++) {
+                http.send(request, HttpResponse.BodyHandlers.discarding());
+            }
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(clients.submit(() -> {
+                    long[] samples = new long[REQUESTS_PER_CLIENT];
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        long start = System.nanoTime();
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        samples[i] = (System.nanoTime() - start) / 1_000;
+                        if (response.statusCode() == 200) {
+                            answered.incrementAndGet();
+                        }
+                    }
+                    return samples;
+                }));
+            }
+            long[] all = new long[CLIENTS * REQUESTS_PER_CLIENT];
+            int offset = 0;
+            for (Future<long[]> future : futures) {
+                long[] samples = future.get();
+                System.arraycopy(samples, 0, all, offset, samples.length);
+                offset += samples.length;
+            }
+            return all;
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /** Replaces the product repository with one whose reads block like storage I/O would. */
+    @TestConfiguration
+    static class SlowStorage {
+
+        static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+        static final AtomicInteger MAX_IN_FLIGHT = new AtomicInteger();
+
+        @Bean
+        @Primary
+        ProductRepository slowProductRepository() {
+            ProductRepository repository = new ProductRepository() {
+                @Override
+                public List<Product> findPage(int page, int size) {
+                    return slow(() -> super.findPage(page, size));
+                }
+
+                @Override
+                public Page<Product> findAfter(String cursor, int size) {
+                    return slow(() -> super.findAfter(cursor, size));
+                }
+            };
+            for (int i = 0; i < 100; i++) {
+                Product product = new Product();
+                product.setProductName("Product " + i);
+                product.setProductQuantity(i + 1);
+                repository.create(product);
+            }
+            return repository;
+        }
+
+        private static <T> T slow(Supplier<T> read) {
+            MAX_IN_FLIGHT.accumulateAndGet(IN_FLIGHT.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(STORAGE_LATENCY);
+                return read.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                IN_FLIGHT.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package id.ac.ui.cs.advprog.eshop.metrics;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import id.ac.ui.cs.advprog.eshop.service.ProductService;
+import id.ac.ui.cs.advprog.eshop.service.ProductServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallTimingInterceptorTest {
+
+    private PrometheusMeterRegistry registry;
+    private IProductRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        repository = new RepositoryMetrics(registry).instrument(new ProductRepository());
+        Product product = new Product();
+        product.setProductId("1");
+        product.setProductName("Sampo Cap Bambang");
+        product.setProductQuantity(5);
+        repository.create(product);
+    }
+
+    private Timer timer(String method) {
+        return registry.get(RepositoryMetrics.METRIC)
+                .tag("entity", "product")
+                .tag("method", method)
+                .timer();
+    }
+
+    @Test
+    void testEveryCallIsTimed() {
+        repository.findById("1");
+        repository.findById("missing");
+        repository.findByNamePrefix("sampo");
+
+        assertEquals(1, timer("create").count());
+        assertEquals(2, timer("findById").count());
+        assertEquals(1, timer("findByNamePrefix").count());
+        assertEquals(0, timer("delete").count());
+    }
+
+    @Test
+    void testFailedCallsAreTimedToo() {
+        assertThrows(NullPointerException.class, () -> repository.modify("1", current -> {
+            throw new NullPointerException();
+        }));
+        assertEquals(1, timer("modify").count());
+    }
+
+    @Test
+    void testCatalogSizeGaugeAndScrape() {
+        assertEquals(1.0, registry.get("eshop.catalog.size").tag("entity", "product").gauge().value());
+
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("eshop_repository_calls_seconds_bucket"), "Histogram buckets should be published");
+        assertTrue(scrape.contains("eshop_catalog_size"));
+    }
+
+    @Test
+    void testServiceProxyKeepsConcreteType() {
+        ProductServiceImpl target = new ProductServiceImpl();
+        ReflectionTestUtils.setField(target, "productRepository", new ProductRepository());
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("registry", registry);
+        ServiceMetricsPostProcessor postProcessor =
+                new ServiceMetricsPostProcessor(beanFactory.getBeanProvider(MeterRegistry.class));
+
+        Object bean = postProcessor.postProcessAfterInitialization(target, "productServiceImpl");
+        ProductService service = (ProductService) bean;
+        service.count();
+
+        assertInstanceOf(ProductServiceImpl.class, bean, "Injection by concrete type must keep working");
+        assertEquals(1, registry.get(ServiceMetricsPostProcessor.METRIC)
+                .tag("service", "product").tag("method", "count").timer().count());
+    }
+
+    @Test
+    void testRecordingDoesNotAllocatePerCall() {
+        for (int i = 0; i < 100_000; i++) {
+            repository.count();
+        }
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        int calls = 10_000;
+        for (int i = 0; i < calls; i++) {
+            repository.count();
+        }
+        long allocatedPerCall = (threadBean.getThreadAllocatedBytes(threadId) - before) / calls;
+
+        assertTrue(allocatedPerCall < 8, "Instrumented count() allocated " + allocatedPerCall + " bytes per call");
+    }
+}
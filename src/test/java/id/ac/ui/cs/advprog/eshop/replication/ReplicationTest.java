@@ -0,0 +1,190 @@
+package id.ac.ui.cs.advprog.eshop.replication;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationTest {
+
+    private static final Duration HEARTBEAT = Duration.ofMillis(100);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private ProductRepository leaderProducts;
+    private CarRepository leaderCars;
+    private ProductRepository followerProducts;
+    private CarRepository followerCars;
+    private ReplicationLeader leader;
+    private ReplicationFollower follower;
+
+    @BeforeEach
+    void setUp() {
+        leaderProducts = new ProductRepository();
+        leaderCars = new CarRepository();
+        followerProducts = new ProductRepository();
+        followerCars = new CarRepository();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (follower != null) {
+            follower.close();
+        }
+        if (leader != null) {
+            leader.close();
+        }
+    }
+
+    private void startLeader(int backlog, int port) throws IOException {
+        leader = new ReplicationLeader(leaderProducts, leaderCars, backlog, HEARTBEAT);
+        leader.start(new InetSocketAddress("127.0.0.1", port));
+    }
+
+    private void startFollower() throws IOException {
+        follower = new ReplicationFollower(followerProducts, followerCars,
+                new InetSocketAddress("127.0.0.1", leader.port()), HEARTBEAT, Duration.ofMillis(20));
+        follower.start();
+    }
+
+    private void awaitCaughtUp() throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (follower.nextSequence() != leader.head() || follower.lagRecords() != 0) {
+            assertTrue(System.nanoTime() < deadline, "Follower did not catch up");
+            Thread.sleep(5);
+        }
+    }
+
+    /** Creates {@code product}, or replaces the stored product with its id. */
+    private static void put(ProductRepository repository, Product product) {
+        if (repository.modify(product.getProductId(), current -> product) == null) {
+            repository.create(product);
+        }
+    }
+
+    private Product newProduct(String id, String name, int quantity) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName(name);
+        product.setProductQuantity(quantity);
+        return product;
+    }
+
+    private Car newCar(String id, String name, String color) {
+        Car car = new Car();
+        car.setCarId(id);
+        car.setCarName(name);
+        car.setCarColor(color);
+        car.setCarQuantity(1);
+        return car;
+    }
+
+    private List<String> describe(ProductRepository repository) {
+        List<String> products = new ArrayList<>();
+        for (Product product : repository.findAll()) {
+            products.add(product.getProductId() + ":" + product.getProductName() + ":"
+                    + product.getProductQuantity() + ":" + product.getVersion());
+        }
+        products.sort(null);
+        return products;
+    }
+
+    @Test
+    void testFollowerLoadsSnapshotThenAppliesTheStream() throws Exception {
+        leaderProducts.create(newProduct("p-1", "Sampo Cap Bambang", 10));
+        leaderProducts.update(newProduct("p-1", "Sampo Cap Usep", 5));
+        leaderCars.create(newCar("c-1", "Brio", "Red"));
+        startLeader(1024, 0);
+        startFollower();
+        awaitCaughtUp();
+        assertEquals(describe(leaderProducts), describe(followerProducts));
+        assertEquals("Brio", followerCars.findById("c-1").getCarName());
+
+        leaderProducts.create(newProduct("p-2", "Sabun Cap Usep", 3));
+        leaderProducts.modify("p-1", current -> newProduct("p-1", current.getProductName(), 4));
+        leaderCars.delete("c-1");
+        awaitCaughtUp();
+
+        assertEquals(describe(leaderProducts), describe(followerProducts));
+        assertNull(followerCars.findById("c-1"));
+        assertEquals(List.of("p-2"), followerProducts.findByNamePrefix("sabun").stream()
+                .map(Product::getProductId).toList());
+        assertEquals(0, follower.lagMillis());
+        assertEquals(1, leader.followerCount());
+    }
+
+    @Test
+    void testSnapshotRemovesItemsTheLeaderDoesNotHave() throws Exception {
+        followerProducts.create(newProduct("stale", "Deleted while away", 1));
+        leaderProducts.create(newProduct("p-1", "Sampo Cap Bambang", 10));
+        startLeader(1024, 0);
+        startFollower();
+        awaitCaughtUp();
+
+        assertNull(followerProducts.findById("stale"));
+        assertEquals(describe(leaderProducts), describe(followerProducts));
+    }
+
+    @Test
+    void testFollowerBehindTheBacklogCatchesUp() throws Exception {
+        startLeader(4, 0);
+        startFollower();
+        awaitCaughtUp();
+        // Far more writes than the backlog holds, so a follower that is slower than this loop gets a snapshot
+        for (int i = 0; i < 5000; i++) {
+            put(leaderProducts, newProduct("p-" + (i % 100), "Product " + i, i));
+            if (i % 7 == 0) {
+                leaderProducts.delete("p-" + (i % 50));
+            }
+        }
+        awaitCaughtUp();
+
+        assertEquals(describe(leaderProducts), describe(followerProducts));
+    }
+
+    @Test
+    void testFollowerResyncsWithARestartedLeader() throws Exception {
+        startLeader(1024, 0);
+        int port = leader.port();
+        leaderProducts.create(newProduct("p-1", "Sampo Cap Bambang", 10));
+        startFollower();
+        awaitCaughtUp();
+
+        leader.close();
+        // The new run starts over from sequence 0 with different contents
+        leaderProducts = new ProductRepository();
+        leaderCars = new CarRepository();
+        startLeader(1024, port);
+        leaderProducts.create(newProduct("p-2", "Sabun Cap Usep", 3));
+        leaderCars.create(newCar("c-1", "Brio", "Red"));
+        awaitCaughtUp();
+
+        assertEquals(describe(leaderProducts), describe(followerProducts));
+    }
+
+    @Test
+    void testLagIsReportedWhileTheLeaderIsUnreachable() throws Exception {
+        startLeader(1024, 0);
+        startFollower();
+        awaitCaughtUp();
+        leader.close();
+
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (follower.isConnected()) {
+            assertTrue(System.nanoTime() < deadline, "Follower did not notice the leader is gone");
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        assertTrue(follower.lagMillis() >= 50);
+    }
+}
@@ -0,0 +1,202 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregateIndexTest {
+
+    private CarRepository carRepository;
+    private AggregateIndex<Car> aggregates;
+
+    @BeforeEach
+    void setUp() {
+        carRepository = new CarRepository();
+        aggregates = new AggregateIndex<>(Car::getCarQuantity, Car::getCarColor, 5);
+        carRepository.addListener(aggregates);
+    }
+
+    private Car newCar(String id, String color, int quantity) {
+        Car car = new Car();
+        car.setCarId(id);
+        car.setCarName("Car " + id);
+        car.setCarColor(color);
+        car.setCarQuantity(quantity);
+        return car;
+    }
+
+    @Test
+    void testTotalsApplyPendingChangesWithoutChangingTheIndex() {
+        carRepository.create(newCar("c-1", "Red", 3));
+        carRepository.create(newCar("c-2", "Red", 10));
+        carRepository.create(newCar("c-3", "Blue", 1));
+        Map<String, Car> changes = new HashMap<>();
+        changes.put("c-1", newCar("c-1", "Blue", 12));
+        changes.put("c-3", null);
+        changes.put("c-4", newCar("c-4", "Green", 2));
+
+        AggregateIndex.Totals totals = aggregates.totals(changes, 10);
+
+        assertEquals(3, totals.count());
+        assertEquals(24, totals.totalQuantity());
+        assertEquals(1, totals.lowStockCount());
+        assertEquals(List.of("c-4"), totals.lowStockIds());
+        assertEquals(Map.of("blue", 1L, "green", 1L, "red", 1L), totals.countsByGroup());
+        assertEquals(3, aggregates.count(), "The index itself is left as it was");
+        assertEquals(List.of("c-3", "c-1"), aggregates.lowStockIds(10));
+
+        // Once a change is stored, applying it again does not count it twice
+        carRepository.update(changes.get("c-1"));
+        assertEquals(24, aggregates.totals(changes, 10).totalQuantity());
+    }
+
+    @Test
+    void testCreateUpdateDeleteAdjustTotals() {
+        carRepository.create(newCar("c-1", "Red", 3));
+        carRepository.create(newCar("c-2", " red ", 10));
+        carRepository.create(newCar("c-3", "Blue", 1));
+
+        assertEquals(3, aggregates.count());
+        assertEquals(14, aggregates.totalQuantity());
+        assertEquals(2, aggregates.countInGroup("RED"));
+        assertEquals(Map.of("blue", 1L, "red", 2L), aggregates.countsByGroup());
+        assertEquals(List.of("c-3", "c-1"), aggregates.lowStockIds(10));
+
+        carRepository.update(newCar("c-1", "Blue", 8));
+        assertEquals(19, aggregates.totalQuantity());
+        assertEquals(Map.of("blue", 2L, "red", 1L), aggregates.countsByGroup());
+        assertEquals(List.of("c-3"), aggregates.lowStockIds(10));
+
+        carRepository.delete("c-3");
+        assertEquals(2, aggregates.count());
+        assertEquals(18, aggregates.totalQuantity());
+        assertEquals(0, aggregates.lowStockCount());
+        assertEquals(Map.of("blue", 1L, "red", 1L), aggregates.countsByGroup());
+    }
+
+    @Test
+    void testLowStockIsOrderedAndLimited() {
+        carRepository.create(newCar("c-1", "Red", 4));
+        carRepository.create(newCar("c-2", "Red", 0));
+        carRepository.create(newCar("c-3", "Red", 2));
+        carRepository.create(newCar("c-4", "Red", 5));
+
+        assertEquals(3, aggregates.lowStockCount());
+        assertEquals(List.of("c-2", "c-3"), aggregates.lowStockIds(2));
+    }
+
+    @Test
+    void testSeedSkipsIdsAlreadySeen() {
+        CarRepository existing = new CarRepository();
+        existing.create(newCar("c-1", "Red", 3));
+        existing.create(newCar("c-2", "Blue", 7));
+        AggregateIndex<Car> late = new AggregateIndex<>(Car::getCarQuantity, Car::getCarColor, 5);
+        existing.addListener(late);
+        existing.update(newCar("c-1", "Red", 9));
+
+        late.seed(existing, Car::getCarId, 10);
+        assertEquals(2, late.count());
+        assertEquals(16, late.totalQuantity());
+        assertEquals(0, late.lowStockCount());
+    }
+
+    @Test
+    void testSeedFromRepositoryReadsItPageByPage() {
+        CarRepository existing = new CarRepository() {
+            @Override
+            public List<Car> findAll() {
+                throw new AssertionError("Seeding must not load the whole repository");
+            }
+        };
+        for (int i = 0; i < 25; i++) {
+            existing.create(newCar("c-" + i, i % 2 == 0 ? "Red" : "Blue", i));
+        }
+        AggregateIndex<Car> late = new AggregateIndex<>(Car::getCarQuantity, Car::getCarColor, 5);
+
+        late.seed(existing, Car::getCarId, 10);
+        assertEquals(25, late.count());
+        assertEquals(300, late.totalQuantity());
+        assertEquals(Map.of("red", 13L, "blue", 12L), late.countsByGroup());
+        assertEquals(5, late.lowStockCount());
+    }
+
+    @Test
+    void testItemDeletedAfterItsPageWasReadIsNotSeeded() {
+        CarRepository existing = new CarRepository() {
+            @Override
+            public Page<Car> findAfter(String cursor, int size) {
+                Page<Car> page = super.findAfter(cursor, size);
+                if (cursor == null) {
+                    // Deleted between reading the page and seeding it
+                    delete("c-1");
+                }
+                return page;
+            }
+        };
+        existing.create(newCar("c-1", "Red", 3));
+        existing.create(newCar("c-2", "Blue", 7));
+        AggregateIndex<Car> late = new AggregateIndex<>(Car::getCarQuantity, Car::getCarColor, 5);
+        existing.addListener(late);
+
+        late.seed(existing, Car::getCarId, 10);
+        assertEquals(1, late.count());
+        assertEquals(7, late.totalQuantity());
+        assertEquals(Map.of("blue", 1L), late.countsByGroup());
+        assertEquals(0, late.lowStockCount());
+
+        existing.create(newCar("c-1", "Red", 2));
+        assertEquals(2, late.count(), "The tombstone does not outlive seeding");
+        assertEquals(List.of("c-1"), late.lowStockIds(10));
+    }
+
+    @Test
+    void testConcurrentWritesKeepTotalsExact() throws Exception {
+        int threads = 8;
+        int carsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < carsPerThread; i++) {
+                    String id = thread + "-" + i;
+                    carRepository.create(newCar(id, i % 2 == 0 ? "Red" : "Blue", 1));
+                    for (int round = 0; round < 5; round++) {
+                        int quantity = ThreadLocalRandom.current().nextInt(10);
+                        carRepository.modify(id, car -> newCar(id, car.getCarColor(), quantity));
+                    }
+                    if (i % 4 == 0) {
+                        carRepository.delete(id);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Car> cars = carRepository.findAll();
+        assertEquals(cars.size(), aggregates.count());
+        assertEquals(cars.stream().mapToLong(Car::getCarQuantity).sum(), aggregates.totalQuantity());
+        assertEquals(cars.stream().filter(car -> car.getCarQuantity() < 5).count(), aggregates.lowStockCount());
+        assertEquals(cars.stream().filter(car -> car.getCarColor().equals("Red")).count(), aggregates.countInGroup("red"));
+    }
+}
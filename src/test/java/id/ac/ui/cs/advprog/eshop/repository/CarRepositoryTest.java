@@ -0,0 +1,131 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class CarRepositoryTest {
+
+    @InjectMocks
+    CarRepository carRepository;
+
+    private Car newCar(String id, String name, String color, int quantity) {
+        Car car = new Car();
+        car.setCarId(id);
+        car.setCarName(name);
+        car.setCarColor(color);
+        car.setCarQuantity(quantity);
+        return car;
+    }
+
+    @Test
+    void testCreateAssignsIdWhenMissing() {
+        Car car = newCar(null, "Avanza", "Black", 3);
+        Car stored = carRepository.create(car);
+
+        assertNotNull(car.getCarId(), "Car ID should be generated");
+        assertSame(stored, carRepository.findById(car.getCarId()));
+    }
+
+    @Test
+    void testFindAllKeepsInsertionOrder() {
+        carRepository.create(newCar("c-2", "Brio", "Red", 1));
+        carRepository.create(newCar("c-1", "Jazz", "Blue", 2));
+        carRepository.create(newCar("c-3", "Civic", "White", 3));
+
+        List<Car> cars = carRepository.findAll();
+        assertEquals(3, cars.size());
+        assertEquals("c-2", cars.get(0).getCarId());
+        assertEquals("c-1", cars.get(1).getCarId());
+        assertEquals("c-3", cars.get(2).getCarId());
+    }
+
+    @Test
+    void testUpdateKeepsPosition() {
+        carRepository.create(newCar("c-1", "Brio", "Red", 1));
+        carRepository.create(newCar("c-2", "Jazz", "Blue", 2));
+
+        Car result = carRepository.update(newCar("c-1", "Brio RS", "Yellow", 5));
+        assertNotNull(result);
+
+        List<Car> cars = carRepository.findAll();
+        assertEquals("Brio RS", cars.get(0).getCarName());
+        assertEquals("Yellow", carRepository.findById("c-1").getCarColor());
+    }
+
+    @Test
+    void testStaleUpdateIsRejected() {
+        carRepository.create(newCar("c-1", "Brio", "Red", 1));
+
+        Car first = newCar("c-1", "Brio RS", "Yellow", 5);
+        Car second = newCar("c-1", "Brio Satya", "Green", 2);
+        assertEquals(1, carRepository.update(first).getVersion());
+        assertEquals(0, first.getVersion(), "The caller's copy is left as it was");
+
+        assertThrows(StaleUpdateException.class, () -> carRepository.update(second));
+        assertEquals("Brio RS", carRepository.findById("c-1").getCarName());
+
+        second.setVersion(1);
+        carRepository.update(second);
+        assertEquals("Green", carRepository.findById("c-1").getCarColor());
+        assertEquals(2, carRepository.findById("c-1").getVersion());
+    }
+
+    @Test
+    void testUpdateNotFound() {
+        assertNull(carRepository.update(newCar("missing", "Brio", "Red", 1)));
+        assertNull(carRepository.update(newCar(null, "Brio", "Red", 1)));
+    }
+
+    @Test
+    void testDelete() {
+        carRepository.create(newCar("c-1", "Brio", "Red", 1));
+        carRepository.create(newCar("c-2", "Jazz", "Blue", 2));
+
+        carRepository.delete("c-1");
+        carRepository.delete("missing");
+        carRepository.delete(null);
+
+        assertNull(carRepository.findById("c-1"));
+        assertEquals(1, carRepository.findAll().size());
+    }
+
+    @Test
+    void testFindByNameAndColor() {
+        carRepository.create(newCar("c-1", "Brio", "Red", 1));
+        carRepository.create(newCar("c-2", "Jazz", "red", 2));
+        carRepository.create(newCar("c-3", "Brio", "Blue", 3));
+
+        assertEquals(2, carRepository.findByColor("RED").size());
+        assertEquals(2, carRepository.findByName("brio").size());
+        assertTrue(carRepository.findByColor("Green").isEmpty());
+
+        carRepository.update(newCar("c-1", "Brio", "Green", 1));
+        assertEquals(1, carRepository.findByColor("red").size());
+        assertEquals("c-1", carRepository.findByColor("green").get(0).getCarId());
+
+        carRepository.delete("c-3");
+        assertEquals(1, carRepository.findByName("Brio").size());
+    }
+
+    @Test
+    void testFindByColorPagesThroughTheIndex() {
+        for (int i = 1; i <= 5; i++) {
+            carRepository.create(newCar("c-" + i, "Brio", i % 2 == 0 ? "Blue" : "Red", i));
+        }
+
+        Page<Car> first = carRepository.findByColor("red", null, 2);
+        assertEquals(List.of("c-1", "c-3"), first.items().stream().map(Car::getCarId).toList());
+        Page<Car> second = carRepository.findByColor("red", first.next(), 2);
+        assertEquals(List.of("c-5"), second.items().stream().map(Car::getCarId).toList());
+        assertFalse(second.hasNext());
+        assertEquals(5, carRepository.findByName("brio", null, 10).items().size());
+    }
+}
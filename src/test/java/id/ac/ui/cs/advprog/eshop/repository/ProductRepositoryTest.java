@@ -7,9 +7,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.management.ManagementFactory;
 import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
 import java.util.List;
 
 @ExtendWith(MockitoExtension.class)
@@ -250,6 +257,103 @@ class ProductRepositoryTest {
     }
 
 
+    @Test
+    void testUpdateBumpsVersion() {
+        Product product = new Product();
+        product.setProductId("id-1");
+        product.setProductName("Test Product");
+        product.setProductQuantity(100);
+        productRepository.create(product);
+        assertEquals(0, productRepository.findById("id-1").getVersion());
+
+        Product updatedProduct = new Product();
+        updatedProduct.setProductId("id-1");
+        updatedProduct.setProductName("Updated Name");
+        updatedProduct.setProductQuantity(150);
+        Product stored = productRepository.update(updatedProduct);
+
+        assertEquals(1, stored.getVersion());
+        assertEquals(0, updatedProduct.getVersion(), "The caller's copy is left as it was");
+        assertNotSame(updatedProduct, productRepository.findById("id-1"));
+        assertEquals(1, productRepository.findById("id-1").getVersion());
+    }
+
+    @Test
+    void testStaleUpdateIsRejected() {
+        Product product = new Product();
+        product.setProductId("id-1");
+        product.setProductName("Test Product");
+        product.setProductQuantity(100);
+        productRepository.create(product);
+
+        Product first = new Product();
+        first.setProductId("id-1");
+        first.setProductName("First Editor");
+        first.setProductQuantity(1);
+        Product second = new Product();
+        second.setProductId("id-1");
+        second.setProductName("Second Editor");
+        second.setProductQuantity(2);
+
+        productRepository.update(first);
+        StaleUpdateException e = assertThrows(StaleUpdateException.class, () -> productRepository.update(second));
+        assertEquals(0, e.getExpectedVersion());
+        assertEquals(1, e.getCurrentVersion());
+        assertEquals(0, second.getVersion());
+        assertEquals("First Editor", productRepository.findById("id-1").getProductName());
+
+        second.setVersion(e.getCurrentVersion());
+        productRepository.update(second);
+        assertEquals("Second Editor", productRepository.findById("id-1").getProductName());
+        assertEquals(2, productRepository.findById("id-1").getVersion());
+    }
+
+    @Test
+    void testConcurrentVersionedUpdatesLoseNothing() throws Exception {
+        Product product = new Product();
+        product.setProductId("counter");
+        product.setProductName("Counter");
+        product.setProductQuantity(0);
+        productRepository.create(product);
+
+        int threads = 8;
+        int incrementsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < incrementsPerThread; i++) {
+                    while (true) {
+                        Product current = productRepository.findById("counter");
+                        Product next = new Product();
+                        next.setProductId("counter");
+                        next.setProductName("Counter");
+                        next.setProductQuantity(current.getProductQuantity() + 1);
+                        next.setVersion(current.getVersion());
+                        try {
+                            productRepository.update(next);
+                            break;
+                        } catch (StaleUpdateException e) {
+                            // Re-read and retry
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Product result = productRepository.findById("counter");
+        assertEquals(threads * incrementsPerThread, result.getProductQuantity());
+        assertEquals(threads * incrementsPerThread, result.getVersion());
+    }
+
     @Test
     void testDeleteWithNullProductId() {
         // Create a product with a null product ID
@@ -267,4 +371,436 @@ class ProductRepositoryTest {
         assertFalse(productList.isEmpty(), "Product list should not be empty when trying to delete with non-matching id");
     }
 
+
+    @Test
+    void testConcurrentCreateUpdateDeleteStress() throws Exception {
+        int threads = 16;
+        int productsPerThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < productsPerThread; i++) {
+                    String id = thread + "-" + i;
+                    Product product = new Product();
+                    product.setProductId(id);
+                    product.setProductName("Product " + id);
+                    product.setProductQuantity(i);
+                    productRepository.create(product);
+
+                    Product updatedProduct = new Product();
+                    updatedProduct.setProductId(id);
+                    updatedProduct.setProductName("Updated " + id);
+                    updatedProduct.setProductQuantity(i + 1);
+                    assertNotNull(productRepository.update(updatedProduct));
+
+                    // Every other product is deleted again right away
+                    if (i % 2 == 0) {
+                        productRepository.delete(id);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Product> productList = productRepository.findAll();
+        assertEquals(threads * productsPerThread / 2, productList.size());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < productsPerThread; i++) {
+                Product found = productRepository.findById(t + "-" + i);
+                if (i % 2 == 0) {
+                    assertNull(found);
+                } else {
+                    assertNotNull(found);
+                    assertEquals("Updated " + t + "-" + i, found.getProductName());
+                    assertEquals(i + 1, found.getProductQuantity());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testConcurrentUpdatesOnSameProductKeepSingleEntry() throws Exception {
+        Product product = new Product();
+        product.setProductId("shared-id");
+        product.setProductName("Shared");
+        product.setProductQuantity(1);
+        productRepository.create(product);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1000; i++) {
+                    Product updatedProduct = new Product();
+                    updatedProduct.setProductId("shared-id");
+                    updatedProduct.setProductName("Writer " + thread);
+                    updatedProduct.setProductQuantity(i);
+                    try {
+                        productRepository.update(updatedProduct);
+                    } catch (StaleUpdateException e) {
+                        // Another writer got in first
+                    }
+                    assertThrows(DuplicateIdException.class, () -> productRepository.create(updatedProduct),
+                            "A create must never overwrite the stored item");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Product> productList = productRepository.findAll();
+        assertEquals(1, productList.size());
+        assertEquals(productRepository.findById("shared-id").getProductName(), productList.get(0).getProductName());
+    }
+
+    @Test
+    void testFindByNameAndPrefix() {
+        Product product1 = new Product();
+        product1.setProductId("id-1");
+        product1.setProductName("Sampo Cap Bambang");
+        product1.setProductQuantity(100);
+        productRepository.create(product1);
+
+        Product product2 = new Product();
+        product2.setProductId("id-2");
+        product2.setProductName("Sampo Cap Usep");
+        product2.setProductQuantity(50);
+        productRepository.create(product2);
+
+        Product product3 = new Product();
+        product3.setProductId("id-3");
+        product3.setProductName("Sabun Mandi");
+        product3.setProductQuantity(5);
+        productRepository.create(product3);
+
+        List<Product> exact = productRepository.findByName("  sampo cap usep ");
+        assertEquals(1, exact.size());
+        assertEquals("id-2", exact.get(0).getProductId());
+
+        List<Product> prefix = productRepository.findByNamePrefix("Sampo");
+        assertEquals(2, prefix.size());
+        assertEquals("id-1", prefix.get(0).getProductId());
+        assertEquals("id-2", prefix.get(1).getProductId());
+
+        assertEquals(3, productRepository.findByNamePrefix("s").size());
+        assertTrue(productRepository.findByNamePrefix("Shampoo").isEmpty());
+    }
+
+    @Test
+    void testFindByNamePrefixPagesInNameOrder() {
+        String[] names = {"Sampo B", "Sabun", "Sampo A", "Sampo B", "Sampo C", "Sikat"};
+        for (int i = 0; i < names.length; i++) {
+            Product product = new Product();
+            product.setProductId("id-" + i);
+            product.setProductName(names[i]);
+            product.setProductQuantity(1);
+            productRepository.create(product);
+        }
+
+        Page<Product> first = productRepository.findByNamePrefix("sampo", null, 2);
+        assertEquals(List.of("id-2", "id-0"), first.items().stream().map(Product::getProductId).toList());
+        assertTrue(first.hasNext());
+
+        // The next page starts after the cursor's position even once that product is gone
+        productRepository.delete("id-0");
+        Page<Product> second = productRepository.findByNamePrefix("sampo", first.next(), 2);
+        assertEquals(List.of("id-3", "id-4"), second.items().stream().map(Product::getProductId).toList());
+        assertFalse(second.hasNext());
+
+        assertThrows(IllegalArgumentException.class, () -> productRepository.findByNamePrefix("sabun", first.next(), 2),
+                "A cursor from another prefix is refused");
+        assertThrows(IllegalArgumentException.class, () -> productRepository.findByNamePrefix("sampo", "bogus", 2));
+    }
+
+    @Test
+    void testFindByNamePrefixBounds() {
+        String[] names = {"ab", "ab" + Character.MAX_VALUE + "c", "ac", "b", Character.MAX_VALUE + "z"};
+        for (int i = 0; i < names.length; i++) {
+            Product product = new Product();
+            product.setProductId("id-" + i);
+            product.setProductName(names[i]);
+            product.setProductQuantity(1);
+            productRepository.create(product);
+        }
+
+        assertEquals(2, productRepository.findByNamePrefix("ab").size(), "Names continuing past MAX_VALUE still match");
+        assertEquals(3, productRepository.findByNamePrefix("a").size());
+        assertEquals(1, productRepository.findByNamePrefix(String.valueOf(Character.MAX_VALUE)).size());
+        assertEquals(names.length, productRepository.findByNamePrefix("").size());
+    }
+
+    @Test
+    void testNameIndexFollowsUpdateAndDelete() {
+        Product product = new Product();
+        product.setProductId("id-1");
+        product.setProductName("Old Name");
+        product.setProductQuantity(1);
+        productRepository.create(product);
+
+        Product renamed = new Product();
+        renamed.setProductId("id-1");
+        renamed.setProductName("New Name");
+        renamed.setProductQuantity(1);
+        productRepository.update(renamed);
+
+        assertTrue(productRepository.findByName("Old Name").isEmpty());
+        assertEquals(1, productRepository.findByNamePrefix("new").size());
+
+        productRepository.delete("id-1");
+        assertTrue(productRepository.findByNamePrefix("new").isEmpty());
+    }
+
+    @Test
+    void testFindPageAndFindAfter() {
+        for (int i = 0; i < 5; i++) {
+            Product product = new Product();
+            product.setProductId("id-" + i);
+            product.setProductName("Product " + i);
+            product.setProductQuantity(i + 1);
+            productRepository.create(product);
+        }
+
+        assertEquals(5, productRepository.count());
+
+        List<Product> firstPage = productRepository.findPage(0, 2);
+        assertEquals(2, firstPage.size());
+        assertEquals("id-0", firstPage.get(0).getProductId());
+
+        List<Product> lastPage = productRepository.findPage(2, 2);
+        assertEquals(1, lastPage.size());
+        assertEquals("id-4", lastPage.get(0).getProductId());
+        assertTrue(productRepository.findPage(3, 2).isEmpty());
+        assertTrue(productRepository.findPage(-1, 2).isEmpty());
+
+        Page<Product> first = productRepository.findAfter(null, 2);
+        assertEquals(List.of("id-0", "id-1"), first.items().stream().map(Product::getProductId).toList());
+        assertTrue(first.hasNext());
+        Page<Product> second = productRepository.findAfter(first.next(), 2);
+        assertEquals(List.of("id-2", "id-3"), second.items().stream().map(Product::getProductId).toList());
+
+        // A page that ends exactly on the last item says so, instead of linking to an empty page
+        Page<Product> last = productRepository.findAfter(second.next(), 1);
+        assertEquals("id-4", last.items().get(0).getProductId());
+        assertFalse(last.hasNext());
+        assertThrows(IllegalArgumentException.class, () -> productRepository.findAfter("id-1", 2));
+    }
+
+    @Test
+    void testFindAfterContinuesPastDeletedCursorItem() {
+        for (int i = 0; i < 4; i++) {
+            Product product = new Product();
+            product.setProductId("id-" + i);
+            product.setProductName("Product " + i);
+            productRepository.create(product);
+        }
+        Page<Product> first = productRepository.findAfter(null, 2);
+        productRepository.delete("id-1");
+
+        Page<Product> second = productRepository.findAfter(first.next(), 2);
+        assertEquals(List.of("id-2", "id-3"), second.items().stream().map(Product::getProductId).toList());
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    void testModifyReplacesAtomically() {
+        Product product = new Product();
+        product.setProductId("id-1");
+        product.setProductName("Product 1");
+        product.setProductQuantity(1);
+        Product stored = productRepository.create(product);
+        long version = productRepository.version();
+
+        Modification<Product> unchanged = productRepository.modify("id-1", current -> current);
+        assertSame(stored, unchanged.item(), "A no-op change should keep the item");
+        assertFalse(unchanged.changed());
+        assertEquals(version, productRepository.version(), "A no-op change should not count as a write");
+
+        Product renamed = productRepository.modify("id-1", current -> {
+            Product next = new Product();
+            next.setProductId(current.getProductId());
+            next.setProductName("Renamed");
+            next.setProductQuantity(current.getProductQuantity() + 1);
+            return next;
+        }).item();
+        assertEquals(2, productRepository.findById("id-1").getProductQuantity());
+        assertSame(renamed, productRepository.findByName("Renamed").get(0));
+        assertTrue(productRepository.findByName("Product 1").isEmpty());
+        assertNull(productRepository.modify("missing", current -> current));
+    }
+
+    @Test
+    void testCreateAllStoresBatchInOrder() {
+        List<Product> batch = new java.util.ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Product product = new Product();
+            product.setProductName("Bulk " + i);
+            product.setProductQuantity(i + 1);
+            batch.add(product);
+        }
+        productRepository.createAll(batch);
+
+        List<Product> all = productRepository.findAll();
+        assertEquals(5, all.size());
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(all.get(i).getProductId(), "Bulk insert should assign ids");
+            assertEquals("Bulk " + i, all.get(i).getProductName());
+        }
+        assertEquals(1, productRepository.findByName("Bulk 3").size(), "Bulk insert should maintain the name index");
+    }
+
+    @Test
+    void testFindAllReturnsSameSnapshotUntilNextWrite() {
+        Product product = new Product();
+        product.setProductId("id-1");
+        product.setProductName("Product 1");
+        product.setProductQuantity(1);
+        productRepository.create(product);
+
+        List<Product> first = productRepository.findAll();
+        assertSame(first, productRepository.findAll(), "Unchanged repository should hand out the same snapshot");
+        assertThrows(UnsupportedOperationException.class, () -> first.add(product));
+
+        productRepository.delete("id-1");
+        List<Product> second = productRepository.findAll();
+        assertNotSame(first, second);
+        assertTrue(second.isEmpty());
+        assertEquals(1, first.size(), "Earlier snapshot must not see later writes");
+    }
+
+    @Test
+    void testCreateStoresACopyThatEveryReadReturns() {
+        Product product = new Product();
+        product.setProductId("id-1");
+        product.setProductName("Product 1");
+        Product stored = productRepository.create(product);
+        product.setProductName("Changed by the caller");
+
+        assertNotSame(product, stored);
+        assertEquals("Product 1", stored.getProductName());
+        assertSame(stored, productRepository.findById("id-1"));
+        assertSame(stored, productRepository.findAll().get(0));
+        assertSame(stored, productRepository.findPage(0, 1).get(0));
+        assertSame(stored, productRepository.findAfter(null, 1).items().get(0));
+        assertSame(stored, productRepository.findByName("Product 1").get(0));
+    }
+
+    @Test
+    void testCreateRefusesAnExistingIdAndIgnoresTheCallersVersion() {
+        Product product = new Product();
+        product.setProductId("id-1");
+        product.setProductName("Product 1");
+        product.setVersion(7);
+        Product stored = productRepository.create(product);
+        assertEquals(0, stored.getVersion(), "A new item starts at version 0");
+        Product updated = productRepository.update(stored);
+
+        Product overwrite = new Product();
+        overwrite.setProductId("id-1");
+        overwrite.setProductName("Overwritten");
+        assertThrows(DuplicateIdException.class, () -> productRepository.create(overwrite));
+
+        Product fresh = new Product();
+        fresh.setProductId("id-2");
+        fresh.setProductName("Product 2");
+        assertThrows(DuplicateIdException.class, () -> productRepository.createAll(List.of(fresh, overwrite)));
+        assertThrows(DuplicateIdException.class, () -> productRepository.createAll(List.of(fresh, fresh)));
+
+        assertSame(updated, productRepository.findById("id-1"));
+        assertEquals(1, productRepository.findById("id-1").getVersion());
+        assertNull(productRepository.findById("id-2"), "A refused batch stores none of its items");
+        assertTrue(productRepository.findByName("Overwritten").isEmpty());
+    }
+
+    @Test
+    void testRestoreReplacesInPlaceAndKeepsTheVersion() {
+        Product first = new Product();
+        first.setProductId("id-1");
+        first.setProductName("Product 1");
+        productRepository.create(first);
+        Product second = new Product();
+        second.setProductId("id-2");
+        productRepository.create(second);
+
+        Product replayed = new Product();
+        replayed.setProductId("id-1");
+        replayed.setProductName("Replayed");
+        replayed.setVersion(5);
+        productRepository.restore(replayed);
+
+        assertEquals(2, productRepository.count());
+        Product stored = productRepository.findAll().get(0);
+        assertEquals("Replayed", stored.getProductName(), "A restored item keeps its place in the listing");
+        assertEquals(5, stored.getVersion());
+        assertTrue(productRepository.findByName("Product 1").isEmpty());
+        assertSame(stored, productRepository.findByName("Replayed").get(0));
+    }
+
+    @Test
+    void testFindAllNeverSeesHalfABatch() throws Exception {
+        int batchSize = 50;
+        int batches = 200;
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Future<?> writes = writer.submit(() -> {
+            for (int b = 0; b < batches; b++) {
+                List<Product> batch = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    Product product = new Product();
+                    product.setProductName("Bulk " + b + "-" + i);
+                    batch.add(product);
+                }
+                productRepository.createAll(batch);
+            }
+        });
+        while (!writes.isDone()) {
+            int size = productRepository.findAll().size();
+            assertEquals(0, size % batchSize, "Snapshot of " + size + " items holds part of a batch");
+        }
+        writes.get(60, TimeUnit.SECONDS);
+        writer.shutdown();
+        assertEquals(batchSize * batches, productRepository.findAll().size());
+    }
+
+    @Test
+    void testRepeatedFindAllDoesNotAllocatePerCall() {
+        for (int i = 0; i < 10_000; i++) {
+            Product product = new Product();
+            product.setProductId("id-" + i);
+            product.setProductName("Product " + i);
+            product.setProductQuantity(i + 1);
+            productRepository.create(product);
+        }
+        productRepository.findAll();
+        productRepository.findPage(3, 20);
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        int calls = 1_000;
+        for (int i = 0; i < calls; i++) {
+            productRepository.findAll();
+        }
+        long allocatedPerCall = (threadBean.getThreadAllocatedBytes(threadId) - before) / calls;
+
+        // A full copy of 10k references would be about 40KB per call
+        assertTrue(allocatedPerCall < 64, "findAll allocated " + allocatedPerCall + " bytes per call");
+    }
 }
@@ -0,0 +1,61 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SequenceTrieTest {
+
+    @Test
+    void testWithAndWithoutLeaveEarlierTriesUnchanged() {
+        SequenceTrie<String> empty = SequenceTrie.empty();
+        SequenceTrie<String> one = empty.with(1, "a");
+        SequenceTrie<String> two = one.with(5000, "b");
+        SequenceTrie<String> removed = two.without(1);
+
+        assertEquals(0, empty.size());
+        assertEquals(List.of("a"), one.asList());
+        assertEquals(List.of("a", "b"), two.asList());
+        assertEquals(List.of("b"), removed.asList());
+        assertNull(removed.get(1));
+        assertEquals("b", removed.get(5000));
+        assertSame(removed, removed.without(1), "Removing a missing sequence should change nothing");
+        assertSame(SequenceTrie.empty(), removed.without(5000));
+    }
+
+    @Test
+    void testRanksAndEntriesMatchASortedMap() {
+        SequenceTrie<Long> trie = SequenceTrie.empty();
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        for (long sequence = 1; sequence <= 3000; sequence++) {
+            trie = trie.with(sequence, sequence);
+            expected.put(sequence, sequence);
+        }
+        for (long sequence = 3; sequence <= 3000; sequence += 3) {
+            trie = trie.without(sequence);
+            expected.remove(sequence);
+        }
+        assertEquals(expected.size(), trie.size());
+        assertEquals(new ArrayList<>(expected.values()), trie.asList());
+
+        for (long cursor : new long[] {0, 1, 2, 3, 31, 32, 33, 1023, 1024, 2999, 3000, 5000}) {
+            int rank = trie.rankAfter(cursor);
+            assertEquals(expected.headMap(cursor, true).size(), rank, "Rank after " + cursor);
+            SequenceTrie.Entries<Long> entries = trie.entries(rank);
+            Long next = expected.higherKey(cursor);
+            if (next == null) {
+                assertFalse(entries.hasNext());
+            } else {
+                assertEquals(next, entries.next());
+                assertEquals(next.longValue(), entries.lastSequence());
+            }
+        }
+    }
+}
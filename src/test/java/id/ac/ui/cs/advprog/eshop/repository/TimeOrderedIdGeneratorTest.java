@@ -0,0 +1,100 @@
+package id.ac.ui.cs.advprog.eshop.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedIdGeneratorTest {
+
+    @Test
+    void testIdsAreCompactAndUrlSafe() {
+        String id = IdGenerator.timeOrdered().nextId();
+
+        assertEquals(26, id.length());
+        assertTrue(id.matches("[0-7][0-9A-HJKMNP-TV-Z]{25}"), id);
+    }
+
+    @Test
+    void testEncodingCoversAllBits() {
+        assertEquals("00000000000000000000000000", TimeOrderedIdGenerator.encode(0, 0));
+        assertEquals("7ZZZZZZZZZZZZZZZZZZZZZZZZZ", TimeOrderedIdGenerator.encode(-1, -1));
+        assertEquals("00000000000000000000000001", TimeOrderedIdGenerator.encode(0, 1));
+        assertEquals("00000000000008000000000000", TimeOrderedIdGenerator.encode(0, Long.MIN_VALUE));
+    }
+
+    @Test
+    void testIdsIncreaseEvenWhenClockStandsStill() {
+        Clock frozen = Clock.fixed(Instant.parse("2025-01-01T00:00:00Z"), ZoneOffset.UTC);
+        IdGenerator generator = new TimeOrderedIdGenerator(frozen);
+
+        String previous = generator.nextId();
+        // More ids than the 12-bit counter holds, so it has to carry into the timestamp
+        for (int i = 0; i < 10_000; i++) {
+            String next = generator.nextId();
+            assertTrue(next.compareTo(previous) > 0, previous + " then " + next);
+            previous = next;
+        }
+    }
+
+    @Test
+    void testLaterTimestampsSortLater() {
+        String earlier = new TimeOrderedIdGenerator(Clock.fixed(Instant.parse("2025-01-01T00:00:00Z"), ZoneOffset.UTC)).nextId();
+        String later = new TimeOrderedIdGenerator(Clock.fixed(Instant.parse("2025-01-01T00:00:00.001Z"), ZoneOffset.UTC)).nextId();
+
+        assertTrue(later.compareTo(earlier) > 0);
+    }
+
+    @Test
+    void testConcurrentIdsAreUnique() throws Exception {
+        IdGenerator generator = new TimeOrderedIdGenerator(Clock.systemUTC());
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    String previous = "";
+                    for (int i = 0; i < perThread; i++) {
+                        String id = generator.nextId();
+                        assertTrue(id.compareTo(previous) > 0, "Ids seen by one thread must increase");
+                        ids.add(id);
+                        previous = id;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    void testRepositoryUsesPluggableGenerator() {
+        ProductRepository productRepository = new ProductRepository();
+        productRepository.setIdGenerator(() -> "fixed-id");
+        id.ac.ui.cs.advprog.eshop.model.Product product = new id.ac.ui.cs.advprog.eshop.model.Product();
+        product.setProductName("Sampo");
+        id.ac.ui.cs.advprog.eshop.model.Product stored = productRepository.create(product);
+
+        assertEquals("fixed-id", product.getProductId());
+        assertSame(stored, productRepository.findById("fixed-id"));
+    }
+}
@@ -0,0 +1,220 @@
+package id.ac.ui.cs.advprog.eshop.repository.partitioned;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedRepositoryTest {
+
+    private static final int SHARDS = 4;
+
+    private PartitionedProductRepository productRepository;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = new PartitionedProductRepository(SHARDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.close();
+    }
+
+    private Product newProduct(String id, String name, int quantity) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName(name);
+        product.setProductQuantity(quantity);
+        return product;
+    }
+
+    private List<String> ids(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getProductId());
+        }
+        return ids;
+    }
+
+    @Test
+    void testCreateFindUpdateDelete() {
+        Product created = productRepository.create(newProduct(null, "Sampo Cap Bambang", 100));
+        assertNotNull(created.getProductId());
+        assertSame(created, productRepository.findById(created.getProductId()));
+
+        Product updated = productRepository.update(newProduct(created.getProductId(), "Sampo Cap Usep", 5));
+        assertEquals(1, updated.getVersion());
+        assertEquals(5, productRepository.findById(created.getProductId()).getProductQuantity());
+        assertNull(productRepository.update(newProduct("missing", "Nothing", 1)));
+
+        productRepository.delete(created.getProductId());
+        assertNull(productRepository.findById(created.getProductId()));
+        assertEquals(0, productRepository.count());
+        assertEquals(3, productRepository.version());
+    }
+
+    @Test
+    void testCreateRefusesAnExistingIdAndRestoreReplacesIt() {
+        Product versioned = newProduct("p-1", "Sampo Cap Bambang", 10);
+        versioned.setVersion(4);
+        Product created = productRepository.create(versioned);
+        assertEquals(0, created.getVersion(), "A new item starts at version 0");
+
+        assertThrows(DuplicateIdException.class, () -> productRepository.create(newProduct("p-1", "Overwrite", 1)));
+        assertThrows(DuplicateIdException.class, () -> productRepository.createAll(
+                List.of(newProduct("p-1", "Overwrite", 1))));
+        assertSame(created, productRepository.findById("p-1"));
+
+        Product replayed = newProduct("p-1", "Replayed", 3);
+        replayed.setVersion(6);
+        Product restored = productRepository.restore(replayed);
+        assertEquals(1, productRepository.count());
+        assertSame(restored, productRepository.findById("p-1"));
+        assertEquals(6, restored.getVersion());
+    }
+
+    @Test
+    void testStaleUpdateIsRejected() {
+        productRepository.create(newProduct("id-1", "Sampo Cap Bambang", 100));
+        Product edit = newProduct("id-1", "Sampo Cap Usep", 5);
+        assertEquals(1, productRepository.update(edit).getVersion());
+        assertEquals(0, edit.getVersion(), "The caller's copy is left as it was");
+
+        StaleUpdateException e = assertThrows(StaleUpdateException.class,
+                () -> productRepository.update(newProduct("id-1", "Sampo Cap Asep", 7)));
+        assertEquals(1, e.getCurrentVersion());
+        assertEquals("Sampo Cap Usep", productRepository.findById("id-1").getProductName());
+    }
+
+    @Test
+    void testModifyRethrowsWhatTheChangeThrows() {
+        productRepository.create(newProduct("id-1", "Sampo Cap Bambang", 1));
+
+        assertThrows(IllegalArgumentException.class, () -> productRepository.modify("id-1", current -> {
+            throw new IllegalArgumentException("Not enough stock");
+        }));
+        // The writer survives a failed command
+        Product modified = productRepository.modify("id-1",
+                current -> newProduct("id-1", current.getProductName(), current.getProductQuantity() + 1)).item();
+        assertEquals(2, modified.getProductQuantity());
+        assertNull(productRepository.modify("missing", current -> current));
+    }
+
+    @Test
+    void testListingsFollowCreationOrderAcrossShards() {
+        List<String> created = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            created.add(productRepository.create(newProduct("p-" + i, "Product " + i, i + 1)).getProductId());
+        }
+
+        assertEquals(created, ids(productRepository.findAll()));
+        assertEquals(created.subList(20, 30), ids(productRepository.findPage(2, 10)));
+        Page<Product> first = productRepository.findAfter(null, 11);
+        assertEquals(created.subList(0, 11), ids(first.items()));
+        productRepository.delete("p-10");
+        Page<Product> second = productRepository.findAfter(first.next(), 5);
+        assertEquals(created.subList(11, 16), ids(second.items()));
+        assertFalse(productRepository.findAfter(null, 49).hasNext());
+        created.remove("p-10");
+        assertTrue(productRepository.findPage(5, 10).isEmpty());
+
+        // An update keeps the item's place
+        productRepository.update(newProduct("p-3", "Renamed", 1));
+        assertEquals(created, ids(productRepository.findAll()));
+        // Paging without a cached merge walks the shards directly
+        productRepository.delete("p-0");
+        assertEquals(created.subList(1, 4), ids(productRepository.findPage(0, 3)));
+        assertEquals(created.subList(1, created.size()), ids(productRepository.findAll()));
+    }
+
+    @Test
+    void testCreateAllSpansShards() {
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(newProduct(null, "Product " + i, 1));
+        }
+        productRepository.createAll(batch);
+
+        assertEquals(100, productRepository.count());
+        Set<String> ids = new HashSet<>(ids(productRepository.findAll()));
+        assertEquals(100, ids.size());
+        for (Product product : batch) {
+            assertTrue(ids.contains(product.getProductId()));
+        }
+    }
+
+    @Test
+    void testNameQueriesUseTheIndex() {
+        productRepository.create(newProduct("p-1", "Sampo Cap Bambang", 1));
+        productRepository.create(newProduct("p-2", "Sabun Cap Usep", 1));
+        productRepository.create(newProduct("p-3", "Sampo Cap Usep", 1));
+
+        assertEquals(List.of("p-1", "p-3"), ids(productRepository.findByNamePrefix("sampo")));
+        assertEquals(List.of("p-2"), ids(productRepository.findByName("Sabun Cap Usep")));
+        productRepository.delete("p-1");
+        assertEquals(List.of("p-3"), ids(productRepository.findByNamePrefix("sampo")));
+    }
+
+    @Test
+    void testConcurrentModificationsAreNotLost() throws Exception {
+        for (int i = 0; i < SHARDS * 2; i++) {
+            productRepository.create(newProduct("p-" + i, "Product " + i, 0));
+        }
+        int threads = 8;
+        int increments = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < increments; i++) {
+                        String id = "p-" + (i % (SHARDS * 2));
+                        productRepository.modify(id, current ->
+                                newProduct(id, current.getProductName(), current.getProductQuantity() + 1));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int total = 0;
+        for (Product product : productRepository.findAll()) {
+            total += product.getProductQuantity();
+            assertEquals(product.getProductQuantity(), product.getVersion());
+        }
+        assertEquals(threads * increments, total);
+    }
+
+    @Test
+    void testWritesAfterCloseAreRefused() {
+        productRepository.create(newProduct("p-1", "Sampo Cap Bambang", 1));
+        productRepository.close();
+
+        assertEquals(1, productRepository.count());
+        assertThrows(IllegalStateException.class,
+                () -> productRepository.create(newProduct("p-2", "Sabun Cap Usep", 1)));
+    }
+
+    @Test
+    void testRejectsNonPositiveShardCount() {
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedProductRepository(0));
+    }
+}
@@ -0,0 +1,289 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedProductRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedProductRepository productRepository;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (productRepository != null) {
+            productRepository.close();
+        }
+    }
+
+    private MappedProductRepository open(long capacity) throws IOException {
+        productRepository = new MappedProductRepository(directory, capacity, 128);
+        return productRepository;
+    }
+
+    private Product newProduct(String id, String name, int quantity) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName(name);
+        product.setProductQuantity(quantity);
+        return product;
+    }
+
+    @Test
+    void testCreateFindUpdateDelete() throws IOException {
+        open(100);
+        Product created = productRepository.create(newProduct(null, "Sampo Cap Bambang", 100));
+        assertNotNull(created.getProductId());
+
+        Product found = productRepository.findById(created.getProductId());
+        assertNotSame(created, found, "Items are decoded from the mapped file on every read");
+        assertEquals("Sampo Cap Bambang", found.getProductName());
+
+        assertNotNull(productRepository.update(newProduct(created.getProductId(), "Sampo Cap Usep", 5)));
+        assertEquals(5, productRepository.findById(created.getProductId()).getProductQuantity());
+        assertNull(productRepository.update(newProduct("missing", "Nothing", 1)));
+
+        productRepository.delete(created.getProductId());
+        assertNull(productRepository.findById(created.getProductId()));
+        assertEquals(0, productRepository.count());
+    }
+
+    @Test
+    void testCreateRefusesAnExistingIdAndRestoreReplacesIt() throws IOException {
+        open(100);
+        Product versioned = newProduct("p-1", "Sampo Cap Bambang", 10);
+        versioned.setVersion(4);
+        productRepository.create(versioned);
+        assertEquals(0, productRepository.findById("p-1").getVersion(), "A new item starts at version 0");
+
+        assertThrows(DuplicateIdException.class, () -> productRepository.create(newProduct("p-1", "Overwrite", 1)));
+        assertThrows(DuplicateIdException.class, () -> productRepository.createAll(
+                List.of(newProduct("p-2", "Sampo Cap Usep", 2), newProduct("p-1", "Overwrite", 1))));
+        assertNull(productRepository.findById("p-2"), "A refused batch stores none of its items");
+        assertEquals("Sampo Cap Bambang", productRepository.findById("p-1").getProductName());
+
+        Product replayed = newProduct("p-1", "Replayed", 3);
+        replayed.setVersion(6);
+        productRepository.restore(replayed);
+        assertEquals(1, productRepository.count());
+        assertEquals("Replayed", productRepository.findById("p-1").getProductName());
+        assertEquals(6, productRepository.findById("p-1").getVersion());
+        assertEquals(List.of("p-1"), productRepository.findByName("Replayed").stream()
+                .map(Product::getProductId).toList());
+    }
+
+    @Test
+    void testStaleUpdateIsRejectedAndVersionSurvivesReopen() throws IOException {
+        open(100);
+        productRepository.create(newProduct("id-1", "Sampo Cap Bambang", 100));
+        Product edit = newProduct("id-1", "Sampo Cap Usep", 5);
+        assertEquals(1, productRepository.update(edit).getVersion());
+        assertEquals(0, edit.getVersion(), "The caller's copy is left as it was");
+
+        StaleUpdateException e = assertThrows(StaleUpdateException.class,
+                () -> productRepository.update(newProduct("id-1", "Sampo Cap Asep", 7)));
+        assertEquals(1, e.getCurrentVersion());
+        assertEquals("Sampo Cap Usep", productRepository.findById("id-1").getProductName());
+        productRepository.close();
+
+        open(100);
+        assertEquals(1, productRepository.findById("id-1").getVersion());
+    }
+
+    @Test
+    void testDataSurvivesReopen() throws IOException {
+        open(100);
+        for (int i = 0; i < 10; i++) {
+            productRepository.create(newProduct("id-" + i, "Product " + i, i + 1));
+        }
+        productRepository.delete("id-3");
+        productRepository.close();
+
+        open(100);
+        assertEquals(9, productRepository.count());
+        assertEquals("Product 7", productRepository.findById("id-7").getProductName());
+        assertNull(productRepository.findById("id-3"));
+        assertEquals(9, productRepository.findAll().size());
+    }
+
+    @Test
+    void testDeletedSlotsAreReused() throws IOException {
+        open(4);
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 4; i++) {
+                productRepository.create(newProduct("id-" + round + "-" + i, "Product", 1));
+            }
+            for (int i = 0; i < 4; i++) {
+                productRepository.delete("id-" + round + "-" + i);
+            }
+        }
+        productRepository.create(newProduct("last", "Product", 1));
+        assertEquals(1, productRepository.count());
+        assertEquals("last", productRepository.findAll().get(0).getProductId());
+    }
+
+    @Test
+    void testListingsKeepInsertionOrderWhenSlotsAreReused() throws IOException {
+        open(100);
+        for (int i = 0; i < 5; i++) {
+            productRepository.create(newProduct("id-" + i, "Product " + i, 1));
+        }
+        productRepository.delete("id-1");
+        productRepository.create(newProduct("id-5", "Product 5", 1));
+        List<String> expected = List.of("id-0", "id-2", "id-3", "id-4", "id-5");
+
+        assertEquals(expected, productRepository.findAll().stream().map(Product::getProductId).toList());
+        assertEquals("id-5", productRepository.findPage(2, 2).get(0).getProductId());
+        Page<Product> firstFour = productRepository.findAfter(null, 4);
+        assertEquals(expected.subList(0, 4), firstFour.items().stream().map(Product::getProductId).toList());
+        assertEquals("id-5", productRepository.findAfter(firstFour.next(), 4).items().get(0).getProductId());
+    }
+
+    @Test
+    void testCursorSurvivesCompactionOfTheOrderList() throws IOException {
+        open(8);
+        productRepository.create(newProduct("first", "Product", 1));
+        productRepository.create(newProduct("second", "Product", 1));
+        String cursor = productRepository.findAfter(null, 1).next();
+        for (int i = 0; i < 40; i++) {
+            productRepository.create(newProduct("temp-" + i, "Product", 1));
+            productRepository.delete("temp-" + i);
+        }
+        productRepository.create(newProduct("last", "Product", 1));
+
+        Page<Product> rest = productRepository.findAfter(cursor, 10);
+        assertEquals(List.of("second", "last"), rest.items().stream().map(Product::getProductId).toList());
+        assertFalse(rest.hasNext());
+    }
+
+    @Test
+    void testVersionKeepsGrowingAcrossReopen() throws IOException {
+        open(100);
+        productRepository.create(newProduct("id-1", "Product 1", 1));
+        productRepository.create(newProduct("id-2", "Product 2", 2));
+        long before = productRepository.version();
+        productRepository.close();
+
+        open(100);
+        assertEquals(before, productRepository.version());
+        productRepository.delete("id-2");
+        assertTrue(productRepository.version() > before);
+    }
+
+    @Test
+    void testCapacityAndSlotSizeLimits() throws IOException {
+        open(2);
+        productRepository.create(newProduct("id-1", "Product 1", 1));
+        productRepository.create(newProduct("id-2", "Product 2", 2));
+        assertThrows(IllegalStateException.class,
+                () -> productRepository.create(newProduct("id-3", "Product 3", 3)));
+        assertThrows(IllegalArgumentException.class,
+                () -> productRepository.update(newProduct("id-1", "x".repeat(200), 1)));
+    }
+
+    @Test
+    void testPagingAndNameQueries() throws IOException {
+        open(100);
+        for (int i = 0; i < 5; i++) {
+            productRepository.create(newProduct("id-" + i, i % 2 == 0 ? "Sampo " + i : "Sabun " + i, i + 1));
+        }
+
+        List<Product> secondPage = productRepository.findPage(1, 2);
+        assertEquals(2, secondPage.size());
+        assertEquals("id-2", secondPage.get(0).getProductId());
+        Page<Product> firstThree = productRepository.findAfter(null, 3);
+        assertEquals("id-3", productRepository.findAfter(firstThree.next(), 10).items().get(0).getProductId());
+        assertEquals(3, productRepository.findByNamePrefix("sampo").size());
+        assertEquals(1, productRepository.findByName("Sabun 3").size());
+
+        productRepository.delete("id-3");
+        assertEquals("id-4", productRepository.findAfter(firstThree.next(), 10).items().get(0).getProductId());
+
+        Page<Product> sampo = productRepository.findByNamePrefix("sampo", null, 2);
+        assertEquals(List.of("id-0", "id-2"), sampo.items().stream().map(Product::getProductId).toList());
+        Page<Product> rest = productRepository.findByNamePrefix("sampo", sampo.next(), 2);
+        assertEquals(List.of("id-4"), rest.items().stream().map(Product::getProductId).toList());
+        assertFalse(rest.hasNext());
+    }
+
+    @Test
+    void testNameIndexFollowsUpdatesAndIsRebuiltWhenMissing() throws IOException {
+        open(100);
+        productRepository.create(newProduct("id-1", "Sampo Cap Bambang", 1));
+        productRepository.create(newProduct("id-2", "Sabun Cap Usep", 1));
+        productRepository.create(newProduct("id-3", "Sampo " + "x".repeat(40), 1));
+        productRepository.update(newProduct("id-2", "Sampo Cap Usep", 1));
+        productRepository.delete("id-1");
+
+        assertEquals(List.of("id-2"), productRepository.findByNamePrefix("sampo cap").stream()
+                .map(Product::getProductId).toList());
+        assertTrue(productRepository.findByNamePrefix("sabun").isEmpty());
+        assertEquals(1, productRepository.findByName("  SAMPO " + "X".repeat(40)).size(),
+                "Names longer than an index node are matched in full");
+        assertTrue(productRepository.findByName("Sampo " + "x".repeat(39)).isEmpty());
+        productRepository.close();
+
+        Files.delete(directory.resolve("products.name.index"));
+        open(100);
+        assertEquals(List.of("id-2", "id-3"), productRepository.findByNamePrefix("sampo").stream()
+                .map(Product::getProductId).toList());
+    }
+
+    @Test
+    void testConcurrentModifiesOfDifferentItemsAreAllApplied() throws Exception {
+        open(100);
+        int threads = 4;
+        int rounds = 500;
+        for (int t = 0; t < threads; t++) {
+            productRepository.create(newProduct("id-" + t, "Product " + t, 0));
+        }
+        long before = productRepository.version();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String id = "id-" + t;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    productRepository.modify(id, current -> newProduct(id, current.getProductName(),
+                            current.getProductQuantity() + 1));
+                    assertEquals(1, productRepository.findByName("Product 0").size());
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (int t = 0; t < threads; t++) {
+            assertEquals(rounds, productRepository.findById("id-" + t).getProductQuantity());
+        }
+        assertEquals(before + (long) threads * rounds, productRepository.version());
+    }
+
+    @Test
+    void testRejectsStoreWithDifferentLayout() throws IOException {
+        open(100).close();
+        productRepository = null;
+        assertTrue(Files.exists(directory.resolve("products.data")));
+        assertThrows(IOException.class, () -> new MappedProductRepository(directory, 200, 128));
+    }
+}
@@ -0,0 +1,253 @@
+package id.ac.ui.cs.advprog.eshop.repository.persistence;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<WriteAheadLog<Product>> openLogs = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (WriteAheadLog<Product> productLog : openLogs) {
+            productLog.close();
+        }
+    }
+
+    private ProductRepository openRepository(long snapshotEvery) throws IOException {
+        ProductRepository productRepository = new ProductRepository();
+        WriteAheadLog<Product> productLog = new WriteAheadLog<>(directory, new ProductCodec(),
+                Product::getProductId, snapshotEvery);
+        productLog.open(productRepository);
+        openLogs.add(productLog);
+        return productRepository;
+    }
+
+    private void closeAll() throws IOException {
+        for (WriteAheadLog<Product> productLog : openLogs) {
+            productLog.close();
+        }
+        openLogs.clear();
+    }
+
+    /** Creates {@code product}, or replaces the stored product with its id. */
+    private static void put(ProductRepository repository, Product product) {
+        if (repository.modify(product.getProductId(), current -> product) == null) {
+            repository.create(product);
+        }
+    }
+
+    private Product newProduct(String id, String name, int quantity) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName(name);
+        product.setProductQuantity(quantity);
+        return product;
+    }
+
+    private Path newestLog() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("wal-"))
+                    .max((a, b) -> Long.compare(generation(a), generation(b)))
+                    .orElseThrow();
+        }
+    }
+
+    private long generation(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    @Test
+    void testRecoversCreateUpdateDelete() throws IOException {
+        ProductRepository productRepository = openRepository(1000);
+        productRepository.create(newProduct("id-1", "Sampo Cap Bambang", 100));
+        productRepository.create(newProduct("id-2", "Sampo Cap Usep", 50));
+        productRepository.update(newProduct("id-1", "Sampo Cap Bambang Baru", 70));
+        productRepository.delete("id-2");
+        closeAll();
+
+        ProductRepository recovered = openRepository(1000);
+        List<Product> products = recovered.findAll();
+        assertEquals(1, products.size());
+        assertEquals("Sampo Cap Bambang Baru", products.get(0).getProductName());
+        assertEquals(70, products.get(0).getProductQuantity());
+        assertEquals(1, products.get(0).getVersion(), "Versions are logged so stale checks survive a restart");
+        assertEquals(1, recovered.findByNamePrefix("sampo").size(), "Secondary indexes are rebuilt on recovery");
+    }
+
+    @Test
+    void testTornLastRecordIsIgnored() throws IOException {
+        ProductRepository productRepository = openRepository(1000);
+        productRepository.create(newProduct("id-1", "Kept", 1));
+        productRepository.create(newProduct("id-2", "Also kept", 2));
+        closeAll();
+
+        Path logFile = newestLog();
+        long intactLength = Files.size(logFile);
+        // A crash in the middle of a write leaves a partial length/checksum header and body
+        Files.write(logFile, new byte[] {0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        ProductRepository recovered = openRepository(1000);
+        assertEquals(2, recovered.count());
+        assertNotNull(recovered.findById("id-2"));
+        assertFalse(Files.exists(logFile) && Files.size(logFile) > intactLength,
+                "The torn tail must be truncated or compacted away");
+    }
+
+    private static byte[] frame(byte... body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return ByteBuffer.allocate(8 + body.length).putInt(body.length).putInt((int) crc.getValue()).put(body).array();
+    }
+
+    @Test
+    void testUndecodableRecordIsCutOffAndKept() throws IOException {
+        ProductRepository productRepository = openRepository(1000);
+        productRepository.create(newProduct("id-1", "Kept", 1));
+        closeAll();
+
+        Path logFile = newestLog();
+        long intactLength = Files.size(logFile);
+        // Checksum matches, but the put record stops right after its operation byte
+        byte[] damaged = frame((byte) 1);
+        byte[] following = frame((byte) 2, (byte) 0, (byte) 4, (byte) 'i', (byte) 'd', (byte) '-', (byte) '1');
+        Files.write(logFile, damaged, StandardOpenOption.APPEND);
+        Files.write(logFile, following, StandardOpenOption.APPEND);
+
+        ProductRepository recovered = openRepository(1000);
+        assertNotNull(recovered.findById("id-1"), "Records after the damaged one are not replayed");
+        Path kept = logFile.resolveSibling(logFile.getFileName() + ".corrupt-" + intactLength);
+        assertTrue(Files.exists(kept), "Dropped bytes should be kept for inspection");
+        assertEquals(damaged.length + following.length, Files.size(kept));
+    }
+
+    /** A product record as written before entities were versioned. */
+    private static void writeUnversioned(DataOutputStream out, String id, String name, int quantity)
+            throws IOException {
+        RecordCodec.writeString(out, id);
+        RecordCodec.writeString(out, name);
+        out.writeInt(quantity);
+    }
+
+    @Test
+    void testRecoversFilesWrittenBeforeVersions() throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        CheckedOutputStream checked = new CheckedOutputStream(snapshot, new CRC32());
+        DataOutputStream data = new DataOutputStream(checked);
+        data.writeInt(0x45534e31); // "ESN1"
+        data.writeInt(1);
+        writeUnversioned(data, "id-1", "Sampo Cap Bambang", 100);
+        data.flush();
+        data.writeLong(checked.getChecksum().getValue());
+        Files.write(directory.resolve("snapshot-1.dat"), snapshot.toByteArray());
+
+        ByteArrayOutputStream put = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(put);
+        record.writeByte(1);
+        writeUnversioned(record, "id-2", "Sampo Cap Usep", 50);
+        Files.write(directory.resolve("wal-1.log"), frame(put.toByteArray()));
+
+        ProductRepository recovered = openRepository(1000);
+        assertEquals(2, recovered.count());
+        assertEquals(100, recovered.findById("id-1").getProductQuantity());
+        assertEquals(0, recovered.findById("id-2").getVersion(), "Unversioned records start at version 0");
+
+        recovered.update(newProduct("id-2", "Sampo Cap Usep Baru", 40));
+        closeAll();
+
+        Product reopened = openRepository(1000).findById("id-2");
+        assertEquals("Sampo Cap Usep Baru", reopened.getProductName());
+        assertEquals(1, reopened.getVersion());
+    }
+
+    @Test
+    void testFailedLogRefusesLaterWritesBeforeApplyingThem() throws IOException {
+        ProductRepository productRepository = openRepository(1000);
+        productRepository.create(newProduct("id-1", "Durable", 1));
+        WriteAheadLog<Product> productLog = openLogs.get(0);
+        ((FileChannel) ReflectionTestUtils.getField(productLog, "channel")).close();
+
+        assertThrows(UncheckedIOException.class, () -> productRepository.create(newProduct("id-2", "Lost", 2)));
+        assertThrows(IllegalStateException.class, () -> productRepository.create(newProduct("id-3", "Refused", 3)));
+        assertNull(productRepository.findById("id-3"), "A refused write must not reach memory");
+        assertThrows(IllegalStateException.class, () -> productRepository.delete("id-1"));
+        assertNotNull(productRepository.findById("id-1"));
+    }
+
+    @Test
+    void testCompactionKeepsReplayShort() throws IOException {
+        ProductRepository productRepository = openRepository(10);
+        for (int i = 0; i < 100; i++) {
+            put(productRepository, newProduct("id-" + (i % 5), "Product " + i, i + 1));
+        }
+        closeAll();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            long logs = files.filter(file -> file.getFileName().toString().startsWith("wal-")).count();
+            assertTrue(logs <= 2, "Old generations should be deleted after a snapshot, found " + logs);
+        }
+
+        ProductRepository recovered = openRepository(10);
+        assertEquals(5, recovered.count());
+        assertEquals("Product 99", recovered.findById("id-4").getProductName());
+    }
+
+    @Test
+    void testConcurrentWritersAreAllDurable() throws Exception {
+        ProductRepository productRepository = openRepository(500);
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    productRepository.create(newProduct(thread + "-" + i, "Product " + i, i + 1));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        closeAll();
+
+        ProductRepository recovered = openRepository(500);
+        assertEquals(threads * perThread, recovered.count());
+    }
+}
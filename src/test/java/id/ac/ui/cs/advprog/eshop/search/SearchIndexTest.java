@@ -0,0 +1,187 @@
+package id.ac.ui.cs.advprog.eshop.search;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+
+    private ProductRepository productRepository;
+    private SearchIndex<Product> index;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = new ProductRepository();
+        index = new SearchIndex<>(List.of(Product::getProductName));
+        productRepository.addListener(index);
+    }
+
+    private Product newProduct(String id, String name) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName(name);
+        product.setProductQuantity(1);
+        return product;
+    }
+
+    private List<String> ids(String query) {
+        return index.search(query, 10).stream().map(SearchHit::id).toList();
+    }
+
+    @Test
+    void testAnalyzerFoldsCaseAccentsAndPunctuation() {
+        assertEquals(List.of("sampo", "cap", "bambang", "2"), TextAnalyzer.terms("Sampo-Cap  B\u00e1mbang (2)"));
+        assertEquals(List.of("$$c", "$ca", "cap", "ap$"), TextAnalyzer.trigrams("cap"));
+    }
+
+    @Test
+    void testEditDistanceCountsSwapsAsOneEdit() {
+        assertEquals(0, TextAnalyzer.editDistance("sampo", "sampo", 2));
+        assertEquals(1, TextAnalyzer.editDistance("sampo", "smapo", 2));
+        assertEquals(1, TextAnalyzer.editDistance("sampo", "sampoo", 2));
+        assertEquals(2, TextAnalyzer.editDistance("bambang", "bmabagn", 2));
+        assertEquals(3, TextAnalyzer.editDistance("sampo", "bambang", 2));
+    }
+
+    @Test
+    void testFindsWordsFragmentsAndTypos() {
+        productRepository.create(newProduct("p-1", "Sampo Cap Bambang"));
+        productRepository.create(newProduct("p-2", "Sabun Cap Usep"));
+        productRepository.create(newProduct("p-3", "Kecap Manis"));
+
+        assertEquals(List.of("p-1"), ids("bambang"));
+        assertEquals(List.of("p-1"), ids("BAMB"));
+        assertEquals(List.of("p-1"), ids("bmabang"));
+        assertEquals(List.of("p-2"), ids("sabun usp"));
+        assertEquals(List.of(), ids("deterjen"));
+        assertEquals(List.of(), ids("  -- "));
+    }
+
+    @Test
+    void testRanksExactOverPrefixAndLooksForTyposOnlyWithoutEither() {
+        productRepository.create(newProduct("typo", "Sampi Bakar"));
+        productRepository.create(newProduct("prefix", "Samponya Bakar"));
+        productRepository.create(newProduct("exact", "Sampo Bakar"));
+        assertEquals(List.of("exact", "prefix"), ids("sampo"));
+        assertEquals(List.of("exact"), ids("smapo"));
+        assertEquals(List.of("typo", "exact"), ids("sampix").subList(0, 2), "One edit ranks above two");
+    }
+
+    @Test
+    void testRewardsMoreMatchedTerms() {
+        productRepository.create(newProduct("one", "Sampo Bakar"));
+        productRepository.create(newProduct("both", "Sampo Cap Bambang"));
+        productRepository.create(newProduct("other", "Bambang Goreng"));
+
+        assertEquals("both", ids("sampo bambang").get(0));
+        assertEquals(1, index.search("sampo bambang", 1).size());
+    }
+
+    @Test
+    void testFollowsUpdatesAndDeletes() {
+        productRepository.create(newProduct("p-1", "Sampo Cap Bambang"));
+        productRepository.update(newProduct("p-1", "Sabun Cap Usep"));
+
+        assertEquals(List.of(), ids("bambang"));
+        assertEquals(List.of("p-1"), ids("usep"));
+        assertEquals(List.of(), index.expand("bambang").keySet().stream().toList(), "Unused terms leave the dictionary");
+
+        productRepository.delete("p-1");
+        assertEquals(List.of(), ids("usep"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testSeedIndexesExistingItemsOnce() {
+        CarRepository carRepository = new CarRepository();
+        Car car = new Car();
+        car.setCarId("c-1");
+        car.setCarName("Avanza");
+        car.setCarColor("Merah");
+        carRepository.create(car);
+        SearchIndex<Car> carIndex = new SearchIndex<>(List.of(Car::getCarName, Car::getCarColor));
+        carRepository.addListener(carIndex);
+
+        carIndex.seed(carRepository, Car::getCarId, 10);
+        carIndex.seed(carRepository, Car::getCarId, 10);
+        assertEquals(1, carIndex.size());
+        assertEquals(List.of("c-1"), carIndex.search("avanza merah", 10).stream().map(SearchHit::id).toList());
+        assertEquals(1, carIndex.search("avanza merah", 10).size());
+    }
+
+    @Test
+    void testItemDeletedAfterItsPageWasReadIsNotSeeded() {
+        ProductRepository existing = new ProductRepository() {
+            @Override
+            public Page<Product> findAfter(String cursor, int size) {
+                Page<Product> page = super.findAfter(cursor, size);
+                if (cursor == null) {
+                    // Deleted between reading the page and seeding it
+                    delete("p-1");
+                }
+                return page;
+            }
+        };
+        existing.create(newProduct("p-1", "Sampo Cap Bambang"));
+        existing.create(newProduct("p-2", "Sampo Cap Usep"));
+        SearchIndex<Product> late = new SearchIndex<>(List.of(Product::getProductName));
+        existing.addListener(late);
+
+        late.seed(existing, Product::getProductId, 1);
+        assertEquals(1, late.size());
+        assertEquals(List.of("p-2"), late.search("sampo", 10).stream().map(SearchHit::id).toList());
+
+        existing.create(newProduct("p-1", "Sampo Cap Bambang"));
+        assertEquals(2, late.size(), "The tombstone does not outlive seeding");
+        assertEquals(1, late.search("bambang", 10).size());
+    }
+
+    @Test
+    void testConcurrentWritesLeaveNoStaleTerms() throws Exception {
+        int threads = 8;
+        int productsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < productsPerThread; i++) {
+                    String id = "p" + thread + "x" + i;
+                    productRepository.create(newProduct(id, "Shared draft " + id));
+                    productRepository.modify(id, product -> newProduct(id, "Shared final " + id));
+                    if (i % 4 == 0) {
+                        productRepository.delete(id);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(productRepository.count(), index.size());
+        assertFalse(index.expand("draft").containsKey("draft"), "Every draft name was replaced");
+        assertFalse(index.expand("p0x0").containsKey("p0x0"), "Deleted ids leave the dictionary");
+        assertEquals("p0x1", ids("final p0x1").get(0));
+        assertEquals(productRepository.count(), index.search("shared", 10_000).size());
+    }
+}
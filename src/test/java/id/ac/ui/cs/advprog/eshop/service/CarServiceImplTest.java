@@ -0,0 +1,67 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.repository.CarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CarServiceImplTest {
+
+    private CarServiceImpl carService;
+    private CarRepository carRepository;
+
+    @BeforeEach
+    void setUp() {
+        carService = new CarServiceImpl();
+        carRepository = new CarRepository();
+        ReflectionTestUtils.setField(carService, "carRepository", carRepository);
+    }
+
+    private void car(String id, String name, String color) {
+        Car car = new Car();
+        car.setCarId(id);
+        car.setCarName(name);
+        car.setCarColor(color);
+        car.setCarQuantity(1);
+        carRepository.create(car);
+    }
+
+    private List<String> pageThrough(String query, int size) {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Car> page = carService.search(query, cursor, size);
+            page.items().forEach(car -> ids.add(car.getCarId()));
+            cursor = page.next();
+        } while (cursor != null);
+        return ids;
+    }
+
+    @Test
+    void testSearchPagesNameMatchesThenColorMatches() {
+        car("c-1", "Red", "Red");
+        car("c-2", "Brio", "Red");
+        car("c-3", "Red", "Blue");
+        car("c-4", "Jazz", "red");
+        car("c-5", "Jazz", "Green");
+
+        List<String> expected = List.of("c-1", "c-3", "c-2", "c-4");
+        assertEquals(expected, carService.search("red").stream().map(Car::getCarId).toList());
+        for (int size = 1; size <= 5; size++) {
+            assertEquals(expected, pageThrough("red", size), "Page size " + size);
+        }
+    }
+
+    @Test
+    void testSearchRefusesForeignCursor() {
+        assertThrows(IllegalArgumentException.class, () -> carService.search("red", "7", 2));
+    }
+}
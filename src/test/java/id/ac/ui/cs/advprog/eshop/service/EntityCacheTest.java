@@ -0,0 +1,146 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityCacheTest {
+
+    private Product newProduct(String id) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName("Product " + id);
+        product.setProductQuantity(1);
+        return product;
+    }
+
+    @Test
+    void testHitsMissesAndInvalidation() {
+        EntityCache<Product> cache = new EntityCache<>(100, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("1", id -> {
+            loads.incrementAndGet();
+            return newProduct(id);
+        });
+        cache.get("1", id -> {
+            loads.incrementAndGet();
+            return newProduct(id);
+        });
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+
+        cache.invalidate("1");
+        cache.get("1", id -> {
+            loads.incrementAndGet();
+            return newProduct(id);
+        });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testStatisticsArePublishedToTheRegistry() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EntityCache<Product> cache = new EntityCache<>(100, Duration.ofMinutes(1));
+        cache.bindTo(registry, "products");
+        EntityCache.<Product>disabled().bindTo(registry, "disabled");
+
+        cache.get("1", this::newProduct);
+        cache.get("1", this::newProduct);
+        cache.get("2", this::newProduct);
+
+        assertEquals(1, registry.get("cache.gets").tag("cache", "products").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(2, registry.get("cache.gets").tag("cache", "products").tag("result", "miss")
+                .functionCounter().count());
+        assertEquals(2, registry.get("cache.size").tag("cache", "products").gauge().value());
+        assertTrue(registry.find("cache.gets").tag("cache", "disabled").meters().isEmpty());
+    }
+
+    @Test
+    void testMissingItemsAreNotCached() {
+        EntityCache<Product> cache = new EntityCache<>(100, Duration.ofMinutes(1));
+        assertNull(cache.get("missing", id -> null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testEntriesExpireAfterTimeToLive() {
+        AtomicLong now = new AtomicLong();
+        EntityCache<Product> cache = new EntityCache<>(100, Duration.ofSeconds(10), now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("1", id -> {
+            loads.incrementAndGet();
+            return newProduct(id);
+        });
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        cache.get("1", id -> {
+            loads.incrementAndGet();
+            return newProduct(id);
+        });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testConcurrentMissesLoadOnce() throws Exception {
+        EntityCache<Product> cache = new EntityCache<>(100, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Product>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return cache.get("hot", id -> {
+                    loads.incrementAndGet();
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return newProduct(id);
+                });
+            }));
+        }
+        start.countDown();
+        Product first = futures.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<Product> future : futures) {
+            assertSame(first, future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get(), "Concurrent misses on one key should trigger a single load");
+    }
+
+    @Test
+    void testDisabledCacheAlwaysLoads() {
+        EntityCache<Product> cache = EntityCache.disabled();
+        AtomicInteger loads = new AtomicInteger();
+        cache.put("1", newProduct("1"));
+        cache.get("1", id -> {
+            loads.incrementAndGet();
+            return newProduct(id);
+        });
+        cache.get("1", id -> {
+            loads.incrementAndGet();
+            return newProduct(id);
+        });
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.stats().requestCount());
+    }
+}
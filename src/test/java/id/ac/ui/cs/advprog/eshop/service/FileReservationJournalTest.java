@@ -0,0 +1,76 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileReservationJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private StockReservation reservation(String id) {
+        return new StockReservation(id, Map.of("a", 2, "b", 1), Instant.parse("2025-01-01T00:15:00.123Z"));
+    }
+
+    @Test
+    void testOpenReservationsAreReadBack() throws IOException {
+        Path file = directory.resolve("reservations.journal");
+        try (FileReservationJournal journal = new FileReservationJournal(file)) {
+            journal.opened(reservation("r-1"));
+            journal.opened(reservation("r-2"));
+            journal.settled("r-1");
+            journal.settled("unknown");
+        }
+
+        try (FileReservationJournal journal = new FileReservationJournal(file)) {
+            assertEquals(List.of(reservation("r-2")), journal.open());
+        }
+    }
+
+    @Test
+    void testTornRecordIsCutOff() throws IOException {
+        Path file = directory.resolve("reservations.journal");
+        try (FileReservationJournal journal = new FileReservationJournal(file)) {
+            journal.opened(reservation("r-1"));
+        }
+        long intact = Files.size(file);
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        try (FileReservationJournal journal = new FileReservationJournal(file)) {
+            assertEquals(intact, Files.size(file));
+            journal.opened(reservation("r-2"));
+        }
+        try (FileReservationJournal journal = new FileReservationJournal(file)) {
+            assertEquals(List.of(reservation("r-1"), reservation("r-2")), journal.open());
+        }
+    }
+
+    @Test
+    void testSettledRecordsAreCompactedAway() throws IOException {
+        Path file = directory.resolve("reservations.journal");
+        try (FileReservationJournal journal = new FileReservationJournal(file)) {
+            journal.opened(reservation("kept"));
+            long single = Files.size(file);
+            for (int i = 0; i < 2000; i++) {
+                journal.opened(reservation("r-" + i));
+                journal.settled("r-" + i);
+            }
+            assertTrue(Files.size(file) < 1024 * single, "Journal grew to " + Files.size(file) + " bytes");
+        }
+
+        try (FileReservationJournal journal = new FileReservationJournal(file)) {
+            assertEquals(List.of(reservation("kept")), journal.open());
+        }
+    }
+}
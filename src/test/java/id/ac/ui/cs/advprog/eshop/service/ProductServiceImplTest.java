@@ -1,22 +1,34 @@
 package id.ac.ui.cs.advprog.eshop.service;
 
 import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
 import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.Duration;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(MockitoExtension.class)
 public class ProductServiceImplTest {
@@ -89,6 +101,39 @@ public class ProductServiceImplTest {
         assertEquals("Test Product", allProducts.get(0).getProductName(), "Product name should match");
     }
 
+    @Test
+    void testSearchByNameUsesPrefixIndex() {
+        List<Product> products = Arrays.asList(product);
+        when(productRepository.findByNamePrefix("Test")).thenReturn(products);
+
+        List<Product> result = productService.searchByName("Test");
+
+        assertEquals(1, result.size(), "The search should return the matching product");
+        verify(productRepository, never()).findAll();
+    }
+
+    @Test
+    void testPagedSearchByNameUsesPrefixIndexAndBlankBrowses() {
+        Page<Product> matches = new Page<>(List.of(product), "4:test1");
+        when(productRepository.findByNamePrefix("Test", null, 1)).thenReturn(matches);
+        Page<Product> all = new Page<>(List.of(product), null);
+        when(productRepository.findAfter("7", 1)).thenReturn(all);
+
+        assertEquals(matches, productService.searchByName("Test", null, 1));
+        assertEquals(all, productService.searchByName(" ", "7", 1));
+        verify(productRepository, never()).findByNamePrefix(anyString());
+    }
+
+    @Test
+    void testSearchByNameBlankReturnsAll() {
+        List<Product> products = Arrays.asList(product);
+        when(productRepository.findAll()).thenReturn(products);
+
+        List<Product> result = productService.searchByName("  ");
+
+        assertEquals(1, result.size(), "A blank search should list every product");
+        verify(productRepository, never()).findByNamePrefix(anyString());
+    }
 
     @Test
     void testFindProductById() {
@@ -100,6 +145,84 @@ public class ProductServiceImplTest {
         assertEquals("Test Product", foundProduct.getProductName(), "Product name should match");
     }
 
+    @Test
+    void testFindProductByIdUsesCache() {
+        ReflectionTestUtils.setField(productService, "productCache", new EntityCache<Product>(100, Duration.ofMinutes(1)));
+        when(productRepository.findById("1")).thenReturn(product);
+
+        productService.findById("1");
+        Product foundProduct = productService.findById("1");
+
+        assertEquals("Test Product", foundProduct.getProductName(), "Product name should match");
+        verify(productRepository, times(1)).findById("1");
+    }
+
+    @Test
+    void testUpdateAndDeleteKeepCacheConsistent() {
+        ReflectionTestUtils.setField(productService, "productCache", new EntityCache<Product>(100, Duration.ofMinutes(1)));
+        when(productRepository.findById("1")).thenReturn(product);
+        productService.findById("1");
+
+        Product updated = new Product();
+        updated.setProductId("1");
+        updated.setProductName("Updated Product");
+        updated.setProductQuantity(3);
+        when(productRepository.update(updated)).thenReturn(updated);
+        productService.update(updated);
+        when(productRepository.findById("1")).thenReturn(updated);
+        assertEquals("Updated Product", productService.findById("1").getProductName(), "Update should invalidate");
+        verify(productRepository, times(2)).findById("1");
+
+        productService.delete("1");
+        when(productRepository.findById("1")).thenReturn(null);
+        assertNull(productService.findById("1"), "Delete should invalidate the cached product");
+    }
+
+    @Test
+    void testStockSummaryFollowsWrites() {
+        ProductRepository storage = new ProductRepository();
+        Product existing = new Product();
+        existing.setProductId("p-1");
+        existing.setProductName("Almost Gone");
+        existing.setProductQuantity(2);
+        storage.create(existing);
+        ReflectionTestUtils.setField(productService, "productRepository", storage);
+        productService.init();
+
+        Product added = new Product();
+        added.setProductId("p-2");
+        added.setProductName("Plenty");
+        added.setProductQuantity(10);
+        productService.create(added);
+
+        StockSummary<Product> summary = productService.stockSummary(10);
+        assertEquals(2, summary.itemCount(), "Products stored before init are seeded");
+        assertEquals(12, summary.totalQuantity());
+        assertEquals(1, summary.lowStockCount());
+        assertEquals(List.of(storage.findById("p-1")), summary.lowStock());
+        assertTrue(summary.countsByGroup().isEmpty());
+
+        productService.delete("p-1");
+        assertEquals(0, productService.stockSummary(10).lowStockCount());
+    }
+
+    @Test
+    void testStaleUpdateInvalidatesCacheAndRethrows() {
+        ReflectionTestUtils.setField(productService, "productCache", new EntityCache<Product>(100, Duration.ofMinutes(1)));
+        when(productRepository.findById("1")).thenReturn(product);
+        productService.findById("1");
+
+        Product stale = new Product();
+        stale.setProductId("1");
+        stale.setProductName("Stale Product");
+        stale.setProductQuantity(3);
+        when(productRepository.update(stale)).thenThrow(new StaleUpdateException("1", 0, 1));
+        assertThrows(StaleUpdateException.class, () -> productService.update(stale));
+
+        productService.findById("1");
+        verify(productRepository, times(2)).findById("1");
+    }
+
     @Test
     void testFindProductByIdNotFound() {
         when(productRepository.findById("1")).thenReturn(null);
@@ -139,4 +262,231 @@ public class ProductServiceImplTest {
 
         verify(productRepository).delete("1");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testImportCsvReportsInvalidRows() throws IOException {
+        String csv = "productName,productQuantity\n"
+                + "\"Sampo, Cap Bambang\",10\n"
+                + ",5\n"
+                + "Sabun,-1\n"
+                + "Pasta,abc\n"
+                + "Sikat,3\n";
+
+        ImportReport report = productService.importProducts(new StringReader(csv), BulkFormat.CSV);
+
+        assertEquals(2, report.getImported());
+        assertEquals(3, report.getRejected());
+        assertEquals(3, report.getErrors().get(0).line());
+        assertEquals("Product name cannot be empty", report.getErrors().get(0).message());
+        assertEquals("Product quantity cannot be negative", report.getErrors().get(1).message());
+        verify(productRepository).createAll(argThat(batch -> batch.size() == 2
+                && batch.get(0).getProductName().equals("Sampo, Cap Bambang")));
+    }
+
+    @Test
+    void testImportJsonLinesInBatches() throws IOException {
+        StringBuilder lines = new StringBuilder();
+        int rows = ProductServiceImpl.IMPORT_BATCH_SIZE + 1;
+        for (int i = 0; i < rows; i++) {
+            lines.append("{\"productName\":\"Item ").append(i).append("\",\"productQuantity\":1}\n");
+        }
+        lines.append("{not json}\n");
+
+        ImportReport report = productService.importProducts(new StringReader(lines.toString()), BulkFormat.JSON_LINES);
+
+        assertEquals(rows, report.getImported());
+        assertEquals(1, report.getRejected());
+        verify(productRepository, times(2)).createAll(anyList());
+    }
+
+    @Test
+    void testImportRejectsRowsWhoseIdExistsInsteadOfOverwritingThem() throws IOException {
+        ProductRepository storage = new ProductRepository();
+        Product existing = new Product();
+        existing.setProductId("p-1");
+        existing.setProductName("Original");
+        existing.setProductQuantity(5);
+        storage.update(storage.create(existing));
+        ReflectionTestUtils.setField(productService, "productRepository", storage);
+
+        ImportReport report = productService.importProducts(new StringReader(
+                "productId,productName,productQuantity\np-2,Sabun,2\np-1,Overwrite,1\n"), BulkFormat.CSV);
+
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getRejected());
+        assertEquals(3, report.getErrors().get(0).line());
+        assertEquals("Original", storage.findById("p-1").getProductName());
+        assertEquals(1, storage.findById("p-1").getVersion(), "The existing product's version is not rolled back");
+        assertEquals("Sabun", storage.findById("p-2").getProductName());
+    }
+
+    @Test
+    void testImportGoesThroughWriteBehindQueue() throws Exception {
+        ProductRepository storage = spy(new ProductRepository());
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(storage).createAll(anyList());
+        ReflectionTestUtils.setField(productService, "productRepository", storage);
+        ReflectionTestUtils.setField(productService, "writeBehindSettings",
+                new WriteBehindSettings(100, 100, Duration.ofSeconds(10), Duration.ofSeconds(5)));
+        productService.init();
+        try {
+            ImportReport report = productService.importProducts(
+                    new StringReader("productName,productQuantity\nSampo,1\nSabun,2\n"), BulkFormat.CSV);
+
+            assertEquals(2, report.getImported());
+            assertEquals(0, storage.count(), "Imported rows are queued, not written by the caller");
+            release.countDown();
+            assertEquals(2, productService.count());
+        } finally {
+            release.countDown();
+            productService.close();
+        }
+    }
+
+    @Test
+    void testCatalogVersionMovesWithQueuedWritesWithoutWaitingForThem() throws Exception {
+        ProductRepository storage = spy(new ProductRepository());
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(storage).createAll(anyList());
+        ReflectionTestUtils.setField(productService, "productRepository", storage);
+        ReflectionTestUtils.setField(productService, "writeBehindSettings",
+                new WriteBehindSettings(100, 100, Duration.ofMillis(1), Duration.ofSeconds(5)));
+        productService.init();
+        try {
+            long before = productService.catalogVersion();
+            Product queued = new Product();
+            queued.setProductName("Sampo");
+            queued.setProductQuantity(1);
+            productService.create(queued);
+
+            long start = System.nanoTime();
+            long whileQueued = productService.catalogVersion();
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "Reading the version must not drain the queue");
+            assertTrue(whileQueued > before);
+            assertEquals(0, storage.count());
+
+            release.countDown();
+            productService.close();
+            assertEquals(1, storage.count());
+            assertTrue(productService.catalogVersion() > whileQueued, "Applying the write moves the version again");
+        } finally {
+            release.countDown();
+            productService.close();
+        }
+    }
+
+    @Test
+    void testReadsSeeQueuedWritesWithoutWaitingForThem() throws Exception {
+        ProductRepository storage = spy(new ProductRepository());
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(storage).createAll(anyList());
+        Product stored = new Product();
+        stored.setProductId("p-1");
+        stored.setProductName("Sabun");
+        stored.setProductQuantity(20);
+        storage.create(stored);
+        ReflectionTestUtils.setField(productService, "productRepository", storage);
+        ReflectionTestUtils.setField(productService, "writeBehindSettings",
+                new WriteBehindSettings(100, 100, Duration.ofMillis(1), Duration.ofSeconds(5)));
+        productService.init();
+        try {
+            Product queued = new Product();
+            queued.setProductName("Sampo");
+            queued.setProductQuantity(2);
+            productService.create(queued);
+            productService.delete("p-1");
+
+            long start = System.nanoTime();
+            assertEquals(List.of("Sampo"), productService.findAll().stream().map(Product::getProductName).toList());
+            assertEquals(1, productService.searchByName("samp").size());
+            assertEquals(1, productService.findAfter(null, 10).items().size());
+            assertEquals(1, productService.count());
+            StockSummary<Product> summary = productService.stockSummary(10);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "Reads must not wait for the writer");
+            assertEquals(1, summary.itemCount());
+            assertEquals(2, summary.totalQuantity());
+            assertEquals(List.of("Sampo"), summary.lowStock().stream().map(Product::getProductName).toList());
+            assertEquals(1, storage.count(), "Nothing was applied yet");
+        } finally {
+            release.countDown();
+            productService.close();
+        }
+        assertEquals(1, storage.count());
+    }
+
+    @Test
+    void testImportCsvWithoutRequiredColumns() {
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.importProducts(new StringReader("name,qty\nA,1\n"), BulkFormat.CSV));
+    }
+
+    @Test
+    void testExportCsvWalksPages() throws IOException {
+        product.setProductName("Sampo, \"Bambang\"");
+        when(productRepository.findAfter(null, ProductServiceImpl.EXPORT_PAGE_SIZE)).thenReturn(new Page<>(List.of(product), null));
+        StringWriter out = new StringWriter();
+
+        long written = productService.exportProducts(out, BulkFormat.CSV);
+
+        assertEquals(1, written);
+        assertEquals("productId,productName,productQuantity\n1,\"Sampo, \"\"Bambang\"\"\",10\n", out.toString());
+        verify(productRepository, never()).findAll();
+    }
+
+    @Test
+    void testExportSkipsProductDeletedMidway() throws IOException {
+        ProductRepository storage = new ProductRepository();
+        int rows = ProductServiceImpl.EXPORT_PAGE_SIZE + 500;
+        for (int i = 0; i < rows; i++) {
+            Product item = new Product();
+            item.setProductId(String.format("p-%04d", i));
+            item.setProductName("Item " + i);
+            item.setProductQuantity(1);
+            storage.create(item);
+        }
+        ReflectionTestUtils.setField(productService, "productRepository", storage);
+        String lastOfFirstPage = String.format("p-%04d", ProductServiceImpl.EXPORT_PAGE_SIZE - 1);
+        String onSecondPage = String.format("p-%04d", ProductServiceImpl.EXPORT_PAGE_SIZE + 200);
+        StringWriter out = new StringWriter() {
+            private int lines;
+
+            @Override
+            public void write(int c) {
+                super.write(c);
+                // Both deletes land while the first page is being written
+                if (c == '\n' && ++lines == 2) {
+                    storage.delete(lastOfFirstPage);
+                    storage.delete(onSecondPage);
+                }
+            }
+        };
+
+        long written = productService.exportProducts(out, BulkFormat.CSV);
+
+        List<String> ids = out.toString().lines().skip(1).map(line -> line.substring(0, line.indexOf(','))).toList();
+        assertEquals(rows - 1, written, "The second-page product deleted before it was reached is left out");
+        assertEquals(written, ids.size());
+        assertEquals(ids.size(), ids.stream().distinct().count(), "No product is written twice");
+        assertTrue(ids.contains(lastOfFirstPage), "The first page was read before the delete");
+        assertFalse(ids.contains(onSecondPage));
+    }
+
+    @Test
+    void testExportJsonLines() throws IOException {
+        when(productRepository.findAfter(null, ProductServiceImpl.EXPORT_PAGE_SIZE)).thenReturn(new Page<>(List.of(product), null));
+        StringWriter out = new StringWriter();
+
+        productService.exportProducts(out, BulkFormat.JSON_LINES);
+
+        assertTrue(out.toString().contains("\"productName\":\"Test Product\""));
+    }
+}
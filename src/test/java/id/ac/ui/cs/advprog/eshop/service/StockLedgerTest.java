@@ -0,0 +1,255 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockLedgerTest {
+
+    private final Map<String, Integer> stock = new ConcurrentHashMap<>();
+    private final MutableClock clock = new MutableClock();
+    @TempDir
+    Path directory;
+    private StockLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        stock.put("a", 5);
+        stock.put("b", 1);
+        ledger = new StockLedger(this::adjust, Duration.ofMinutes(15), clock);
+    }
+
+    private boolean adjust(String itemId, int delta) {
+        if (!stock.containsKey(itemId)) {
+            throw new IllegalArgumentException("Unknown item " + itemId);
+        }
+        boolean[] applied = new boolean[1];
+        stock.computeIfPresent(itemId, (id, quantity) -> {
+            applied[0] = quantity + delta >= 0;
+            return applied[0] ? quantity + delta : quantity;
+        });
+        return applied[0];
+    }
+
+    private int stockOf(String itemId) {
+        return stock.get(itemId);
+    }
+
+    @Test
+    void testReserveAndReleaseRestoresStock() {
+        StockReservation reservation = ledger.reserve("a", 3);
+        assertEquals(2, stockOf("a"));
+
+        ledger.release(reservation.reservationId());
+        assertEquals(5, stockOf("a"));
+        assertEquals(0, ledger.pendingCount());
+
+        ledger.release(reservation.reservationId());
+        assertEquals(5, stockOf("a"), "Releasing twice must not restock twice");
+    }
+
+    @Test
+    void testCommitKeepsStockTaken() {
+        StockReservation reservation = ledger.reserve("a", 3);
+        ledger.commit(reservation.reservationId());
+        ledger.release(reservation.reservationId());
+
+        assertEquals(2, stockOf("a"));
+        assertThrows(IllegalArgumentException.class, () -> ledger.commit(reservation.reservationId()));
+    }
+
+    @Test
+    void testReserveAllOrNothing() {
+        InsufficientStockException exception = assertThrows(InsufficientStockException.class,
+                () -> ledger.reserve(Map.of("a", 2, "b", 2)));
+
+        assertEquals("b", exception.getItemId());
+        assertEquals(5, stockOf("a"), "Lines taken before the failing one must be given back");
+        assertEquals(1, stockOf("b"));
+
+        assertThrows(IllegalArgumentException.class, () -> ledger.reserve(Map.of("a", 1, "missing", 1)));
+        assertEquals(5, stockOf("a"));
+
+        ledger.reserve(Map.of("a", 2, "b", 1));
+        assertEquals(3, stockOf("a"));
+        assertEquals(0, stockOf("b"));
+    }
+
+    @Test
+    void testRejectsNonPositiveQuantity() {
+        assertThrows(IllegalArgumentException.class, () -> ledger.reserve("a", 0));
+        assertThrows(IllegalArgumentException.class, () -> ledger.reserve(Map.of()));
+    }
+
+    @Test
+    void testExpiredReservationsAreReleased() {
+        StockReservation expiring = ledger.reserve("a", 2);
+        clock.advance(Duration.ofMinutes(10));
+        ledger.reserve("a", 1);
+
+        clock.advance(Duration.ofMinutes(6));
+        assertEquals(1, ledger.releaseExpired());
+        assertEquals(4, stockOf("a"));
+        assertThrows(IllegalArgumentException.class, () -> ledger.commit(expiring.reservationId()));
+        assertEquals(1, ledger.pendingCount());
+    }
+
+    @Test
+    void testCommitAfterExpiryRestocks() {
+        StockReservation reservation = ledger.reserve("b", 1);
+        clock.advance(Duration.ofMinutes(16));
+
+        assertThrows(IllegalArgumentException.class, () -> ledger.commit(reservation.reservationId()));
+        assertEquals(1, stockOf("b"));
+    }
+
+    @Test
+    void testOpenReservationsSurviveARestart() throws IOException {
+        Path file = directory.resolve("reservations.journal");
+        try (FileReservationJournal journal = new FileReservationJournal(file)) {
+            ledger.recover(journal);
+            ledger.reserve("a", 3);
+            StockReservation released = ledger.reserve("b", 1);
+            ledger.release(released.reservationId());
+        }
+
+        StockLedger restarted = new StockLedger(this::adjust, Duration.ofMinutes(15), clock);
+        try (FileReservationJournal journal = new FileReservationJournal(file)) {
+            restarted.recover(journal);
+            assertEquals(1, restarted.pendingCount());
+            clock.advance(Duration.ofMinutes(16));
+            assertEquals(1, restarted.releaseExpired());
+        }
+        assertEquals(5, stockOf("a"), "The recovered reservation gives its units back");
+        assertEquals(1, stockOf("b"), "A settled reservation is not restocked again");
+    }
+
+    @Test
+    void testUnjournaledReservationGivesItsUnitsBack() {
+        ledger.recover(new ReservationJournal() {
+            @Override
+            public List<StockReservation> open() {
+                return List.of();
+            }
+
+            @Override
+            public void opened(StockReservation reservation) {
+                throw new UncheckedIOException(new IOException("Disk full"));
+            }
+
+            @Override
+            public void settled(String reservationId) {
+            }
+        });
+
+        assertThrows(UncheckedIOException.class, () -> ledger.reserve(Map.of("a", 2, "b", 1)));
+        assertEquals(5, stockOf("a"));
+        assertEquals(1, stockOf("b"));
+        assertEquals(0, ledger.pendingCount());
+    }
+
+    @Test
+    void testHotItemIsNeverOversold() throws Exception {
+        ProductRepository productRepository = new ProductRepository();
+        ProductServiceImpl productService = new ProductServiceImpl();
+        ReflectionTestUtils.setField(productService, "productRepository", productRepository);
+        Product product = new Product();
+        product.setProductId("hot");
+        product.setProductName("Hot Item");
+        product.setProductQuantity(5_000);
+        productRepository.create(product);
+        List<Product> before = productRepository.findAll();
+
+        int threads = 16;
+        int attemptsPerThread = 1_000;
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new java.util.ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        try {
+                            StockReservation reservation = productService.reserveStock("hot", 1);
+                            reserved.incrementAndGet();
+                            if (i < 100 && i % 10 == 0) {
+                                // Some buyers abandon their cart, which puts the unit back
+                                productService.releaseReservation(reservation.reservationId());
+                                reserved.decrementAndGet();
+                            } else {
+                                productService.commitReservation(reservation.reservationId());
+                            }
+                        } catch (InsufficientStockException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(5_000, reserved.get(), "Exactly the available units should be sold");
+        assertTrue(rejected.get() > 0);
+        assertEquals(0, productRepository.findById("hot").getProductQuantity());
+        assertNotSame(product, productRepository.findById("hot"), "Stock changes must not mutate stored products");
+        assertEquals(5_000, before.get(0).getProductQuantity(), "Earlier snapshots must keep their values");
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.DuplicateIdException;
+import id.ac.ui.cs.advprog.eshop.repository.IdGenerator;
+import id.ac.ui.cs.advprog.eshop.repository.Page;
+import id.ac.ui.cs.advprog.eshop.repository.ProductRepository;
+import id.ac.ui.cs.advprog.eshop.repository.StaleUpdateException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindQueueTest {
+
+    private final List<WriteBehindQueue<Product>> queues = new ArrayList<>();
+    private final List<String> applied = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (WriteBehindQueue<Product> queue : queues) {
+            queue.close();
+        }
+    }
+
+    private WriteBehindQueue<Product> open(ProductRepository repository, WriteBehindSettings settings) {
+        WriteBehindQueue<Product> queue = new WriteBehindQueue<>("product", repository, Product::getProductId,
+                Product::setProductId, Product::copy, IdGenerator.timeOrdered(), settings, id -> {
+                    synchronized (applied) {
+                        applied.add(id);
+                    }
+                });
+        queues.add(queue);
+        return queue;
+    }
+
+    private Product newProduct(String id, String name, int quantity) {
+        Product product = new Product();
+        product.setProductId(id);
+        product.setProductName(name);
+        product.setProductQuantity(quantity);
+        return product;
+    }
+
+    @Test
+    void testQueuedCreatesAreReadableAndAppliedAsOneBatch() {
+        List<Integer> batchSizes = new ArrayList<>();
+        ProductRepository repository = new ProductRepository() {
+            @Override
+            public List<Product> createAll(List<Product> items) {
+                batchSizes.add(items.size());
+                return super.createAll(items);
+            }
+        };
+        // A long interval, so only the flush request below ends the batch
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(100, 100, Duration.ofSeconds(10), Duration.ofSeconds(5)));
+
+        Product first = queue.create(newProduct(null, "Sampo Cap Bambang", 1));
+        queue.create(newProduct("p-2", "Sampo Cap Usep", 2));
+        assertNotNull(first.getProductId(), "Ids are assigned at submit time");
+        assertSame(first, queue.read(first.getProductId(), repository::findById), "Read-your-writes before the flush");
+
+        queue.awaitFlushed();
+        assertEquals(0, queue.backlog());
+        assertEquals(List.of(2), batchSizes);
+        assertEquals(2, repository.count());
+        assertEquals(List.of(first.getProductId(), "p-2"), applied);
+    }
+
+    @Test
+    void testUpdatesAreVersionCheckedAgainstPendingCopy() {
+        ProductRepository repository = new ProductRepository();
+        repository.create(newProduct("p-1", "Sampo Cap Bambang", 10));
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(100, 100, Duration.ofSeconds(10), Duration.ofSeconds(5)));
+
+        Product edit = newProduct("p-1", "First Edit", 9);
+        Product first = queue.update(edit);
+        assertEquals(1, first.getVersion());
+        assertEquals(0, edit.getVersion(), "The queued copy is not the caller's");
+        assertThrows(StaleUpdateException.class, () -> queue.update(newProduct("p-1", "Stale Edit", 8)));
+
+        Product second = newProduct("p-1", "Second Edit", 7);
+        second.setVersion(1);
+        queue.update(second);
+        assertNull(queue.update(newProduct("missing", "Nothing", 1)));
+
+        queue.awaitFlushed();
+        Product stored = repository.findById("p-1");
+        assertEquals("Second Edit", stored.getProductName());
+        assertEquals(2, stored.getVersion());
+    }
+
+    @Test
+    void testCreateRefusesAnIdThatIsPendingOrStored() {
+        ProductRepository repository = new ProductRepository();
+        repository.create(newProduct("p-1", "Sampo Cap Bambang", 10));
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(100, 100, Duration.ofSeconds(10), Duration.ofSeconds(5)));
+
+        assertThrows(DuplicateIdException.class, () -> queue.create(newProduct("p-1", "Overwrite", 1)));
+        Product versioned = newProduct("p-2", "Sampo Cap Usep", 2);
+        versioned.setVersion(9);
+        Product queued = queue.create(versioned);
+        assertEquals(0, queued.getVersion(), "A client-supplied version is not kept");
+        assertThrows(DuplicateIdException.class, () -> queue.create(newProduct("p-2", "Overwrite", 1)));
+
+        queue.awaitFlushed();
+        assertEquals("Sampo Cap Bambang", repository.findById("p-1").getProductName());
+        assertEquals("Sampo Cap Usep", repository.findById("p-2").getProductName());
+        assertEquals(0, repository.findById("p-2").getVersion());
+    }
+
+    @Test
+    void testDeleteHidesItemBeforeItIsApplied() {
+        ProductRepository repository = new ProductRepository();
+        repository.create(newProduct("p-1", "Sampo Cap Bambang", 10));
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(100, 100, Duration.ofSeconds(10), Duration.ofSeconds(5)));
+
+        queue.delete("p-1");
+        assertNull(queue.read("p-1", repository::findById));
+        queue.awaitFlushed();
+        assertNull(repository.findById("p-1"));
+    }
+
+    @Test
+    void testFullQueueRefusesWritesAfterOfferTimeout() throws Exception {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProductRepository repository = new ProductRepository() {
+            @Override
+            public List<Product> createAll(List<Product> items) {
+                writerBlocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.createAll(items);
+            }
+        };
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(1, 1, Duration.ofMillis(1), Duration.ofMillis(50)));
+
+        queue.create(newProduct("p-1", "Taken By Writer", 1));
+        assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+        queue.create(newProduct("p-2", "Fills The Queue", 1));
+        assertThrows(WriteQueueFullException.class, () -> queue.create(newProduct("p-3", "Refused", 1)));
+        assertNull(queue.read("p-3", repository::findById), "A refused write leaves nothing pending");
+
+        release.countDown();
+        queue.awaitFlushed();
+        assertEquals(2, repository.count());
+    }
+
+    /** A repository whose writer blocks in {@code createAll} until {@code release} is counted down. */
+    private ProductRepository stalling(CountDownLatch writerBlocked, CountDownLatch release) {
+        return new ProductRepository() {
+            @Override
+            public List<Product> createAll(List<Product> items) {
+                writerBlocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.createAll(items);
+            }
+        };
+    }
+
+    @Test
+    void testListingsMergeQueuedWritesWithoutWaitingForThem() throws Exception {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProductRepository repository = stalling(writerBlocked, release);
+        repository.create(newProduct("p-1", "Sampo Cap Bambang", 10));
+        repository.create(newProduct("p-2", "Sampo Cap Usep", 20));
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(100, 1, Duration.ofMillis(1), Duration.ofSeconds(5)));
+        try {
+            queue.create(newProduct("p-3", "Sabun Cap Ujang", 3));
+            assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+            queue.update(newProduct("p-1", "Sabun Cap Bambang", 1));
+            queue.delete("p-2");
+
+            List<Product> all = queue.overlay(repository::findAll, product -> true, Integer.MAX_VALUE);
+            assertEquals(List.of("p-1", "p-3"), all.stream().map(Product::getProductId).toList());
+            assertEquals("Sabun Cap Bambang", all.get(0).getProductName());
+            assertEquals(2, queue.count(repository::count));
+
+            Page<Product> first = queue.overlayPage(() -> repository.findAfter(null, 1), product -> true);
+            assertEquals(List.of("p-1"), first.items().stream().map(Product::getProductId).toList());
+            Page<Product> last = queue.overlayPage(() -> repository.findAfter(first.next(), 1), product -> true);
+            assertEquals(List.of("p-3"), last.items().stream().map(Product::getProductId).toList(),
+                    "The deleted item is left out and the queued one added to the last page");
+
+            List<Product> sabun = queue.overlay(() -> repository.findByNamePrefix("sabun"),
+                    product -> product.getProductName().toLowerCase().startsWith("sabun"), Integer.MAX_VALUE);
+            assertEquals(List.of("p-3", "p-1"), sabun.stream().map(Product::getProductId).toList(),
+                    "Items queued under a matching name are found before they are stored, in queue order");
+
+            Map<String, Product> queued = queue.queued();
+            assertNull(queued.get("p-2"));
+            assertTrue(queued.containsKey("p-2"));
+            assertEquals("Sabun Cap Ujang", queued.get("p-3").getProductName());
+        } finally {
+            release.countDown();
+        }
+        queue.awaitFlushed();
+        assertEquals(2, repository.count());
+        assertEquals(2, queue.count(repository::count));
+        assertEquals("Sabun Cap Bambang", repository.findById("p-1").getProductName());
+    }
+
+    @Test
+    void testAwaitFlushedFailsWhenTheWritesAreNotAppliedInTime() throws Exception {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProductRepository repository = stalling(writerBlocked, release);
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(100, 1, Duration.ofMillis(1), Duration.ofMillis(50)));
+        try {
+            queue.create(newProduct("p-1", "Sampo Cap Bambang", 1));
+            assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+
+            assertThrows(WriteBehindTimeoutException.class, queue::awaitFlushed);
+            assertThrows(WriteBehindTimeoutException.class, () -> queue.awaitApplied("p-1"));
+            queue.awaitApplied("p-2");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testWritesThatFailWhenAppliedAreKeptAsFailedWrites() throws Exception {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProductRepository repository = stalling(writerBlocked, release);
+        repository.create(newProduct("p-1", "Sampo Cap Bambang", 10));
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(100, 1, Duration.ofMillis(1), Duration.ofSeconds(5)));
+        try {
+            queue.create(newProduct("p-2", "Sampo Cap Usep", 2));
+            assertTrue(writerBlocked.await(5, TimeUnit.SECONDS));
+            queue.update(newProduct("p-1", "Queued Edit", 9));
+            // Stock adjusted straight in the repository while the edit waits
+            repository.update(newProduct("p-1", "Direct Edit", 8));
+        } finally {
+            release.countDown();
+        }
+        queue.awaitFlushed();
+
+        assertEquals(1, queue.failed());
+        WriteBehindQueue.FailedWrite<Product> failed = queue.failedWrites().get(0);
+        assertEquals("update", failed.kind());
+        assertEquals("p-1", failed.id());
+        assertEquals("Queued Edit", failed.item().getProductName());
+        assertEquals("Direct Edit", repository.findById("p-1").getProductName());
+    }
+
+    @Test
+    void testFailedCreateInABatchLosesOnlyThatCreate() {
+        ProductRepository repository = new ProductRepository() {
+            @Override
+            public Product create(Product item) {
+                if (item.getProductName().equals("Refused")) {
+                    throw new IllegalArgumentException("Refused by the store");
+                }
+                return super.create(item);
+            }
+
+            @Override
+            public List<Product> createAll(List<Product> items) {
+                items.forEach(item -> {
+                    if (item.getProductName().equals("Refused")) {
+                        throw new IllegalArgumentException("Refused by the store");
+                    }
+                });
+                return super.createAll(items);
+            }
+        };
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(100, 100, Duration.ofSeconds(10), Duration.ofSeconds(5)));
+
+        queue.create(newProduct("p-1", "Sampo Cap Bambang", 1));
+        queue.create(newProduct("p-2", "Refused", 1));
+        queue.create(newProduct("p-3", "Sampo Cap Usep", 1));
+        queue.awaitFlushed();
+
+        assertEquals(2, repository.count());
+        assertNull(repository.findById("p-2"));
+        assertEquals(List.of("p-2"), queue.failedWrites().stream().map(WriteBehindQueue.FailedWrite::id).toList());
+        assertEquals(2, queue.count(repository::count), "A failed create no longer counts");
+    }
+
+    @Test
+    void testCloseDrainsQueueAndRefusesNewWrites() {
+        ProductRepository repository = new ProductRepository();
+        WriteBehindQueue<Product> queue = open(repository,
+                new WriteBehindSettings(1000, 10, Duration.ofSeconds(10), Duration.ofSeconds(5)));
+        for (int i = 0; i < 500; i++) {
+            queue.create(newProduct("p-" + i, "Product " + i, i));
+        }
+        queue.close();
+
+        assertEquals(500, repository.count());
+        assertEquals(0, queue.backlog());
+        assertThrows(IllegalStateException.class, () -> queue.create(newProduct("late", "Too Late", 1)));
+    }
+}
@@ -0,0 +1,53 @@
+package id.ac.ui.cs.advprog.eshop.service;
+
+import id.ac.ui.cs.advprog.eshop.EshopApplication;
+import id.ac.ui.cs.advprog.eshop.model.Car;
+import id.ac.ui.cs.advprog.eshop.model.Product;
+import id.ac.ui.cs.advprog.eshop.repository.ICarRepository;
+import id.ac.ui.cs.advprog.eshop.repository.IProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindShutdownTest {
+
+    @Test
+    void testClosingTheContextAppliesQueuedWrites() {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(EshopApplication.class)
+                .web(WebApplicationType.NONE)
+                // Arguments rather than default properties, which application.properties would override
+                .run("--eshop.write-behind.enabled=true",
+                        // Nothing is flushed on its own before the context closes
+                        "--eshop.write-behind.flush-size=1000",
+                        "--eshop.write-behind.flush-interval=1m",
+                        "--logging.level.root=WARN");
+        ProductService productService = context.getBean(ProductService.class);
+        CarService carService = context.getBean(CarService.class);
+        IProductRepository productRepository = context.getBean(IProductRepository.class);
+        ICarRepository carRepository = context.getBean(ICarRepository.class);
+        assertTrue(AopUtils.isAopProxy(productService), "The service should be wrapped for timing");
+
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setProductName("Sampo " + i);
+            product.setProductQuantity(i + 1);
+            productService.create(product);
+        }
+        Car car = new Car();
+        car.setCarName("Brio");
+        car.setCarColor("Red");
+        car.setCarQuantity(1);
+        carService.create(car);
+        assertEquals(0, productRepository.count(), "Writes should still be queued");
+
+        context.close();
+
+        assertEquals(3, productRepository.count());
+        assertEquals(1, carRepository.count());
+    }
+}